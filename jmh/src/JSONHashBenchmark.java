@@ -0,0 +1,141 @@
+package src;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSONHash get, misses, set, iteration and expansion at several sizes.
+ *
+ * Run with: gradle jmh -Pjmh.includes=JSONHashBenchmark
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONHashBenchmark {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of keys in the hash.
+   */
+  @Param({"16", "1024", "65536"})
+  int size;
+
+  /**
+   * The keys, in the order they were added.
+   */
+  JSONString[] keys;
+
+  /**
+   * A hash holding every key.
+   */
+  JSONHash hash;
+
+  /**
+   * A key the hash does not hold.
+   */
+  JSONString absent = new JSONString("absent");
+
+  /**
+   * The value set by set and fill.
+   */
+  JSONValue value = new JSONInteger(2);
+
+  /**
+   * The position of the next key to use.
+   */
+  int next = 0;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  @Setup
+  public void setup() {
+    this.keys = new JSONString[this.size];
+    this.hash = new JSONHash();
+    for (int i = 0; i < this.size; i++) {
+      this.keys[i] = new JSONString("key" + i);
+      this.hash.set(this.keys[i], new JSONInteger(1));
+    } // for
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  @Benchmark
+  public JSONValue get() {
+    return this.hash.get(nextKey());
+  } // get()
+
+  @Benchmark
+  public long getLong() {
+    return this.hash.getLong(nextKey(), 0);
+  } // getLong()
+
+  @Benchmark
+  public JSONValue miss() {
+    return this.hash.getOrNull(this.absent);
+  } // miss()
+
+  @Benchmark
+  public JSONHash set() {
+    this.hash.set(nextKey(), this.value);
+    return this.hash;
+  } // set()
+
+  @Benchmark
+  public int iterate() {
+    int result = 0;
+    Iterator<KVPair<JSONString, JSONValue>> pairs = this.hash.iterator();
+    while (pairs.hasNext()) {
+      result += pairs.next().key().hashCode();
+    } // while
+    return result;
+  } // iterate()
+
+  /**
+   * Filling a new table from empty exercises expand at every doubling.
+   */
+  @Benchmark
+  public JSONHash fill() {
+    JSONHash fresh = new JSONHash();
+    for (JSONString key : this.keys) {
+      fresh.set(key, this.value);
+    } // for
+    return fresh;
+  } // fill()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the next key, going round them all in turn.
+   */
+  JSONString nextKey() {
+    JSONString key = this.keys[this.next];
+    this.next = (this.next + 1) % this.size;
+    return key;
+  } // nextKey()
+
+} // class JSONHashBenchmark
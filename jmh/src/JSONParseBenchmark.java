@@ -0,0 +1,79 @@
+package src;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing, validating and parsing onto a tape, for each of JSONBenchmark's
+ * sample documents.
+ *
+ * Run with: gradle jmh -Pjmh.includes=JSONParseBenchmark
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONParseBenchmark {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The name of the document to parse.
+   */
+  @Param({"rest", "wide", "deep", "numbers", "escapes", "nested"})
+  String doc;
+
+  /**
+   * The text of that document.
+   */
+  String text;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  @Setup
+  public void setup() {
+    for (String[] sample : JSONBenchmark.documents()) {
+      if (sample[0].equals(this.doc)) {
+        this.text = sample[1];
+      } // if
+    } // for
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  @Benchmark
+  public JSONValue parse() throws Exception {
+    return JSON.parse(this.text);
+  } // parse()
+
+  @Benchmark
+  public JSONValidation validate() {
+    return JSON.validate(this.text);
+  } // validate()
+
+  @Benchmark
+  public JSONTape tape() throws Exception {
+    return JSONTape.parse(this.text);
+  } // tape()
+
+} // class JSONParseBenchmark
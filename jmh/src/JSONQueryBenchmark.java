@@ -0,0 +1,209 @@
+package src;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Getting at the contents of documents: pointers, binding to records,
+ * shape parsing, schema checks, columns and indexes, on JSONBenchmark's
+ * "rest" document and array of orders.
+ *
+ * Run with: gradle jmh -Pjmh.includes=JSONQueryBenchmark
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONQueryBenchmark {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The text of the "rest" document, and the document parsed.
+   */
+  String restText;
+  JSONValue rest;
+
+  /**
+   * The paths pulled out of rest, compiled one at a time and together.
+   */
+  JSONPointer[] pointers;
+  MultiPath multi;
+  JSONValue[] results;
+
+  /**
+   * rest, bound to a record.
+   */
+  JSONBenchmark.User user;
+
+  /**
+   * The array of orders, as text and parsed.
+   */
+  String ordersText;
+  JSONArray orders;
+
+  /**
+   * Parsers and a schema for the documents.
+   */
+  JSONShapeParser restParser;
+  JSONShapeParser ordersParser;
+  JSONSchema schema;
+
+  /**
+   * A sink for the shape parsers, and what it adds up.
+   */
+  JSONShapeParser.Sink counter;
+  int slots;
+
+  /**
+   * The orders as columns.
+   */
+  JSONColumns columns;
+
+  /**
+   * 200000 rows indexed by id, which goes up in threes.
+   */
+  JSONIndex index;
+
+  /**
+   * Picks ids to look up.
+   */
+  Random rand = new Random(50);
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  @Setup
+  public void setup() throws Exception {
+    this.restText = JSONBenchmark.documents()[0][1];
+    this.rest = JSON.parse(this.restText);
+    String[] paths = {"/address/city", "/address/zip", "/tags/1", "/logins/2", "/id", "/score"};
+    this.pointers = new JSONPointer[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      this.pointers[i] = JSONPointer.compile(paths[i]);
+    } // for
+    this.multi = new MultiPath(this.pointers);
+    this.results = new JSONValue[this.pointers.length];
+    this.user = JSONMapper.read(this.restText, JSONBenchmark.User.class);
+    this.ordersText = JSONBenchmark.orders();
+    this.orders = (JSONArray) JSON.parse(this.ordersText);
+    this.restParser = JSONShapeParser.compile(JSONBenchmark.REST_SHAPE);
+    this.ordersParser = JSONShapeParser.compile(JSONBenchmark.ORDERS_SHAPE);
+    this.schema = JSONSchema.compile(JSONBenchmark.ORDERS_SCHEMA);
+    this.counter = (slot, value) -> this.slots += slot;
+    this.columns = JSONColumns.of(this.orders);
+    JSONArray rows = new JSONArray();
+    JSONString id = new JSONString("id");
+    for (int i = 0; i < 200000; i++) {
+      JSONHash row = new JSONHash();
+      row.set(id, new JSONInteger(i * 3L));
+      row.set(new JSONString("name"), new JSONString("user" + i));
+      rows.add(row);
+    } // for
+    this.index = rows.indexBy("/id", JSONIndex.Option.UNIQUE, JSONIndex.Option.SORTED);
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  @Benchmark
+  public int pointerCompiled() {
+    int result = 0;
+    for (JSONPointer pointer : this.pointers) {
+      result += pointer.get(this.rest).hashCode();
+    } // for
+    return result;
+  } // pointerCompiled()
+
+  @Benchmark
+  public JSONValue[] pointerMulti() {
+    this.multi.extract(this.rest, this.results);
+    return this.results;
+  } // pointerMulti()
+
+  @Benchmark
+  public JSONBenchmark.User bindTree() throws Exception {
+    return JSONMapper.read(JSON.parse(this.restText), JSONBenchmark.User.class);
+  } // bindTree()
+
+  @Benchmark
+  public JSONBenchmark.User bindText() throws Exception {
+    return JSONMapper.read(this.restText, JSONBenchmark.User.class);
+  } // bindText()
+
+  @Benchmark
+  public JSONValue bindWrite() {
+    return JSONMapper.write(this.user);
+  } // bindWrite()
+
+  @Benchmark
+  public JSONValue shapeTreeRest() throws Exception {
+    return this.restParser.parse(this.restText);
+  } // shapeTreeRest()
+
+  @Benchmark
+  public JSONValue shapeTreeOrders() throws Exception {
+    return this.ordersParser.parse(this.ordersText);
+  } // shapeTreeOrders()
+
+  @Benchmark
+  public int shapeSinkOrders() throws Exception {
+    this.ordersParser.parse(this.ordersText, this.counter);
+    return this.slots;
+  } // shapeSinkOrders()
+
+  @Benchmark
+  public boolean schemaValid() {
+    return this.schema.isValid(this.orders);
+  } // schemaValid()
+
+  @Benchmark
+  public int schemaErrors() {
+    return this.schema.validate(this.orders).size();
+  } // schemaErrors()
+
+  @Benchmark
+  public double columnSum() {
+    double[] prices = this.columns.get("price").doubles();
+    double total = 0;
+    for (int i = 0; i < prices.length; i++) {
+      total += prices[i];
+    } // for
+    return total;
+  } // columnSum()
+
+  @Benchmark
+  public JSONColumns columnsFromText() throws Exception {
+    return JSONColumns.read(this.ordersText);
+  } // columnsFromText()
+
+  @Benchmark
+  public JSONValue indexGet() {
+    return this.index.get(3L * this.rand.nextInt(200000));
+  } // indexGet()
+
+  @Benchmark
+  public int indexRange() {
+    long from = 3L * this.rand.nextInt(200000);
+    return this.index.range(from, from + 30).size();
+  } // indexRange()
+
+} // class JSONQueryBenchmark
@@ -0,0 +1,93 @@
+package src;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing each of JSONBenchmark's sample documents as JSON, as text for
+ * printing, and in canonical form.
+ *
+ * Run with: gradle jmh -Pjmh.includes=JSONWriteBenchmark
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONWriteBenchmark {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The name of the document to write.
+   */
+  @Param({"rest", "wide", "deep", "numbers", "escapes", "nested"})
+  String doc;
+
+  /**
+   * That document, parsed.
+   */
+  JSONValue value;
+
+  /**
+   * Counts what is written and throws it away.
+   */
+  JSONBenchmark.CountingWriter counter;
+
+  /**
+   * Writes to counter.
+   */
+  PrintWriter pen;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  @Setup
+  public void setup() throws Exception {
+    for (String[] sample : JSONBenchmark.documents()) {
+      if (sample[0].equals(this.doc)) {
+        this.value = JSON.parse(sample[1]);
+      } // if
+    } // for
+    this.counter = new JSONBenchmark.CountingWriter();
+    this.pen = new PrintWriter(this.counter);
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  @Benchmark
+  public long write() {
+    this.value.writeJSON(this.pen);
+    return this.counter.count;
+  } // write()
+
+  @Benchmark
+  public String print() {
+    return this.value.toString();
+  } // print()
+
+  @Benchmark
+  public byte[] canonicalHash() {
+    return this.value.canonicalHash();
+  } // canonicalHash()
+
+} // class JSONWriteBenchmark
@@ -0,0 +1,517 @@
+package src;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * JSON hashes/objects that can be shared and updated by many threads at once.
+ *
+ * The table is split into a fixed number of segments, each guarded by its
+ * own lock, so writers only contend when their keys land in the same
+ * segment. Reads never lock: each bucket is a chain of nodes published
+ * through an AtomicReferenceArray, and values are volatile. Each segment
+ * grows on its own, so a resize only ever blocks writers to that one
+ * segment rather than the whole table.
+ *
+ * Iteration is weakly consistent: it never throws because of concurrent
+ * updates, but may or may not reflect changes made while it runs.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class ConcurrentJSONHash implements JSONValue {
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The load factor for expanding a segment.
+   */
+  static final double LOAD_FACTOR = 0.75;
+
+  /**
+   * The number of independently locked segments. Must be a power of two.
+   */
+  static final int SEGMENTS = 16;
+
+  /**
+   * Initial number of buckets in each segment. Must be a power of two.
+   */
+  static final int INIT_SIZE = 4;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The segments, each one a small hash table of its own.
+   */
+  final Segment[] segments;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty, concurrent hash table.
+   */
+  public ConcurrentJSONHash() {
+    this.segments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      this.segments[i] = new Segment();
+    } // for
+  } // ConcurrentJSONHash()
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing).
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    Iterator<KVPair<JSONString, JSONValue>> myIter = this.iterator();
+    while (myIter.hasNext()) {
+      KVPair<JSONString, JSONValue> pair = myIter.next();
+      result.append(pair.key().toString()).append(" : ").append(pair.value().toString());
+      if (myIter.hasNext()) {
+        result.append(",");
+      } // if
+    } // while
+    return "{" + result.toString() + "}";
+  } // toString()
+
+  /**
+   * Compare to another object.
+   */
+  public boolean equals(Object other) {
+    if (!(other instanceof ConcurrentJSONHash)) {
+      return false;
+    } // if
+    ConcurrentJSONHash otherHash = (ConcurrentJSONHash) other;
+    if (this.size() != otherHash.size()) {
+      return false;
+    } // if
+    Iterator<KVPair<JSONString, JSONValue>> myIter = this.iterator();
+    while (myIter.hasNext()) {
+      KVPair<JSONString, JSONValue> pair = myIter.next();
+      JSONValue curVal = otherHash.lookup(pair.key());
+      if ((curVal == null) || !curVal.equals(pair.value())) {
+        return false;
+      } // if
+    } // while
+    return true;
+  } // equals(Object)
+
+  /**
+   * Compute the hash code. The order of the pairs does not matter.
+   */
+  public int hashCode() {
+    int result = 0;
+    Iterator<KVPair<JSONString, JSONValue>> myIter = this.iterator();
+    while (myIter.hasNext()) {
+      KVPair<JSONString, JSONValue> pair = myIter.next();
+      result += pair.key().hashCode() ^ pair.value().hashCode();
+    } // while
+    return result;
+  } // hashCode()
+
+  // +--------------------+------------------------------------------
+  // | Additional methods |
+  // +--------------------+
+
+  /**
+   * Write the value as JSON.
+   */
+  public void writeJSON(PrintWriter pen) {
+    Iterator<KVPair<JSONString, JSONValue>> myIter = this.iterator();
+    pen.print("{");
+    while (myIter.hasNext()) {
+      KVPair<JSONString, JSONValue> pair = myIter.next();
+      pair.key().writeJSON(pen);
+      pen.print(" : ");
+      pair.value().writeJSON(pen);
+      if (myIter.hasNext()) {
+        // if more pairs, separate
+        pen.print(", ");
+      } // if
+    } // while
+    pen.print("}");
+    pen.flush();
+  } // writeJSON(PrintWriter)
+
+  /**
+   * Get the underlying value.
+   */
+  public Iterator<KVPair<JSONString, JSONValue>> getValue() {
+    return this.iterator();
+  } // getValue()
+
+  // +-------------------+-------------------------------------------
+  // | Hashtable methods |
+  // +-------------------+
+
+  /**
+   * Get the value associated with a key. Never blocks.
+   */
+  public JSONValue get(JSONString key) {
+    JSONValue result = lookup(key);
+    if (result == null) {
+      throw new IndexOutOfBoundsException("Invalid key: " + key.toString());
+    } // if
+    return result;
+  } // get(JSONString)
+
+  /**
+   * Set the value associated with a key.
+   * Replaces a pair if the key is already in the table
+   * Adds a pair if not
+   */
+  public void set(JSONString key, JSONValue value) {
+    checkValue(value);
+    int hash = spread(key.seededHash());
+    segmentFor(hash).put(key, hash, value, false);
+  } // set(JSONString, JSONValue)
+
+  /**
+   * Associate value with key only if the key is not already present.
+   * Returns the existing value, or null if value was added.
+   */
+  public JSONValue putIfAbsent(JSONString key, JSONValue value) {
+    checkValue(value);
+    int hash = spread(key.seededHash());
+    return segmentFor(hash).put(key, hash, value, true);
+  } // putIfAbsent(JSONString, JSONValue)
+
+  /**
+   * Replace the value for key with newValue only if it is currently
+   * expected (compared with equals). Returns true if the value was replaced.
+   */
+  public boolean replace(JSONString key, JSONValue expected, JSONValue newValue) {
+    checkValue(newValue);
+    int hash = spread(key.seededHash());
+    return segmentFor(hash).replace(key, hash, expected, newValue);
+  } // replace(JSONString, JSONValue, JSONValue)
+
+  /**
+   * Atomically compute a new value for key from its current value (null
+   * if absent). If the function returns null the key is removed. The
+   * function is called while the key's segment is locked, so it should be
+   * short and must not touch this table.
+   */
+  public JSONValue compute(JSONString key,
+      BiFunction<? super JSONString, ? super JSONValue, ? extends JSONValue> remap) {
+    int hash = spread(key.seededHash());
+    return segmentFor(hash).compute(key, hash, remap);
+  } // compute(JSONString, BiFunction)
+
+  /**
+   * Atomically add a value computed from key if key is absent. Returns the
+   * current (existing or computed) value.
+   */
+  public JSONValue computeIfAbsent(JSONString key,
+      Function<? super JSONString, ? extends JSONValue> fun) {
+    JSONValue current = lookup(key);
+    if (current != null) {
+      return current;
+    } // if
+    return compute(key, (k, v) -> (v == null) ? fun.apply(k) : v);
+  } // computeIfAbsent(JSONString, Function)
+
+  /**
+   * Remove key from the table. Returns the old value, or null if the key
+   * was not present.
+   */
+  public JSONValue remove(JSONString key) {
+    int hash = spread(key.seededHash());
+    JSONValue[] old = new JSONValue[1];
+    segmentFor(hash).compute(key, hash, (k, v) -> {
+      old[0] = v;
+      return null;
+    });
+    return old[0];
+  } // remove(JSONString)
+
+  /**
+   * Get all of the key/value pairs. The iterator is weakly consistent.
+   */
+  public Iterator<KVPair<JSONString, JSONValue>> iterator() {
+    return new Iterator<KVPair<JSONString, JSONValue>>() {
+      // where we are: segment, bucket within that segment's table, node
+      int seg = 0;
+      int bucket = -1;
+      AtomicReferenceArray<Node> table = null;
+      Node nextNode = null;
+      boolean advanced = false;
+
+      /*
+       * Move to the next node, if there is one.
+       */
+      void advance() {
+        if (nextNode != null) {
+          nextNode = nextNode.next;
+        } // if
+        while (nextNode == null) {
+          if ((table == null) || (++bucket >= table.length())) {
+            if (seg >= SEGMENTS) {
+              return;
+            } // if
+            table = ConcurrentJSONHash.this.segments[seg++].table;
+            bucket = -1;
+            continue;
+          } // if
+          nextNode = table.get(bucket);
+        } // while
+      } // advance()
+
+      public boolean hasNext() {
+        if (!advanced) {
+          advance();
+          advanced = true;
+        } // if
+        // skip over pairs removed since we found them
+        while ((nextNode != null) && (nextNode.value == null)) {
+          advance();
+        } // while
+        return nextNode != null;
+      } // hasNext()
+
+      public KVPair<JSONString, JSONValue> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        advanced = false;
+        return new KVPair<JSONString, JSONValue>(nextNode.key, nextNode.value);
+      } // next()
+    }; // new Iterator
+  } // iterator()
+
+  /**
+   * Find out how many key/value pairs are in the hash table. Since other
+   * threads may be updating the table, this is only a snapshot.
+   */
+  public int size() {
+    int result = 0;
+    for (Segment segment : this.segments) {
+      result += segment.count;
+    } // for
+    return result;
+  } // size()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the value associated with key, or null if there is none.
+   */
+  JSONValue lookup(JSONString key) {
+    int hash = spread(key.seededHash());
+    AtomicReferenceArray<Node> table = segmentFor(hash).table;
+    for (Node node = table.get(hash & (table.length() - 1)); node != null; node = node.next) {
+      if ((node.hash == hash) && node.key.equals(key)) {
+        return node.value;
+      } // if
+    } // for
+    return null;
+  } // lookup(JSONString)
+
+  /**
+   * Find the segment responsible for a hash. Uses the high bits so that
+   * the low bits remain free for choosing the bucket within the segment.
+   */
+  Segment segmentFor(int hash) {
+    return this.segments[(hash >>> 28) & (SEGMENTS - 1)];
+  } // segmentFor(int)
+
+  /**
+   * Mix the high bits of a hash code into the low bits, since bucket
+   * indices only use the low bits.
+   */
+  static int spread(int h) {
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    return h ^ (h >>> 13);
+  } // spread(int)
+
+  /**
+   * Values may not be null; null is how we mark absent keys.
+   */
+  static void checkValue(JSONValue value) {
+    if (value == null) {
+      throw new NullPointerException("Use JSONConstant.NULL for JSON null");
+    } // if
+  } // checkValue(JSONValue)
+
+  // +---------------+-------------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * One entry in a bucket chain. Keys are fixed; values and links change
+   * only under the segment lock and are volatile so readers see them.
+   */
+  static final class Node {
+    final JSONString key;
+    final int hash;
+    volatile JSONValue value;
+    volatile Node next;
+
+    Node(JSONString key, int hash, JSONValue value, Node next) {
+      this.key = key;
+      this.hash = hash;
+      this.value = value;
+      this.next = next;
+    } // Node(JSONString, int, JSONValue, Node)
+  } // class Node
+
+  /**
+   * A lock-protected portion of the table.
+   */
+  @SuppressWarnings("serial")
+  static final class Segment extends ReentrantLock {
+    /**
+     * The buckets. Replaced wholesale when the segment grows.
+     */
+    volatile AtomicReferenceArray<Node> table = new AtomicReferenceArray<Node>(INIT_SIZE);
+
+    /**
+     * The number of pairs in this segment.
+     */
+    volatile int count = 0;
+
+    /**
+     * Add or replace a pair. If onlyIfAbsent, leave an existing pair alone.
+     * Returns the previous value, or null if there was none.
+     */
+    JSONValue put(JSONString key, int hash, JSONValue value, boolean onlyIfAbsent) {
+      lock();
+      try {
+        Node node = find(key, hash);
+        if (node != null) {
+          JSONValue old = node.value;
+          if (!onlyIfAbsent) {
+            node.value = value;
+          } // if
+          return old;
+        } // if
+        insert(key, hash, value);
+        return null;
+      } finally {
+        unlock();
+      } // try/finally
+    } // put(JSONString, int, JSONValue, boolean)
+
+    /**
+     * Replace the value for key if it is currently expected.
+     */
+    boolean replace(JSONString key, int hash, JSONValue expected, JSONValue value) {
+      lock();
+      try {
+        Node node = find(key, hash);
+        if ((node == null) || !node.value.equals(expected)) {
+          return false;
+        } // if
+        node.value = value;
+        return true;
+      } finally {
+        unlock();
+      } // try/finally
+    } // replace(JSONString, int, JSONValue, JSONValue)
+
+    /**
+     * Compute a new value for key while holding the lock.
+     */
+    JSONValue compute(JSONString key, int hash,
+        BiFunction<? super JSONString, ? super JSONValue, ? extends JSONValue> remap) {
+      lock();
+      try {
+        Node node = find(key, hash);
+        JSONValue newValue = remap.apply(key, (node == null) ? null : node.value);
+        if (newValue != null) {
+          if (node != null) {
+            node.value = newValue;
+          } else {
+            insert(key, hash, newValue);
+          } // if-else
+        } else if (node != null) {
+          unlink(node);
+        } // if-else
+        return newValue;
+      } finally {
+        unlock();
+      } // try/finally
+    } // compute(JSONString, int, BiFunction)
+
+    /**
+     * Find the node for key. Must hold the lock.
+     */
+    Node find(JSONString key, int hash) {
+      AtomicReferenceArray<Node> tab = this.table;
+      for (Node node = tab.get(hash & (tab.length() - 1)); node != null; node = node.next) {
+        if ((node.hash == hash) && node.key.equals(key)) {
+          return node;
+        } // if
+      } // for
+      return null;
+    } // find(JSONString, int)
+
+    /**
+     * Add a new node at the head of its bucket. Must hold the lock.
+     */
+    void insert(JSONString key, int hash, JSONValue value) {
+      if (this.count + 1 > this.table.length() * LOAD_FACTOR) {
+        expand();
+      } // if
+      AtomicReferenceArray<Node> tab = this.table;
+      int index = hash & (tab.length() - 1);
+      tab.set(index, new Node(key, hash, value, tab.get(index)));
+      this.count = this.count + 1;
+    } // insert(JSONString, int, JSONValue)
+
+    /**
+     * Remove a node from its bucket. Must hold the lock. Readers already
+     * on the node can still follow its next link.
+     */
+    void unlink(Node target) {
+      AtomicReferenceArray<Node> tab = this.table;
+      int index = target.hash & (tab.length() - 1);
+      Node node = tab.get(index);
+      if (node == target) {
+        tab.set(index, target.next);
+      } else {
+        while (node.next != target) {
+          node = node.next;
+        } // while
+        node.next = target.next;
+      } // if-else
+      target.value = null;
+      this.count = this.count - 1;
+    } // unlink(Node)
+
+    /**
+     * Double the number of buckets in this segment. The new table is built
+     * from fresh nodes so readers still walking the old table are not
+     * disturbed, and is published in a single volatile write.
+     */
+    void expand() {
+      AtomicReferenceArray<Node> oldTable = this.table;
+      int newSize = oldTable.length() * 2;
+      AtomicReferenceArray<Node> newTable = new AtomicReferenceArray<Node>(newSize);
+      for (int i = 0; i < oldTable.length(); i++) {
+        for (Node node = oldTable.get(i); node != null; node = node.next) {
+          int index = node.hash & (newSize - 1);
+          newTable.set(index, new Node(node.key, node.hash, node.value, newTable.get(index)));
+        } // for
+      } // for
+      this.table = newTable;
+    } // expand()
+  } // class Segment
+
+} // class ConcurrentJSONHash
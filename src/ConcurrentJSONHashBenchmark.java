@@ -0,0 +1,151 @@
+package src;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention benchmark for ConcurrentJSONHash. Runs a mix of reads,
+ * counter increments and writes against one shared table at 1, 4, 16 and
+ * 64 threads, and compares it with a JSONHash guarded by a single lock.
+ *
+ * Run with: java src.ConcurrentJSONHashBenchmark [millisPerRun] [keys]
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class ConcurrentJSONHashBenchmark {
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The thread counts we measure.
+   */
+  static final int[] THREADS = {1, 4, 16, 64};
+
+  /**
+   * Percentage of operations that are plain reads.
+   */
+  static final int READ_PERCENT = 70;
+
+  /**
+   * Percentage of operations that increment a counter (read-modify-write).
+   */
+  static final int COMPUTE_PERCENT = 20;
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  public static void main(String[] args) throws Exception {
+    long millis = (args.length > 0) ? Long.parseLong(args[0]) : 1000;
+    int keyCount = (args.length > 1) ? Integer.parseInt(args[1]) : 1024;
+    JSONString[] keys = new JSONString[keyCount];
+    for (int i = 0; i < keyCount; i++) {
+      keys[i] = new JSONString("key" + i);
+    } // for
+
+    System.out.printf("%-22s %8s %16s%n", "table", "threads", "ops/s");
+    for (int threads : THREADS) {
+      // warm up, then measure
+      runConcurrent(keys, threads, millis / 2);
+      double ops = runConcurrent(keys, threads, millis);
+      System.out.printf("%-22s %8d %16.0f%n", "ConcurrentJSONHash", threads, ops);
+      runLocked(keys, threads, millis / 2);
+      ops = runLocked(keys, threads, millis);
+      System.out.printf("%-22s %8d %16.0f%n", "synchronized JSONHash", threads, ops);
+    } // for
+  } // main(String[])
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Measure ConcurrentJSONHash. Returns operations per second.
+   */
+  static double runConcurrent(JSONString[] keys, int threads, long millis) throws Exception {
+    ConcurrentJSONHash table = new ConcurrentJSONHash();
+    for (JSONString key : keys) {
+      table.set(key, new JSONInteger(0));
+    } // for
+    return run(threads, millis, () -> {
+      ThreadLocalRandom rand = ThreadLocalRandom.current();
+      JSONString key = keys[rand.nextInt(keys.length)];
+      int choice = rand.nextInt(100);
+      if (choice < READ_PERCENT) {
+        table.get(key);
+      } else if (choice < READ_PERCENT + COMPUTE_PERCENT) {
+        table.compute(key, (k, v) -> new JSONInteger(((JSONInteger) v).getValue().longValue() + 1));
+      } else {
+        table.set(key, new JSONInteger(choice));
+      } // if-else
+    });
+  } // runConcurrent(JSONString[], int, long)
+
+  /**
+   * Measure a JSONHash with every operation under one lock. Returns
+   * operations per second.
+   */
+  static double runLocked(JSONString[] keys, int threads, long millis) throws Exception {
+    JSONHash table = new JSONHash();
+    for (JSONString key : keys) {
+      table.set(key, new JSONInteger(0));
+    } // for
+    return run(threads, millis, () -> {
+      ThreadLocalRandom rand = ThreadLocalRandom.current();
+      JSONString key = keys[rand.nextInt(keys.length)];
+      int choice = rand.nextInt(100);
+      synchronized (table) {
+        if (choice < READ_PERCENT) {
+          table.get(key);
+        } else if (choice < READ_PERCENT + COMPUTE_PERCENT) {
+          JSONInteger v = (JSONInteger) table.get(key);
+          table.set(key, new JSONInteger(v.getValue().longValue() + 1));
+        } else {
+          table.set(key, new JSONInteger(choice));
+        } // if-else
+      } // synchronized
+    });
+  } // runLocked(JSONString[], int, long)
+
+  /**
+   * Run op repeatedly on the given number of threads for roughly millis
+   * milliseconds. Returns operations per second.
+   */
+  static double run(int threads, long millis, Runnable op) throws Exception {
+    LongAdder total = new LongAdder();
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    long[] deadline = new long[1];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        } // try-catch
+        long done = 0;
+        while (System.nanoTime() < deadline[0]) {
+          // check the clock every so often rather than every operation
+          for (int i = 0; i < 256; i++) {
+            op.run();
+          } // for
+          done += 256;
+        } // while
+        total.add(done);
+      });
+      workers[t].start();
+    } // for
+    long begin = System.nanoTime();
+    deadline[0] = begin + millis * 1_000_000L;
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    } // for
+    double seconds = (System.nanoTime() - begin) / 1e9;
+    return total.sum() / seconds;
+  } // run(int, long, Runnable)
+
+} // class ConcurrentJSONHashBenchmark
@@ -0,0 +1,193 @@
+package src;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A reader of gzip-compressed UTF-8 text that decompresses and decodes
+ * on a background thread, so that the thread reading (e.g., the parser)
+ * and the inflater work at the same time. The two trade a small ring of
+ * reusable chunks: the inflater fills free chunks and queues them, the
+ * reader drains each in turn and hands it back.
+ *
+ * Close the reader when done with it, even if reading stopped early;
+ * closing stops the inflater and closes the stream.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+final class InflatingReader extends Reader {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of chars in each chunk.
+   */
+  static final int CHUNK_SIZE = 1 << 16;
+
+  /**
+   * The number of chunks. Two are enough to overlap the threads; a few
+   * more smooth over uneven chunk costs.
+   */
+  static final int RING_SIZE = 4;
+
+  /**
+   * Queued after the last chunk.
+   */
+  static final Chunk END = new Chunk(0);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Chunks waiting to be filled, and chunks waiting to be read. full has
+   * room for END as well as every chunk, so queueing END never blocks.
+   */
+  final ArrayBlockingQueue<Chunk> free = new ArrayBlockingQueue<Chunk>(RING_SIZE);
+  final ArrayBlockingQueue<Chunk> full = new ArrayBlockingQueue<Chunk>(RING_SIZE + 1);
+
+  /**
+   * The thread doing the inflating.
+   */
+  final Thread inflater;
+
+  /**
+   * What stopped the inflater, if it failed. Set before END is queued,
+   * so the queue makes it visible to the reader.
+   */
+  Throwable failure;
+
+  /**
+   * The chunk being read and the position of the next char in it.
+   */
+  Chunk current;
+  int position;
+
+  /**
+   * Whether END has been read.
+   */
+  boolean done = false;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Start inflating a gzip stream.
+   */
+  InflatingReader(InputStream compressed) {
+    for (int i = 0; i < RING_SIZE; i++) {
+      this.free.add(new Chunk(CHUNK_SIZE));
+    } // for
+    this.inflater = new Thread(() -> inflate(compressed), "json-inflater");
+    this.inflater.setDaemon(true);
+    this.inflater.start();
+  } // InflatingReader(InputStream)
+
+  // +----------------+----------------------------------------------
+  // | Reader methods |
+  // +----------------+
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    } // if
+    if ((this.current == null) || (this.position == this.current.length)) {
+      if (this.current != null) {
+        this.free.add(this.current);
+        this.current = null;
+      } // if
+      if (this.done) {
+        return -1;
+      } // if
+      Chunk next;
+      try {
+        next = this.full.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for input");
+      } // try-catch
+      if (next == END) {
+        this.done = true;
+        if (this.failure != null) {
+          throw new IOException("Could not inflate input", this.failure);
+        } // if
+        return -1;
+      } // if
+      this.current = next;
+      this.position = 0;
+    } // if
+    int count = Math.min(len, this.current.length - this.position);
+    System.arraycopy(this.current.chars, this.position, cbuf, off, count);
+    this.position += count;
+    return count;
+  } // read(char[], int, int)
+
+  @Override
+  public void close() {
+    this.done = true;
+    this.inflater.interrupt();
+  } // close()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Fill chunks from the stream until it ends, then queue END. Runs on
+   * the inflater thread, and stops quietly if interrupted by close.
+   */
+  void inflate(InputStream compressed) {
+    try (Reader text = new InputStreamReader(new GZIPInputStream(compressed, CHUNK_SIZE),
+        StandardCharsets.UTF_8)) {
+      while (true) {
+        Chunk chunk = this.free.take();
+        int length = 0;
+        int count = 0;
+        while ((length < chunk.chars.length)
+            && ((count = text.read(chunk.chars, length, chunk.chars.length - length)) != -1)) {
+          length += count;
+        } // while
+        if (length > 0) {
+          chunk.length = length;
+          this.full.put(chunk);
+        } // if
+        if (count == -1) {
+          break;
+        } // if
+      } // while
+    } catch (InterruptedException e) {
+      // closed by the reader, which wants nothing more
+      return;
+    } catch (Throwable e) {
+      this.failure = e;
+    } // try-catch
+    this.full.add(END);
+  } // inflate(InputStream)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Some chars, of which the first length are in use.
+   */
+  static final class Chunk {
+    final char[] chars;
+    int length;
+
+    Chunk(int size) {
+      this.chars = new char[size];
+    } // Chunk(int)
+  } // class Chunk
+
+} // class InflatingReader
@@ -1,10 +1,31 @@
 package src;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Utilities for our simple implementation of JSON.
@@ -13,14 +34,107 @@ import java.text.ParseException;
  * @author Zakariye
  */
 public class JSON {
-  // +---------------+-----------------------------------------------
-  // | Static fields |
-  // +---------------+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of files parseFiles works on at once.
+   */
+  public static final int DEFAULT_FILE_CONCURRENCY = 64;
+
+  /**
+   * The default limit on how deeply arrays and hashes may nest.
+   */
+  public static final int DEFAULT_MAX_DEPTH = 10000;
+
+  /**
+   * The size of the read buffer.
+   */
+  static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Compressed files at least this large are inflated on a thread of
+   * their own while they are parsed. Smaller ones are inflated inline,
+   * since they take less time than starting the thread.
+   */
+  static final long PIPELINE_THRESHOLD = 256 * 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the text comes from.
+   */
+  Reader source;
+
+  /**
+   * The current chunk of input.
+   */
+  char[] buf;
+
+  /**
+   * The position in buf of the next unread character. Each parse gets
+   * its own JSON object, so parses on different threads do not share a
+   * position.
+   */
+  int pos = 0;
+
+  /**
+   * The number of valid characters in buf.
+   */
+  int limit = 0;
+
+  /**
+   * The offset in the input of buf[0].
+   */
+  long base = 0;
+
+  /**
+   * The deepest that arrays and hashes may nest.
+   */
+  int maxDepth;
 
   /**
-   * The current position in the input. 
+   * Holds the characters of the string or number being read.
    */
-  static int pos;
+  StringBuilder token = new StringBuilder();
+
+  /**
+   * String values longer than this many chars are spilled to temporary
+   * files as they are read (see JSONSpilledString).
+   */
+  int spillThreshold = Integer.MAX_VALUE;
+
+  /**
+   * The string being spilled, if any.
+   */
+  JSONSpilledString.Spill spill = null;
+
+  /**
+   * What we have seen so far, or null if nobody is listening.
+   */
+  ParseStats stats = null;
+
+  /**
+   * One bit per container open in skipKernel: set for a hash, clear for
+   * an array. Made on the first skip and reused.
+   */
+  long[] kinds = null;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create the state for one parse.
+   */
+  JSON(Reader source, int maxDepth, int bufferSize) {
+    this.source = source;
+    this.maxDepth = maxDepth;
+    this.buf = new char[bufferSize];
+  } // JSON(Reader, int, int)
 
   // +----------------+----------------------------------------------
   // | Static methods |
@@ -30,85 +144,643 @@ public class JSON {
    * Parse a string into JSON.
    */
   public static JSONValue parse(String source) throws Exception {
-    return parse(new StringReader(source));
+    return parse(source, null);
   } // parse(String)
 
   /**
-   * Parse a file into JSON.
+   * Parse a string into JSON, reporting what was seen to listener.
+   */
+  public static JSONValue parse(String source, ParseListener listener) throws Exception {
+    return parse(source, listener, DEFAULT_MAX_DEPTH);
+  } // parse(String, ParseListener)
+
+  /**
+   * Parse a string into JSON, allowing arrays and hashes to nest at most
+   * maxDepth deep.
+   */
+  public static JSONValue parse(String source, int maxDepth) throws Exception {
+    return parse(source, null, maxDepth);
+  } // parse(String, int)
+
+  /**
+   * Parse a string into JSON, allowing arrays and hashes to nest at most
+   * maxDepth deep, and reporting what was seen to listener (which may be
+   * null).
+   */
+  public static JSONValue parse(String source, ParseListener listener, int maxDepth) throws Exception {
+    // a short string needs no more buffer than its own length
+    int bufferSize = Math.min(BUFFER_SIZE, source.length() + 1);
+    return new JSON(new StringReader(source), maxDepth, bufferSize).run(listener);
+  } // parse(String, ParseListener, int)
+
+  /**
+   * Parse a UTF-8 file into JSON. A gzip-compressed file is recognized
+   * by its first bytes. If it is large and the machine has more than one
+   * processor, it is inflated on a background thread while it is parsed,
+   * so it takes about as long as the slower of the two rather than their
+   * sum.
+   *
+   * @throws IOException if the file is zstd-compressed, which the JDK
+   *   cannot inflate.
    */
   public static JSONValue parseFile(String filename) throws Exception {
-    BufferedReader reader = new BufferedReader(new FileReader(filename));
-    JSONValue result = parse(reader);
-    reader.close();
-    return result;
+    return parseFile(filename, Integer.MAX_VALUE);
   } // parseFile(String)
 
+  /**
+   * Parse a file as parseFile(filename) does, but spill string values
+   * longer than spillThreshold chars to temporary files as they are
+   * read, so that no such string is ever held in the heap. They come
+   * back as JSONSpilledStrings.
+   */
+  public static JSONValue parseFile(String filename, int spillThreshold) throws Exception {
+    try (Reader reader = openFile(Path.of(filename))) {
+      return parse(reader, null, DEFAULT_MAX_DEPTH, spillThreshold);
+    } // try
+  } // parseFile(String, int)
+
+  /**
+   * Parse many files, working on up to DEFAULT_FILE_CONCURRENCY at once.
+   * Returns one result per file, in the same order as paths.
+   */
+  public static List<JSONFileResult> parseFiles(Collection<Path> paths) throws InterruptedException {
+    return parseFiles(paths, DEFAULT_FILE_CONCURRENCY);
+  } // parseFiles(Collection<Path>)
+
+  /**
+   * Parse many files, working on at most maxConcurrency at once. Each
+   * file gets its own task; a file that fails to read or parse gives a
+   * result holding the exception rather than stopping the batch. Returns
+   * one result per file, in the same order as paths.
+   *
+   * Tasks run on virtual threads when the JVM has them (Java 21+) and on
+   * a fixed pool of maxConcurrency threads otherwise. Files are read
+   * through an AsynchronousFileChannel, so a virtual thread waiting for
+   * the disk parks instead of holding on to its carrier thread.
+   */
+  public static List<JSONFileResult> parseFiles(Collection<Path> paths, int maxConcurrency)
+      throws InterruptedException {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be at least 1");
+    } // if
+    Semaphore permits = new Semaphore(maxConcurrency);
+    ExecutorService executor = newTaskExecutor(maxConcurrency);
+    List<Future<JSONFileResult>> futures = new ArrayList<Future<JSONFileResult>>(paths.size());
+    try {
+      for (Path path : paths) {
+        futures.add(executor.submit(() -> {
+          permits.acquire();
+          long start = System.nanoTime();
+          try {
+            JSONValue value = parse(readFile(path));
+            return new JSONFileResult(path, value, null, System.nanoTime() - start);
+          } catch (Exception e) {
+            return new JSONFileResult(path, null, e, System.nanoTime() - start);
+          } finally {
+            permits.release();
+          } // try/catch/finally
+        }));
+      } // for
+      List<JSONFileResult> results = new ArrayList<JSONFileResult>(futures.size());
+      for (Future<JSONFileResult> future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          // only an Error can get here, since the task catches Exception
+          throw new IllegalStateException(e.getCause());
+        } // try-catch
+      } // for
+      return results;
+    } finally {
+      executor.shutdownNow();
+    } // try/finally
+  } // parseFiles(Collection<Path>, int)
+
   /**
    * Parse JSON from a reader.
    */
   public static JSONValue parse(Reader source) throws Exception {
-    pos = 0;
-    if (!source.markSupported()) {
-      throw new ParseException("The given Reader does not support the mark() method, currently that method is needed to run the parser", pos);
+    return parse(source, null);
+  } // parse(Reader)
+
+  /**
+   * Parse JSON from a reader, reporting what was seen to listener (which
+   * may be null). Also emits a json.Parse Flight Recorder event when a
+   * recording has enabled it.
+   */
+  public static JSONValue parse(Reader source, ParseListener listener) throws Exception {
+    return parse(source, listener, DEFAULT_MAX_DEPTH);
+  } // parse(Reader, ParseListener)
+
+  /**
+   * Parse JSON from a reader, allowing arrays and hashes to nest at most
+   * maxDepth deep, and reporting what was seen to listener (which may be
+   * null). Nesting costs heap rather than stack, so maxDepth may be
+   * large, but it still bounds what a hostile document can make us
+   * allocate.
+   */
+  public static JSONValue parse(Reader source, ParseListener listener, int maxDepth) throws Exception {
+    return parse(source, listener, maxDepth, Integer.MAX_VALUE);
+  } // parse(Reader, ParseListener, int)
+
+  /**
+   * Parse JSON from a reader as parse(source, listener, maxDepth) does,
+   * but spill string values longer than spillThreshold chars to
+   * temporary files as they are read. They come back as
+   * JSONSpilledStrings. Keys are never spilled.
+   */
+  public static JSONValue parse(Reader source, ParseListener listener, int maxDepth, int spillThreshold)
+      throws Exception {
+    JSON parser = new JSON(source, maxDepth, BUFFER_SIZE);
+    parser.spillThreshold = spillThreshold;
+    return parser.run(listener);
+  } // parse(Reader, ParseListener, int, int)
+
+  /**
+   * Check that a string is well-formed JSON without building any values.
+   * Returns JSONValidation.VALID or a description of the first error.
+   * Nesting deeper than DEFAULT_MAX_DEPTH is an error, as for parse.
+   */
+  public static JSONValidation validate(String source) {
+    return validate(source, DEFAULT_MAX_DEPTH);
+  } // validate(String)
+
+  /**
+   * Check that a string is well-formed JSON with arrays and hashes
+   * nested at most maxDepth deep, as parse(source, maxDepth) would.
+   */
+  public static JSONValidation validate(String source, int maxDepth) {
+    try {
+      return new JSONValidator(source, maxDepth).validate();
+    } catch (IOException e) {
+      // strings do not throw IOExceptions
+      throw new IllegalStateException(e);
+    } // try-catch
+  } // validate(String, int)
+
+  /**
+   * Check that the text from a reader is well-formed JSON without
+   * building any values.
+   */
+  public static JSONValidation validate(Reader source) throws IOException {
+    return validate(source, DEFAULT_MAX_DEPTH);
+  } // validate(Reader)
+
+  /**
+   * Check that the text from a reader is well-formed JSON with arrays and
+   * hashes nested at most maxDepth deep.
+   */
+  public static JSONValidation validate(Reader source, int maxDepth) throws IOException {
+    return new JSONValidator(source, maxDepth).validate();
+  } // validate(Reader, int)
+
+  /**
+   * Write a value as JSON. The same as value.writeJSON(pen), but also
+   * emits a json.Serialize Flight Recorder event when a recording has
+   * enabled it.
+   */
+  public static void write(JSONValue value, PrintWriter pen) {
+    JSONSerializeEvent event = new JSONSerializeEvent();
+    if (!event.isEnabled()) {
+      value.writeJSON(pen);
+      return;
     } // if
-    JSONValue result = parseKernel(source);
-    if (-1 != skipWhitespace(source)) {
-      throw new ParseException("Characters remain at end", pos);
+    CountingWriter counter = new CountingWriter(pen);
+    event.begin();
+    value.writeJSON(new PrintWriter(counter));
+    event.end();
+    if (event.shouldCommit()) {
+      event.chars = counter.count;
+      event.valueType = value.getClass().getSimpleName();
+      event.commit();
     } // if
-    return result;
-  } // parse(Reader)
+  } // write(JSONValue, PrintWriter)
 
   // +---------------+-----------------------------------------------
   // | Local helpers |
   // +---------------+
 
   /**
-   * Parse JSON from a reader, keeping track of the current position
+   * Get an executor that runs each task on a new virtual thread if this
+   * JVM supports them, or on a pool of poolSize platform threads if not.
+   */
+  static ExecutorService newTaskExecutor(int poolSize) {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(poolSize);
+    } // try-catch
+  } // newTaskExecutor(int)
+
+  /**
+   * Read a whole UTF-8 file without blocking in a native read call,
+   * inflating it if it is gzip-compressed. parseFiles already works on
+   * many files at once, so there is no point inflating in the background.
    */
-  static JSONValue parseKernel(Reader source) throws Exception {
-    int ch;
-    ch = skipWhitespace(source);
-    if (ch == -1) {
-      throw new ParseException("Unexpected end of file", pos);
-    }
-    char curChar = (char) ch;
-    return decideType(source, curChar);
-  } // parseKernel
+  static String readFile(Path path) throws Exception {
+    try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new ParseException("File too large to read at once: " + path, 0);
+      } // if
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, buffer.position()).get() < 0) {
+          break;
+        } // if
+      } // while
+      if (isGzip(buffer.array(), buffer.position())) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.position()))) {
+          return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } // try
+      } else if (isZstd(buffer.array(), buffer.position())) {
+        throw new IOException(path + " is zstd-compressed, which the JDK cannot inflate");
+      } // if-else
+      return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    } // try
+  } // readFile(Path)
+
+  /**
+   * Open a UTF-8 file for parsing, inflating it if it is gzip-compressed:
+   * in the background if it is large and there is a processor to spare,
+   * inline if not.
+   */
+  static Reader openFile(Path path) throws IOException {
+    InputStream in = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+    try {
+      in.mark(4);
+      byte[] magic = in.readNBytes(4);
+      in.reset();
+      if (isGzip(magic, magic.length)) {
+        // with one processor the threads could only take turns
+        if ((Files.size(path) >= PIPELINE_THRESHOLD) && (Runtime.getRuntime().availableProcessors() > 1)) {
+          return new InflatingReader(in);
+        } // if
+        return new InputStreamReader(new GZIPInputStream(in, BUFFER_SIZE), StandardCharsets.UTF_8);
+      } else if (isZstd(magic, magic.length)) {
+        throw new IOException(path + " is zstd-compressed, which the JDK cannot inflate");
+      } // if-else
+      return new InputStreamReader(in, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    } // try-catch
+  } // openFile(Path)
+
+  /**
+   * Determine whether the first length bytes start with the gzip magic
+   * number.
+   */
+  static boolean isGzip(byte[] bytes, int length) {
+    return (length >= 2) && (bytes[0] == (byte) 0x1f) && (bytes[1] == (byte) 0x8b);
+  } // isGzip(byte[], int)
+
+  /**
+   * Determine whether the first length bytes start with the zstd magic
+   * number.
+   */
+  static boolean isZstd(byte[] bytes, int length) {
+    return (length >= 4) && (bytes[0] == (byte) 0x28) && (bytes[1] == (byte) 0xb5)
+        && (bytes[2] == (byte) 0x2f) && (bytes[3] == (byte) 0xfd);
+  } // isZstd(byte[], int)
+
+  /**
+   * Parse the whole input, reporting what was seen to listener (which
+   * may be null). Also emits a json.Parse Flight Recorder event when a
+   * recording has enabled it.
+   */
+  JSONValue run(ParseListener listener) throws Exception {
+    JSONParseEvent event = new JSONParseEvent();
+    // only keep count when someone will look at the counts
+    if ((listener != null) || event.isEnabled()) {
+      this.stats = new ParseStats();
+    } // if
+    event.begin();
+    long start = System.nanoTime();
+    JSONValue result = parseKernel();
+    if (-1 != skipWhitespace()) {
+      throw new ParseException("Characters remain at end", (int) offset());
+    } // if
+    if (this.stats != null) {
+      ParseStats stats = this.stats;
+      stats.nanos = System.nanoTime() - start;
+      stats.chars = offset();
+      event.end();
+      if (event.shouldCommit()) {
+        event.chars = stats.chars;
+        event.nodes = stats.nodes();
+        event.maxDepth = stats.maxDepth;
+        event.commit();
+      } // if
+      if (listener != null) {
+        listener.documentParsed(stats);
+      } // if
+    } // if
+    return result;
+  } // run(ParseListener)
+
+  /**
+   * Parse one value. Arrays and hashes that are still open are kept on an
+   * explicit stack rather than the call stack, so deep nesting costs heap,
+   * not stack.
+   */
+  JSONValue parseKernel() throws Exception {
+    // the open containers, innermost last, and the current key of each hash
+    ArrayList<JSONValue> open = new ArrayList<JSONValue>();
+    ArrayList<JSONString> keys = new ArrayList<JSONString>();
+    JSONValue value;
+    int ch = skipWhitespace();
+    while (true) {
+      // ch starts a value
+      if ((ch == '{') || (ch == '[')) {
+        this.pos++;
+        if (open.size() >= this.maxDepth) {
+          throw error("Maximum nesting depth of " + this.maxDepth + " exceeded");
+        } // if
+        JSONValue container = (ch == '{') ? new JSONHash() : new JSONArray();
+        open.add(container);
+        keys.add(null);
+        if ((this.stats != null) && (open.size() > this.stats.maxDepth)) {
+          this.stats.maxDepth = open.size();
+        } // if
+        ch = skipWhitespace();
+        if (ch != closer(container)) {
+          if (container instanceof JSONHash) {
+            keys.set(keys.size() - 1, parseKey(ch));
+            ch = skipWhitespace();
+          } // if
+          continue;
+        } // if
+        // an empty array or hash
+        this.pos++;
+        open.remove(open.size() - 1);
+        keys.remove(keys.size() - 1);
+        value = container;
+      } else {
+        value = parseScalar(ch);
+      } // if-else
+      count(value);
+
+      // store the value, closing any containers it completes
+      while (true) {
+        int last = open.size() - 1;
+        if (last < 0) {
+          return value;
+        } // if
+        JSONValue container = open.get(last);
+        if (container instanceof JSONArray) {
+          ((JSONArray) container).add(value);
+        } else {
+          ((JSONHash) container).set(keys.get(last), value);
+        } // if-else
+        ch = skipWhitespace();
+        if (ch == ',') {
+          this.pos++;
+          ch = skipWhitespace();
+          if (container instanceof JSONHash) {
+            keys.set(last, parseKey(ch));
+            ch = skipWhitespace();
+          } // if
+          break;
+        } else if (ch == closer(container)) {
+          this.pos++;
+          open.remove(last);
+          keys.remove(last);
+          value = container;
+          count(value);
+        } else if (ch == -1) {
+          throw new ParseException("Unexpected end of file", (int) offset());
+        } else {
+          throw error("Expected comma, instead found " + (char) ch);
+        } // if-else
+      } // while
+    } // while
+  } // parseKernel()
+
+  /**
+   * Read a value and throw it away, checking it as parseKernel does but
+   * building nothing. As in JSONValidator, nesting is kept as a bit per
+   * open container, so skipping allocates nothing after the first time.
+   */
+  void skipKernel() throws Exception {
+    int depth = 0;
+    int ch = skipWhitespace();
+    while (true) {
+      // ch starts a value
+      if ((ch == '{') || (ch == '[')) {
+        boolean isHash = (ch == '{');
+        this.pos++;
+        if (depth >= this.maxDepth) {
+          throw error("Maximum nesting depth of " + this.maxDepth + " exceeded");
+        } // if
+        pushKind(depth++, isHash);
+        ch = skipWhitespace();
+        if (ch != (isHash ? '}' : ']')) {
+          if (isHash) {
+            skipKey(ch);
+            ch = skipWhitespace();
+          } // if
+          continue;
+        } // if
+        // an empty array or hash
+        this.pos++;
+        depth--;
+      } else {
+        skipScalar(ch);
+      } // if-else
+
+      // a value just ended; close as many containers as we can
+      while (true) {
+        if (depth == 0) {
+          return;
+        } // if
+        boolean inHash = (this.kinds[(depth - 1) >>> 6] & (1L << (depth - 1))) != 0;
+        ch = skipWhitespace();
+        if (ch == ',') {
+          this.pos++;
+          ch = skipWhitespace();
+          if (inHash) {
+            skipKey(ch);
+            ch = skipWhitespace();
+          } // if
+          break;
+        } else if (ch == (inHash ? '}' : ']')) {
+          this.pos++;
+          depth--;
+        } else if (ch == -1) {
+          throw new ParseException("Unexpected end of file", (int) offset());
+        } else {
+          throw error("Expected comma, instead found " + (char) ch);
+        } // if-else
+      } // while
+    } // while
+  } // skipKernel()
+
+  /**
+   * Note the kind of the container opened at depth.
+   */
+  void pushKind(int depth, boolean isHash) {
+    if (this.kinds == null) {
+      this.kinds = new long[1];
+    } else if ((depth >>> 6) == this.kinds.length) {
+      this.kinds = Arrays.copyOf(this.kinds, this.kinds.length * 2);
+    } // if-else
+    long bit = 1L << depth;
+    if (isHash) {
+      this.kinds[depth >>> 6] |= bit;
+    } else {
+      this.kinds[depth >>> 6] &= ~bit;
+    } // if-else
+  } // pushKind(int, boolean)
+
+  /**
+   * Skip a key and the colon after it. ch is the first character.
+   */
+  void skipKey(int ch) throws Exception {
+    if (ch != '"') {
+      if (ch == -1) {
+        throw new ParseException("Unexpected end of file", (int) offset());
+      } // if
+      throw error("Expected JSONString but found " + (char) ch);
+    } // if
+    this.pos++;
+    skipString();
+    if (skipWhitespace() != ':') {
+      throw error("Invalid Hash object");
+    } // if
+    this.pos++;
+  } // skipKey(int)
+
+  /**
+   * Skip a string, number or constant starting with ch. Numbers pass
+   * through token, which is reused, and constants are shared.
+   */
+  void skipScalar(int ch) throws Exception {
+    if (ch == '"') {
+      this.pos++;
+      skipString();
+    } else if ((ch == '-') || ((ch >= '0') && (ch <= '9'))) {
+      readNumber();
+    } else {
+      parseScalar(ch);
+    } // if-else
+  } // skipScalar(int)
+
+  /**
+   * Skip the rest of a string, after the opening quote, checking its
+   * escapes as readString does.
+   */
+  void skipString() throws IOException, ParseException, InvalidJSONException {
+    while (true) {
+      char[] chars = this.buf;
+      int i = this.pos;
+      int end = this.limit;
+      while ((i < end) && (chars[i] != '"') && (chars[i] != '\\') && (chars[i] >= 0x20)) {
+        i++;
+      } // while
+      this.pos = i;
+      int ch = peek();
+      if (ch == -1) {
+        throw new ParseException("Unexpected end of file", (int) offset());
+      } else if (ch == '"') {
+        this.pos++;
+        return;
+      } else if (ch == '\\') {
+        this.pos++;
+        charCheck(peek());
+      } else if (ch < 0x20) {
+        throw error("Invalid String syntax, unescaped control character");
+      } // if-else
+    } // while
+  } // skipString()
+
+  /**
+   * Get the character that closes a container.
+   */
+  static int closer(JSONValue container) {
+    return (container instanceof JSONHash) ? '}' : ']';
+  } // closer(JSONValue)
 
   /*
-   * Given a character, decide the type of value to read
+   * Read a key and the colon after it. ch is the first character.
    */
-  private static JSONValue decideType(Reader source, char starterChar) throws Exception{
-    char curChar = starterChar;
+  JSONString parseKey(int ch) throws Exception {
+    if (ch != '"') {
+      if (ch == -1) {
+        throw new ParseException("Unexpected end of file", (int) offset());
+      } // if
+      throw error("Expected JSONString but found " + (char) ch);
+    } // if
+    this.pos++;
+    JSONString key = parseJString(Integer.MAX_VALUE);
+    count(key);
+    if (skipWhitespace() != ':') {
+      throw error("Invalid Hash object");
+    } // if
+    this.pos++;
+    return key;
+  } // parseKey(int)
+
+  /*
+   * Given a character, decide the type of scalar value to read
+   */
+  JSONValue parseScalar(int curChar) throws Exception {
     if (curChar == '"') {
-      return parseJString(source);
-    } else if (Character.isDigit(curChar)) {
-      return parseNum(source, false);
-    } else if (curChar == '-') {
-      return parseNum(source, true);
-    } else if (curChar == '{') {
-      return parseHash(source);
-    } else if (curChar == '[') {
-      return parseArray(source);
-    } else if (curChar == 'n' || curChar == 'f' || curChar == 't') {
-      return parseConstant(source);
+      this.pos++;
+      return parseJString(this.spillThreshold);
+    } else if ((curChar == '-') || ((curChar >= '0') && (curChar <= '9'))) {
+      return parseNum();
+    } else if (curChar == 't') {
+      return parseConstant("true", JSONConstant.TRUE);
+    } else if (curChar == 'f') {
+      return parseConstant("false", JSONConstant.FALSE);
+    } else if (curChar == 'n') {
+      return parseConstant("null", JSONConstant.NULL);
+    } else if (curChar == -1) {
+      throw new ParseException("Unexpected end of file", (int) offset());
+    } else {
+      throw error("Invalid syntax");
+    } // if-else
+  } // parseScalar(int)
+
+  /*
+   * Note a value of some type, if anyone is listening.
+   */
+  private void count(JSONValue value) {
+    ParseStats stats = this.stats;
+    if (stats == null) {
+      return;
+    } // if
+    if (value instanceof JSONString) {
+      stats.strings++;
+      stats.stringChars += (value instanceof JSONSpilledString) ? ((JSONSpilledString) value).length()
+          : ((JSONString) value).getValue().length();
+    } else if (value instanceof JSONInteger) {
+      stats.integers++;
+    } else if (value instanceof JSONReal) {
+      stats.reals++;
+    } else if (value instanceof JSONConstant) {
+      stats.constants++;
+    } else if (value instanceof JSONArray) {
+      stats.arrays++;
     } else {
-      throw new InvalidJSONException("Invalid syntax");
+      stats.hashes++;
     } // if-else
-  }
+  } // count(JSONValue)
 
   /**
-   * Get the next character from source, skipping over whitespace.
+   * Get the next character other than whitespace, without consuming it.
    */
-  static int skipWhitespace(Reader source) throws IOException {
-    int ch;
-    do {
-      source.mark(1);
-      ch = source.read();
-      ++pos;
-    } while (isWhitespace(ch));
-    return ch;
-  } // skipWhitespace(Reader)
+  int skipWhitespace() throws IOException {
+    while (true) {
+      int ch = peek();
+      if (!isWhitespace(ch)) {
+        return ch;
+      } // if
+      this.pos++;
+    } // while
+  } // skipWhitespace()
 
   /**
    * Determine if a character is JSON whitespace (newline, carriage return,
@@ -118,266 +790,277 @@ public class JSON {
     return (' ' == ch) || ('\n' == ch) || ('\r' == ch) || ('\t' == ch);
   } // isWhiteSpace(int)
 
-  /*
-   * Check the current character, if its a special character indicator return it properly. If not return as is.
-   */
-  private static char charCheck(Reader source, char curChar) throws IOException, InvalidJSONException {
-    // special char check
-    if (curChar == '\\') {
-      // read next char to determine type of special char
-      source.mark(0);
-      char ch = (char) source.read();
-      if (ch == '\\') {
-        return '\\';
-      } else if (ch == 'n') {
-        return '\n';
-      } else if (ch == 't') {
-        return '\t';
-      } else if (ch == 'r') {
-        return '\r';
-      } else if (ch == '"') {
-        return '\"';
-      } else if (ch == '/') {
-        return '/';
-      } else if (ch == 'b') {
-        return '\b';
-      } else if (ch == 'f') {
-        return '\f';
-      } else if (ch == 'u') {
-        return readHex(source);
-      } else {
-        throw new InvalidJSONException("Invalid String syntax, backslash not followed by valid character");
-      } // if-else
-    }// if-else
-    return curChar;
-  } // charCheck(Reader source, char curChar)
+  /**
+   * Get the next character without consuming it, or -1 at the end.
+   */
+  int peek() throws IOException {
+    if ((this.pos == this.limit) && !fill()) {
+      return -1;
+    } // if
+    return this.buf[this.pos];
+  } // peek()
+
+  /**
+   * Read the next chunk of input. Returns false at the end of input.
+   */
+  boolean fill() throws IOException {
+    this.base += this.limit;
+    this.pos = 0;
+    this.limit = Math.max(0, this.source.read(this.buf, 0, this.buf.length));
+    return this.limit > 0;
+  } // fill()
+
+  /**
+   * Get the offset of the next unread character.
+   */
+  long offset() {
+    return this.base + this.pos;
+  } // offset()
+
+  /**
+   * Build an exception for a syntax error at the current position.
+   */
+  InvalidJSONException error(String msg) {
+    return new InvalidJSONException(msg + " at position " + offset());
+  } // error(String)
 
   /*
    * reads a 4 digit hex value (unicode) and converts it into a character
    */
-  private static char readHex(Reader source) throws IOException, InvalidJSONException {
-    String hexVal = "";
+  private char readHex() throws IOException, InvalidJSONException {
+    int result = 0;
     for (int i = 0; i < 4; i++) {
-      source.mark(0);
-      char ch = (char) source.read();
+      int digit = Character.digit(peek(), 16);
       // ensure it is a valid Hexadecimal value
-      if (Character.isDigit(ch)) {
-        hexVal += ch;
-        continue;
+      if (digit < 0) {
+        throw error("Invalid unicode character");
       } // if
-      ch = Character.toUpperCase(ch);
-      if (!(('A' <= ch) && (ch <= 'F'))) {
-        throw new InvalidJSONException("Invalid unicode character");
+      this.pos++;
+      result = result * 16 + digit;
+    } // for
+    return (char) result;
+  } // readHex()
+
+  /**
+   * Build a JSON string from the source we are reading from, starting
+   * after the opening quote. A string longer than spillThreshold chars
+   * is spilled to a temporary file.
+   */
+  private JSONString parseJString(int spillThreshold) throws IOException, ParseException, InvalidJSONException {
+    JSONString result = null;
+    try {
+      readString(spillThreshold);
+      if (this.spill != null) {
+        result = this.spill.finish(this.token);
+      } else {
+        result = new JSONString(this.token.toString());
+      } // if-else
+      return result;
+    } finally {
+      // however reading failed, a half-written file is not wanted
+      if ((result == null) && (this.spill != null)) {
+        this.spill.discard();
       } // if
-      hexVal += ch;
-    }
-    // convert hexString into an Integer then cast as a character
-    return (char) Integer.parseInt(hexVal, 16);
-  }
-  /**
-   * Build a JSON string from the source we are reading from
-   */
-  private static JSONString parseJString(Reader source) throws IOException, ParseException, InvalidJSONException {
-    int ch;
-    StringBuilder result = new StringBuilder();
-    // get next character
-    ch = skipWhitespace(source);
-    char curChar = (char) ch;
-    // keep running until we meet the closing double quote
-    while (curChar != '"') {
-      // see if we are dealing with a special character and append as needed
-      result.append(charCheck(source,curChar));
-      // mark position
-      source.mark(1);
-      // read next character
-      ch = source.read();
-      if (ch == -1) {
-        throw new ParseException("Unexpected end of file", pos);
+      this.spill = null;
+    } // try-finally
+  } // parseJString(int)
+
+  /**
+   * Read the characters of a string, starting after the opening quote,
+   * into token.
+   */
+  void readString() throws IOException, ParseException, InvalidJSONException {
+    readString(Integer.MAX_VALUE);
+  } // readString()
+
+  /**
+   * Read the characters of a string, starting after the opening quote,
+   * into token. Once token holds more than spillAt chars, they are moved
+   * to spill, and so is each later buffer's worth; token then holds only
+   * what is left at the end.
+   */
+  void readString(int spillAt) throws IOException, ParseException, InvalidJSONException {
+    StringBuilder result = this.token;
+    result.setLength(0);
+    while (true) {
+      // copy ordinary characters straight from the buffer
+      int start = this.pos;
+      int end = this.limit;
+      char[] chars = this.buf;
+      int i = start;
+      while ((i < end) && (chars[i] != '"') && (chars[i] != '\\') && (chars[i] >= 0x20)) {
+        i++;
+      } // while
+      result.append(chars, start, i - start);
+      if (result.length() > spillAt) {
+        if (this.spill == null) {
+          this.spill = new JSONSpilledString.Spill();
+          spillAt = BUFFER_SIZE;
+        } // if
+        this.spill.append(result);
+        result.setLength(0);
       } // if
-      curChar = (char) ch;
+      this.pos = i;
+      int ch = peek();
+      if (ch == -1) {
+        throw new ParseException("Unexpected end of file", (int) offset());
+      } else if (ch == '"') {
+        this.pos++;
+        return;
+      } else if (ch == '\\') {
+        this.pos++;
+        result.append(charCheck(peek()));
+      } else if (ch < 0x20) {
+        throw error("Invalid String syntax, unescaped control character");
+      } // if-else
     } // while
-    return new JSONString(result.toString());
-  } // parseString (Reader source)
+  } // readString()
 
-  /**
-   * Build a JSON numerical value, either JSONReal or JSONInteger from the source we are reading from
+  /*
+   * Given the character after a backslash, return the character it stands for
    */
-  private static JSONValue parseNum(Reader source, boolean negative) throws IOException, ParseException, InvalidJSONException {
-    // initialize values
-    int ch;
-    boolean decimals = false;
-    boolean expo = false;
-    boolean sign = false;
-    StringBuilder result = new StringBuilder();
-    if (negative) {
-      result.append('-');
+  private char charCheck(int ch) throws IOException, InvalidJSONException {
+    if (this.stats != null) {
+      this.stats.escapes++;
+    } // if
+    this.pos++;
+    if (ch == '\\') {
+      return '\\';
+    } else if (ch == 'n') {
+      return '\n';
+    } else if (ch == 't') {
+      return '\t';
+    } else if (ch == 'r') {
+      return '\r';
+    } else if (ch == '"') {
+      return '\"';
+    } else if (ch == '/') {
+      return '/';
+    } else if (ch == 'b') {
+      return '\b';
+    } else if (ch == 'f') {
+      return '\f';
+    } else if (ch == 'u') {
+      return readHex();
     } else {
-      // we read a digit before calling this method so we have to read it again to include it
-      source.reset();
-    }
-    // get next character
-    ch = skipWhitespace(source);
-    char curChar = (char) ch;
-    // while we build a valid numerical value
-    while (validNum(curChar, decimals, expo, sign)) {
-      if (curChar == '.') {
-        decimals = true;
-      } else if (curChar == 'e') {
-        expo = true;
-      } else if (curChar == '-' || curChar == '+') {
-        sign = true;
-      }// if-else
-      result.append(curChar);
-      // mark position
-      source.mark(0);
-      ch = source.read();
-      curChar = (char) ch;
-    } // while
-    if (decimals || expo) { // if its decimal
-      return new JSONReal(result.toString());
+      this.pos--;
+      throw error("Invalid String syntax, backslash not followed by valid character");
+    } // if-else
+  } // charCheck(int)
+
+  /**
+   * Build a JSON numerical value, either JSONReal or JSONInteger, from
+   * -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+   */
+  private JSONValue parseNum() throws IOException, InvalidJSONException {
+    if (readNumber()) {
+      return new JSONReal(this.token.toString());
     } // if
-    return new JSONInteger(result.toString());
+    return new JSONInteger(this.token.toString());
   } // parseNum()
 
-  /*
-   * Checks if a character is part of a valid number
-   */
-  private static boolean validNum(char curChar, boolean decimals, boolean expo, boolean sign) throws InvalidJSONException {
-    if (!(Character.isDigit(curChar) || curChar == '.' || curChar == 'e' || curChar == 'E' || curChar == '-' || curChar == '+')) {
-      return false;
-    }
-    if (curChar == '.' && decimals) {
-      throw new InvalidJSONException("Invalid numeric value: more than 1 decimal point");
-    } else if ((curChar == 'e' || curChar == 'E') && expo) {
-      throw new InvalidJSONException("Invalid numeric value: more than 1 exponent sign");
+  /**
+   * Read the characters of a number into token. Returns whether it is a
+   * real rather than an integer.
+   */
+  boolean readNumber() throws IOException, InvalidJSONException {
+    StringBuilder result = this.token;
+    result.setLength(0);
+    boolean real = false;
+    if (peek() == '-') {
+      result.append('-');
+      this.pos++;
+    } // if
+    if (peek() == '0') {
+      result.append('0');
+      this.pos++;
+    } else if (digits(result) == 0) {
+      throw error("Invalid numeric value: expected a digit");
     } // if-else
-    if (sign && !expo) {
-      // ensure we are adding a sign only after an expo
-      return false;
-    }// if
-    return true;
-  }
-
-  /* 
-   * Build a JSON array from the source we are reading from
-  */
-  private static JSONArray parseArray(Reader source) throws Exception {
-    JSONArray result = new JSONArray();
-    int ch;
-    ch = skipWhitespace(source);
-    // if we get an empty array
-    if ((char) ch == ']') {
-      ch = skipWhitespace(source);
-      return result;
+    if (peek() == '.') {
+      real = true;
+      result.append('.');
+      this.pos++;
+      if (digits(result) == 0) {
+        throw error("Invalid numeric value: expected a digit after the decimal point");
+      } // if
     } // if
-    while (ch != -1) {
-      JSONValue cur = decideType(source, (char) ch);
-      result.add(cur);
-      source.reset();
-      ch = skipWhitespace(source);
-      if ((char) ch == '"' && (cur instanceof JSONString)){
-        ch = skipWhitespace(source);
-      } else {
-      }// if-else
-      // if we get to the end then return, otherwise we should have a comma
-      if ((char) ch == ']') {
-        ch = skipWhitespace(source);
-        return result;
-      }// if
-      // make sure we get a comma after a value
-      if ((char) ch != ',') {
-        throw new InvalidJSONException("Expected comma, instead found "+ (char) ch);
-      }// if
-      // read next value
-      ch = skipWhitespace(source);
-    }// while
-    // did not create a proper array
-    throw new InvalidJSONException("Invalid Array syntax");
-  } // parseArray()
-  
-  /* 
-   * Build a JSON hash table from the source we are reading from
-  */
-  private static JSONHash parseHash(Reader source) throws Exception {
-    JSONHash result = new JSONHash();
-    JSONValue key;
-    JSONValue value;
-    int ch;
-    ch = skipWhitespace(source);
-    // if we get an empty hash
-    if ((char) ch == '}') {
-      ch = skipWhitespace(source);
-      return result;
-    }// if
-    while (ch != -1) {
-      key = decideType(source, (char) ch);
-      // last thing read from a string is '"' so no need to reset
-      if (!(key instanceof JSONString)) {
-        throw new InvalidJSONException("Expected JSONString but recieved "+ key.getClass().getName());
-      }
-      ch = skipWhitespace(source);
-      if ((char) ch != ':') {
-        throw new InvalidJSONException("Invalid Hash object");
-      }// if
-      // get the next character and get the value of our key
-      ch = skipWhitespace(source);
-      value = decideType(source, (char) ch);
-      // set the key/value pair
-      result.set((JSONString) key,value);
-      // reset to the last value read
-      source.reset();
-      // get that character and see if its an ending for a string or starting a new pair
-      ch = skipWhitespace(source);
-      if ((char) ch == '"'){
-        ch = skipWhitespace(source);
-      }// if
-      // if we get to the end then return, otherwise we should have a comma
-      if ((char) ch == '}') {
-        ch = skipWhitespace(source);
-        return result;
-      }// if
-      // make sure we get a comma after a value
-      if ((char) ch != ',') {
-        throw new InvalidJSONException("Expected comma, instead found "+ (char) ch);
-      }// if
-      // read next value
-      ch = skipWhitespace(source);
-    }// while
-    // did not create a proper array
-    throw new InvalidJSONException("Invalid Array syntax");
-  } // parseHash()
-  
-  /* 
-   * Build a JSON constant from the source we are reading from
-  */
-  private static JSONConstant parseConstant(Reader source) throws IOException, InvalidJSONException {
-    int ch;
-    // reset to get the first letter in the sequence
-    source.reset();
-    StringBuilder constant = new StringBuilder();
-    ch = skipWhitespace(source);
-    // keep building until we get to length 6
-    while (constant.length() < 6) {
-      constant.append((char) ch);
-      // keep appending
-      if (constant.length() > 3) {
-        // when length is 4 or more, construct string and compare with valid options
-        String myConst = constant.toString();
-        if (myConst.equals("null")) {
-          skipWhitespace(source);
-          return new JSONConstant(null);
-        } // if
-        if (myConst.equals("true")) {
-          skipWhitespace(source);
-          return new JSONConstant(true);
-        }// if
-        if (myConst.equals("false")) {
-          skipWhitespace(source);
-          return new JSONConstant(false);
-        }// if
-      }// if
-      ch = skipWhitespace(source);
-    }// while
-    throw new InvalidJSONException("Invalid constant syntax");
-  } // parseConstant()
+    int ch = peek();
+    if ((ch == 'e') || (ch == 'E')) {
+      real = true;
+      result.append((char) ch);
+      this.pos++;
+      ch = peek();
+      if ((ch == '+') || (ch == '-')) {
+        result.append((char) ch);
+        this.pos++;
+      } // if
+      if (digits(result) == 0) {
+        throw error("Invalid numeric value: expected a digit in the exponent");
+      } // if
+    } // if
+    return real;
+  } // readNumber()
+
+  /*
+   * Copy digits to result. Returns how many there were.
+   */
+  private int digits(StringBuilder result) throws IOException {
+    int count = 0;
+    int ch = peek();
+    while ((ch >= '0') && (ch <= '9')) {
+      result.append((char) ch);
+      this.pos++;
+      count++;
+      ch = peek();
+    } // while
+    return count;
+  } // digits(StringBuilder)
+
+  /*
+   * Read true, false or null, whose first letter we have seen
+   */
+  private JSONConstant parseConstant(String word, JSONConstant value) throws IOException, InvalidJSONException {
+    for (int i = 0; i < word.length(); i++) {
+      if (peek() != word.charAt(i)) {
+        throw error("Invalid constant syntax");
+      } // if
+      this.pos++;
+    } // for
+    return value;
+  } // parseConstant(String, JSONConstant)
+
+  // +---------------+-------------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A writer that counts the characters written through it.
+   */
+  static class CountingWriter extends Writer {
+    final Writer sink;
+    long count = 0;
+
+    CountingWriter(Writer sink) {
+      this.sink = sink;
+    } // CountingWriter(Writer)
+
+    public void write(char[] buf, int off, int len) throws IOException {
+      this.sink.write(buf, off, len);
+      this.count += len;
+    } // write(char[], int, int)
+
+    public void write(String str, int off, int len) throws IOException {
+      this.sink.write(str, off, len);
+      this.count += len;
+    } // write(String, int, int)
+
+    public void flush() throws IOException {
+      this.sink.flush();
+    } // flush()
+
+    public void close() throws IOException {
+      this.sink.close();
+    } // close()
+  } // class CountingWriter
 } // class JSON
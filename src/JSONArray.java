@@ -1,10 +1,22 @@
 package src;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * JSON arrays.
+ *
+ * Arrays are not synchronized. Only one thread may change an array (with
+ * add, set, indexBy or dropIndex), and not while other threads read it,
+ * except through its indexes.
+ *
  * @author Sam Rebelsky
  * @author Garikai
  * @author Zakariye
@@ -20,6 +32,38 @@ public class JSONArray implements JSONValue {
    */
   ArrayList<JSONValue> values;
 
+  /**
+   * The cached hash code, valid only when hashValid is true.
+   */
+  int hash;
+
+  /**
+   * Whether hash holds the hash code of the contents. Only set once the
+   * array is frozen, when neither it nor any nested value can change.
+   * Volatile and set after hash, so that a thread seeing it set also
+   * sees the code.
+   */
+  volatile boolean hashValid = false;
+
+  /**
+   * Whether the array has been frozen. Frozen arrays reject add and set.
+   */
+  boolean frozen = false;
+
+  /**
+   * The canonical (RFC 8785) form of the array and its SHA-256 digest, kept
+   * once computed. Only set once the array is frozen, so never stale.
+   * Volatile, so that a thread reading them sees the whole array.
+   */
+  volatile byte[] canonical;
+  volatile byte[] digest;
+
+  /**
+   * The indexes that add and set keep up to date, or null if there are
+   * none.
+   */
+  JSONIndex[] indexes;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -36,46 +80,28 @@ public class JSONArray implements JSONValue {
   // +-------------------------+
 
   /**
-   * Convert to a string (e.g., for printing).
+   * Convert to a string (e.g., for printing). Nested values are visited
+   * without recursion, so deep nesting cannot overflow the stack.
    */
   public String toString() {
-    StringBuilder result = new StringBuilder();
-    for (JSONValue value : this.values) {
-      // Append each string with a comma and space
-      result.append(value.toString()).append(", "); 
-    }
-    // Remove the trailing ", " if there are any elements
-    if (result.length() > 0) {
-    result.setLength(result.length() - 2);
-    }
-    return "["+result.toString()+"]"; 
+    return JSONWriter.toString(this);
   } // toString()
 
   /**
-   * Compare to another object.
+   * Compare to another object. Nested values are compared without
+   * recursion, so deep nesting cannot overflow the stack.
    */
   public boolean equals(Object other) {
-    // check type and size
-    if (!(other instanceof JSONArray) || 
-        (this.values.size() != ((JSONArray) other).size())) {
-          return false;
-    }
-    // objevt to compare
-    JSONArray otherArray = (JSONArray) other;
-    // compare each item in each respective position
-    for (int i = 0; i < this.values.size(); i++) {
-      if (!(this.get(i).equals(otherArray.get(i)))) {
-        return false;
-      } // if
-    } // for
-    return true;
+    return (other instanceof JSONArray) && JSONStructure.equals(this, (JSONArray) other);
   } // equals(Object)
 
   /**
-   * Compute the hash code.
+   * Compute the hash code, as List.hashCode does, without recursion.
+   * Kept only once the array is frozen, since nested values may
+   * otherwise change in place.
    */
   public int hashCode() {
-    return this.values.hashCode();      
+    return this.hashValid ? this.hash : JSONStructure.hashCode(this);
   } // hashCode()
 
   // +--------------------+------------------------------------------
@@ -83,27 +109,21 @@ public class JSONArray implements JSONValue {
   // +--------------------+
 
   /**
-   * Write the value as JSON.
+   * Write the value as JSON. Nested values are visited without
+   * recursion, so deep nesting cannot overflow the stack.
    */
   public void writeJSON(PrintWriter pen) {
-    Iterator myIter = this.values.iterator();
-    pen.print("[");
-    while (myIter.hasNext()) {
-      JSONValue curVal = (JSONValue) myIter.next();
-      curVal.writeJSON(pen);
-      if (myIter.hasNext()) {
-        // if more values, separate
-        pen.print(", ");
-      }
-    }
-    pen.print("]");
-    pen.flush();
+    JSONWriter.writeJSON(this, pen);
   } // writeJSON(PrintWriter)
 
   /**
-   * Get the underlying value.
+   * Get the underlying value. For a frozen array this is a copy, so that
+   * changing it cannot change the array.
    */
   public ArrayList<JSONValue> getValue() {
+    if (this.frozen) {
+      return new ArrayList<JSONValue>(this.values);
+    } // if
     return this.values;
   } // getValue()
 
@@ -115,7 +135,19 @@ public class JSONArray implements JSONValue {
    * Add a value to the end of the array.
    */
   public void add(JSONValue value) {
+    checkNotFrozen();
+    JSONIndex[] indexes = this.indexes;
+    if (indexes != null) {
+      for (JSONIndex index : indexes) {
+        index.check(this.values.size(), value);
+      } // for
+    } // if
     this.values.add(value);
+    if (indexes != null) {
+      for (JSONIndex index : indexes) {
+        index.put(this.values.size() - 1, value);
+      } // for
+    } // if
   } // add(JSONValue)
 
   /**
@@ -125,24 +157,204 @@ public class JSONArray implements JSONValue {
     return this.values.get(index);
   } // get(int)
 
+  /**
+   * Get the value at a particular index, or null if there is no such
+   * index.
+   */
+  public JSONValue getOrNull(int index) {
+    if ((index < 0) || (index >= this.values.size())) {
+      return null;
+    } // if
+    return this.values.get(index);
+  } // getOrNull(int)
+
+  /**
+   * Get the value at a particular index, or otherwise if there is no
+   * such index.
+   */
+  public JSONValue getOrDefault(int index, JSONValue otherwise) {
+    JSONValue value = getOrNull(index);
+    return (value == null) ? otherwise : value;
+  } // getOrDefault(int, JSONValue)
+
+  /**
+   * Get the integer at a particular index, or otherwise if there is none
+   * or it does not fit in a long.
+   */
+  public long getLong(int index, long otherwise) {
+    JSONValue value = getOrNull(index);
+    return (value == null) ? otherwise : value.asLong(otherwise);
+  } // getLong(int, long)
+
+  /**
+   * Get the number at a particular index, or otherwise if there is none.
+   */
+  public double getDouble(int index, double otherwise) {
+    JSONValue value = getOrNull(index);
+    return (value == null) ? otherwise : value.asDouble(otherwise);
+  } // getDouble(int, double)
+
+  /**
+   * Get the string at a particular index, or otherwise if there is none.
+   */
+  public String getString(int index, String otherwise) {
+    JSONValue value = getOrNull(index);
+    return (value == null) ? otherwise : value.asString(otherwise);
+  } // getString(int, String)
+
+  /**
+   * Get the boolean at a particular index, or otherwise if there is none.
+   */
+  public boolean getBoolean(int index, boolean otherwise) {
+    JSONValue value = getOrNull(index);
+    return (value == null) ? otherwise : value.asBoolean(otherwise);
+  } // getBoolean(int, boolean)
+
   /**
    * Get the iterator for the elements.
    */
   public Iterator<JSONValue> iterator() {
+    if (this.frozen) {
+      return Collections.unmodifiableList(this.values).iterator();
+    } // if
     return this.values.iterator();
   } // iterator()
 
+  /**
+   * Get a spliterator for the elements. It knows its size, and splits
+   * into halves that know theirs, so it parallelizes well.
+   */
+  public Spliterator<JSONValue> spliterator() {
+    return this.values.spliterator();
+  } // spliterator()
+
+  /**
+   * Get a sequential stream of the elements.
+   */
+  public Stream<JSONValue> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  } // stream()
+
+  /**
+   * Get a parallel stream of the elements.
+   */
+  public Stream<JSONValue> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  } // parallelStream()
+
   /**
    * Set the value at a particular index.
    */
   public void set(int index, JSONValue value) throws IndexOutOfBoundsException {
+    checkNotFrozen();
+    JSONIndex[] indexes = this.indexes;
+    if (indexes != null) {
+      Objects.checkIndex(index, this.values.size());
+      for (JSONIndex kept : indexes) {
+        kept.check(index, value);
+      } // for
+    } // if
     this.values.set(index, value);
+    if (indexes != null) {
+      for (JSONIndex kept : indexes) {
+        kept.put(index, value);
+      } // for
+    } // if
   } // set(int, JSONValue)
 
+  /**
+   * Get an index of the elements by the value pointer reaches in each
+   * (e.g., "/id"), with the given options, building it if there is none
+   * yet. The array keeps the index up to date as elements are added and
+   * set, until it is dropped. See JSONIndex. Like add and set, this
+   * changes the array, so only the thread changing it may call it.
+   *
+   * @throws IllegalArgumentException if the pointer is malformed, or if
+   *   the index is UNIQUE and two elements share a key.
+   */
+  public JSONIndex indexBy(String pointer, JSONIndex.Option... options) {
+    JSONPointer compiled = JSONPointer.compile(pointer);
+    EnumSet<JSONIndex.Option> set = EnumSet.noneOf(JSONIndex.Option.class);
+    set.addAll(Arrays.asList(options));
+    boolean unique = set.contains(JSONIndex.Option.UNIQUE);
+    boolean sorted = set.contains(JSONIndex.Option.SORTED);
+    JSONIndex[] indexes = this.indexes;
+    if (indexes == null) {
+      indexes = new JSONIndex[0];
+    } // if
+    for (JSONIndex index : indexes) {
+      if (index.pointer.equals(compiled) && (index.unique == unique) && (index.sorted == sorted)) {
+        return index;
+      } // if
+    } // for
+    JSONIndex index = new JSONIndex(this.values, compiled, unique, sorted);
+    indexes = Arrays.copyOf(indexes, indexes.length + 1);
+    indexes[indexes.length - 1] = index;
+    this.indexes = indexes;
+    return index;
+  } // indexBy(String, JSONIndex.Option...)
+
+  /**
+   * Stop keeping an index up to date. It still answers queries, about
+   * the elements as they were.
+   */
+  public void dropIndex(JSONIndex index) {
+    JSONIndex[] indexes = this.indexes;
+    if (indexes == null) {
+      return;
+    } // if
+    JSONIndex[] kept = Arrays.stream(indexes).filter((other) -> other != index).toArray(JSONIndex[]::new);
+    this.indexes = (kept.length == 0) ? null : kept;
+  } // dropIndex(JSONIndex)
+
   /**
    * Determine how many values are in the array.
    */
   public int size() {
     return this.values.size();
   } // size()
+
+  /**
+   * Make this array, and every value nested inside it, read-only.
+   */
+  public void freeze() {
+    JSONStructure.freeze(this);
+  } // freeze()
+
+  /**
+   * Compute the SHA-256 digest of the array's canonical (RFC 8785) form.
+   * A frozen array computes it once.
+   */
+  @Override
+  public byte[] canonicalHash() {
+    if (!this.frozen) {
+      return JSONCanonical.hash(this);
+    } // if
+    byte[] result = this.digest;
+    if (result == null) {
+      result = JSONCanonical.hash(this);
+      this.digest = result;
+    } // if
+    return result.clone();
+  } // canonicalHash()
+
+  /**
+   * Determine whether the array has been frozen.
+   */
+  public boolean isFrozen() {
+    return this.frozen;
+  } // isFrozen()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Reject changes to a frozen array.
+   */
+  void checkNotFrozen() {
+    if (this.frozen) {
+      throw new UnsupportedOperationException("Cannot change a frozen JSONArray");
+    } // if
+  } // checkNotFrozen()
 } // class JSONArray
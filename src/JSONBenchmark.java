@@ -0,0 +1,614 @@
+package src;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Microbenchmarks for parsing, serializing and JSONHash operations.
+ * Reports operations per second, MB per second (for parse and serialize)
+ * and bytes allocated per operation, as measured by the JVM's per-thread
+ * allocation counter.
+ *
+ * Run with: java src.JSONBenchmark [millisPerBenchmark] [nameFilter]
+ *
+ * Each benchmark warms up for half its measuring time first. Only
+ * benchmarks whose name contains nameFilter are run.
+ *
+ * The JMH benchmarks in jmh/src, run with gradle jmh, measure the same
+ * documents more carefully; this runner is kept for where JMH is not
+ * available.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JSONBenchmark {
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The shape of the "rest" document, for JSONShapeParser.
+   */
+  static final String REST_SHAPE = "{\"type\": \"object\", \"properties\": {"
+      + " \"id\": {\"type\": \"integer\"}, \"name\": {\"type\": \"string\"},"
+      + " \"email\": {\"type\": \"string\"}, \"active\": {\"type\": \"boolean\"},"
+      + " \"score\": {\"type\": \"number\"},"
+      + " \"tags\": {\"type\": \"array\", \"items\": {\"type\": \"string\"}},"
+      + " \"address\": {\"type\": \"object\", \"properties\": {\"street\": {\"type\": \"string\"},"
+      + " \"city\": {\"type\": \"string\"}, \"zip\": {\"type\": [\"string\", \"null\"]}}},"
+      + " \"logins\": {\"type\": \"array\", \"items\": {\"type\": \"integer\"}}},"
+      + " \"required\": [\"id\", \"name\"]}";
+
+  /**
+   * The shape of the orders array, for JSONShapeParser.
+   */
+  static final String ORDERS_SHAPE = "{\"type\": \"array\", \"items\": {"
+      + " \"type\": \"object\", \"additionalProperties\": false,"
+      + " \"required\": [\"id\", \"status\", \"sku\", \"qty\", \"price\"], \"properties\": {"
+      + " \"id\": {\"type\": \"integer\"}, \"status\": {\"enum\": [\"open\", \"shipped\"]},"
+      + " \"sku\": {\"type\": \"string\"}, \"qty\": {\"type\": \"integer\"},"
+      + " \"price\": {\"type\": \"number\"}}}}";
+
+  /**
+   * A JSONSchema for the orders array.
+   */
+  static final String ORDERS_SCHEMA = "{\"type\": \"array\", \"minItems\": 1,"
+      + " \"items\": {\"$ref\": \"#/$defs/order\"}, \"$defs\": {\"order\": {\"type\": \"object\","
+      + " \"required\": [\"id\", \"status\", \"sku\", \"qty\", \"price\"], \"properties\": {"
+      + " \"id\": {\"type\": \"integer\", \"minimum\": 0},"
+      + " \"status\": {\"enum\": [\"open\", \"shipped\"]},"
+      + " \"sku\": {\"type\": \"string\", \"pattern\": \"^SKU-[0-9]+$\", \"maxLength\": 16},"
+      + " \"qty\": {\"type\": \"integer\", \"minimum\": 0, \"maximum\": 100},"
+      + " \"price\": {\"type\": \"number\", \"exclusiveMinimum\": -1}}}}}";
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Results are folded in here so the JIT cannot discard the work.
+   */
+  static volatile int sink;
+
+  /**
+   * How long to measure each benchmark, in milliseconds.
+   */
+  static long millis = 1000;
+
+  /**
+   * Only run benchmarks whose names contain this.
+   */
+  static String filter = "";
+
+  /**
+   * The thread MX bean, if it can report allocation; null if not.
+   */
+  static com.sun.management.ThreadMXBean threads;
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0) {
+      millis = Long.parseLong(args[0]);
+    } // if
+    if (args.length > 1) {
+      filter = args[1];
+    } // if
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if ((bean instanceof com.sun.management.ThreadMXBean)
+        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      threads = (com.sun.management.ThreadMXBean) bean;
+      threads.setThreadAllocatedMemoryEnabled(true);
+    } // if
+
+    System.out.printf("%-32s %14s %10s %14s%n", "benchmark", "ops/s", "MB/s", "B/op");
+    parseBenchmarks();
+    writeBenchmarks();
+    hashBenchmarks();
+    pointerBenchmarks();
+    bindBenchmarks();
+    shapeBenchmarks();
+    schemaBenchmarks();
+    columnBenchmarks();
+    tapeBenchmarks();
+    canonicalBenchmarks();
+    walkBenchmarks();
+    numberBenchmarks();
+    indexBenchmarks();
+  } // main(String[])
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * JSON.parse and JSON.validate on documents of several shapes.
+   */
+  static void parseBenchmarks() throws Exception {
+    String[][] docs = documents();
+    for (String[] doc : docs) {
+      String text = doc[1];
+      long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+      // identityHashCode, so that the structural hashCode is not timed too
+      measure("parse." + doc[0], bytes, () -> sink += System.identityHashCode(JSON.parse(text)));
+    } // for
+    for (String[] doc : docs) {
+      String text = doc[1];
+      long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+      measure("validate." + doc[0], bytes, () -> sink += JSON.validate(text).hashCode());
+    } // for
+  } // parseBenchmarks()
+
+  /**
+   * writeJSON for every kind of value.
+   */
+  static void writeBenchmarks() throws Exception {
+    CountingWriter counter = new CountingWriter();
+    PrintWriter pen = new PrintWriter(counter);
+    String[][] docs = documents();
+    JSONValue[] values = {
+      new JSONString("a moderately long string value"),
+      new JSONInteger(1234567890123L),
+      new JSONReal("3.14159265358979"),
+      JSONConstant.TRUE,
+      JSON.parse(docs[3][1]),
+      JSON.parse(docs[1][1]),
+      JSON.parse(docs[0][1]),
+      JSON.parse(docs[2][1]),
+      JSON.parse(docs[5][1]),
+    };
+    String[] names = {"string", "integer", "real", "constant", "array.numbers", "hash.wide", "hash.rest",
+        "hash.deep", "hash.nested"};
+    for (int i = 0; i < values.length; i++) {
+      JSONValue value = values[i];
+      counter.count = 0;
+      value.writeJSON(pen);
+      long bytes = counter.count;
+      measure("write." + names[i], bytes, () -> value.writeJSON(pen));
+    } // for
+  } // writeBenchmarks()
+
+  /**
+   * JSONHash get, misses, set, iteration and expansion at several sizes.
+   */
+  static void hashBenchmarks() throws Exception {
+    for (int size : new int[] {16, 1024, 65536}) {
+      JSONString[] keys = new JSONString[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = new JSONString("key" + i);
+      } // for
+      JSONHash hash = new JSONHash();
+      for (JSONString key : keys) {
+        hash.set(key, new JSONInteger(1));
+      } // for
+      JSONValue value = new JSONInteger(2);
+      int[] next = {0};
+      measure("hash.get." + size, 0, () -> {
+        sink += hash.get(keys[next[0]++ % size]).hashCode();
+      });
+      measure("hash.getLong." + size, 0, () -> {
+        sink += (int) hash.getLong(keys[next[0]++ % size], 0);
+      });
+      JSONString absent = new JSONString("absent");
+      measure("hash.miss." + size, 0, () -> sink += (hash.getOrNull(absent) == null) ? 1 : 0);
+      measure("hash.set." + size, 0, () -> hash.set(keys[next[0]++ % size], value));
+      measure("hash.iterate." + size, 0, () -> {
+        Iterator<KVPair<JSONString, JSONValue>> pairs = hash.iterator();
+        while (pairs.hasNext()) {
+          sink += pairs.next().key().hashCode();
+        } // while
+      });
+      // filling a new table from empty exercises expand at every doubling
+      measure("hash.fill." + size, 0, () -> {
+        JSONHash fresh = new JSONHash();
+        for (JSONString key : keys) {
+          fresh.set(key, value);
+        } // for
+        sink += fresh.size();
+      });
+    } // for
+  } // hashBenchmarks()
+
+  /**
+   * Pulling several paths out of one document: walking by hand with new
+   * keys, with compiled pointers, and with a MultiPath.
+   */
+  static void pointerBenchmarks() throws Exception {
+    JSONValue doc = JSON.parse(documents()[0][1]);
+    String[] paths = {"/address/city", "/address/zip", "/tags/1", "/logins/2", "/id", "/score"};
+    JSONPointer[] pointers = new JSONPointer[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      pointers[i] = JSONPointer.compile(paths[i]);
+    } // for
+    MultiPath multi = new MultiPath(pointers);
+    JSONValue[] results = new JSONValue[paths.length];
+    measure("pointer.byhand", 0, () -> {
+      JSONHash hash = (JSONHash) doc;
+      JSONHash address = (JSONHash) hash.get(new JSONString("address"));
+      sink += address.get(new JSONString("city")).hashCode();
+      sink += address.get(new JSONString("zip")).hashCode();
+      sink += ((JSONArray) hash.get(new JSONString("tags"))).get(1).hashCode();
+      sink += ((JSONArray) hash.get(new JSONString("logins"))).get(2).hashCode();
+      sink += hash.get(new JSONString("id")).hashCode();
+      sink += hash.get(new JSONString("score")).hashCode();
+    });
+    measure("pointer.compiled", 0, () -> {
+      for (JSONPointer pointer : pointers) {
+        sink += pointer.get(doc).hashCode();
+      } // for
+    });
+    measure("pointer.multi", 0, () -> {
+      multi.extract(doc, results);
+      sink += results.length;
+    });
+  } // pointerBenchmarks()
+
+  /**
+   * The shape of the "rest" document, for binding.
+   */
+  record Address(String street, String city, String zip) { }
+
+  record User(long id, String name, String email, boolean active, double score,
+      List<String> tags, Address address, long[] logins) { }
+
+  /**
+   * JSONMapper reading via a parsed tree, reading straight from text, and
+   * writing.
+   */
+  static void bindBenchmarks() throws Exception {
+    String text = documents()[0][1];
+    long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+    User user = JSONMapper.read(text, User.class);
+    measure("bind.tree.rest", bytes, () -> sink += (int) JSONMapper.read(JSON.parse(text), User.class).id());
+    measure("bind.text.rest", bytes, () -> sink += (int) JSONMapper.read(text, User.class).id());
+    measure("bind.write.rest", 0, () -> sink += System.identityHashCode(JSONMapper.write(user)));
+  } // bindBenchmarks()
+
+  /**
+   * JSONShapeParser against JSON.parse on the "rest" document and on an
+   * array of orders, building a tree and feeding a sink.
+   */
+  static void shapeBenchmarks() throws Exception {
+    String rest = documents()[0][1];
+    JSONShapeParser restParser = JSONShapeParser.compile(REST_SHAPE);
+    String ordersText = orders();
+    JSONShapeParser ordersParser = JSONShapeParser.compile(ORDERS_SHAPE);
+    JSONShapeParser.Sink counter = (slot, value) -> sink += slot;
+    for (Object[] doc : new Object[][] {{"rest", rest, restParser}, {"orders", ordersText, ordersParser}}) {
+      String text = (String) doc[1];
+      JSONShapeParser parser = (JSONShapeParser) doc[2];
+      long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+      measure("shape.generic." + doc[0], bytes, () -> sink += System.identityHashCode(JSON.parse(text)));
+      measure("shape.tree." + doc[0], bytes, () -> sink += System.identityHashCode(parser.parse(text)));
+      measure("shape.sink." + doc[0], bytes, () -> parser.parse(text, counter));
+    } // for
+  } // shapeBenchmarks()
+
+  /**
+   * JSONSchema checking a parsed array of orders, failing fast and
+   * collecting every error.
+   */
+  static void schemaBenchmarks() throws Exception {
+    JSONValue doc = JSON.parse(orders());
+    JSONSchema schema = JSONSchema.compile(ORDERS_SCHEMA);
+    measure("schema.valid.orders", 0, () -> sink += schema.isValid(doc) ? 1 : 0);
+    measure("schema.errors.orders", 0, () -> sink += schema.validate(doc).size());
+  } // schemaBenchmarks()
+
+  /**
+   * Summing one field of an array of orders row by row and from a
+   * column, and building the columns from a tree and from text.
+   */
+  static void columnBenchmarks() throws Exception {
+    String text = orders();
+    long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+    JSONArray rows = (JSONArray) JSON.parse(text);
+    JSONColumns columns = JSONColumns.of(rows);
+    measure("columns.sum.rows", 0, () -> {
+      double total = 0;
+      for (JSONValue row : rows.getValue()) {
+        total += ((JSONHash) row).get(new JSONString("price")).asDouble(0);
+      } // for
+      sink += (int) total;
+    });
+    measure("columns.sum.column", 0, () -> {
+      double[] prices = columns.get("price").doubles();
+      double total = 0;
+      for (int i = 0; i < prices.length; i++) {
+        total += prices[i];
+      } // for
+      sink += (int) total;
+    });
+    measure("columns.build.tree", 0, () -> sink += JSONColumns.of(rows).rows());
+    measure("columns.build.text", bytes, () -> sink += JSONColumns.read(text).rows());
+    measure("columns.build.text.one", bytes, () -> sink += JSONColumns.read(text, "price").rows());
+  } // columnBenchmarks()
+
+  /**
+   * Parsing onto a tape, and reading a field through a cursor.
+   */
+  static void tapeBenchmarks() throws Exception {
+    for (String[] doc : documents()) {
+      String text = doc[1];
+      long bytes = text.getBytes(StandardCharsets.UTF_8).length;
+      measure("tape.parse." + doc[0], bytes, () -> sink += JSONTape.parse(text).tape.length);
+    } // for
+    JSONTape tape = JSONTape.parse(documents()[0][1]);
+    measure("tape.get.rest", 0, () -> sink += tape.root().get("address").get("city").asString("").length());
+  } // tapeBenchmarks()
+
+  /**
+   * Hashing the canonical form of an array of orders from scratch, and
+   * again after replacing one price in a frozen copy, which reuses the
+   * kept form of the other orders.
+   */
+  static void canonicalBenchmarks() throws Exception {
+    JSONValue doc = JSON.parse(orders());
+    JSONArray frozen = (JSONArray) JSON.parse(orders());
+    frozen.freeze();
+    frozen.canonicalHash();
+    JSONPointer price = JSONPointer.compile("/250/price");
+    measure("canonical.hash.orders", 0, () -> sink += doc.canonicalHash()[0]);
+    measure("canonical.rehash.orders", 0,
+        () -> sink += price.replace(frozen, new JSONReal("1.5")).canonicalHash()[0]);
+  } // canonicalBenchmarks()
+
+  /**
+   * Counting the numbers in a large document with the fork/join walker,
+   * with one worker and with the common pool, and summing a wide hash
+   * with sequential and parallel streams.
+   */
+  static void walkBenchmarks() throws Exception {
+    JSONArray doc = new JSONArray();
+    for (int i = 0; i < 20; i++) {
+      doc.add(JSON.parse(orders()));
+    } // for
+    JSONWalker single = new JSONWalker(new ForkJoinPool(1));
+    JSONWalker common = new JSONWalker();
+    measure("walk.count.one", 0, () -> sink += single.count(doc, (value) -> value instanceof JSONReal));
+    measure("walk.count.common", 0, () -> sink += common.count(doc, (value) -> value instanceof JSONReal));
+    JSONHash wide = new JSONHash();
+    for (int i = 0; i < 100000; i++) {
+      wide.set(new JSONString("k" + i), new JSONInteger(i));
+    } // for
+    measure("stream.hash.sequential", 0, () -> sink += wide.stream().mapToLong((pair) -> pair.value().asLong(0)).sum());
+    measure("stream.hash.parallel", 0,
+        () -> sink += wide.parallelStream().mapToLong((pair) -> pair.value().asLong(0)).sum());
+  } // walkBenchmarks()
+
+  /**
+   * Writing number-heavy documents, and turning doubles into reals as
+   * JSONMapper and generated codecs do.
+   */
+  static void numberBenchmarks() throws Exception {
+    Random rand = new Random(7);
+    double[] doubles = new double[20000];
+    StringBuilder text = new StringBuilder("[");
+    for (int i = 0; i < doubles.length; i++) {
+      doubles[i] = (i % 2 == 0) ? rand.nextInt(100000) / 100.0 : rand.nextDouble() * Math.pow(10, rand.nextInt(12) - 4);
+      text.append((i == 0) ? "" : ", ").append(rand.nextLong() % 1000000000L).append(", ").append(doubles[i]);
+    } // for
+    JSONValue parsed = JSON.parse(text.append("]").toString());
+    JSONArray built = new JSONArray();
+    for (double d : doubles) {
+      built.add(new JSONReal(d));
+    } // for
+    CountingWriter counter = new CountingWriter();
+    PrintWriter pen = new PrintWriter(counter);
+    parsed.writeJSON(pen);
+    long bytes = counter.count;
+    measure("numbers.write.parsed", bytes, () -> parsed.writeJSON(pen));
+    measure("numbers.toString.parsed", bytes, () -> sink += parsed.toString().length());
+    measure("numbers.write.doubles", 0, () -> built.writeJSON(pen));
+    measure("numbers.fromDouble", 0, () -> {
+      for (double d : doubles) {
+        sink += new JSONReal(d).getValue().scale();
+      } // for
+    });
+  } // numberBenchmarks()
+
+  /**
+   * Finding records by id in a large array, by scanning and by index.
+   * Each index op is 1000 lookups.
+   */
+  static void indexBenchmarks() throws Exception {
+    JSONArray rows = new JSONArray();
+    JSONString id = new JSONString("id");
+    for (int i = 0; i < 200000; i++) {
+      JSONHash row = new JSONHash();
+      row.set(id, new JSONInteger(i * 3L));
+      row.set(new JSONString("name"), new JSONString("user" + i));
+      rows.add(row);
+    } // for
+    Random rand = new Random(50);
+    measure("index.scan", 0, () -> {
+      long target = 3L * rand.nextInt(200000);
+      for (int i = 0; i < rows.size(); i++) {
+        if (((JSONHash) rows.get(i)).get(id).asLong(-1) == target) {
+          sink += i;
+          break;
+        } // if
+      } // for
+    });
+    measure("index.build", 0, () -> {
+      JSONIndex index = rows.indexBy("/id", JSONIndex.Option.UNIQUE);
+      rows.dropIndex(index);
+    });
+    JSONIndex index = rows.indexBy("/id", JSONIndex.Option.UNIQUE, JSONIndex.Option.SORTED);
+    measure("index.get.x1000", 0, () -> {
+      for (int i = 0; i < 1000; i++) {
+        sink += index.get(3L * rand.nextInt(200000)).hashCode();
+      } // for
+    });
+    measure("index.range.x1000", 0, () -> {
+      for (int i = 0; i < 1000; i++) {
+        long from = 3L * rand.nextInt(200000);
+        sink += index.range(from, from + 30).size();
+      } // for
+    });
+  } // indexBenchmarks()
+
+  // +-----------+---------------------------------------------------
+  // | Documents |
+  // +-----------+
+
+  /**
+   * The sample documents, as {name, text} pairs. Generated from a fixed
+   * seed so every run sees the same input.
+   */
+  static String[][] documents() {
+    Random rand = new Random(42);
+    ArrayList<String[]> docs = new ArrayList<String[]>();
+
+    // a small REST-style payload
+    docs.add(new String[] {"rest",
+        "{\"id\": 48213, \"name\": \"Ada Lovelace\", \"email\": \"ada@example.com\","
+        + " \"active\": true, \"score\": 97.5, \"tags\": [\"admin\", \"math\", \"poet\"],"
+        + " \"address\": {\"street\": \"12 St James's Square\", \"city\": \"London\","
+        + " \"zip\": null}, \"logins\": [1699999999, 1700000123, 1700009999]}"});
+
+    // a wide object
+    StringBuilder wide = new StringBuilder("{");
+    for (int i = 0; i < 1000; i++) {
+      wide.append(i == 0 ? "" : ", ").append("\"field").append(i).append("\": ").append(rand.nextInt(100000));
+    } // for
+    docs.add(new String[] {"wide", wide.append("}").toString()});
+
+    // deep nesting
+    StringBuilder deep = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      deep.append((i % 2 == 0) ? "{\"k\": " : "[");
+    } // for
+    deep.append("0");
+    for (int i = 199; i >= 0; i--) {
+      deep.append((i % 2 == 0) ? "}" : "]");
+    } // for
+    docs.add(new String[] {"deep", deep.toString()});
+
+    // lots of numbers
+    StringBuilder numbers = new StringBuilder("[");
+    for (int i = 0; i < 5000; i++) {
+      numbers.append(i == 0 ? "" : ", ");
+      if (i % 2 == 0) {
+        numbers.append(rand.nextLong() % 1000000000L);
+      } else {
+        numbers.append(rand.nextDouble() * 1000).append("e").append(rand.nextInt(20) - 10);
+      } // if-else
+    } // for
+    docs.add(new String[] {"numbers", numbers.append("]").toString()});
+
+    // lots of escapes
+    StringBuilder escapes = new StringBuilder("[");
+    for (int i = 0; i < 500; i++) {
+      escapes.append(i == 0 ? "" : ", ")
+          .append("\"line\\none\\ttab \\\"quoted\\\" \\\\ \\u00e9\\u4e2d slash\\/ end\"");
+    } // for
+    docs.add(new String[] {"escapes", escapes.append("]").toString()});
+
+    // nesting deep enough to overflow a recursive parser or writer
+    StringBuilder nested = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      nested.append((i % 2 == 0) ? "{\"k\": " : "[");
+    } // for
+    nested.append("0");
+    for (int i = 4999; i >= 0; i--) {
+      nested.append((i % 2 == 0) ? "}" : "]");
+    } // for
+    docs.add(new String[] {"nested", nested.toString()});
+
+    return docs.toArray(new String[0][]);
+  } // documents()
+
+  /**
+   * An array of 500 small orders, all of the same shape.
+   */
+  static String orders() {
+    Random rand = new Random(42);
+    StringBuilder orders = new StringBuilder("[");
+    for (int i = 0; i < 500; i++) {
+      orders.append((i == 0) ? "" : ", ").append("{\"id\": ").append(i)
+          .append(", \"status\": \"").append(rand.nextBoolean() ? "open" : "shipped")
+          .append("\", \"sku\": \"SKU-").append(rand.nextInt(10000))
+          .append("\", \"qty\": ").append(rand.nextInt(10))
+          .append(", \"price\": ").append(rand.nextInt(10000) / 100.0).append("}");
+    } // for
+    return orders.append("]").toString();
+  } // orders()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Something to measure.
+   */
+  interface Task {
+    void run() throws Exception;
+  } // interface Task
+
+  /**
+   * Warm up and then time a task, printing one line of results. bytes is
+   * the amount of JSON text each run handles, or 0 if that makes no sense.
+   */
+  static void measure(String name, long bytes, Task task) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    } // if
+    run(task, millis / 2);
+    long threadId = Thread.currentThread().getId();
+    long allocBefore = (threads == null) ? 0 : threads.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    long ops = run(task, millis);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long allocated = (threads == null) ? -1 : threads.getThreadAllocatedBytes(threadId) - allocBefore;
+    double opsPerSecond = ops / seconds;
+    System.out.printf("%-32s %14.1f %10s %14s%n", name, opsPerSecond,
+        (bytes > 0) ? String.format("%.1f", opsPerSecond * bytes / 1e6) : "-",
+        (allocated >= 0) ? String.format("%.0f", (double) allocated / ops) : "n/a");
+  } // measure(String, long, Task)
+
+  /**
+   * Run a task repeatedly for about millis milliseconds. Returns the
+   * number of runs.
+   */
+  static long run(Task task, long millis) throws Exception {
+    long deadline = System.nanoTime() + millis * 1_000_000L;
+    long ops = 0;
+    do {
+      task.run();
+      ops++;
+    } while (System.nanoTime() < deadline);
+    return ops;
+  } // run(Task, long)
+
+  /**
+   * A writer that throws away its output, keeping only a count.
+   */
+  static class CountingWriter extends Writer {
+    long count = 0;
+
+    public void write(char[] buf, int off, int len) {
+      this.count += len;
+    } // write(char[], int, int)
+
+    public void write(String str, int off, int len) {
+      this.count += len;
+    } // write(String, int, int)
+
+    public void flush() {
+    } // flush()
+
+    public void close() {
+    } // close()
+  } // class CountingWriter
+
+} // class JSONBenchmark
@@ -0,0 +1,330 @@
+package src;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Writes JSON in the canonical form of RFC 8785 (the JSON Canonicalization
+ * Scheme): UTF-8, no whitespace, hash keys sorted by their UTF-16 code
+ * units, strings with only the required escapes, and numbers written as
+ * ECMAScript writes doubles. As RFC 8785 requires, every number is first
+ * converted to a double, so integers beyond 2^53 lose precision, and
+ * strings holding unpaired surrogates are rejected.
+ *
+ * Frozen hashes and arrays cannot change, so their canonical bytes are
+ * kept once computed and reused whenever they are written again, as part
+ * of themselves or of a larger document. A document built from a frozen
+ * one with JSONPointer.replace shares every subtree off the changed path,
+ * so canonicalizing it only redoes that path.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONCanonical {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Orders pairs by key, comparing UTF-16 code units.
+   */
+  static final Comparator<KVPair<JSONString, JSONValue>> PAIR_ORDER =
+      Comparator.comparing((KVPair<JSONString, JSONValue> pair) -> pair.key().getValue());
+
+  /**
+   * Hex digits for escaped control characters, which RFC 8785 writes in
+   * lower case.
+   */
+  static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  private JSONCanonical() {
+  } // JSONCanonical()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get the canonical form of a value.
+   *
+   * @throws IllegalArgumentException if a string holds an unpaired
+   *   surrogate, which RFC 8785 cannot express.
+   */
+  public static byte[] bytes(JSONValue value) {
+    byte[] result = canonical(value);
+    return JSONStructure.isContainer(value) ? result.clone() : result;
+  } // bytes(JSONValue)
+
+  /**
+   * Write the canonical form of a value.
+   */
+  public static void write(JSONValue value, OutputStream sink) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(value, out);
+    out.writeTo(sink);
+  } // write(JSONValue, OutputStream)
+
+  /**
+   * Get the canonical form of a value as a string.
+   */
+  public static String toString(JSONValue value) {
+    return new String(canonical(value), StandardCharsets.UTF_8);
+  } // toString(JSONValue)
+
+  /**
+   * Get the SHA-256 digest of the canonical form of a value.
+   */
+  public static byte[] hash(JSONValue value) {
+    return sha256(canonical(value));
+  } // hash(JSONValue)
+
+  /**
+   * Write a double as ECMAScript's Number.prototype.toString does: the
+   * fewest digits that read back as the same double, in plain notation
+   * from 1e-6 up to 1e21 and in exponent notation beyond.
+   *
+   * @throws IllegalArgumentException if d is NaN or infinite, which JSON
+   *   cannot express.
+   */
+  public static String number(double d) {
+    char[] buf = new char[32];
+    return new String(buf, 0, writeNumber(d, buf));
+  } // number(double)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the canonical form of a value, which for a frozen container may
+   * be the bytes it keeps, and so must not be changed.
+   */
+  static byte[] canonical(JSONValue value) {
+    byte[] kept = null;
+    if (value instanceof JSONHash) {
+      kept = ((JSONHash) value).canonical;
+    } else if (value instanceof JSONArray) {
+      kept = ((JSONArray) value).canonical;
+    } // if-else
+    if (kept != null) {
+      return kept;
+    } // if
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(value, out);
+    return out.toByteArray();
+  } // canonical(JSONValue)
+
+  /**
+   * Compute a SHA-256 digest.
+   */
+  static byte[] sha256(byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform must provide SHA-256
+      throw new IllegalStateException(e);
+    } // try-catch
+  } // sha256(byte[])
+
+  /**
+   * Write the canonical form of a value to out. Nested values are kept
+   * on an explicit stack, so deep nesting cannot overflow the call stack.
+   * Each frozen container is written to a buffer of its own, whose bytes
+   * it then keeps.
+   */
+  static void write(JSONValue value, ByteArrayOutputStream out) {
+    ArrayList<Frame> stack = new ArrayList<Frame>();
+    if (!open(value, out, stack)) {
+      scalar(value, out);
+    } // if
+    while (!stack.isEmpty()) {
+      Frame frame = stack.get(stack.size() - 1);
+      if (frame.next == frame.members.length) {
+        frame.out.write((frame.container instanceof JSONHash) ? '}' : ']');
+        stack.remove(stack.size() - 1);
+        if (frame.out != frame.parent) {
+          byte[] bytes = frame.out.toByteArray();
+          keep(frame.container, bytes);
+          frame.parent.write(bytes, 0, bytes.length);
+        } // if
+        continue;
+      } // if
+      if (frame.next > 0) {
+        frame.out.write(',');
+      } // if
+      Object member = frame.members[frame.next++];
+      JSONValue child;
+      if (member instanceof KVPair) {
+        @SuppressWarnings("unchecked")
+        KVPair<JSONString, JSONValue> pair = (KVPair<JSONString, JSONValue>) member;
+        string(pair.key().getValue(), frame.out);
+        frame.out.write(':');
+        child = pair.value();
+      } else {
+        child = (JSONValue) member;
+      } // if-else
+      if (!open(child, frame.out, stack)) {
+        scalar(child, frame.out);
+      } // if
+    } // while
+  } // write(JSONValue, ByteArrayOutputStream)
+
+  /**
+   * If value is a hash or array, either write its kept bytes or push a
+   * frame for it. Returns false if it is neither.
+   */
+  static boolean open(JSONValue value, ByteArrayOutputStream out, ArrayList<Frame> stack) {
+    byte[] kept;
+    boolean frozen;
+    Object[] members;
+    if (value instanceof JSONHash) {
+      JSONHash hash = (JSONHash) value;
+      kept = hash.canonical;
+      frozen = hash.isFrozen();
+      if (kept == null) {
+        ArrayList<KVPair<JSONString, JSONValue>> pairs = new ArrayList<KVPair<JSONString, JSONValue>>(hash.size());
+        Iterator<KVPair<JSONString, JSONValue>> iterator = hash.iterator();
+        while (iterator.hasNext()) {
+          pairs.add(iterator.next());
+        } // while
+        pairs.sort(PAIR_ORDER);
+        members = pairs.toArray();
+      } else {
+        members = null;
+      } // if-else
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      kept = array.canonical;
+      frozen = array.isFrozen();
+      members = (kept == null) ? array.values.toArray() : null;
+    } else {
+      return false;
+    } // if-else
+    if (kept != null) {
+      out.write(kept, 0, kept.length);
+      return true;
+    } // if
+    ByteArrayOutputStream own = frozen ? new ByteArrayOutputStream() : out;
+    own.write((value instanceof JSONHash) ? '{' : '[');
+    stack.add(new Frame(value, members, own, out));
+    return true;
+  } // open(JSONValue, ByteArrayOutputStream, ArrayList<Frame>)
+
+  /**
+   * Keep the canonical bytes of a frozen container.
+   */
+  static void keep(JSONValue container, byte[] bytes) {
+    if (container instanceof JSONHash) {
+      ((JSONHash) container).canonical = bytes;
+    } else {
+      ((JSONArray) container).canonical = bytes;
+    } // if-else
+  } // keep(JSONValue, byte[])
+
+  /**
+   * Write a string, number or constant.
+   */
+  static void scalar(JSONValue value, ByteArrayOutputStream out) {
+    char[] buf = new char[32];
+    int end;
+    if (value instanceof JSONString) {
+      string(((JSONString) value).getValue(), out);
+      return;
+    } else if (value instanceof JSONInteger) {
+      BigInteger n = ((JSONInteger) value).getValue();
+      // up to 2^53 the double is exact and ECMAScript writes every digit
+      end = (n.bitLength() <= 53) ? JSONNumbers.writeLong(n.longValue(), buf, 0)
+          : writeNumber(n.doubleValue(), buf);
+    } else if (value instanceof JSONReal) {
+      end = writeNumber(((JSONReal) value).getValue().doubleValue(), buf);
+    } else {
+      // true, false or null
+      String text = value.toString();
+      end = text.length();
+      text.getChars(0, end, buf, 0);
+    } // if-else
+    for (int i = 0; i < end; i++) {
+      out.write(buf[i]);
+    } // for
+  } // scalar(JSONValue, ByteArrayOutputStream)
+
+  /**
+   * Write a double, which must be finite, into buf as number does.
+   * Returns the number of chars.
+   */
+  static int writeNumber(double d, char[] buf) {
+    if (Double.isNaN(d) || Double.isInfinite(d)) {
+      throw new IllegalArgumentException("JSON has no representation for " + d);
+    } // if
+    return JSONNumbers.writeECMAScript(d, buf, 0);
+  } // writeNumber(double, char[])
+
+  /**
+   * Write a quoted string, escaping only what RFC 8785 requires.
+   */
+  static void string(String value, ByteArrayOutputStream out) {
+    StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char ch = value.charAt(i);
+      String escape = JSONString.escape(ch);
+      if (escape != null) {
+        result.append(escape);
+      } else if (Character.isHighSurrogate(ch) && (i + 1 < value.length())
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        result.append(ch).append(value.charAt(++i));
+      } else if (Character.isSurrogate(ch)) {
+        throw new IllegalArgumentException("Cannot canonicalize the unpaired surrogate \\u"
+            + Integer.toHexString(ch) + " at index " + i);
+      } else {
+        result.append(ch);
+      } // if-else
+    } // for
+    byte[] bytes = result.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    out.write(bytes, 0, bytes.length);
+  } // string(String, ByteArrayOutputStream)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A hash or array being written.
+   */
+  static final class Frame {
+    final JSONValue container;
+
+    /**
+     * The pairs of a hash, sorted, or the elements of an array, and the
+     * position of the next to write.
+     */
+    final Object[] members;
+    int next = 0;
+
+    /**
+     * Where this container is written, and where its parent is. They
+     * differ for frozen containers, whose bytes are kept.
+     */
+    final ByteArrayOutputStream out;
+    final ByteArrayOutputStream parent;
+
+    Frame(JSONValue container, Object[] members, ByteArrayOutputStream out, ByteArrayOutputStream parent) {
+      this.container = container;
+      this.members = members;
+      this.out = out;
+      this.parent = parent;
+    } // Frame(JSONValue, Object[], ByteArrayOutputStream, ByteArrayOutputStream)
+  } // class Frame
+
+} // class JSONCanonical
@@ -0,0 +1,640 @@
+package src;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * An array of hashes turned into columns, one per key, in a single pass.
+ * Integers are stored in a long[], reals in a double[], booleans as 0 or
+ * 1 in a long[] and strings as int codes into a dictionary, with a bitmap
+ * of the rows that are null or missing. Scans and sums over a column then
+ * touch only its primitive array.
+ *
+ * A column holding integers switches to doubles when a real appears.
+ * Values that fit no primitive column, such as integers too big for a
+ * long, nested arrays and hashes, or a mix of strings and numbers, make
+ * the column hold JSONValues instead. Each column keeps the count of its
+ * non-null values and, for numbers, their minimum and maximum.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONColumns {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The columns, in the order they were asked for or first seen.
+   */
+  final ArrayList<Column> columns = new ArrayList<Column>();
+
+  /**
+   * The columns by key.
+   */
+  final HashMap<String, Column> byName = new HashMap<String, Column>();
+
+  /**
+   * Whether keys not asked for get columns too.
+   */
+  final boolean everyKey;
+
+  /**
+   * The number of rows.
+   */
+  int rows = 0;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Set up columns for names, or for every key seen if there are none.
+   */
+  JSONColumns(String[] names) {
+    this.everyKey = (names.length == 0);
+    for (String name : names) {
+      if (this.byName.containsKey(name)) {
+        throw new IllegalArgumentException("Column " + name + " is asked for more than once");
+      } // if
+      column(name);
+    } // for
+  } // JSONColumns(String[])
+
+  /**
+   * Convert an array of hashes to columns for the given keys, or for
+   * every key if none are given.
+   *
+   * @throws IllegalArgumentException if a name is given twice, or an
+   *   element is not a hash (or null, which counts as a row of nulls).
+   */
+  public static JSONColumns of(JSONArray rows, String... names) {
+    JSONColumns result = new JSONColumns(names);
+    JSONString[] keys = new JSONString[names.length];
+    for (int i = 0; i < names.length; i++) {
+      keys[i] = new JSONString(names[i]);
+      keys[i].seededHash();
+    } // for
+    ArrayList<JSONValue> elements = rows.getValue();
+    for (int row = 0; row < elements.size(); row++) {
+      JSONValue element = elements.get(row);
+      if (element instanceof JSONHash) {
+        JSONHash hash = (JSONHash) element;
+        if (result.everyKey) {
+          Iterator<KVPair<JSONString, JSONValue>> pairs = hash.iterator();
+          while (pairs.hasNext()) {
+            KVPair<JSONString, JSONValue> pair = pairs.next();
+            result.column(pair.key().getValue()).add(row, pair.value());
+          } // while
+        } else {
+          for (int i = 0; i < keys.length; i++) {
+            result.columns.get(i).add(row, hash.getOrNull(keys[i]));
+          } // for
+        } // if-else
+      } else if (element != JSONConstant.NULL) {
+        throw new IllegalArgumentException("Row " + row + " is not a hash: " + element);
+      } // if-else
+    } // for
+    result.finish(elements.size());
+    return result;
+  } // of(JSONArray, String...)
+
+  /**
+   * Read an array of hashes straight into columns, without building the
+   * hashes, for the given keys or for every key if none are given. Keys
+   * not asked for are skipped. If a key appears twice in one hash, the
+   * first value is kept.
+   *
+   * @throws IllegalArgumentException if a name is given twice.
+   */
+  public static JSONColumns read(JSONReader in, String... names) throws Exception {
+    JSONColumns result = new JSONColumns(names);
+    int row = 0;
+    if (in.beginArray()) {
+      while (in.hasNext()) {
+        if (in.beginHash()) {
+          while (in.hasNext()) {
+            Column column = result.everyKey ? result.column(in.nextKey()) : result.byName.get(in.nextKey());
+            if ((column == null) || (column.size > row)) {
+              in.skipValue();
+            } else {
+              column.add(row, in.nextValue());
+            } // if-else
+          } // while
+        } // if
+        row++;
+      } // while
+    } // if
+    result.finish(row);
+    return result;
+  } // read(JSONReader, String...)
+
+  /**
+   * Read an array of hashes from text straight into columns.
+   */
+  public static JSONColumns read(String text, String... names) throws Exception {
+    JSONReader in = new JSONReader(text);
+    JSONColumns result = read(in, names);
+    in.end();
+    return result;
+  } // read(String, String...)
+
+  /**
+   * Read an array of hashes from a reader straight into columns.
+   */
+  public static JSONColumns read(Reader source, String... names) throws Exception {
+    JSONReader in = new JSONReader(source);
+    JSONColumns result = read(in, names);
+    in.end();
+    return result;
+  } // read(Reader, String...)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of rows.
+   */
+  public int rows() {
+    return this.rows;
+  } // rows()
+
+  /**
+   * Get the number of columns.
+   */
+  public int size() {
+    return this.columns.size();
+  } // size()
+
+  /**
+   * Get a column by position.
+   */
+  public Column column(int i) {
+    return this.columns.get(i);
+  } // column(int)
+
+  /**
+   * Get a column by key, or null if there is none.
+   */
+  public Column get(String name) {
+    return this.byName.get(name);
+  } // get(String)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the column for a key, adding it if need be.
+   */
+  Column column(String name) {
+    Column column = this.byName.get(name);
+    if (column == null) {
+      column = new Column(name);
+      this.columns.add(column);
+      this.byName.put(name, column);
+    } // if
+    return column;
+  } // column(String)
+
+  /**
+   * Pad every column out to the last row and trim its arrays.
+   */
+  void finish(int rows) {
+    this.rows = rows;
+    for (Column column : this.columns) {
+      column.finish(rows);
+    } // for
+  } // finish(int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * What a column holds.
+   */
+  public enum Kind {
+    /** Nothing but nulls. */
+    EMPTY,
+    /** Integers, in longs(). */
+    LONG,
+    /** Numbers, in doubles(). */
+    DOUBLE,
+    /** Booleans, as 0 or 1 in longs(). */
+    BOOLEAN,
+    /** Strings, as codes() into dictionary(). */
+    STRING,
+    /** Anything else, in values(). */
+    VALUE
+  } // enum Kind
+
+  /**
+   * The values of one key, by row.
+   */
+  public static final class Column {
+    /**
+     * The key.
+     */
+    final String name;
+
+    /**
+     * What the column holds, and so which array is in use.
+     */
+    Kind kind = Kind.EMPTY;
+
+    /**
+     * The number of rows filled so far.
+     */
+    int size = 0;
+
+    /**
+     * The values, in whichever array suits the kind.
+     */
+    long[] longs;
+    double[] doubles;
+    int[] codes;
+    JSONValue[] values;
+
+    /**
+     * The strings, by code, and the code of each.
+     */
+    ArrayList<String> dictionary;
+    HashMap<String, Integer> codeOf;
+
+    /**
+     * One bit per row, set if the row is null or missing.
+     */
+    long[] nulls = new long[1];
+
+    /**
+     * The statistics.
+     */
+    int count = 0;
+    long minLong = Long.MAX_VALUE;
+    long maxLong = Long.MIN_VALUE;
+    double min = Double.NaN;
+    double max = Double.NaN;
+
+    Column(String name) {
+      this.name = name;
+    } // Column(String)
+
+    // +-----------+-------------------------------------------------
+    // | Accessors |
+    // +-----------+
+
+    /**
+     * Get the key.
+     */
+    public String name() {
+      return this.name;
+    } // name()
+
+    /**
+     * Get what the column holds.
+     */
+    public Kind kind() {
+      return this.kind;
+    } // kind()
+
+    /**
+     * Determine whether a row is null or missing.
+     */
+    public boolean isNull(int row) {
+      return (this.nulls[row >>> 6] & (1L << row)) != 0;
+    } // isNull(int)
+
+    /**
+     * Get the null bitmap: bit (row % 64) of word (row / 64) is set if the
+     * row is null or missing.
+     */
+    public long[] nulls() {
+      return this.nulls;
+    } // nulls()
+
+    /**
+     * Get the integers of a LONG or BOOLEAN column, by row; null rows
+     * hold 0.
+     */
+    public long[] longs() {
+      check(this.kind == Kind.LONG || this.kind == Kind.BOOLEAN, "longs");
+      return this.longs;
+    } // longs()
+
+    /**
+     * Get the numbers of a DOUBLE column, by row; null rows hold 0.
+     */
+    public double[] doubles() {
+      check(this.kind == Kind.DOUBLE, "doubles");
+      return this.doubles;
+    } // doubles()
+
+    /**
+     * Get the codes of a STRING column, by row; null rows hold -1.
+     */
+    public int[] codes() {
+      check(this.kind == Kind.STRING, "codes");
+      return this.codes;
+    } // codes()
+
+    /**
+     * Get the strings of a STRING column, indexed by code.
+     */
+    public String[] dictionary() {
+      check(this.kind == Kind.STRING, "a dictionary");
+      return this.dictionary.toArray(new String[0]);
+    } // dictionary()
+
+    /**
+     * Get the values of a VALUE column, by row; null rows hold null.
+     */
+    public JSONValue[] values() {
+      check(this.kind == Kind.VALUE, "values");
+      return this.values;
+    } // values()
+
+    /**
+     * Get a row as a double, or 0 if it is null. Works for LONG, DOUBLE
+     * and BOOLEAN columns.
+     */
+    public double getDouble(int row) {
+      return (this.kind == Kind.DOUBLE) ? this.doubles[row] : longs()[row];
+    } // getDouble(int)
+
+    /**
+     * Get a row as a string, or null.
+     */
+    public String getString(int row) {
+      int code = codes()[row];
+      return (code < 0) ? null : this.dictionary.get(code);
+    } // getString(int)
+
+    /**
+     * Get a row as a JSON value, or null if it is null or missing.
+     */
+    public JSONValue get(int row) {
+      if (isNull(row)) {
+        return null;
+      } // if
+      switch (this.kind) {
+        case LONG:
+          return new JSONInteger(this.longs[row]);
+        case DOUBLE:
+          return new JSONReal(this.doubles[row]);
+        case BOOLEAN:
+          return (this.longs[row] != 0) ? JSONConstant.TRUE : JSONConstant.FALSE;
+        case STRING:
+          return new JSONString(this.dictionary.get(this.codes[row]));
+        case VALUE:
+          return this.values[row];
+        default:
+          return null;
+      } // switch
+    } // get(int)
+
+    /**
+     * Get the number of rows that are not null.
+     */
+    public int count() {
+      return this.count;
+    } // count()
+
+    /**
+     * Get the least number, or NaN if there are none.
+     */
+    public double min() {
+      return this.min;
+    } // min()
+
+    /**
+     * Get the greatest number, or NaN if there are none.
+     */
+    public double max() {
+      return this.max;
+    } // max()
+
+    /**
+     * Get the least integer of a LONG column.
+     */
+    public long minLong() {
+      check(this.kind == Kind.LONG, "integer statistics");
+      return this.minLong;
+    } // minLong()
+
+    /**
+     * Get the greatest integer of a LONG column.
+     */
+    public long maxLong() {
+      check(this.kind == Kind.LONG, "integer statistics");
+      return this.maxLong;
+    } // maxLong()
+
+    /**
+     * Get the number of different strings in a STRING column.
+     */
+    public int distinct() {
+      check(this.kind == Kind.STRING, "a dictionary");
+      return this.dictionary.size();
+    } // distinct()
+
+    /**
+     * Convert to a string, for debugging.
+     */
+    public String toString() {
+      return this.name + " (" + this.kind + ", " + this.count + " of " + this.size + ")";
+    } // toString()
+
+    // +---------+---------------------------------------------------
+    // | Helpers |
+    // +---------+
+
+    /**
+     * Reject a request that does not suit the kind.
+     */
+    void check(boolean ok, String what) {
+      if (!ok) {
+        throw new IllegalStateException("Column " + this.name + " is " + this.kind + " and has no " + what);
+      } // if
+    } // check(boolean, String)
+
+    /**
+     * Store the value of a row, filling any rows skipped with nulls.
+     */
+    void add(int row, JSONValue value) {
+      while (this.size < row) {
+        addNull();
+      } // while
+      if ((value == null) || (value == JSONConstant.NULL)) {
+        addNull();
+        return;
+      } // if
+      this.count++;
+      Kind kind = kindOf(value);
+      if ((kind == Kind.LONG) && (this.kind == Kind.DOUBLE)) {
+        kind = Kind.DOUBLE;
+      } else if ((kind == Kind.DOUBLE) && (this.kind == Kind.LONG)) {
+        convert(Kind.DOUBLE);
+      } else if (this.kind == Kind.EMPTY) {
+        convert(kind);
+      } else if (kind != this.kind) {
+        convert(Kind.VALUE);
+      } // if-else
+      if (this.kind == Kind.VALUE) {
+        kind = Kind.VALUE;
+      } // if
+      grow();
+      int i = this.size++;
+      switch (kind) {
+        case LONG:
+          long n = value.asLong(0);
+          this.longs[i] = n;
+          this.minLong = Math.min(this.minLong, n);
+          this.maxLong = Math.max(this.maxLong, n);
+          note(n);
+          break;
+        case DOUBLE:
+          double d = value.asDouble(0);
+          this.doubles[i] = d;
+          note(d);
+          break;
+        case BOOLEAN:
+          this.longs[i] = (value == JSONConstant.TRUE) ? 1 : 0;
+          break;
+        case STRING:
+          String string = ((JSONString) value).getValue();
+          Integer code = this.codeOf.get(string);
+          if (code == null) {
+            code = this.dictionary.size();
+            this.dictionary.add(string);
+            this.codeOf.put(string, code);
+          } // if
+          this.codes[i] = code;
+          break;
+        default:
+          this.values[i] = value;
+          if ((value instanceof JSONInteger) || (value instanceof JSONReal)) {
+            note(value.asDouble(0));
+          } // if
+          break;
+      } // switch
+    } // add(int, JSONValue)
+
+    /**
+     * Store a null row.
+     */
+    void addNull() {
+      grow();
+      int i = this.size++;
+      if (this.codes != null) {
+        this.codes[i] = -1;
+      } // if
+      if ((i >>> 6) >= this.nulls.length) {
+        this.nulls = Arrays.copyOf(this.nulls, this.nulls.length * 2);
+      } // if
+      this.nulls[i >>> 6] |= 1L << i;
+    } // addNull()
+
+    /**
+     * Fold a number into the minimum and maximum.
+     */
+    void note(double d) {
+      if (Double.isNaN(this.min) || (d < this.min)) {
+        this.min = d;
+      } // if
+      if (Double.isNaN(this.max) || (d > this.max)) {
+        this.max = d;
+      } // if
+    } // note(double)
+
+    /**
+     * Get the kind of column a value would suit.
+     */
+    static Kind kindOf(JSONValue value) {
+      if (value instanceof JSONInteger) {
+        return (((JSONInteger) value).getValue().bitLength() <= 63) ? Kind.LONG : Kind.VALUE;
+      } else if (value instanceof JSONReal) {
+        return Kind.DOUBLE;
+      } else if ((value == JSONConstant.TRUE) || (value == JSONConstant.FALSE)) {
+        return Kind.BOOLEAN;
+      } else if (value instanceof JSONString) {
+        return Kind.STRING;
+      } // if-else
+      return Kind.VALUE;
+    } // kindOf(JSONValue)
+
+    /**
+     * Move the rows so far into the array for another kind.
+     */
+    void convert(Kind kind) {
+      int capacity = Math.max(16, this.size);
+      if (kind == Kind.DOUBLE) {
+        this.doubles = new double[capacity];
+        for (int i = 0; (this.longs != null) && (i < this.size); i++) {
+          this.doubles[i] = this.longs[i];
+        } // for
+      } else if ((kind == Kind.LONG) || (kind == Kind.BOOLEAN)) {
+        this.longs = new long[capacity];
+      } else if (kind == Kind.STRING) {
+        this.codes = new int[capacity];
+        Arrays.fill(this.codes, 0, this.size, -1);
+        this.dictionary = new ArrayList<String>();
+        this.codeOf = new HashMap<String, Integer>();
+      } else {
+        this.values = new JSONValue[capacity];
+        for (int i = 0; i < this.size; i++) {
+          this.values[i] = get(i);
+        } // for
+        this.codes = null;
+        this.dictionary = null;
+        this.codeOf = null;
+      } // if-else
+      if (kind != Kind.LONG && kind != Kind.BOOLEAN) {
+        this.longs = null;
+      } // if
+      if (kind != Kind.DOUBLE) {
+        this.doubles = null;
+      } // if
+      this.kind = kind;
+    } // convert(Kind)
+
+    /**
+     * Make room for one more row.
+     */
+    void grow() {
+      if (this.longs != null && this.size == this.longs.length) {
+        this.longs = Arrays.copyOf(this.longs, this.size * 2);
+      } else if (this.doubles != null && this.size == this.doubles.length) {
+        this.doubles = Arrays.copyOf(this.doubles, this.size * 2);
+      } else if (this.codes != null && this.size == this.codes.length) {
+        this.codes = Arrays.copyOf(this.codes, this.size * 2);
+      } else if (this.values != null && this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, this.size * 2);
+      } // if-else
+    } // grow()
+
+    /**
+     * Fill with nulls up to rows and trim the arrays to fit.
+     */
+    void finish(int rows) {
+      while (this.size < rows) {
+        addNull();
+      } // while
+      this.nulls = Arrays.copyOf(this.nulls, (rows + 63) >>> 6);
+      if (this.longs != null) {
+        this.longs = Arrays.copyOf(this.longs, rows);
+      } else if (this.doubles != null) {
+        this.doubles = Arrays.copyOf(this.doubles, rows);
+      } else if (this.codes != null) {
+        this.codes = Arrays.copyOf(this.codes, rows);
+      } else if (this.values != null) {
+        this.values = Arrays.copyOf(this.values, rows);
+      } // if-else
+    } // finish(int)
+  } // class Column
+
+} // class JSONColumns
@@ -102,4 +102,14 @@ public class JSONConstant implements JSONValue {
     return this.value;
   } // getValue()
 
+  /**
+   * Get the value as a boolean, or otherwise if this is null.
+   */
+  public boolean asBoolean(boolean otherwise) {
+    if (this.value instanceof Boolean) {
+      return (Boolean) this.value;
+    } // if
+    return otherwise;
+  } // asBoolean(boolean)
+
 } // class JSONConstant
@@ -0,0 +1,309 @@
+package src;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic JSON documents for benchmarking. The
+ * same seed and settings always give the same bytes. Documents are
+ * written straight to a Writer, so they can be far larger than the heap.
+ *
+ * Each document is a top-level array of records, continued until it
+ * reaches the requested size. Records are nested objects and arrays
+ * whose shape is controlled by the settings below.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JSONCorpus {
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Words used for keys and string contents.
+   */
+  static final String[] WORDS = {"id", "name", "value", "items", "price",
+      "status", "created", "owner", "tags", "count", "label", "data", "meta",
+      "type", "score", "enabled", "parent", "children", "text", "url"};
+
+  /**
+   * Non-ASCII characters used when adding unicode, including a surrogate
+   * pair.
+   */
+  static final String[] UNICODE = {"\u00e9", "\u00fc", "\u03bb", "\u4e2d",
+      "\u6587", "\u20ac", "\ud83d\ude00"};
+
+  /**
+   * The escapes we use, as written in JSON.
+   */
+  static final String[] ESCAPES = {"\\n", "\\t", "\\\"", "\\\\", "\\/",
+      "\\r", "\\b", "\\f", "\\u00e9", "\\u0041"};
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The seed for the first document. Document i uses seed + i.
+   */
+  long seed = 1;
+
+  /**
+   * The deepest a record may nest.
+   */
+  int maxDepth = 5;
+
+  /**
+   * The most members an object or array in a record may have.
+   */
+  int fanOut = 8;
+
+  /**
+   * The mean string length. Lengths are exponentially distributed.
+   */
+  int meanStringLength = 16;
+
+  /**
+   * The fraction of numbers that are reals rather than integers.
+   */
+  double realFraction = 0.3;
+
+  /**
+   * The chance that any one character of a string is an escape.
+   */
+  double escapeDensity = 0.02;
+
+  /**
+   * The chance that any one character of a string is non-ASCII.
+   */
+  double unicodeDensity = 0.02;
+
+  /**
+   * The approximate size of each document, in characters.
+   */
+  long documentSize = 64 * 1024;
+
+  /**
+   * The number of characters written so far in the current document.
+   */
+  long written;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a generator with the default settings.
+   */
+  public JSONCorpus() {
+  } // JSONCorpus()
+
+  // +----------+----------------------------------------------------
+  // | Settings |
+  // +----------+
+
+  /**
+   * Set the seed for the first document.
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  } // setSeed(long)
+
+  /**
+   * Set the deepest a record may nest.
+   */
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth;
+  } // setMaxDepth(int)
+
+  /**
+   * Set the most members an object or array may have.
+   */
+  public void setFanOut(int fanOut) {
+    this.fanOut = fanOut;
+  } // setFanOut(int)
+
+  /**
+   * Set the mean string length.
+   */
+  public void setMeanStringLength(int meanStringLength) {
+    this.meanStringLength = meanStringLength;
+  } // setMeanStringLength(int)
+
+  /**
+   * Set the fraction of numbers that are reals.
+   */
+  public void setRealFraction(double realFraction) {
+    this.realFraction = realFraction;
+  } // setRealFraction(double)
+
+  /**
+   * Set the chance that a string character is an escape.
+   */
+  public void setEscapeDensity(double escapeDensity) {
+    this.escapeDensity = escapeDensity;
+  } // setEscapeDensity(double)
+
+  /**
+   * Set the chance that a string character is non-ASCII.
+   */
+  public void setUnicodeDensity(double unicodeDensity) {
+    this.unicodeDensity = unicodeDensity;
+  } // setUnicodeDensity(double)
+
+  /**
+   * Set the approximate size of each document, in characters.
+   */
+  public void setDocumentSize(long documentSize) {
+    this.documentSize = documentSize;
+  } // setDocumentSize(long)
+
+  // +------------+--------------------------------------------------
+  // | Generating |
+  // +------------+
+
+  /**
+   * Write documents doc0000.json, doc0001.json, ... into dir.
+   */
+  public void writeFiles(Path dir, int count) throws IOException {
+    Files.createDirectories(dir);
+    for (int i = 0; i < count; i++) {
+      Path file = dir.resolve(String.format("doc%04d.json", i));
+      try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+        writeDocument(out, i);
+      } // try
+    } // for
+  } // writeFiles(Path, int)
+
+  /**
+   * Generate document number index as a string.
+   */
+  public String document(int index) throws IOException {
+    StringWriter out = new StringWriter();
+    writeDocument(out, index);
+    return out.toString();
+  } // document(int)
+
+  /**
+   * Write document number index.
+   */
+  public void writeDocument(Writer out, int index) throws IOException {
+    Random rand = new Random(this.seed + index);
+    this.written = 0;
+    emit(out, "[");
+    do {
+      if (this.written > 1) {
+        emit(out, ",\n");
+      } // if
+      writeObject(out, rand, 1);
+    } while (this.written < this.documentSize);
+    emit(out, "]\n");
+  } // writeDocument(Writer, int)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Write any value at the given depth.
+   */
+  void writeValue(Writer out, Random rand, int depth) throws IOException {
+    int choice = rand.nextInt(10);
+    if ((depth < this.maxDepth) && (choice < 2)) {
+      writeObject(out, rand, depth + 1);
+    } else if ((depth < this.maxDepth) && (choice < 4)) {
+      writeArray(out, rand, depth + 1);
+    } else if (choice < 7) {
+      writeString(out, rand);
+    } else if (choice < 9) {
+      writeNumber(out, rand);
+    } else {
+      emit(out, new String[] {"true", "false", "null"}[rand.nextInt(3)]);
+    } // if-else
+  } // writeValue(Writer, Random, int)
+
+  /**
+   * Write an object.
+   */
+  void writeObject(Writer out, Random rand, int depth) throws IOException {
+    int members = 1 + rand.nextInt(this.fanOut);
+    emit(out, "{");
+    for (int i = 0; i < members; i++) {
+      if (i > 0) {
+        emit(out, ", ");
+      } // if
+      // number the keys so they are unique within the object
+      emit(out, "\"" + WORDS[rand.nextInt(WORDS.length)] + i + "\": ");
+      writeValue(out, rand, depth);
+    } // for
+    emit(out, "}");
+  } // writeObject(Writer, Random, int)
+
+  /**
+   * Write an array.
+   */
+  void writeArray(Writer out, Random rand, int depth) throws IOException {
+    int members = rand.nextInt(this.fanOut + 1);
+    emit(out, "[");
+    for (int i = 0; i < members; i++) {
+      if (i > 0) {
+        emit(out, ", ");
+      } // if
+      writeValue(out, rand, depth);
+    } // for
+    emit(out, "]");
+  } // writeArray(Writer, Random, int)
+
+  /**
+   * Write a string with exponentially distributed length.
+   */
+  void writeString(Writer out, Random rand) throws IOException {
+    int length = (int) (-Math.log(1 - rand.nextDouble()) * this.meanStringLength);
+    StringBuilder result = new StringBuilder(length + 2);
+    result.append('"');
+    for (int i = 0; i < length; i++) {
+      double p = rand.nextDouble();
+      if (p < this.escapeDensity) {
+        result.append(ESCAPES[rand.nextInt(ESCAPES.length)]);
+      } else if (p < this.escapeDensity + this.unicodeDensity) {
+        result.append(UNICODE[rand.nextInt(UNICODE.length)]);
+      } else if (rand.nextInt(6) == 0) {
+        result.append(' ');
+      } else {
+        result.append((char) ('a' + rand.nextInt(26)));
+      } // if-else
+    } // for
+    result.append('"');
+    emit(out, result.toString());
+  } // writeString(Writer, Random)
+
+  /**
+   * Write an integer or a real.
+   */
+  void writeNumber(Writer out, Random rand) throws IOException {
+    if (rand.nextDouble() < this.realFraction) {
+      double magnitude = Math.pow(10, rand.nextInt(12) - 4);
+      emit(out, Double.toString((rand.nextDouble() - 0.5) * magnitude));
+    } else if (rand.nextBoolean()) {
+      emit(out, Integer.toString(rand.nextInt(1000)));
+    } else {
+      emit(out, Long.toString(rand.nextLong()));
+    } // if-else
+  } // writeNumber(Writer, Random)
+
+  /**
+   * Write some text, keeping count.
+   */
+  void emit(Writer out, String text) throws IOException {
+    out.write(text);
+    this.written += text.length();
+  } // emit(Writer, String)
+
+} // class JSONCorpus
@@ -0,0 +1,352 @@
+package src;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of parsed JSON files. A file is parsed again only when
+ * its size or last-modified time changes. Entries are evicted, least
+ * recently used first, once the estimated heap retained by the cached
+ * values exceeds a budget.
+ *
+ * Cached values are frozen, so every caller shares the same read-only
+ * tree. If several threads miss on the same file at once, only one of
+ * them parses it and the others wait for its result.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JSONFileCache {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The most estimated bytes we are willing to retain.
+   */
+  final long maxBytes;
+
+  /**
+   * The cached entries, in least-recently-used order. Guarded by this.
+   */
+  final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<Path, Entry>(16, 0.75f, true);
+
+  /**
+   * The estimated bytes retained by all entries. Guarded by this.
+   */
+  long retainedBytes = 0;
+
+  /**
+   * Parses currently in progress, so concurrent misses on the same
+   * version of a file can share them.
+   */
+  final ConcurrentHashMap<Version, FutureTask<Entry>> loading = new ConcurrentHashMap<Version, FutureTask<Entry>>();
+
+  /**
+   * Lookups answered from the cache.
+   */
+  final AtomicLong hits = new AtomicLong();
+
+  /**
+   * Lookups that could not be answered from the cache.
+   */
+  final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Files actually parsed.
+   */
+  final AtomicLong loads = new AtomicLong();
+
+  /**
+   * Entries dropped to stay within the budget.
+   */
+  final AtomicLong evictions = new AtomicLong();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a cache that retains at most (roughly) maxBytes of parsed values.
+   */
+  public JSONFileCache(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive");
+    } // if
+    this.maxBytes = maxBytes;
+  } // JSONFileCache(long)
+
+  // +---------------+-----------------------------------------------
+  // | Cache methods |
+  // +---------------+
+
+  /**
+   * Get the parsed contents of a file, parsing it only if it is not cached
+   * or has changed since it was cached. The result is frozen.
+   */
+  public JSONValue get(String filename) throws Exception {
+    Path path = Paths.get(filename).toAbsolutePath().normalize();
+    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+    long size = attrs.size();
+    long modified = attrs.lastModifiedTime().toMillis();
+    synchronized (this) {
+      Entry entry = this.entries.get(path);
+      if ((entry != null) && entry.matches(size, modified)) {
+        this.hits.incrementAndGet();
+        return entry.value;
+      } // if
+    } // synchronized
+    this.misses.incrementAndGet();
+
+    // share the parse with anyone else missing on the same version of
+    // the file, but not with a parse of an older one
+    Version version = new Version(path, size, modified);
+    FutureTask<Entry> task = new FutureTask<Entry>(() -> load(path, size, modified));
+    FutureTask<Entry> existing = this.loading.putIfAbsent(version, task);
+    if (existing == null) {
+      try {
+        task.run();
+      } finally {
+        this.loading.remove(version, task);
+      } // try/finally
+      existing = task;
+    } // if
+    try {
+      return existing.get().value;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      } // if
+      throw e;
+    } // try-catch
+  } // get(String)
+
+  /**
+   * Drop the entry for a file, if there is one.
+   */
+  public synchronized void invalidate(String filename) {
+    Entry entry = this.entries.remove(Paths.get(filename).toAbsolutePath().normalize());
+    if (entry != null) {
+      this.retainedBytes -= entry.bytes;
+    } // if
+  } // invalidate(String)
+
+  /**
+   * Drop every entry.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+    this.retainedBytes = 0;
+  } // clear()
+
+  /**
+   * Determine how many files are cached.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  } // size()
+
+  /**
+   * Get the estimated bytes retained by the cached values.
+   */
+  public synchronized long retainedBytes() {
+    return this.retainedBytes;
+  } // retainedBytes()
+
+  /**
+   * Get the number of lookups answered from the cache.
+   */
+  public long hits() {
+    return this.hits.get();
+  } // hits()
+
+  /**
+   * Get the number of lookups that were not answered from the cache.
+   */
+  public long misses() {
+    return this.misses.get();
+  } // misses()
+
+  /**
+   * Get the number of files parsed. Less than misses when concurrent
+   * misses shared a parse.
+   */
+  public long loads() {
+    return this.loads.get();
+  } // loads()
+
+  /**
+   * Get the number of entries evicted to stay within the budget.
+   */
+  public long evictions() {
+    return this.evictions.get();
+  } // evictions()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Parse a file and add it to the cache.
+   */
+  Entry load(Path path, long size, long modified) throws Exception {
+    this.loads.incrementAndGet();
+    JSONValue value = JSON.parseFile(path.toString());
+    freeze(value);
+    Entry entry = new Entry(value, size, modified, estimateSize(value));
+    synchronized (this) {
+      Entry old = this.entries.put(path, entry);
+      if (old != null) {
+        this.retainedBytes -= old.bytes;
+      } // if
+      this.retainedBytes += entry.bytes;
+      // drop the least recently used entries until we fit
+      Iterator<Map.Entry<Path, Entry>> eldest = this.entries.entrySet().iterator();
+      while ((this.retainedBytes > this.maxBytes) && eldest.hasNext()) {
+        this.retainedBytes -= eldest.next().getValue().bytes;
+        eldest.remove();
+        this.evictions.incrementAndGet();
+      } // while
+    } // synchronized
+    return entry;
+  } // load(Path, long, long)
+
+  /**
+   * Make a parsed value read-only. Freezing visits nested values
+   * without recursion, so however deep the file, this cannot overflow
+   * the stack.
+   */
+  static void freeze(JSONValue value) {
+    if (JSONStructure.isContainer(value)) {
+      JSONStructure.freeze(value);
+    } // if
+  } // freeze(JSONValue)
+
+  /**
+   * Estimate the heap retained by a value, assuming a 64-bit JVM with
+   * compressed pointers. Good enough for budgeting, not exact. Nested
+   * values are kept on a stack rather than visited by recursion.
+   */
+  @SuppressWarnings("unchecked")
+  static long estimateSize(JSONValue root) {
+    long result = 0;
+    ArrayDeque<JSONValue> pending = new ArrayDeque<JSONValue>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      JSONValue value = pending.pop();
+      if (value instanceof JSONString) {
+        // JSONString + String + byte[] (assuming mostly latin-1 text)
+        result += 16 + 24 + 16 + ((JSONString) value).getValue().length();
+      } else if (value instanceof JSONInteger) {
+        // JSONInteger + BigInteger + int[]
+        result += 16 + 40 + 16 + ((JSONInteger) value).getValue().bitLength() / 8;
+      } else if (value instanceof JSONReal) {
+        // JSONReal + BigDecimal (+ BigInteger when the value is large)
+        result += 16 + 40 + (((JSONReal) value).getValue().precision() > 18 ? 56 : 0);
+      } else if (value instanceof JSONArray) {
+        JSONArray array = (JSONArray) value;
+        // JSONArray + ArrayList + Object[]
+        result += 24 + 24 + 16 + 4L * array.size();
+        for (JSONValue element : array.values) {
+          pending.push(element);
+        } // for
+      } else if (value instanceof JSONHash) {
+        JSONHash hash = (JSONHash) value;
+        // JSONHash + Random + Object[]
+        result += 32 + 32 + 16 + 4L * hash.buckets.length;
+        for (Object bucket : hash.buckets) {
+          if (bucket == null) {
+            continue;
+          } // if
+          if (bucket instanceof TreeMap) {
+            // TreeMap + an Entry per pair
+            result += 48 + 40L * ((TreeMap<?, ?>) bucket).size();
+          } else {
+            // ArrayList + Object[]
+            result += 24 + 16 + 4L * ((ArrayList<?>) bucket).size();
+          } // if-else
+          for (KVPair<JSONString, JSONValue> pair : JSONHash.pairs(bucket)) {
+            result += 24;
+            pending.push(pair.key());
+            pending.push(pair.value());
+          } // for
+        } // for
+      } else {
+        // constants are shared or tiny
+        result += 16;
+      } // if-else
+    } // while
+    return result;
+  } // estimateSize(JSONValue)
+
+  // +---------------+-------------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A cached value and the file state it was parsed from.
+   */
+  static final class Entry {
+    final JSONValue value;
+    final long size;
+    final long modified;
+    final long bytes;
+
+    Entry(JSONValue value, long size, long modified, long bytes) {
+      this.value = value;
+      this.size = size;
+      this.modified = modified;
+      this.bytes = bytes;
+    } // Entry(JSONValue, long, long, long)
+
+    /**
+     * Determine whether the file still looks the way it did when parsed.
+     */
+    boolean matches(long size, long modified) {
+      return (this.size == size) && (this.modified == modified);
+    } // matches(long, long)
+  } // class Entry
+
+  /**
+   * A file as it was when we looked at it.
+   */
+  static final class Version {
+    final Path path;
+    final long size;
+    final long modified;
+
+    Version(Path path, long size, long modified) {
+      this.path = path;
+      this.size = size;
+      this.modified = modified;
+    } // Version(Path, long, long)
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Version)) {
+        return false;
+      } // if
+      Version that = (Version) other;
+      return this.path.equals(that.path) && (this.size == that.size) && (this.modified == that.modified);
+    } // equals(Object)
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * this.path.hashCode() + Long.hashCode(this.size)) + Long.hashCode(this.modified);
+    } // hashCode()
+  } // class Version
+
+} // class JSONFileCache
@@ -0,0 +1,102 @@
+package src;
+import java.nio.file.Path;
+
+/**
+ * The outcome of parsing one file in a batch: either a value or the
+ * exception that stopped it, along with how long it took.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JSONFileResult {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The file.
+   */
+  private Path path;
+
+  /**
+   * The parsed value, or null if parsing failed.
+   */
+  private JSONValue value;
+
+  /**
+   * What went wrong, or null if parsing succeeded.
+   */
+  private Exception error;
+
+  /**
+   * Time spent reading and parsing, in nanoseconds.
+   */
+  private long nanos;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new result.
+   */
+  public JSONFileResult(Path path, JSONValue value, Exception error, long nanos) {
+    this.path = path;
+    this.value = value;
+    this.error = error;
+    this.nanos = nanos;
+  } // JSONFileResult(Path, JSONValue, Exception, long)
+
+  // +------------------+--------------------------------------------
+  // | Standard methods |
+  // +------------------+
+
+  /**
+   * Convert to string form.
+   */
+  @Override
+  public String toString() {
+    return this.path + ": " + (this.succeeded() ? "ok" : this.error.toString())
+        + " (" + (this.nanos / 1000) + " us)";
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the file.
+   */
+  public Path path() {
+    return this.path;
+  } // path()
+
+  /**
+   * Get the parsed value, or null if parsing failed.
+   */
+  public JSONValue value() {
+    return this.value;
+  } // value()
+
+  /**
+   * Get the exception that stopped parsing, or null if it succeeded.
+   */
+  public Exception error() {
+    return this.error;
+  } // error()
+
+  /**
+   * Get the time spent reading and parsing the file, in nanoseconds.
+   */
+  public long nanos() {
+    return this.nanos;
+  } // nanos()
+
+  /**
+   * Determine whether the file parsed successfully.
+   */
+  public boolean succeeded() {
+    return this.error == null;
+  } // succeeded()
+} // class JSONFileResult
@@ -0,0 +1,370 @@
+package src;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * End-to-end throughput and latency harness. Generates a seeded corpus
+ * with JSONCorpus, then parses and serializes every document in it,
+ * reporting MB/s, per-document latency percentiles and peak heap.
+ *
+ * Usage:
+ *   java src.JSONHarness generate DIR [options]
+ *   java src.JSONHarness run DIR [options]
+ *   java src.JSONHarness retained DIR
+ *   java src.JSONHarness gzip DIR [--passes=N]
+ *
+ * Generate options (see JSONCorpus):
+ *   --docs=N --doc-size=CHARS --seed=N --depth=N --fanout=N
+ *   --string-length=N --reals=FRACTION --escapes=FRACTION --unicode=FRACTION
+ * Run options:
+ *   --engine=reader|push   which parser to drive (default reader)
+ *   --passes=N             passes over the corpus; the first is warm-up
+ *
+ * retained parses the whole corpus twice, as trees and as JSONTapes,
+ * and reports how much heap each holds compared with the source.
+ *
+ * gzip joins the corpus into one array, compresses it to a temporary
+ * file, and times parsing it with inflating inline and with
+ * JSON.parseFile, which inflates in the background when there is a
+ * processor to spare, beside inflating alone and parsing alone.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JSONHarness {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Results are folded in here so the JIT cannot discard the work.
+   */
+  static volatile int sink;
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: java src.JSONHarness generate|run|retained|gzip DIR [--option=value ...]");
+      System.exit(1);
+    } // if
+    Path dir = Paths.get(args[1]);
+    String[] options = Arrays.copyOfRange(args, 2, args.length);
+    if (args[0].equals("generate")) {
+      generate(dir, options);
+    } else if (args[0].equals("run")) {
+      run(dir, options);
+    } else if (args[0].equals("retained")) {
+      retained(dir);
+    } else if (args[0].equals("gzip")) {
+      gzip(dir, options);
+    } else {
+      System.err.println("Unknown command: " + args[0]);
+      System.exit(1);
+    } // if-else
+  } // main(String[])
+
+  // +----------+----------------------------------------------------
+  // | Commands |
+  // +----------+
+
+  /**
+   * Write a corpus into dir.
+   */
+  static void generate(Path dir, String[] options) throws Exception {
+    JSONCorpus corpus = new JSONCorpus();
+    corpus.setSeed(Long.parseLong(option(options, "seed", "1")));
+    corpus.setDocumentSize(Long.parseLong(option(options, "doc-size", "65536")));
+    corpus.setMaxDepth(Integer.parseInt(option(options, "depth", "5")));
+    corpus.setFanOut(Integer.parseInt(option(options, "fanout", "8")));
+    corpus.setMeanStringLength(Integer.parseInt(option(options, "string-length", "16")));
+    corpus.setRealFraction(Double.parseDouble(option(options, "reals", "0.3")));
+    corpus.setEscapeDensity(Double.parseDouble(option(options, "escapes", "0.02")));
+    corpus.setUnicodeDensity(Double.parseDouble(option(options, "unicode", "0.02")));
+    int docs = Integer.parseInt(option(options, "docs", "100"));
+    long start = System.nanoTime();
+    corpus.writeFiles(dir, docs);
+    System.out.printf("Wrote %d documents to %s in %.1f s%n", docs, dir, (System.nanoTime() - start) / 1e9);
+  } // generate(Path, String[])
+
+  /**
+   * Parse and serialize every document in dir, printing statistics.
+   */
+  static void run(Path dir, String[] options) throws Exception {
+    String engine = option(options, "engine", "reader");
+    int passes = Integer.parseInt(option(options, "passes", "3"));
+    ArrayList<Path> files = files(dir);
+    long totalBytes = 0;
+    for (Path file : files) {
+      totalBytes += Files.size(file);
+    } // for
+
+    System.out.printf("%d documents, %.1f MB, engine %s%n", files.size(), totalBytes / 1e6, engine);
+    for (int pass = 0; pass < passes; pass++) {
+      resetPeakHeap();
+      long[] parseNanos = new long[files.size()];
+      long[] writeNanos = new long[files.size()];
+      long written = 0;
+      for (int i = 0; i < files.size(); i++) {
+        long start = System.nanoTime();
+        JSONValue value = parse(files.get(i), engine);
+        parseNanos[i] = System.nanoTime() - start;
+
+        JSONBenchmark.CountingWriter counter = new JSONBenchmark.CountingWriter();
+        start = System.nanoTime();
+        value.writeJSON(new PrintWriter(counter));
+        writeNanos[i] = System.nanoTime() - start;
+        written += counter.count;
+        sink += value.hashCode();
+      } // for
+      String label = (pass == 0) ? "warm-up" : ("pass " + pass);
+      report(label + " parse", totalBytes, parseNanos);
+      report(label + " write", written, writeNanos);
+      System.out.printf("%-18s peak heap %.1f MB%n", label, peakHeap() / 1e6);
+    } // for
+  } // run(Path, String[])
+
+  /**
+   * Compare the heap held by the corpus in dir when parsed to trees and
+   * to tapes.
+   */
+  static void retained(Path dir) throws Exception {
+    ArrayList<Path> files = files(dir);
+    long totalBytes = 0;
+    for (Path file : files) {
+      totalBytes += Files.size(file);
+    } // for
+    ArrayList<Object> kept = new ArrayList<Object>();
+    long before = usedHeap();
+    for (Path file : files) {
+      kept.add(parse(file, "reader"));
+    } // for
+    long tree = usedHeap() - before;
+    sink += kept.size();
+    kept.clear();
+
+    long tapeBytes = 0;
+    before = usedHeap();
+    for (Path file : files) {
+      try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        JSONTape tape = JSONTape.parse(in);
+        tapeBytes += tape.bytes();
+        kept.add(tape);
+      } // try
+    } // for
+    long tape = usedHeap() - before;
+    sink += kept.size();
+
+    System.out.printf("%d documents, %.1f MB of source%n", files.size(), totalBytes / 1e6);
+    System.out.printf("%-6s retained %9.1f MB  %5.1fx source%n", "tree", tree / 1e6, (double) tree / totalBytes);
+    System.out.printf("%-6s retained %9.1f MB  %5.1fx source  (%.1f MB by JSONTape.bytes)%n",
+        "tape", tape / 1e6, (double) tape / totalBytes, tapeBytes / 1e6);
+  } // retained(Path)
+
+  /**
+   * Compare inflating a compressed corpus inline and in the background
+   * while parsing it.
+   */
+  static void gzip(Path dir, String[] options) throws Exception {
+    int passes = Integer.parseInt(option(options, "passes", "5"));
+    StringBuilder joined = new StringBuilder("[");
+    for (Path file : files(dir)) {
+      joined.append((joined.length() == 1) ? "" : ",\n");
+      joined.append(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    } // for
+    String text = joined.append("]").toString();
+    Path gz = Files.createTempFile("corpus", ".json.gz");
+    try {
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+      } // try
+      System.out.printf("%.1f MB of JSON, %.1f MB compressed%n", text.length() / 1e6, Files.size(gz) / 1e6);
+      long[] inflate = new long[passes];
+      long[] parse = new long[passes];
+      long[] inline = new long[passes];
+      long[] background = new long[passes];
+      for (int pass = 0; pass <= passes; pass++) {
+        // pass 0 warms up and is not kept
+        int i = Math.max(0, pass - 1);
+        long start = System.nanoTime();
+        try (Reader in = new InputStreamReader(new GZIPInputStream(Files.newInputStream(gz), 1 << 16),
+            StandardCharsets.UTF_8)) {
+          char[] chars = new char[1 << 16];
+          int count;
+          while ((count = in.read(chars)) != -1) {
+            sink += count;
+          } // while
+        } // try
+        inflate[i] = System.nanoTime() - start;
+        start = System.nanoTime();
+        sink += JSON.parse(text).hashCode();
+        parse[i] = System.nanoTime() - start;
+        start = System.nanoTime();
+        try (Reader in = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(gz)), StandardCharsets.UTF_8))) {
+          sink += JSON.parse(in).hashCode();
+        } // try
+        inline[i] = System.nanoTime() - start;
+        start = System.nanoTime();
+        sink += JSON.parseFile(gz.toString()).hashCode();
+        background[i] = System.nanoTime() - start;
+      } // for
+      System.out.printf("%-22s %9.1f ms%n", "inflate only", median(inflate) / 1e6);
+      System.out.printf("%-22s %9.1f ms%n", "parse only", median(parse) / 1e6);
+      System.out.printf("%-22s %9.1f ms%n", "inflate inline", median(inline) / 1e6);
+      System.out.printf("%-22s %9.1f ms%n", "JSON.parseFile", median(background) / 1e6);
+    } finally {
+      Files.delete(gz);
+    } // try/finally
+  } // gzip(Path, String[])
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * List the .json files in dir, in order.
+   */
+  static ArrayList<Path> files(Path dir) throws Exception {
+    ArrayList<Path> files = new ArrayList<Path>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, "*.json")) {
+      for (Path entry : entries) {
+        files.add(entry);
+      } // for
+    } // try
+    Collections.sort(files);
+    if (files.isEmpty()) {
+      throw new IllegalArgumentException("No .json files in " + dir);
+    } // if
+    return files;
+  } // files(Path)
+
+  /**
+   * Get the heap in use after collecting garbage.
+   */
+  static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    } // for
+    return runtime.totalMemory() - runtime.freeMemory();
+  } // usedHeap()
+
+  /**
+   * Parse a file with the chosen engine.
+   */
+  static JSONValue parse(Path file, String engine) throws Exception {
+    if (engine.equals("push")) {
+      JSONPushParser parser = new JSONPushParser();
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        while (channel.read(buffer) != -1) {
+          buffer.flip();
+          parser.feed(buffer);
+          buffer.clear();
+        } // while
+      } // try
+      return parser.endOfInput();
+    } else if (engine.equals("reader")) {
+      try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        return JSON.parse(in);
+      } // try
+    } // if-else
+    throw new IllegalArgumentException("Unknown engine: " + engine);
+  } // parse(Path, String)
+
+  /**
+   * Get the median of some timings.
+   */
+  static long median(long[] nanos) {
+    long[] sorted = nanos.clone();
+    Arrays.sort(sorted);
+    return percentile(sorted, 0.5);
+  } // median(long[])
+
+  /**
+   * Print throughput and latency percentiles for one set of timings.
+   */
+  static void report(String label, long bytes, long[] nanos) {
+    long[] sorted = nanos.clone();
+    Arrays.sort(sorted);
+    long total = 0;
+    for (long n : sorted) {
+      total += n;
+    } // for
+    System.out.printf("%-18s %9.1f MB/s  p50 %9.3f ms  p99 %9.3f ms  p999 %9.3f ms%n",
+        label, bytes / (total / 1e9) / 1e6,
+        percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, percentile(sorted, 0.999) / 1e6);
+  } // report(String, long, long[])
+
+  /**
+   * Get a percentile (0 to 1) of some sorted values, by nearest rank.
+   */
+  static long percentile(long[] sorted, double p) {
+    int rank = (int) Math.ceil(p * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+  } // percentile(long[], double)
+
+  /**
+   * Start tracking peak heap use afresh.
+   */
+  static void resetPeakHeap() {
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      } // if
+    } // for
+  } // resetPeakHeap()
+
+  /**
+   * Get the peak heap use since the last reset, summed over heap pools.
+   * This overstates the true peak a little, since pools peak at
+   * different times.
+   */
+  static long peakHeap() {
+    long result = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        result += pool.getPeakUsage().getUsed();
+      } // if
+    } // for
+    return result;
+  } // peakHeap()
+
+  /**
+   * Get the value of --name=value from options, or a default.
+   */
+  static String option(String[] options, String name, String otherwise) {
+    String prefix = "--" + name + "=";
+    for (String opt : options) {
+      if (opt.startsWith(prefix)) {
+        return opt.substring(prefix.length());
+      } // if
+    } // for
+    return otherwise;
+  } // option(String[], String, String)
+
+} // class JSONHarness
@@ -1,8 +1,15 @@
 package src;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * JSON hashes/objects. Large chunks reused from hash lab
@@ -22,6 +29,18 @@ public class JSONHash implements JSONValue {
    */
   static final double LOAD_FACTOR = 0.5;
 
+  /**
+   * A bucket whose list grows beyond this many pairs becomes a tree, so
+   * that keys which collide, by accident or by design, cost O(log n)
+   * rather than O(n) to find.
+   */
+  static final int TREEIFY_THRESHOLD = 8;
+
+  /**
+   * The order of keys within a tree bucket.
+   */
+  static final Comparator<JSONString> KEY_ORDER = Comparator.comparing(JSONString::getValue);
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -32,7 +51,9 @@ public class JSONHash implements JSONValue {
   int size = 0;
 
   /**
-   * The array that we use to store the key/value pairs.
+   * The array that we use to store the key/value pairs. Each bucket is
+   * null, an ArrayList of pairs, or, once it holds more than
+   * TREEIFY_THRESHOLD pairs, a TreeMap from key to pair.
    */
   Object[] buckets;
 
@@ -47,6 +68,32 @@ public class JSONHash implements JSONValue {
    */
   static int INIT_SIZE = 8;
 
+  /**
+   * The cached hash code, valid only when hashValid is true.
+   */
+  int hash;
+
+  /**
+   * Whether hash holds the hash code of the contents. Only set once the
+   * table is frozen, when neither it nor any nested value can change.
+   * Volatile and set after hash, so that a thread seeing it set also
+   * sees the code.
+   */
+  volatile boolean hashValid = false;
+
+  /**
+   * Whether the table has been frozen. Frozen tables reject set.
+   */
+  boolean frozen = false;
+
+  /**
+   * The canonical (RFC 8785) form of the table and its SHA-256 digest, kept
+   * once computed. Only set once the table is frozen, so never stale.
+   * Volatile, so that a thread reading them sees the whole array.
+   */
+  volatile byte[] canonical;
+  volatile byte[] digest;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -65,58 +112,28 @@ public class JSONHash implements JSONValue {
   // +-------------------------+
 
   /**
-   * Convert to a string (e.g., for printing).
+   * Convert to a string (e.g., for printing). Nested values are visited
+   * without recursion, so deep nesting cannot overflow the stack.
    */
-  @SuppressWarnings("unchecked")
   public String toString() {
-    StringBuilder result = new StringBuilder();
-    Iterator myIter = this.iterator();
-    while (myIter.hasNext()){
-      KVPair<JSONString, JSONValue> pair = (KVPair<JSONString, JSONValue>) myIter.next();
-      String kvpair = pair.key().toString()+" : "+pair.value().toString();
-      result.append(kvpair);
-      if (myIter.hasNext()) {
-        result.append(",");
-      } // if
-    } // while
-    return "{"+result.toString()+"}"; 
+    return JSONWriter.toString(this);
   } // toString()
 
   /**
-   * Compare to another object.
+   * Compare to another object. Nested values are compared without
+   * recursion, so deep nesting cannot overflow the stack.
    */
-  @SuppressWarnings("unchecked")
   public boolean equals(Object other) {
-    // check type
-    if (!(other instanceof JSONHash)) {
-          return false;
-    } // if
-
-    // check sizes
-    if (!(this.size() == ((JSONHash) other).size())) {
-      return false;
-    } // if
-    // compare each pair in the table to the other table
-    Iterator myIter = this.iterator();
-    while (myIter.hasNext()) {
-      KVPair<JSONString, JSONValue> pair = (KVPair<JSONString, JSONValue>) myIter.next();
-      try { // compare values
-        JSONValue curVal= ((JSONHash) other).get(pair.key());
-        if (!curVal.equals(pair.value())) {
-          return false;
-        } // if
-      } catch (Exception e) {
-        return false;
-      } // try-catch
-    } // while
-    return true;
+    return (other instanceof JSONHash) && JSONStructure.equals(this, (JSONHash) other);
   } // equals
 
   /**
-   * Compute the hash code.
+   * Compute the hash code, without recursion. Depends only on the pairs,
+   * not on the order in which they are stored. Kept only once the table
+   * is frozen, since nested values may otherwise change in place.
    */
   public int hashCode() {
-    return this.buckets.hashCode();
+    return this.hashValid ? this.hash : JSONStructure.hashCode(this);
   } // hashCode()
 
   // +--------------------+------------------------------------------
@@ -124,24 +141,11 @@ public class JSONHash implements JSONValue {
   // +--------------------+
 
   /**
-   * Write the value as JSON.
+   * Write the value as JSON. Nested values are visited without
+   * recursion, so deep nesting cannot overflow the stack.
    */
-  @SuppressWarnings("unchecked")
   public void writeJSON(PrintWriter pen) {
-    Iterator myIter = this.iterator();
-    pen.print("{");
-    while (myIter.hasNext()) {
-      KVPair<JSONString, JSONValue> pair = (KVPair<JSONString, JSONValue>) myIter.next();
-      pair.key().writeJSON(pen);
-      pen.print(" : ");
-      pair.value().writeJSON(pen);
-      if (myIter.hasNext()) {
-        // if more pairs, separate
-        pen.print(", ");
-      }
-    }
-    pen.print("}");
-    pen.flush();
+    JSONWriter.writeJSON(this, pen);
   } // writeJSON(PrintWriter)
 
   /**
@@ -159,21 +163,84 @@ public class JSONHash implements JSONValue {
    * Get the value associated with a key.
    */
   public JSONValue get(JSONString key) {
-    int index = find(key);
-    @SuppressWarnings("unchecked")
-    ArrayList<KVPair<JSONString,JSONValue>> alist = (ArrayList<KVPair<JSONString,JSONValue>>) buckets[index];
-    if (alist == null) {
+    JSONValue value = getOrNull(key);
+    if (value == null) {
+      // key not found
       throw new IndexOutOfBoundsException("Invalid key: " + key.toString());
-    } else {
-      for (KVPair<JSONString,JSONValue> pair: alist) {
+    } // if
+    return value;
+  } // get(JSONString)
+
+  /**
+   * Get the value associated with a key, or null if there is none.
+   * Cheaper than catching the exception from get when keys are often
+   * missing.
+   */
+  @SuppressWarnings("unchecked")
+  public JSONValue getOrNull(JSONString key) {
+    Object bucket = this.buckets[find(key)];
+    if (bucket instanceof TreeMap) {
+      KVPair<JSONString,JSONValue> pair = ((TreeMap<JSONString,KVPair<JSONString,JSONValue>>) bucket).get(key);
+      if (pair != null) {
+        return pair.value();
+      } // if
+    } else if (bucket != null) {
+      for (KVPair<JSONString,JSONValue> pair: (ArrayList<KVPair<JSONString,JSONValue>>) bucket) {
         if (pair.key().equals(key)) {
           return pair.value();
         } // if (pair.key().equals(key))
       } //  for 
     } // if-else
-    // key not found
-    throw new IndexOutOfBoundsException("Invalid key: " + key.toString());
-  } // get(JSONString)
+    return null;
+  } // getOrNull(JSONString)
+
+  /**
+   * Get the value associated with a key, or otherwise if there is none.
+   */
+  public JSONValue getOrDefault(JSONString key, JSONValue otherwise) {
+    JSONValue value = getOrNull(key);
+    return (value == null) ? otherwise : value;
+  } // getOrDefault(JSONString, JSONValue)
+
+  /**
+   * Determine whether the table has a value for a key.
+   */
+  public boolean containsKey(JSONString key) {
+    return getOrNull(key) != null;
+  } // containsKey(JSONString)
+
+  /**
+   * Get the integer associated with a key, or otherwise if there is none
+   * or it does not fit in a long.
+   */
+  public long getLong(JSONString key, long otherwise) {
+    JSONValue value = getOrNull(key);
+    return (value == null) ? otherwise : value.asLong(otherwise);
+  } // getLong(JSONString, long)
+
+  /**
+   * Get the number associated with a key, or otherwise if there is none.
+   */
+  public double getDouble(JSONString key, double otherwise) {
+    JSONValue value = getOrNull(key);
+    return (value == null) ? otherwise : value.asDouble(otherwise);
+  } // getDouble(JSONString, double)
+
+  /**
+   * Get the string associated with a key, or otherwise if there is none.
+   */
+  public String getString(JSONString key, String otherwise) {
+    JSONValue value = getOrNull(key);
+    return (value == null) ? otherwise : value.asString(otherwise);
+  } // getString(JSONString, String)
+
+  /**
+   * Get the boolean associated with a key, or otherwise if there is none.
+   */
+  public boolean getBoolean(JSONString key, boolean otherwise) {
+    JSONValue value = getOrNull(key);
+    return (value == null) ? otherwise : value.asBoolean(otherwise);
+  } // getBoolean(JSONString, boolean)
 
   /**
    * Get all of the key/value pairs.
@@ -182,8 +249,13 @@ public class JSONHash implements JSONValue {
     return new Iterator<KVPair<JSONString,JSONValue>>() {
       // keep track of how many pairs we have visited
       int seen = 0;
-      // keep track of where in the table we are {table position, arraylist position}
-      int[] nextPos = {0,0};
+      // the next bucket to look in
+      int nextBucket = 0;
+      // the current bucket, if it is a list, and our place in it
+      ArrayList<KVPair<JSONString,JSONValue>> list = null;
+      int place = 0;
+      // the pairs left in the current bucket, if it is a tree
+      Iterator<KVPair<JSONString,JSONValue>> pairs = null;
 
       public boolean hasNext() {
         return seen < JSONHash.this.size();
@@ -191,30 +263,51 @@ public class JSONHash implements JSONValue {
 
       @SuppressWarnings("unchecked")
       public KVPair<JSONString,JSONValue> next() { 
-        // go through every bucket
-        for (int i = nextPos[0]; i < JSONHash.this.buckets.length; i++) {
-          ArrayList<KVPair<JSONString, JSONValue>> alist = (ArrayList<KVPair<JSONString, JSONValue>>) JSONHash.this.buckets[i];
-          // skip empty cells
-          if (alist == null) {
-            continue;
+        // move on until we find a bucket with pairs left
+        while (((list == null) || (place >= list.size()))
+            && ((pairs == null) || !pairs.hasNext())) {
+          if (nextBucket >= JSONHash.this.buckets.length) {
+            // failed to get a value
+            return null;
           } // if
-          int place = nextPos[1];
-          // store the next place we can have values
-          nextPos[1] = (place+1) % alist.size();
-          if (nextPos[1] == 0) {
-            nextPos[0] = i + 1;
-          } else {
-            nextPos[0] = i;
-          } // if-else
-          seen++;
-          return alist.get(place);
-        } // else
-        // failed to get a value
-        return null;
+          Object bucket = JSONHash.this.buckets[nextBucket++];
+          // lists are walked by index, so most buckets cost no allocation
+          list = (bucket instanceof ArrayList) ? (ArrayList<KVPair<JSONString,JSONValue>>) bucket : null;
+          place = 0;
+          pairs = (bucket instanceof TreeMap) ? pairs(bucket).iterator() : null;
+        } // while
+        seen++;
+        if (list != null) {
+          return list.get(place++);
+        } // if
+        return pairs.next();
       } // next()
     }; // new Iterator
   } // iterator()
 
+  /**
+   * Get a spliterator for the key/value pairs. It splits by halving the
+   * range of buckets it covers, so each half estimates its size from
+   * its share of the table.
+   */
+  public Spliterator<KVPair<JSONString,JSONValue>> spliterator() {
+    return new Pairs(this.buckets, 0, this.buckets.length, this.size, true, this.frozen);
+  } // spliterator()
+
+  /**
+   * Get a sequential stream of the key/value pairs.
+   */
+  public Stream<KVPair<JSONString,JSONValue>> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  } // stream()
+
+  /**
+   * Get a parallel stream of the key/value pairs.
+   */
+  public Stream<KVPair<JSONString,JSONValue>> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  } // parallelStream()
+
   /**
    * Set the value associated with a key.
    * Replaces a pair if the key is already in the table
@@ -222,7 +315,9 @@ public class JSONHash implements JSONValue {
    */
   @SuppressWarnings("unchecked")
   public void set(JSONString key, JSONValue value) {
-    int flag = 0; // to let us know whether we added or replaced
+    if (this.frozen) {
+      throw new UnsupportedOperationException("Cannot change a frozen JSONHash");
+    } // if
     // If there are too many entries, expand the table.
     if (this.size > (this.buckets.length * LOAD_FACTOR)) {
       this.expand();
@@ -230,7 +325,15 @@ public class JSONHash implements JSONValue {
 
     // Find out where the key belongs and put the pair there.
     int index = find(key);
-    ArrayList<KVPair<JSONString, JSONValue>> alist = (ArrayList<KVPair<JSONString, JSONValue>>) this.buckets[index];
+    KVPair<JSONString, JSONValue> pair = new KVPair<JSONString, JSONValue>(key, value);
+    Object bucket = this.buckets[index];
+    if (bucket instanceof TreeMap) {
+      if (((TreeMap<JSONString, KVPair<JSONString, JSONValue>>) bucket).put(key, pair) == null) {
+        this.size++;
+      } // if
+      return;
+    } // if
+    ArrayList<KVPair<JSONString, JSONValue>> alist = (ArrayList<KVPair<JSONString, JSONValue>>) bucket;
     // Special case: Nothing there yet
     if (alist == null) {
       alist = new ArrayList<KVPair<JSONString, JSONValue>>();
@@ -238,18 +341,55 @@ public class JSONHash implements JSONValue {
     } else {
       for (int i = 0; i < alist.size(); i++) {
         if (alist.get(i).key().equals(key)){ // we replace a key-value pair
-          KVPair<JSONString, JSONValue> pair = new KVPair<JSONString, JSONValue>(key, value);
           alist.set(i, pair);
-          flag = -1;
+          return;
         }// if (alist.get(i).key().equals(key))
       } // for (int i = 0; i < alist.size(); i++)
     }// if-else
-    if (flag != -1){ // we did not replace a key-value pair
-      alist.add(new KVPair<JSONString, JSONValue>(key, value));
-      this.size++;
+    // we did not replace a key-value pair
+    alist.add(pair);
+    this.size++;
+    if (alist.size() > TREEIFY_THRESHOLD) {
+      TreeMap<JSONString, KVPair<JSONString, JSONValue>> tree =
+          new TreeMap<JSONString, KVPair<JSONString, JSONValue>>(KEY_ORDER);
+      for (KVPair<JSONString, JSONValue> old : alist) {
+        tree.put(old.key(), old);
+      } // for
+      this.buckets[index] = tree;
     } // if
   } // set(JSONString, JSONValue)
 
+  /**
+   * Make this table, and every value nested inside it, read-only.
+   */
+  public void freeze() {
+    JSONStructure.freeze(this);
+  } // freeze()
+
+  /**
+   * Compute the SHA-256 digest of the table's canonical (RFC 8785) form.
+   * A frozen table computes it once.
+   */
+  @Override
+  public byte[] canonicalHash() {
+    if (!this.frozen) {
+      return JSONCanonical.hash(this);
+    } // if
+    byte[] result = this.digest;
+    if (result == null) {
+      result = JSONCanonical.hash(this);
+      this.digest = result;
+    } // if
+    return result.clone();
+  } // canonicalHash()
+
+  /**
+   * Determine whether the table has been frozen.
+   */
+  public boolean isFrozen() {
+    return this.frozen;
+  } // isFrozen()
+
   /**
    * Find out how many key/value pairs are in the hash table.
    */
@@ -264,10 +404,11 @@ public class JSONHash implements JSONValue {
   /**
    * Expand the size of the table.
    */
-  @SuppressWarnings("unchecked")
   void expand() {
     // track number of items in list so as to not double count when setting again
     int curSize = this.size();
+    // count from zero as we re-add, so the re-adding cannot trigger another expansion
+    this.size = 0;
     // Figure out the size of the new table
     int newSize = 2 * this.buckets.length + rand.nextInt(10);
     // Remember the old table
@@ -280,7 +421,7 @@ public class JSONHash implements JSONValue {
       if (oldBuckets[i] == null) {
         continue;
       }
-      for (KVPair<JSONString,JSONValue> pair: (ArrayList< KVPair<JSONString,JSONValue> >) oldBuckets[i]) {
+      for (KVPair<JSONString,JSONValue> pair: pairs(oldBuckets[i])) {
         this.set(pair.key(), pair.value());
       }
     } // for
@@ -290,10 +431,132 @@ public class JSONHash implements JSONValue {
 
   /**
    * Find the index of the entry with a given key. If there is no such entry,
-   * return the index of an entry we can use to store that key.
+   * return the index of an entry we can use to store that key. Uses the
+   * key's seeded hash, so that which keys share a bucket cannot be
+   * predicted from outside.
    */
   int find(JSONString key) {
-    return Math.abs(key.hashCode()) % this.buckets.length;
+    return (key.seededHash() & 0x7FFFFFFF) % this.buckets.length;
   } // find(K)
 
+  /**
+   * Get the pairs in a bucket, whether it is a list or a tree.
+   */
+  @SuppressWarnings("unchecked")
+  static Collection<KVPair<JSONString,JSONValue>> pairs(Object bucket) {
+    if (bucket instanceof TreeMap) {
+      return ((TreeMap<JSONString,KVPair<JSONString,JSONValue>>) bucket).values();
+    } // if
+    return (ArrayList<KVPair<JSONString,JSONValue>>) bucket;
+  } // pairs(Object)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A spliterator over the pairs in a range of buckets.
+   */
+  static final class Pairs implements Spliterator<KVPair<JSONString,JSONValue>> {
+    /**
+     * The table, and the range of buckets not yet started.
+     */
+    final Object[] buckets;
+    int nextBucket;
+    final int end;
+
+    /**
+     * The number of pairs left, exactly if sized is true and roughly if
+     * not.
+     */
+    long estimate;
+    boolean sized;
+
+    /**
+     * Whether the table is frozen.
+     */
+    final boolean frozen;
+
+    /**
+     * The bucket under way, if it is a list, and our place in it, or the
+     * pairs left in it, if it is a tree.
+     */
+    ArrayList<KVPair<JSONString,JSONValue>> list = null;
+    int place = 0;
+    Iterator<KVPair<JSONString,JSONValue>> pairs = null;
+
+    Pairs(Object[] buckets, int start, int end, long estimate, boolean sized, boolean frozen) {
+      this.buckets = buckets;
+      this.nextBucket = start;
+      this.end = end;
+      this.estimate = estimate;
+      this.sized = sized;
+      this.frozen = frozen;
+    } // Pairs(Object[], int, int, long, boolean, boolean)
+
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super KVPair<JSONString,JSONValue>> action) {
+      while (((this.list == null) || (this.place >= this.list.size()))
+          && ((this.pairs == null) || !this.pairs.hasNext())) {
+        if (this.nextBucket >= this.end) {
+          return false;
+        } // if
+        Object bucket = this.buckets[this.nextBucket++];
+        this.list = (bucket instanceof ArrayList) ? (ArrayList<KVPair<JSONString,JSONValue>>) bucket : null;
+        this.place = 0;
+        this.pairs = (bucket instanceof TreeMap) ? pairs(bucket).iterator() : null;
+      } // while
+      this.estimate--;
+      action.accept((this.list != null) ? this.list.get(this.place++) : this.pairs.next());
+      return true;
+    } // tryAdvance(Consumer)
+
+    public void forEachRemaining(Consumer<? super KVPair<JSONString,JSONValue>> action) {
+      // finish the bucket under way, then take whole buckets
+      while ((this.list != null) && (this.place < this.list.size())) {
+        action.accept(this.list.get(this.place++));
+      } // while
+      while ((this.pairs != null) && this.pairs.hasNext()) {
+        action.accept(this.pairs.next());
+      } // while
+      for (int i = this.nextBucket; i < this.end; i++) {
+        if (this.buckets[i] != null) {
+          for (KVPair<JSONString,JSONValue> pair : pairs(this.buckets[i])) {
+            action.accept(pair);
+          } // for
+        } // if
+      } // for
+      this.nextBucket = this.end;
+      this.list = null;
+      this.pairs = null;
+      this.estimate = 0;
+    } // forEachRemaining(Consumer)
+
+    /**
+     * Hand the first half of the buckets not yet started to a new
+     * spliterator.
+     */
+    public Spliterator<KVPair<JSONString,JSONValue>> trySplit() {
+      int middle = (this.nextBucket + this.end) >>> 1;
+      if (middle <= this.nextBucket) {
+        return null;
+      } // if
+      // share the estimate by buckets, counting the one under way as ours
+      long share = this.estimate * (middle - this.nextBucket) / (this.end - this.nextBucket + 1);
+      Pairs prefix = new Pairs(this.buckets, this.nextBucket, middle, share, false, this.frozen);
+      this.nextBucket = middle;
+      this.estimate -= share;
+      this.sized = false;
+      return prefix;
+    } // trySplit()
+
+    public long estimateSize() {
+      return this.estimate;
+    } // estimateSize()
+
+    public int characteristics() {
+      return DISTINCT | NONNULL | (this.sized ? SIZED : 0) | (this.frozen ? IMMUTABLE : 0);
+    } // characteristics()
+  } // class Pairs
+
 } // class JSONHash
@@ -0,0 +1,640 @@
+package src;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An index over the elements of a JSONArray (typically hashes) by the
+ * value a JSON pointer reaches in each, such as "/id". Built by
+ * JSONArray.indexBy and kept up to date by the array's add and set, so
+ * that looking up elements by key takes constant time rather than a
+ * scan. Elements the pointer reaches nothing in are not indexed.
+ *
+ * Each distinct key has a slot, and the positions of the elements with
+ * that key are linked in array order through next and prev, so an
+ * element costs a few ints however many share its key. Integer keys
+ * that fit in a long are found through a table of primitive longs, and
+ * other keys through a HashMap. A UNIQUE index rejects an add or set
+ * that would give two elements the same key. A SORTED index also
+ * answers range queries over number and string keys (numbers first),
+ * through the slots in key order; adding a new key invalidates that
+ * order, and the next range query sorts again.
+ *
+ * Any number of threads may query at once, alongside one thread
+ * changing the array through add and set (the same thread that builds
+ * and drops its indexes). Changes made in place to the elements
+ * themselves, or through the list returned by getValue, are not seen.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONIndex {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The smallest capacity of each table.
+   */
+  static final int INIT_SIZE = 16;
+
+  /**
+   * What an index can do besides finding elements by key.
+   */
+  public enum Option {
+    /** Reject two elements with the same key. */
+    UNIQUE,
+    /** Answer range queries. */
+    SORTED
+  } // enum Option
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the key is in each element.
+   */
+  final JSONPointer pointer;
+
+  /**
+   * Whether keys must be unique, and whether range queries are allowed.
+   */
+  final boolean unique;
+  final boolean sorted;
+
+  /**
+   * Held for reading by queries, and for writing by changes.
+   */
+  final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * For each position in the array: the element, the slot of its key
+   * (or -1 if it has none), and the next and previous positions with
+   * the same key (or -1).
+   */
+  JSONValue[] records;
+  int[] slotOf;
+  int[] next;
+  int[] prev;
+  int size = 0;
+
+  /**
+   * For each slot: its key, the first and last positions with that key
+   * (or -1), and how many there are. A slot whose elements have all
+   * been replaced stays, empty.
+   */
+  JSONValue[] keys;
+  int[] heads;
+  int[] tails;
+  int[] counts;
+  int slots = 0;
+
+  /**
+   * The slot for each key: integer keys that fit in a long, and others.
+   */
+  final LongSlots longSlots = new LongSlots();
+  final HashMap<JSONValue, Integer> otherSlots = new HashMap<JSONValue, Integer>();
+
+  /**
+   * The slots with number or string keys, in key order, or null if it
+   * must be sorted again. Only kept for a SORTED index.
+   */
+  int[] order;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build an index over elements.
+   *
+   * @throws IllegalArgumentException if the index is UNIQUE and two
+   *   elements share a key.
+   */
+  JSONIndex(List<JSONValue> elements, JSONPointer pointer, boolean unique, boolean sorted) {
+    this.pointer = pointer;
+    this.unique = unique;
+    this.sorted = sorted;
+    int capacity = Math.max(INIT_SIZE, elements.size());
+    this.records = new JSONValue[capacity];
+    this.slotOf = new int[capacity];
+    this.next = new int[capacity];
+    this.prev = new int[capacity];
+    this.keys = new JSONValue[capacity];
+    this.heads = new int[capacity];
+    this.tails = new int[capacity];
+    this.counts = new int[capacity];
+    for (JSONValue element : elements) {
+      check(this.size, element);
+      put(this.size, element);
+    } // for
+  } // JSONIndex(List<JSONValue>, JSONPointer, boolean, boolean)
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing).
+   */
+  public String toString() {
+    return "JSONIndex(" + this.pointer + (this.unique ? ", UNIQUE" : "") + (this.sorted ? ", SORTED" : "") + ")";
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Lookups |
+  // +---------+
+
+  /**
+   * Get the first element whose key is key, or null if there is none.
+   */
+  public JSONValue get(JSONValue key) {
+    this.lock.readLock().lock();
+    try {
+      return first(slot(key));
+    } finally {
+      this.lock.readLock().unlock();
+    } // try
+  } // get(JSONValue)
+
+  /**
+   * Get the first element whose key is the integer key, or null if there
+   * is none.
+   */
+  public JSONValue get(long key) {
+    this.lock.readLock().lock();
+    try {
+      return first(this.longSlots.get(key));
+    } finally {
+      this.lock.readLock().unlock();
+    } // try
+  } // get(long)
+
+  /**
+   * Get the first element whose key is the string key, or null if there
+   * is none.
+   */
+  public JSONValue get(String key) {
+    return get(new JSONString(key));
+  } // get(String)
+
+  /**
+   * Get every element whose key is key, in array order.
+   */
+  public List<JSONValue> getAll(JSONValue key) {
+    this.lock.readLock().lock();
+    try {
+      ArrayList<JSONValue> result = new ArrayList<JSONValue>();
+      collect(slot(key), result);
+      return result;
+    } finally {
+      this.lock.readLock().unlock();
+    } // try
+  } // getAll(JSONValue)
+
+  /**
+   * Get every element whose key is the integer key, in array order.
+   */
+  public List<JSONValue> getAll(long key) {
+    this.lock.readLock().lock();
+    try {
+      ArrayList<JSONValue> result = new ArrayList<JSONValue>();
+      collect(this.longSlots.get(key), result);
+      return result;
+    } finally {
+      this.lock.readLock().unlock();
+    } // try
+  } // getAll(long)
+
+  /**
+   * Get every element whose key is at least from and less than to, in
+   * key order and then array order. Either bound may be null, for no
+   * bound. Numbers come before strings.
+   *
+   * @throws IllegalStateException if the index is not SORTED.
+   * @throws IllegalArgumentException if a bound is neither a number nor
+   *   a string.
+   */
+  public List<JSONValue> range(JSONValue from, JSONValue to) {
+    if (!this.sorted) {
+      throw new IllegalStateException("Range queries need a SORTED index: " + this);
+    } // if
+    if (((from != null) && !isSortable(from)) || ((to != null) && !isSortable(to))) {
+      throw new IllegalArgumentException("Range bounds must be numbers or strings");
+    } // if
+    this.lock.readLock().lock();
+    try {
+      while (this.order == null) {
+        // the write lock cannot be taken while holding the read lock, and
+        // the read lock must be held again however sorting ends
+        this.lock.readLock().unlock();
+        try {
+          sort();
+        } finally {
+          this.lock.readLock().lock();
+        } // try
+      } // while
+      int[] order = this.order;
+      int start = (from == null) ? 0 : lowerBound(order, from);
+      int end = (to == null) ? order.length : lowerBound(order, to);
+      ArrayList<JSONValue> result = new ArrayList<JSONValue>();
+      for (int i = start; i < end; i++) {
+        collect(order[i], result);
+      } // for
+      return result;
+    } finally {
+      this.lock.readLock().unlock();
+    } // try
+  } // range(JSONValue, JSONValue)
+
+  /**
+   * Get every element whose key is an integer at least from and less
+   * than to, in key order and then array order.
+   */
+  public List<JSONValue> range(long from, long to) {
+    return range(new JSONInteger(from), new JSONInteger(to));
+  } // range(long, long)
+
+  /**
+   * Get the pointer that finds each element's key.
+   */
+  public JSONPointer pointer() {
+    return this.pointer;
+  } // pointer()
+
+  // +---------+---------------------------------------------------------
+  // | Changes |
+  // +---------+
+
+  /**
+   * Check that element could go at position in a UNIQUE index. Called
+   * before the array changes, so a rejected change changes nothing.
+   *
+   * @throws IllegalArgumentException if another element has its key.
+   */
+  void check(int position, JSONValue element) {
+    if (!this.unique) {
+      return;
+    } // if
+    JSONValue key = this.pointer.get(element);
+    if (key == null) {
+      return;
+    } // if
+    this.lock.readLock().lock();
+    try {
+      int slot = slot(key);
+      if ((slot >= 0) && (this.counts[slot] > 0)
+          && ((this.counts[slot] > 1) || (this.heads[slot] != position))) {
+        throw new IllegalArgumentException("Duplicate key " + key + " at " + this.pointer
+            + " in elements " + this.heads[slot] + " and " + position);
+      } // if
+    } finally {
+      this.lock.readLock().unlock();
+    } // try
+  } // check(int, JSONValue)
+
+  /**
+   * Note that element is now at position, either replacing what was
+   * there or just past the end.
+   */
+  void put(int position, JSONValue element) {
+    JSONValue key = this.pointer.get(element);
+    this.lock.writeLock().lock();
+    try {
+      if (position == this.size) {
+        grow();
+        this.size++;
+      } else {
+        unlink(position);
+      } // if-else
+      this.records[position] = element;
+      this.slotOf[position] = -1;
+      if (key != null) {
+        link(position, slotFor(key));
+      } // if
+    } finally {
+      this.lock.writeLock().unlock();
+    } // try
+  } // put(int, JSONValue)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the slot for key, or -1 if no element has had it.
+   */
+  int slot(JSONValue key) {
+    if (fitsLong(key)) {
+      return this.longSlots.get(((JSONInteger) key).value.longValue());
+    } // if
+    Integer slot = this.otherSlots.get(key);
+    return (slot == null) ? -1 : slot;
+  } // slot(JSONValue)
+
+  /**
+   * Get the slot for key, making one if there is none.
+   */
+  int slotFor(JSONValue key) {
+    int slot = slot(key);
+    if (slot >= 0) {
+      return slot;
+    } // if
+    if (this.slots == this.keys.length) {
+      int capacity = 2 * this.slots;
+      this.keys = Arrays.copyOf(this.keys, capacity);
+      this.heads = Arrays.copyOf(this.heads, capacity);
+      this.tails = Arrays.copyOf(this.tails, capacity);
+      this.counts = Arrays.copyOf(this.counts, capacity);
+    } // if
+    slot = this.slots++;
+    this.keys[slot] = key;
+    this.heads[slot] = -1;
+    this.tails[slot] = -1;
+    this.counts[slot] = 0;
+    if (fitsLong(key)) {
+      this.longSlots.put(((JSONInteger) key).value.longValue(), slot);
+    } else {
+      this.otherSlots.put(key, slot);
+    } // if-else
+    if (isSortable(key)) {
+      this.order = null;
+    } // if
+    return slot;
+  } // slotFor(JSONValue)
+
+  /**
+   * Link position into the list of its slot, keeping array order. An
+   * added element goes at the end, so only replacements walk the list.
+   */
+  void link(int position, int slot) {
+    int before = this.tails[slot];
+    while (before > position) {
+      before = this.prev[before];
+    } // while
+    int after = (before < 0) ? this.heads[slot] : this.next[before];
+    this.slotOf[position] = slot;
+    this.prev[position] = before;
+    this.next[position] = after;
+    if (before < 0) {
+      this.heads[slot] = position;
+    } else {
+      this.next[before] = position;
+    } // if-else
+    if (after < 0) {
+      this.tails[slot] = position;
+    } else {
+      this.prev[after] = position;
+    } // if-else
+    this.counts[slot]++;
+  } // link(int, int)
+
+  /**
+   * Unlink position from the list of its slot, if it has one.
+   */
+  void unlink(int position) {
+    int slot = this.slotOf[position];
+    if (slot < 0) {
+      return;
+    } // if
+    int before = this.prev[position];
+    int after = this.next[position];
+    if (before < 0) {
+      this.heads[slot] = after;
+    } else {
+      this.next[before] = after;
+    } // if-else
+    if (after < 0) {
+      this.tails[slot] = before;
+    } else {
+      this.prev[after] = before;
+    } // if-else
+    this.counts[slot]--;
+  } // unlink(int)
+
+  /**
+   * Make room for one more position.
+   */
+  void grow() {
+    if (this.size == this.records.length) {
+      int capacity = 2 * this.size;
+      this.records = Arrays.copyOf(this.records, capacity);
+      this.slotOf = Arrays.copyOf(this.slotOf, capacity);
+      this.next = Arrays.copyOf(this.next, capacity);
+      this.prev = Arrays.copyOf(this.prev, capacity);
+    } // if
+  } // grow()
+
+  /**
+   * Get the first element in a slot, or null if slot is -1 or empty.
+   */
+  JSONValue first(int slot) {
+    if ((slot < 0) || (this.heads[slot] < 0)) {
+      return null;
+    } // if
+    return this.records[this.heads[slot]];
+  } // first(int)
+
+  /**
+   * Add every element in a slot to result, unless slot is -1.
+   */
+  void collect(int slot, ArrayList<JSONValue> result) {
+    if (slot < 0) {
+      return;
+    } // if
+    for (int position = this.heads[slot]; position >= 0; position = this.next[position]) {
+      result.add(this.records[position]);
+    } // for
+  } // collect(int, ArrayList<JSONValue>)
+
+  /**
+   * Sort the slots under the write lock, unless another thread has.
+   */
+  void sort() {
+    this.lock.writeLock().lock();
+    try {
+      if (this.order == null) {
+        this.order = sortSlots();
+      } // if
+    } finally {
+      this.lock.writeLock().unlock();
+    } // try
+  } // sort()
+
+  /**
+   * Get the slots with number or string keys, in key order.
+   */
+  int[] sortSlots() {
+    int count = 0;
+    int[] order = new int[this.slots];
+    for (int slot = 0; slot < this.slots; slot++) {
+      if (isSortable(this.keys[slot])) {
+        order[count++] = slot;
+      } // if
+    } // for
+    order = Arrays.copyOf(order, count);
+    mergeSort(order, new int[count], 0, count);
+    return order;
+  } // sortSlots()
+
+  /**
+   * Sort slots[lo..hi) by key, using scratch, which is as long as slots.
+   * Sorts ints directly, rather than boxing millions of them.
+   */
+  void mergeSort(int[] slots, int[] scratch, int lo, int hi) {
+    if (hi - lo < 2) {
+      return;
+    } // if
+    int mid = (lo + hi) >>> 1;
+    mergeSort(slots, scratch, lo, mid);
+    mergeSort(slots, scratch, mid, hi);
+    if (compareKeys(this.keys[slots[mid - 1]], this.keys[slots[mid]]) <= 0) {
+      // already in order, as when keys were added in order
+      return;
+    } // if
+    System.arraycopy(slots, lo, scratch, lo, hi - lo);
+    int i = lo;
+    int j = mid;
+    for (int k = lo; k < hi; k++) {
+      if ((j >= hi) || ((i < mid) && (compareKeys(this.keys[scratch[i]], this.keys[scratch[j]]) <= 0))) {
+        slots[k] = scratch[i++];
+      } else {
+        slots[k] = scratch[j++];
+      } // if-else
+    } // for
+  } // mergeSort(int[], int[], int, int)
+
+  /**
+   * Find the first place in order whose key is at least key.
+   */
+  int lowerBound(int[] order, JSONValue key) {
+    int lo = 0;
+    int hi = order.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (compareKeys(this.keys[order[mid]], key) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      } // if-else
+    } // while
+    return lo;
+  } // lowerBound(int[], JSONValue)
+
+  /**
+   * Compare two number or string keys. Numbers come before strings.
+   */
+  static int compareKeys(JSONValue a, JSONValue b) {
+    boolean aString = a instanceof JSONString;
+    boolean bString = b instanceof JSONString;
+    if (aString != bString) {
+      return aString ? 1 : -1;
+    } else if (aString) {
+      return ((JSONString) a).getValue().compareTo(((JSONString) b).getValue());
+    } else if (fitsLong(a) && fitsLong(b)) {
+      return Long.compare(((JSONInteger) a).value.longValue(), ((JSONInteger) b).value.longValue());
+    } // if-else
+    return decimal(a).compareTo(decimal(b));
+  } // compareKeys(JSONValue, JSONValue)
+
+  /**
+   * Get a number key as a BigDecimal.
+   */
+  static BigDecimal decimal(JSONValue number) {
+    if (number instanceof JSONInteger) {
+      return new BigDecimal(((JSONInteger) number).value);
+    } // if
+    return ((JSONReal) number).value;
+  } // decimal(JSONValue)
+
+  /**
+   * Determine whether a key is an integer that fits in a long.
+   */
+  static boolean fitsLong(JSONValue key) {
+    return (key instanceof JSONInteger) && (((JSONInteger) key).value.bitLength() < 64);
+  } // fitsLong(JSONValue)
+
+  /**
+   * Determine whether a key can go in a range query.
+   */
+  static boolean isSortable(JSONValue key) {
+    return (key instanceof JSONString) || (key instanceof JSONInteger) || (key instanceof JSONReal);
+  } // isSortable(JSONValue)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Maps long keys to slots, by open addressing in primitive arrays, so
+   * integer keys are neither boxed nor hashed as BigIntegers.
+   */
+  static final class LongSlots {
+    /**
+     * The keys, and one more than the slot for each, or 0 where there
+     * is no key.
+     */
+    long[] keys = new long[INIT_SIZE];
+    int[] slots = new int[INIT_SIZE];
+    int count = 0;
+
+    /**
+     * Get the slot for key, or -1 if there is none.
+     */
+    int get(long key) {
+      int mask = this.keys.length - 1;
+      for (int i = mix(key) & mask; this.slots[i] != 0; i = (i + 1) & mask) {
+        if (this.keys[i] == key) {
+          return this.slots[i] - 1;
+        } // if
+      } // for
+      return -1;
+    } // get(long)
+
+    /**
+     * Set the slot for a key that has none.
+     */
+    void put(long key, int slot) {
+      if (4 * (this.count + 1) > 3 * this.keys.length) {
+        long[] oldKeys = this.keys;
+        int[] oldSlots = this.slots;
+        this.keys = new long[2 * oldKeys.length];
+        this.slots = new int[2 * oldKeys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+          if (oldSlots[i] != 0) {
+            insert(oldKeys[i], oldSlots[i]);
+          } // if
+        } // for
+      } // if
+      insert(key, slot + 1);
+      this.count++;
+    } // put(long, int)
+
+    /**
+     * Store a key and its slot plus one in the first free place.
+     */
+    void insert(long key, int stored) {
+      int mask = this.keys.length - 1;
+      int i = mix(key) & mask;
+      while (this.slots[i] != 0) {
+        i = (i + 1) & mask;
+      } // while
+      this.keys[i] = key;
+      this.slots[i] = stored;
+    } // insert(long, int)
+
+    /**
+     * Spread the bits of a key, so that runs of ids do not cluster.
+     */
+    static int mix(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    } // mix(long)
+  } // class LongSlots
+
+} // class JSONIndex
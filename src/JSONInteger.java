@@ -78,7 +78,13 @@ public class JSONInteger implements JSONValue {
    * Write the value as JSON.
    */
   public void writeJSON(PrintWriter pen) {
-    pen.print(this.toString());
+    char[] digits = new char[JSONNumbers.MAX_LONG_CHARS];
+    int end = JSONNumbers.writeInteger(this.value, digits, 0);
+    if (end < 0) {
+      pen.print(this.toString());
+    } else {
+      pen.write(digits, 0, end);
+    } // if-else
     pen.flush();
   } // writeJSON(PrintWriter)
 
@@ -89,4 +95,21 @@ public class JSONInteger implements JSONValue {
     return this.value;
   } // getValue()
 
+  /**
+   * Get the value as a long, or otherwise if it is too big for one.
+   */
+  public long asLong(long otherwise) {
+    if (this.value.bitLength() > 63) {
+      return otherwise;
+    } // if
+    return this.value.longValue();
+  } // asLong(long)
+
+  /**
+   * Get the value as a double.
+   */
+  public double asDouble(double otherwise) {
+    return this.value.doubleValue();
+  } // asDouble(double)
+
 } // class JSONInteger
@@ -0,0 +1,939 @@
+package src;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Converts between JSON values and Java objects: records, classes with
+ * a no-argument constructor (POJOs), collections, maps, arrays, enums,
+ * strings, numbers and booleans, nested to any depth.
+ *
+ * The first time a class is seen we work out how to read and write it
+ * and build MethodHandles for its constructor and properties. That
+ * binding is cached in a ClassValue, so later conversions involve no
+ * reflection.
+ *
+ * read(String, Class) and read(Reader, Class) bind text straight to
+ * objects, without building JSONHash or JSONArray values for the parts
+ * that map to Java types.
+ *
+ * Properties are named after record components or fields. Missing
+ * properties are left at their defaults (null, zero or false), and keys
+ * with no matching property are ignored. A type mismatch throws
+ * IllegalArgumentException. A property declared as Object (or a raw
+ * collection's elements) is read as the JSONValue itself.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONMapper {
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How to read and write each class, built on first use.
+   */
+  static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>() {
+    protected Binding computeValue(Class<?> type) {
+      return bindingForClass(type);
+    } // computeValue(Class<?>)
+  }; // new ClassValue
+
+  /**
+   * The bindings for strings, numbers and booleans.
+   */
+  static final Map<Class<?>, Binding> SCALARS = scalars();
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * All methods are static.
+   */
+  private JSONMapper() {
+  } // JSONMapper()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Convert a JSON value to an object of a given type.
+   *
+   * @throws IllegalArgumentException if the value does not fit the type.
+   */
+  public static <T> T read(JSONValue value, Class<T> type) {
+    return cast(type, BINDINGS.get(type).read(value));
+  } // read(JSONValue, Class<T>)
+
+  /**
+   * Parse text straight into an object of a given type.
+   */
+  public static <T> T read(String text, Class<T> type) throws Exception {
+    return read(new JSONReader(text), type);
+  } // read(String, Class<T>)
+
+  /**
+   * Parse JSON from a reader straight into an object of a given type.
+   */
+  public static <T> T read(Reader source, Class<T> type) throws Exception {
+    return read(new JSONReader(source), type);
+  } // read(Reader, Class<T>)
+
+  /**
+   * Convert an object to a JSON value.
+   *
+   * @throws IllegalArgumentException if the object cannot be converted.
+   */
+  public static JSONValue write(Object value) {
+    if (value == null) {
+      return JSONConstant.NULL;
+    } // if
+    return BINDINGS.get(value.getClass()).write(value);
+  } // write(Object)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Read one document, which must be all there is, from in.
+   */
+  static <T> T read(JSONReader in, Class<T> type) throws Exception {
+    Object result = BINDINGS.get(type).readText(in);
+    in.end();
+    return cast(type, result);
+  } // read(JSONReader, Class<T>)
+
+  /**
+   * Cast a result to the type asked for. Values of primitive types
+   * arrive boxed.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T cast(Class<T> type, Object value) {
+    return (T) value;
+  } // cast(Class<T>, Object)
+
+  /**
+   * Get the binding for a possibly generic type.
+   */
+  static Binding bindingFor(Type type) {
+    if (type instanceof Class) {
+      return BINDINGS.get((Class<?>) type);
+    } else if (type instanceof ParameterizedType) {
+      Class<?> raw = (Class<?>) ((ParameterizedType) type).getRawType();
+      Type[] args = ((ParameterizedType) type).getActualTypeArguments();
+      if (Collection.class.isAssignableFrom(raw)) {
+        return new CollectionBinding(raw, bindingFor(args[0]));
+      } else if (Map.class.isAssignableFrom(raw)) {
+        return new MapBinding(raw, bindingFor(args[1]));
+      } // if-else
+      return BINDINGS.get(raw);
+    } else if (type instanceof WildcardType) {
+      return bindingFor(((WildcardType) type).getUpperBounds()[0]);
+    } // if-else
+    // type variables and the like
+    return BINDINGS.get(Object.class);
+  } // bindingFor(Type)
+
+  /**
+   * Work out how to read and write a class.
+   */
+  static Binding bindingForClass(Class<?> type) {
+    Binding scalar = SCALARS.get(type);
+    if (scalar != null) {
+      return scalar;
+    } else if (JSONValue.class.isAssignableFrom(type)) {
+      return new ValueBinding(type);
+    } else if (type == Object.class) {
+      return new DynamicBinding();
+    } else if (type.isEnum()) {
+      return new EnumBinding(type);
+    } else if (type.isArray()) {
+      return new ArrayBinding(type.getComponentType());
+    } else if (Collection.class.isAssignableFrom(type)) {
+      return new CollectionBinding(type, BINDINGS.get(Object.class));
+    } else if (Map.class.isAssignableFrom(type)) {
+      return new MapBinding(type, BINDINGS.get(Object.class));
+    } else if (type.isRecord()) {
+      return new ObjectBinding(type, true);
+    } // if-else
+    return new ObjectBinding(type, false);
+  } // bindingForClass(Class<?>)
+
+  /**
+   * Build the bindings for strings, numbers and booleans.
+   */
+  static Map<Class<?>, Binding> scalars() {
+    HashMap<Class<?>, Binding> result = new HashMap<Class<?>, Binding>();
+    Binding string = new ScalarBinding(String.class, null,
+        (v) -> (v instanceof JSONString) ? ((JSONString) v).getValue() : null,
+        (o) -> new JSONString((String) o));
+    Binding bool = new ScalarBinding(Boolean.class, false,
+        (v) -> ((v instanceof JSONConstant) && (((JSONConstant) v).getValue() instanceof Boolean))
+            ? ((JSONConstant) v).getValue() : null,
+        (o) -> ((Boolean) o) ? JSONConstant.TRUE : JSONConstant.FALSE);
+    Binding longs = integral(Long.class, Long.MIN_VALUE, Long.MAX_VALUE, 0L, (n) -> n);
+    Binding ints = integral(Integer.class, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, (n) -> (int) (long) n);
+    Binding shorts = integral(Short.class, Short.MIN_VALUE, Short.MAX_VALUE, (short) 0, (n) -> (short) (long) n);
+    Binding bytes = integral(Byte.class, Byte.MIN_VALUE, Byte.MAX_VALUE, (byte) 0, (n) -> (byte) (long) n);
+    Binding doubles = new ScalarBinding(Double.class, 0.0,
+        (v) -> ((v instanceof JSONInteger) || (v instanceof JSONReal)) ? v.asDouble(0) : null,
+        (o) -> real((Double) o, o.toString()));
+    Binding floats = new ScalarBinding(Float.class, 0.0f,
+        (v) -> ((v instanceof JSONInteger) || (v instanceof JSONReal)) ? (float) v.asDouble(0) : null,
+        (o) -> real((Float) o, o.toString()));
+    Binding chars = new ScalarBinding(Character.class, '\0',
+        (v) -> ((v instanceof JSONString) && (((JSONString) v).getValue().length() == 1))
+            ? ((JSONString) v).getValue().charAt(0) : null,
+        (o) -> new JSONString(o.toString()));
+    result.put(String.class, string);
+    result.put(Boolean.class, bool);
+    result.put(boolean.class, bool.primitive());
+    result.put(Long.class, longs);
+    result.put(long.class, longs.primitive());
+    result.put(Integer.class, ints);
+    result.put(int.class, ints.primitive());
+    result.put(Short.class, shorts);
+    result.put(short.class, shorts.primitive());
+    result.put(Byte.class, bytes);
+    result.put(byte.class, bytes.primitive());
+    result.put(Double.class, doubles);
+    result.put(double.class, doubles.primitive());
+    result.put(Float.class, floats);
+    result.put(float.class, floats.primitive());
+    result.put(Character.class, chars);
+    result.put(char.class, chars.primitive());
+    result.put(BigInteger.class, new ScalarBinding(BigInteger.class, null,
+        (v) -> (v instanceof JSONInteger) ? ((JSONInteger) v).getValue() : null,
+        (o) -> new JSONInteger((BigInteger) o)));
+    result.put(BigDecimal.class, new ScalarBinding(BigDecimal.class, null,
+        (v) -> (v instanceof JSONReal) ? ((JSONReal) v).getValue()
+            : (v instanceof JSONInteger) ? new BigDecimal(((JSONInteger) v).getValue()) : null,
+        (o) -> new JSONReal((BigDecimal) o)));
+    return result;
+  } // scalars()
+
+  /**
+   * Convert a double or float, given with its shortest digits, to a
+   * JSONReal. JSON has no NaN or infinities, as JSONCanonical.writeNumber
+   * also insists.
+   */
+  static JSONReal real(double d, String digits) {
+    if (Double.isNaN(d) || Double.isInfinite(d)) {
+      throw new IllegalArgumentException("JSON has no representation for " + d);
+    } // if
+    return new JSONReal(new BigDecimal(digits));
+  } // real(double, String)
+
+  /**
+   * Build the binding for an integral type with a given range.
+   */
+  static Binding integral(Class<?> type, long min, long max, Object zero, Function<Long, Object> narrow) {
+    return new ScalarBinding(type, zero,
+        (v) -> {
+          if (!(v instanceof JSONInteger)) {
+            return null;
+          } // if
+          BigInteger n = ((JSONInteger) v).getValue();
+          if ((n.bitLength() > 63) || (n.longValue() < min) || (n.longValue() > max)) {
+            return null;
+          } // if
+          return narrow.apply(n.longValue());
+        },
+        (o) -> new JSONInteger(((Number) o).longValue()));
+  } // integral(Class<?>, long, long, Object, Function<Long, Object>)
+
+  /**
+   * Get a handle for a constructor, method or field, even one that is
+   * not public, adapted to take and return Objects so it can be called
+   * with invokeExact.
+   */
+  static MethodHandle handle(Object member, MethodType type) {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodHandle result;
+      if (member instanceof Constructor) {
+        ((Constructor<?>) member).setAccessible(true);
+        result = lookup.unreflectConstructor((Constructor<?>) member);
+      } else if (member instanceof Method) {
+        ((Method) member).setAccessible(true);
+        result = lookup.unreflect((Method) member);
+      } else if (type.parameterCount() == 1) {
+        ((Field) member).setAccessible(true);
+        result = lookup.unreflectGetter((Field) member);
+      } else {
+        ((Field) member).setAccessible(true);
+        result = lookup.unreflectSetter((Field) member);
+      } // if-else
+      return result.asType(type);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      throw new IllegalArgumentException("Cannot bind " + member + ": " + e.getMessage(), e);
+    } // try-catch
+  } // handle(Object, MethodType)
+
+  /**
+   * Rethrow something thrown through a MethodHandle.
+   */
+  static RuntimeException rethrow(Throwable t) {
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } // if-else
+    throw new IllegalStateException(t);
+  } // rethrow(Throwable)
+
+  /**
+   * Report a value that does not fit a type.
+   */
+  static IllegalArgumentException mismatch(JSONValue value, Type type) {
+    String kind = (value == null) ? "nothing" : value.getClass().getSimpleName();
+    return new IllegalArgumentException("Cannot read " + kind + " as " + type.getTypeName());
+  } // mismatch(JSONValue, Type)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * How to read and write one type.
+   */
+  abstract static class Binding {
+    /**
+     * Convert a JSON value.
+     */
+    abstract Object read(JSONValue value);
+
+    /**
+     * Convert an object, which is not null.
+     */
+    abstract JSONValue write(Object value);
+
+    /**
+     * Read a value straight from text. By default we parse the value and
+     * convert it; containers override this to avoid building the value.
+     */
+    Object readText(JSONReader in) throws Exception {
+      return read(in.nextValue());
+    } // readText(JSONReader)
+
+    /**
+     * Get the binding to use for a primitive version of this type.
+     */
+    Binding primitive() {
+      return this;
+    } // primitive()
+
+    /**
+     * Convert an object that may be null.
+     */
+    JSONValue writeOrNull(Object value) {
+      return (value == null) ? JSONConstant.NULL : write(value);
+    } // writeOrNull(Object)
+  } // class Binding
+
+  /**
+   * Strings, numbers and booleans.
+   */
+  static final class ScalarBinding extends Binding {
+    final Class<?> type;
+    final Object nullValue;
+    final Function<JSONValue, Object> reader;
+    final Function<Object, JSONValue> writer;
+
+    ScalarBinding(Class<?> type, Object nullValue, Function<JSONValue, Object> reader,
+        Function<Object, JSONValue> writer) {
+      this.type = type;
+      this.nullValue = nullValue;
+      this.reader = reader;
+      this.writer = writer;
+    } // ScalarBinding(...)
+
+    Object read(JSONValue value) {
+      if (JSONConstant.NULL.equals(value)) {
+        return null;
+      } // if
+      Object result = this.reader.apply(value);
+      if (result == null) {
+        throw mismatch(value, this.type);
+      } // if
+      return result;
+    } // read(JSONValue)
+
+    JSONValue write(Object value) {
+      return this.writer.apply(value);
+    } // write(Object)
+
+    /**
+     * The same, but reading null as zero or false.
+     */
+    Binding primitive() {
+      ScalarBinding boxed = this;
+      return new Binding() {
+        Object read(JSONValue value) {
+          Object result = boxed.read(value);
+          return (result == null) ? boxed.nullValue : result;
+        } // read(JSONValue)
+
+        JSONValue write(Object value) {
+          return boxed.write(value);
+        } // write(Object)
+      }; // new Binding
+    } // primitive()
+  } // class ScalarBinding
+
+  /**
+   * JSONValue and its subclasses, which are passed through.
+   */
+  static final class ValueBinding extends Binding {
+    final Class<?> type;
+
+    ValueBinding(Class<?> type) {
+      this.type = type;
+    } // ValueBinding(Class<?>)
+
+    Object read(JSONValue value) {
+      if (!this.type.isInstance(value)) {
+        throw mismatch(value, this.type);
+      } // if
+      return value;
+    } // read(JSONValue)
+
+    JSONValue write(Object value) {
+      return (JSONValue) value;
+    } // write(Object)
+  } // class ValueBinding
+
+  /**
+   * Object: values are read as themselves and written by their class.
+   */
+  static final class DynamicBinding extends Binding {
+    Object read(JSONValue value) {
+      return JSONConstant.NULL.equals(value) ? null : value;
+    } // read(JSONValue)
+
+    JSONValue write(Object value) {
+      if (value.getClass() == Object.class) {
+        throw new IllegalArgumentException("Cannot write a plain Object");
+      } // if
+      return BINDINGS.get(value.getClass()).write(value);
+    } // write(Object)
+  } // class DynamicBinding
+
+  /**
+   * Enums, written as the names of their constants.
+   */
+  static final class EnumBinding extends Binding {
+    final Class<?> type;
+    final HashMap<String, Object> constants = new HashMap<String, Object>();
+
+    EnumBinding(Class<?> type) {
+      this.type = type;
+      for (Object constant : type.getEnumConstants()) {
+        this.constants.put(((Enum<?>) constant).name(), constant);
+      } // for
+    } // EnumBinding(Class<?>)
+
+    Object read(JSONValue value) {
+      if (JSONConstant.NULL.equals(value)) {
+        return null;
+      } // if
+      Object result = (value instanceof JSONString) ? this.constants.get(((JSONString) value).getValue()) : null;
+      if (result == null) {
+        throw mismatch(value, this.type);
+      } // if
+      return result;
+    } // read(JSONValue)
+
+    JSONValue write(Object value) {
+      return new JSONString(((Enum<?>) value).name());
+    } // write(Object)
+  } // class EnumBinding
+
+  /**
+   * Arrays, read from and written to JSONArrays.
+   */
+  static final class ArrayBinding extends Binding {
+    final Class<?> componentType;
+    final Binding component;
+
+    /**
+     * Handles that make an array of a given length, and get its length,
+     * set an element and get one, built once so that reading and writing
+     * an element involves no reflection.
+     */
+    final MethodHandle constructor;
+    final MethodHandle length;
+    final MethodHandle setter;
+    final MethodHandle getter;
+
+    ArrayBinding(Class<?> componentType) {
+      this.componentType = componentType;
+      this.component = BINDINGS.get(componentType);
+      Class<?> arrayType = componentType.arrayType();
+      this.constructor = MethodHandles.arrayConstructor(arrayType)
+          .asType(MethodType.methodType(Object.class, int.class));
+      this.length = MethodHandles.arrayLength(arrayType)
+          .asType(MethodType.methodType(int.class, Object.class));
+      this.setter = MethodHandles.arrayElementSetter(arrayType)
+          .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+      this.getter = MethodHandles.arrayElementGetter(arrayType)
+          .asType(MethodType.methodType(Object.class, Object.class, int.class));
+    } // ArrayBinding(Class<?>)
+
+    Object read(JSONValue value) {
+      if (JSONConstant.NULL.equals(value)) {
+        return null;
+      } else if (!(value instanceof JSONArray)) {
+        throw mismatch(value, this.componentType.arrayType());
+      } // if-else
+      JSONArray array = (JSONArray) value;
+      try {
+        Object result = (Object) this.constructor.invokeExact(array.size());
+        for (int i = 0; i < array.size(); i++) {
+          this.setter.invokeExact(result, i, this.component.read(array.get(i)));
+        } // for
+        return result;
+      } catch (Throwable t) {
+        throw rethrow(t);
+      } // try-catch
+    } // read(JSONValue)
+
+    Object readText(JSONReader in) throws Exception {
+      if (!in.beginArray()) {
+        return null;
+      } // if
+      ArrayList<Object> values = new ArrayList<Object>();
+      while (in.hasNext()) {
+        values.add(this.component.readText(in));
+      } // while
+      try {
+        Object result = (Object) this.constructor.invokeExact(values.size());
+        for (int i = 0; i < values.size(); i++) {
+          this.setter.invokeExact(result, i, values.get(i));
+        } // for
+        return result;
+      } catch (Throwable t) {
+        throw rethrow(t);
+      } // try-catch
+    } // readText(JSONReader)
+
+    JSONValue write(Object value) {
+      JSONArray result = new JSONArray();
+      try {
+        int length = (int) this.length.invokeExact(value);
+        for (int i = 0; i < length; i++) {
+          result.add(this.component.writeOrNull((Object) this.getter.invokeExact(value, i)));
+        } // for
+      } catch (Throwable t) {
+        throw rethrow(t);
+      } // try-catch
+      return result;
+    } // write(Object)
+  } // class ArrayBinding
+
+  /**
+   * Lists, sets and other collections, read from and written to
+   * JSONArrays.
+   */
+  static final class CollectionBinding extends Binding {
+    final Class<?> type;
+    final Binding element;
+    final Supplier<Collection<Object>> factory;
+
+    CollectionBinding(Class<?> type, Binding element) {
+      this.type = type;
+      this.element = element;
+      this.factory = factory(type);
+    } // CollectionBinding(Class<?>, Binding)
+
+    /**
+     * Decide how to make a new collection of a type.
+     */
+    @SuppressWarnings("unchecked")
+    static Supplier<Collection<Object>> factory(Class<?> type) {
+      if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+        MethodHandle constructor = noArgConstructor(type);
+        return () -> {
+          try {
+            return (Collection<Object>) (Object) constructor.invokeExact();
+          } catch (Throwable t) {
+            throw rethrow(t);
+          } // try-catch
+        };
+      } else if (SortedSet.class.isAssignableFrom(type)) {
+        return TreeSet::new;
+      } else if (Set.class.isAssignableFrom(type)) {
+        return LinkedHashSet::new;
+      } // if-else
+      return ArrayList::new;
+    } // factory(Class<?>)
+
+    Object read(JSONValue value) {
+      if (JSONConstant.NULL.equals(value)) {
+        return null;
+      } else if (!(value instanceof JSONArray)) {
+        throw mismatch(value, this.type);
+      } // if-else
+      Collection<Object> result = this.factory.get();
+      Iterator<JSONValue> values = ((JSONArray) value).iterator();
+      while (values.hasNext()) {
+        result.add(this.element.read(values.next()));
+      } // while
+      return result;
+    } // read(JSONValue)
+
+    Object readText(JSONReader in) throws Exception {
+      if (!in.beginArray()) {
+        return null;
+      } // if
+      Collection<Object> result = this.factory.get();
+      while (in.hasNext()) {
+        result.add(this.element.readText(in));
+      } // while
+      return result;
+    } // readText(JSONReader)
+
+    JSONValue write(Object value) {
+      JSONArray result = new JSONArray();
+      for (Object element : (Collection<?>) value) {
+        result.add(this.element.writeOrNull(element));
+      } // for
+      return result;
+    } // write(Object)
+  } // class CollectionBinding
+
+  /**
+   * Maps with string keys, read from and written to JSONHashes.
+   */
+  static final class MapBinding extends Binding {
+    final Class<?> type;
+    final Binding element;
+    final Supplier<Map<String, Object>> factory;
+
+    @SuppressWarnings("unchecked")
+    MapBinding(Class<?> type, Binding element) {
+      this.type = type;
+      this.element = element;
+      if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+        MethodHandle constructor = noArgConstructor(type);
+        this.factory = () -> {
+          try {
+            return (Map<String, Object>) (Object) constructor.invokeExact();
+          } catch (Throwable t) {
+            throw rethrow(t);
+          } // try-catch
+        };
+      } else if (SortedMap.class.isAssignableFrom(type)) {
+        this.factory = TreeMap::new;
+      } else {
+        this.factory = LinkedHashMap::new;
+      } // if-else
+    } // MapBinding(Class<?>, Binding)
+
+    Object read(JSONValue value) {
+      if (JSONConstant.NULL.equals(value)) {
+        return null;
+      } else if (!(value instanceof JSONHash)) {
+        throw mismatch(value, this.type);
+      } // if-else
+      Map<String, Object> result = this.factory.get();
+      Iterator<KVPair<JSONString, JSONValue>> pairs = ((JSONHash) value).iterator();
+      while (pairs.hasNext()) {
+        KVPair<JSONString, JSONValue> pair = pairs.next();
+        result.put(pair.key().getValue(), this.element.read(pair.value()));
+      } // while
+      return result;
+    } // read(JSONValue)
+
+    Object readText(JSONReader in) throws Exception {
+      if (!in.beginHash()) {
+        return null;
+      } // if
+      Map<String, Object> result = this.factory.get();
+      while (in.hasNext()) {
+        String key = in.nextKey();
+        result.put(key, this.element.readText(in));
+      } // while
+      return result;
+    } // readText(JSONReader)
+
+    JSONValue write(Object value) {
+      JSONHash result = new JSONHash();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        result.set(new JSONString(String.valueOf(entry.getKey())), this.element.writeOrNull(entry.getValue()));
+      } // for
+      return result;
+    } // write(Object)
+  } // class MapBinding
+
+  /**
+   * Get a handle for the no-argument constructor of a class.
+   */
+  static MethodHandle noArgConstructor(Class<?> type) {
+    try {
+      return handle(type.getDeclaredConstructor(), MethodType.methodType(Object.class));
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException("Cannot bind " + type.getName() + ": it has no no-argument constructor", e);
+    } // try-catch
+  } // noArgConstructor(Class<?>)
+
+  /**
+   * One property of a record or POJO.
+   */
+  static final class Property {
+    /**
+     * The name, as a key, hashed in advance.
+     */
+    final JSONString key;
+
+    /**
+     * The declared type.
+     */
+    final Type type;
+
+    /**
+     * Gets the property from an object: (Object) -> Object.
+     */
+    final MethodHandle getter;
+
+    /**
+     * Sets the property on a POJO: (Object, Object) -> void. Null for
+     * records, which are built by their constructor.
+     */
+    final MethodHandle setter;
+
+    /**
+     * The position of the property in a record's constructor.
+     */
+    final int position;
+
+    /**
+     * The binding for the type, found on first use so that types can
+     * refer to themselves.
+     */
+    Binding binding;
+
+    Property(String name, Type type, MethodHandle getter, MethodHandle setter, int position) {
+      this.key = new JSONString(name);
+      this.key.seededHash();
+      this.type = type;
+      this.getter = getter;
+      this.setter = setter;
+      this.position = position;
+    } // Property(String, Type, MethodHandle, MethodHandle, int)
+
+    Binding binding() {
+      Binding result = this.binding;
+      if (result == null) {
+        result = bindingFor(this.type);
+        this.binding = result;
+      } // if
+      return result;
+    } // binding()
+  } // class Property
+
+  /**
+   * Records and POJOs, read from and written to JSONHashes.
+   */
+  static final class ObjectBinding extends Binding {
+    final Class<?> type;
+    final boolean isRecord;
+    final Property[] properties;
+    final HashMap<String, Property> byName = new HashMap<String, Property>();
+
+    /**
+     * Builds an instance. For a record, takes an Object[] of the
+     * components; for a POJO, takes nothing.
+     */
+    final MethodHandle constructor;
+
+    /**
+     * The values of any primitive record components, used when the JSON
+     * leaves them out.
+     */
+    final Object[] defaults;
+
+    ObjectBinding(Class<?> type, boolean isRecord) {
+      this.type = type;
+      this.isRecord = isRecord;
+      MethodType getterType = MethodType.methodType(Object.class, Object.class);
+      ArrayList<Property> found = new ArrayList<Property>();
+      if (isRecord) {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] types = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+          types[i] = components[i].getType();
+          found.add(new Property(components[i].getName(), components[i].getGenericType(),
+              handle(components[i].getAccessor(), getterType), null, i));
+        } // for
+        try {
+          this.constructor = handle(type.getDeclaredConstructor(types),
+              MethodType.methodType(Object.class, types).generic())
+              .asSpreader(Object[].class, types.length);
+        } catch (NoSuchMethodException e) {
+          throw new IllegalArgumentException("Cannot bind " + type.getName(), e);
+        } // try-catch
+        this.defaults = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+          if (types[i].isPrimitive()) {
+            this.defaults[i] = Array.get(Array.newInstance(types[i], 1), 0);
+          } // if
+        } // for
+      } else {
+        this.constructor = noArgConstructor(type);
+        this.defaults = null;
+        MethodType setterType = MethodType.methodType(void.class, Object.class, Object.class);
+        for (Class<?> c = type; (c != null) && (c != Object.class); c = c.getSuperclass()) {
+          for (Field field : c.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+              continue;
+            } // if
+            found.add(new Property(field.getName(), field.getGenericType(),
+                handle(field, getterType), handle(field, setterType), -1));
+          } // for
+        } // for
+      } // if-else
+      this.properties = found.toArray(new Property[0]);
+      for (Property property : this.properties) {
+        this.byName.putIfAbsent(property.key.getValue(), property);
+      } // for
+    } // ObjectBinding(Class<?>, boolean)
+
+    Object read(JSONValue value) {
+      if (JSONConstant.NULL.equals(value)) {
+        return null;
+      } else if (!(value instanceof JSONHash)) {
+        throw mismatch(value, this.type);
+      } // if-else
+      JSONHash hash = (JSONHash) value;
+      try {
+        if (this.isRecord) {
+          Object[] args = this.defaults.clone();
+          for (Property property : this.properties) {
+            JSONValue member = hash.getOrNull(property.key);
+            if (member != null) {
+              Object arg = property.binding().read(member);
+              if (arg != null) {
+                args[property.position] = arg;
+              } // if
+            } // if
+          } // for
+          return this.constructor.invokeExact(args);
+        } // if
+        Object result = this.constructor.invokeExact();
+        for (Property property : this.properties) {
+          JSONValue member = hash.getOrNull(property.key);
+          if (member != null) {
+            set(property, result, property.binding().read(member));
+          } // if
+        } // for
+        return result;
+      } catch (Throwable t) {
+        throw rethrow(t);
+      } // try-catch
+    } // read(JSONValue)
+
+    Object readText(JSONReader in) throws Exception {
+      if (!in.beginHash()) {
+        return null;
+      } // if
+      Object[] args = this.isRecord ? this.defaults.clone() : null;
+      Object result = null;
+      try {
+        if (!this.isRecord) {
+          result = this.constructor.invokeExact();
+        } // if
+        while (in.hasNext()) {
+          Property property = this.byName.get(in.nextKey());
+          if (property == null) {
+            // not one of ours, so parse it only to skip it
+            in.skipValue();
+            continue;
+          } // if
+          Object value = property.binding().readText(in);
+          if (this.isRecord) {
+            if (value != null) {
+              args[property.position] = value;
+            } // if
+          } else {
+            set(property, result, value);
+          } // if-else
+        } // while
+        if (this.isRecord) {
+          result = this.constructor.invokeExact(args);
+        } // if
+      } catch (Exception | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw rethrow(t);
+      } // try-catch
+      return result;
+    } // readText(JSONReader)
+
+    /**
+     * Set a POJO property, leaving primitives alone when the value is null.
+     */
+    void set(Property property, Object target, Object value) throws Throwable {
+      if ((value != null) || !(property.type instanceof Class) || !((Class<?>) property.type).isPrimitive()) {
+        property.setter.invokeExact(target, value);
+      } // if
+    } // set(Property, Object, Object)
+
+    JSONValue write(Object value) {
+      if (value.getClass() != this.type) {
+        // a subclass of the declared type, which may have more properties
+        return BINDINGS.get(value.getClass()).write(value);
+      } // if
+      JSONHash result = new JSONHash();
+      try {
+        for (Property property : this.properties) {
+          Object member = (Object) property.getter.invokeExact(value);
+          JSONValue written;
+          try {
+            written = property.binding().writeOrNull(member);
+          } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cannot write " + this.type.getSimpleName() + "."
+                + property.key + ": " + e.getMessage(), e);
+          } // try-catch
+          result.set(property.key, written);
+        } // for
+      } catch (Throwable t) {
+        throw rethrow(t);
+      } // try-catch
+      return result;
+    } // write(Object)
+  } // class ObjectBinding
+
+} // class JSONMapper
@@ -0,0 +1,439 @@
+package src;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Formats numbers straight into char arrays, for the writers. Integers
+ * and decimals that fit in a long are written two digits at a time with
+ * no intermediate String. Doubles are reduced to their shortest decimal
+ * that reads back as the same double, closest to it when there is a
+ * choice, by Giulietti's Schubfach algorithm ("The Schubfach way to
+ * render doubles", 2020), which needs only a few 64-bit multiplications
+ * by a table of 126-bit powers of ten.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+final class JSONNumbers {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most chars writeLong writes.
+   */
+  static final int MAX_LONG_CHARS = 20;
+
+  /**
+   * The pairs of digits 00 to 99, tens then units.
+   */
+  static final char[] PAIRS = new char[200];
+
+  /**
+   * The bits of a double: 52 of significand, 11 of biased exponent.
+   */
+  static final long T_MASK = (1L << 52) - 1;
+  static final int BQ_MASK = 0x7FF;
+
+  /**
+   * The smallest exponent, the smallest normal significand, and the
+   * subnormal significands too small for Schubfach.
+   */
+  static final int Q_MIN = -1074;
+  static final long C_MIN = 1L << 52;
+  static final long C_TINY = 3;
+
+  /**
+   * The exponents k for which the table of powers of ten holds g(k).
+   */
+  static final int K_MIN = -324;
+  static final int K_MAX = 292;
+
+  static final long MASK_63 = (1L << 63) - 1;
+
+  static {
+    for (int i = 0; i < 100; i++) {
+      PAIRS[2 * i] = (char) ('0' + i / 10);
+      PAIRS[2 * i + 1] = (char) ('0' + i % 10);
+    } // for
+  } // static
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  private JSONNumbers() {
+  } // JSONNumbers()
+
+  // +----------+----------------------------------------------------
+  // | Integers |
+  // +----------+
+
+  /**
+   * Write the digits of n, with a minus sign if negative, at buf[pos].
+   * Returns the position after the last char. buf needs room for
+   * MAX_LONG_CHARS.
+   */
+  static int writeLong(long n, char[] buf, int pos) {
+    if (n < 0) {
+      if (n == Long.MIN_VALUE) {
+        "-9223372036854775808".getChars(0, MAX_LONG_CHARS, buf, pos);
+        return pos + MAX_LONG_CHARS;
+      } // if
+      buf[pos++] = '-';
+      n = -n;
+    } // if
+    int end = pos + digits(n);
+    writeDigits(n, buf, end);
+    return end;
+  } // writeLong(long, char[], int)
+
+  /**
+   * Write the digits of a non-negative n so that they end just before
+   * buf[end].
+   */
+  static void writeDigits(long n, char[] buf, int end) {
+    while (n >= 100) {
+      int pair = (int) (n % 100) * 2;
+      n /= 100;
+      buf[--end] = PAIRS[pair + 1];
+      buf[--end] = PAIRS[pair];
+    } // while
+    if (n >= 10) {
+      buf[--end] = PAIRS[(int) n * 2 + 1];
+      buf[--end] = PAIRS[(int) n * 2];
+    } else {
+      buf[--end] = (char) ('0' + n);
+    } // if-else
+  } // writeDigits(long, char[], int)
+
+  /**
+   * Count the decimal digits of a non-negative n.
+   */
+  static int digits(long n) {
+    int count = 1;
+    long bound = 10;
+    while ((count < 19) && (n >= bound)) {
+      count++;
+      bound *= 10;
+    } // while
+    return count;
+  } // digits(long)
+
+  /**
+   * Write an integer as BigInteger.toString would, at buf[pos], if it
+   * fits in a long. Returns the position after the last char, or -1 if
+   * it does not fit.
+   */
+  static int writeInteger(BigInteger n, char[] buf, int pos) {
+    if (n.bitLength() >= 64) {
+      return -1;
+    } // if
+    return writeLong(n.longValue(), buf, pos);
+  } // writeInteger(BigInteger, char[], int)
+
+  // +----------+----------------------------------------------------
+  // | Decimals |
+  // +----------+
+
+  /**
+   * Write a decimal as BigDecimal.toString would, at buf[pos], if its
+   * unscaled value fits in a long and toString would not use exponent
+   * notation. Returns the position after the last char, or -1 if not.
+   * buf needs room for MAX_LONG_CHARS + 8 chars.
+   */
+  static int writeDecimal(BigDecimal d, char[] buf, int pos) {
+    int scale = d.scale();
+    // toString uses exponent notation for negative scales, and when the
+    // first digit is more than six places after the point
+    if ((scale < 0) || (scale > 18) || (d.precision() > 18) || (d.precision() - scale < -5)) {
+      return -1;
+    } // if
+    long unscaled = d.unscaledValue().longValue();
+    if (scale == 0) {
+      return writeLong(unscaled, buf, pos);
+    } // if
+    if (unscaled < 0) {
+      buf[pos++] = '-';
+      unscaled = -unscaled;
+    } // if
+    int count = digits(unscaled);
+    if (count > scale) {
+      // ddd.ddd: write the digits, then shift the fraction along one
+      writeDigits(unscaled, buf, pos + count);
+      System.arraycopy(buf, pos + count - scale, buf, pos + count - scale + 1, scale);
+      buf[pos + count - scale] = '.';
+      return pos + count + 1;
+    } // if
+    // 0.000ddd
+    buf[pos++] = '0';
+    buf[pos++] = '.';
+    for (int i = count; i < scale; i++) {
+      buf[pos++] = '0';
+    } // for
+    writeDigits(unscaled, buf, pos + count);
+    return pos + count;
+  } // writeDecimal(BigDecimal, char[], int)
+
+  /**
+   * Fill buf[from, to) with zeros.
+   */
+  static void zeroPad(char[] buf, int from, int to) {
+    for (int i = from; i < to; i++) {
+      buf[i] = '0';
+    } // for
+  } // zeroPad(char[], int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Doubles |
+  // +---------+
+
+  /**
+   * Find the shortest decimal that reads back as a finite, positive d.
+   * Sets shortest.digits, which has no trailing zeros, and
+   * shortest.exponent, so that d reads back from 0.digits times 10 to
+   * the exponent.
+   */
+  static void shortest(double d, Shortest shortest) {
+    long bits = Double.doubleToRawLongBits(d);
+    long t = bits & T_MASK;
+    int bq = (int) (bits >>> 52) & BQ_MASK;
+    if (bq != 0) {
+      // normal: d = c 2^q
+      int mq = -Q_MIN + 1 - bq;
+      long c = C_MIN | t;
+      if ((0 < mq) && (mq < 53)) {
+        // integers below 2^53 are exactly their own digits
+        long f = c >> mq;
+        if (f << mq == c) {
+          digits(f, 0, shortest);
+          return;
+        } // if
+      } // if
+      schubfach(-mq, c, shortest);
+    } else if (t < C_TINY) {
+      // Schubfach needs more digits of room than the two smallest
+      // subnormals have; their shortest forms are 5e-324 and 1e-323
+      digits((t == 1) ? 5 : 1, (t == 1) ? -324 : -323, shortest);
+    } else {
+      schubfach(Q_MIN, t, shortest);
+    } // if-else
+  } // shortest(double, Shortest)
+
+  /**
+   * Find the shortest decimal for c 2^q, as in figure 7 of the Schubfach
+   * paper, computed as in its figure 9.
+   */
+  static void schubfach(int q, long c, Shortest shortest) {
+    // a decimal on the boundary of the rounding interval reads back as
+    // d only when c is even
+    int out = (int) c & 1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if ((c != C_MIN) || (q == Q_MIN)) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      // at a power of two the interval below is half as wide
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    } // if-else
+    int h = q + flog2pow10(-k) + 2;
+    long g1 = Powers.G[2 * (k - K_MIN)];
+    long g0 = Powers.G[2 * (k - K_MIN) + 1];
+    long vb = rop(g1, g0, cb << h);
+    long vbl = rop(g1, g0, cbl << h);
+    long vbr = rop(g1, g0, cbr << h);
+
+    long s = vb >> 2;
+    if (s >= 10) {
+      // try one digit fewer: sp10 = 10 floor(s / 10). Double.toString
+      // skips this below 100 to keep two digits; ECMAScript wants fewest
+      long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+      long tp10 = sp10 + 10;
+      boolean upin = vbl + out <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        digits(upin ? sp10 : tp10, k, shortest);
+        return;
+      } // if
+    } // if
+    long t = s + 1;
+    boolean uin = vbl + out <= s << 2;
+    boolean win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      digits(uin ? s : t, k, shortest);
+      return;
+    } // if
+    // both s and s + 1 read back: take the closer, or the even one
+    long cmp = vb - ((s + t) << 1);
+    digits(((cmp < 0) || ((cmp == 0) && ((s & 1) == 0))) ? s : t, k, shortest);
+  } // schubfach(int, long, Shortest)
+
+  /**
+   * Compute cp g 2^-127, rounded to odd, where g = g1 2^63 + g0.
+   */
+  static long rop(long g1, long g0, long cp) {
+    long x1 = Math.multiplyHigh(g0, cp);
+    long y0 = g1 * cp;
+    long y1 = Math.multiplyHigh(g1, cp);
+    long z = (y0 >>> 1) + x1;
+    long vbp = y1 + (z >>> 63);
+    return vbp | (((z & MASK_63) + MASK_63) >>> 63);
+  } // rop(long, long, long)
+
+  /**
+   * Record f 10^e as shortest.digits and shortest.exponent, dropping
+   * trailing zeros from f.
+   */
+  static void digits(long f, int e, Shortest shortest) {
+    while (f % 10 == 0) {
+      f /= 10;
+      e++;
+    } // while
+    shortest.digits = f;
+    shortest.exponent = digits(f) + e;
+  } // digits(long, int, Shortest)
+
+  /**
+   * Get floor(e log10(2)), for |e| up to 5456721.
+   */
+  static int flog10pow2(int e) {
+    return (int) ((e * 661_971_961_083L) >> 41);
+  } // flog10pow2(int)
+
+  /**
+   * Get floor(log10(3/4 2^e)), for |e| up to 5456721.
+   */
+  static int flog10threeQuartersPow2(int e) {
+    return (int) ((e * 661_971_961_083L - 274_743_187_321L) >> 41);
+  } // flog10threeQuartersPow2(int)
+
+  /**
+   * Get floor(e log2(10)), for |e| up to 1233.
+   */
+  static int flog2pow10(int e) {
+    return (int) ((e * 913_124_641_741L) >> 38);
+  } // flog2pow10(int)
+
+  /**
+   * Convert a double to the BigDecimal that BigDecimal.valueOf(d) gives
+   * (the decimal of Double.toString(d), with its scale), but from the
+   * shortest digits and without building a String. Double.toString
+   * always writes a digit after the point: 1.0, 1.0E20, 1.5E-7.
+   */
+  static BigDecimal toBigDecimal(double d) {
+    if (Double.isNaN(d) || Double.isInfinite(d)) {
+      throw new NumberFormatException("Infinite or NaN");
+    } else if (d == 0) {
+      return BigDecimal.valueOf(0, 1);
+    } // if-else
+    Shortest shortest = new Shortest();
+    shortest(Math.abs(d), shortest);
+    long digits = shortest.digits;
+    int count = digits(digits);
+    int n = shortest.exponent;
+    int scale;
+    if ((Math.abs(d) >= 1e-3) && (Math.abs(d) < 1e7)) {
+      // plain: ddd.ddd, at least one digit after the point
+      scale = Math.max(1, count - n);
+    } else {
+      // exponent: d.ddd times 10 to the n - 1, at least one digit after
+      scale = Math.max(1, count - 1) - (n - 1);
+    } // if-else
+    // pad with zeros up to the scale
+    for (int i = count - n; i < scale; i++) {
+      digits *= 10;
+    } // for
+    return BigDecimal.valueOf((d < 0) ? -digits : digits, scale);
+  } // toBigDecimal(double)
+
+  /**
+   * Write a double as ECMAScript's Number.prototype.toString does, at
+   * buf[pos]: the shortest digits, in plain notation from 1e-6 up to
+   * 1e21 and in exponent notation beyond. Returns the position after the
+   * last char. buf needs room for 32 chars.
+   */
+  static int writeECMAScript(double d, char[] buf, int pos) {
+    if (d == 0) {
+      buf[pos] = '0';
+      return pos + 1;
+    } else if (d < 0) {
+      buf[pos++] = '-';
+      d = -d;
+    } // if-else
+    Shortest shortest = new Shortest();
+    shortest(d, shortest);
+    long digits = shortest.digits;
+    int k = digits(digits);
+    int n = shortest.exponent;
+    if ((k <= n) && (n <= 21)) {
+      writeDigits(digits, buf, pos + k);
+      zeroPad(buf, pos + k, pos + n);
+      return pos + n;
+    } else if ((0 < n) && (n <= 21)) {
+      writeDigits(digits, buf, pos + k + 1);
+      System.arraycopy(buf, pos + 1, buf, pos, n);
+      buf[pos + n] = '.';
+      return pos + k + 1;
+    } else if ((-6 < n) && (n <= 0)) {
+      buf[pos++] = '0';
+      buf[pos++] = '.';
+      zeroPad(buf, pos, pos - n);
+      pos -= n;
+      writeDigits(digits, buf, pos + k);
+      return pos + k;
+    } // if-else
+    writeDigits(digits, buf, pos + k + 1);
+    buf[pos] = buf[pos + 1];
+    pos++;
+    if (k > 1) {
+      buf[pos] = '.';
+      pos += k;
+    } // if
+    buf[pos++] = 'e';
+    buf[pos++] = (n - 1 >= 0) ? '+' : '-';
+    return writeLong(Math.abs(n - 1), buf, pos);
+  } // writeECMAScript(double, char[], int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * The table of powers of ten, built when first needed. For each k from
+   * K_MIN to K_MAX, write 10^-k as b 2^r with 2^125 <= b < 2^126; then
+   * g(k) = floor(b) + 1, held as its high and low 63 bits.
+   */
+  static final class Powers {
+    static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static {
+      for (int k = K_MIN; k <= K_MAX; k++) {
+        int shift = 125 - flog2pow10(-k);
+        BigInteger b;
+        if (k <= 0) {
+          b = BigInteger.TEN.pow(-k);
+          b = (shift >= 0) ? b.shiftLeft(shift) : b.shiftRight(-shift);
+        } else {
+          b = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+        } // if-else
+        BigInteger g = b.add(BigInteger.ONE);
+        G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+        G[2 * (k - K_MIN) + 1] = g.longValue() & MASK_63;
+      } // for
+    } // static
+  } // class Powers
+
+  /**
+   * The shortest decimal for a double: 0.digits times 10 to the exponent.
+   */
+  static final class Shortest {
+    long digits;
+    int exponent;
+  } // class Shortest
+
+} // class JSONNumbers
@@ -0,0 +1,32 @@
+package src;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one document parsed by JSON.parse. Disabled
+ * unless a recording enables json.Parse, in which case its duration and
+ * fields can be lined up with GC and CPU samples.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+@Name("json.Parse")
+@Label("JSON Parse")
+@Category("JSON")
+@Description("Parsing of one JSON document")
+class JSONParseEvent extends jdk.jfr.Event {
+
+  @Label("Characters")
+  @Description("Characters consumed, including whitespace")
+  long chars;
+
+  @Label("Nodes")
+  @Description("Values in the document, including keys")
+  long nodes;
+
+  @Label("Max Depth")
+  int maxDepth;
+
+} // class JSONParseEvent
@@ -0,0 +1,331 @@
+package src;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A compiled JSON Pointer (RFC 6901), such as "/order/items/0/sku". The
+ * pointer is parsed once into key segments whose hashes are computed up
+ * front, so following it through many documents costs only the table
+ * and array lookups. Pointers are immutable and may be shared between
+ * threads.
+ *
+ * Lookups never throw: a pointer that does not lead anywhere in a
+ * document gives null, or the default passed to the typed getters.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONPointer {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The pointer as written.
+   */
+  final String text;
+
+  /**
+   * The key for each segment, used when the value reached is a hash.
+   */
+  final JSONString[] keys;
+
+  /**
+   * The index for each segment, used when the value reached is an
+   * array, or -1 if the segment is not a valid array index.
+   */
+  final int[] indices;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a pointer from its parsed segments.
+   */
+  JSONPointer(String text, JSONString[] keys, int[] indices) {
+    this.text = text;
+    this.keys = keys;
+    this.indices = indices;
+  } // JSONPointer(String, JSONString[], int[])
+
+  /**
+   * Compile a pointer. The empty string refers to the whole document;
+   * anything else must start with "/". Within a segment, "~1" stands
+   * for "/" and "~0" for "~".
+   *
+   * @throws IllegalArgumentException if the pointer is malformed.
+   */
+  public static JSONPointer compile(String pointer) {
+    if (!pointer.isEmpty() && (pointer.charAt(0) != '/')) {
+      throw new IllegalArgumentException("JSON pointer must start with /: " + pointer);
+    } // if
+    ArrayList<String> segments = new ArrayList<String>();
+    int start = 1;
+    while (start <= pointer.length()) {
+      int end = pointer.indexOf('/', start);
+      if (end < 0) {
+        end = pointer.length();
+      } // if
+      segments.add(unescape(pointer, start, end));
+      start = end + 1;
+    } // while
+    JSONString[] keys = new JSONString[segments.size()];
+    int[] indices = new int[segments.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new JSONString(segments.get(i));
+      // compute the hashes now rather than on every lookup
+      keys[i].seededHash();
+      keys[i].hashCode();
+      indices[i] = arrayIndex(segments.get(i));
+    } // for
+    return new JSONPointer(pointer, keys, indices);
+  } // compile(String)
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string, giving the pointer as written.
+   */
+  public String toString() {
+    return this.text;
+  } // toString()
+
+  /**
+   * Compare to another object.
+   */
+  public boolean equals(Object other) {
+    return (other instanceof JSONPointer) && this.text.equals(((JSONPointer) other).text);
+  } // equals(Object)
+
+  /**
+   * Compute the hash code.
+   */
+  public int hashCode() {
+    return this.text.hashCode();
+  } // hashCode()
+
+  // +---------+-----------------------------------------------------
+  // | Lookups |
+  // +---------+
+
+  /**
+   * Get the value the pointer refers to in doc, or null if there is
+   * none.
+   */
+  public JSONValue get(JSONValue doc) {
+    JSONValue current = doc;
+    for (int i = 0; (i < this.keys.length) && (current != null); i++) {
+      current = step(current, this.keys[i], this.indices[i]);
+    } // for
+    return current;
+  } // get(JSONValue)
+
+  /**
+   * Get the integer the pointer refers to in doc, or otherwise if there
+   * is none or it does not fit in a long.
+   */
+  public long getLong(JSONValue doc, long otherwise) {
+    JSONValue value = get(doc);
+    return (value == null) ? otherwise : value.asLong(otherwise);
+  } // getLong(JSONValue, long)
+
+  /**
+   * Get the number the pointer refers to in doc, or otherwise if there
+   * is none.
+   */
+  public double getDouble(JSONValue doc, double otherwise) {
+    JSONValue value = get(doc);
+    return (value == null) ? otherwise : value.asDouble(otherwise);
+  } // getDouble(JSONValue, double)
+
+  /**
+   * Get the string the pointer refers to in doc, or otherwise if there
+   * is none.
+   */
+  public String getString(JSONValue doc, String otherwise) {
+    JSONValue value = get(doc);
+    return (value == null) ? otherwise : value.asString(otherwise);
+  } // getString(JSONValue, String)
+
+  /**
+   * Get the boolean the pointer refers to in doc, or otherwise if there
+   * is none.
+   */
+  public boolean getBoolean(JSONValue doc, boolean otherwise) {
+    JSONValue value = get(doc);
+    return (value == null) ? otherwise : value.asBoolean(otherwise);
+  } // getBoolean(JSONValue, boolean)
+
+  /**
+   * Get the number of segments.
+   */
+  public int size() {
+    return this.keys.length;
+  } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Updates |
+  // +---------+
+
+  /**
+   * Build a copy of doc in which the value the pointer refers to is
+   * replaced by value (or added, if the last segment names a missing
+   * key). Only the hashes and arrays along the path are copied; every
+   * other value is shared with doc, which is left unchanged. If doc is
+   * frozen, so is the copy, and canonicalizing it reuses the kept
+   * canonical form of every subtree off the path.
+   *
+   * @throws IllegalArgumentException if the path leads through a value
+   *   that is not a hash or array, or to an array index out of range.
+   */
+  public JSONValue replace(JSONValue doc, JSONValue value) {
+    if (this.keys.length == 0) {
+      return value;
+    } // if
+    JSONValue[] path = new JSONValue[this.keys.length];
+    JSONValue current = doc;
+    for (int i = 0; i < path.length; i++) {
+      if (!(current instanceof JSONHash) && !(current instanceof JSONArray)) {
+        throw new IllegalArgumentException("No hash or array at \"" + prefix(i) + "\" to replace within");
+      } // if
+      path[i] = current;
+      if (i + 1 < path.length) {
+        current = step(current, this.keys[i], this.indices[i]);
+      } // if
+    } // for
+    JSONValue result = value;
+    for (int i = path.length - 1; i >= 0; i--) {
+      result = copyWith(path[i], this.keys[i], this.indices[i], result);
+    } // for
+    if (isFrozen(doc)) {
+      freeze(result);
+    } // if
+    return result;
+  } // replace(JSONValue, JSONValue)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Follow one segment from a value, giving null if it leads nowhere.
+   */
+  static JSONValue step(JSONValue value, JSONString key, int index) {
+    if (value instanceof JSONHash) {
+      return ((JSONHash) value).getOrNull(key);
+    } else if ((value instanceof JSONArray) && (index >= 0)) {
+      return ((JSONArray) value).getOrNull(index);
+    } // if-else
+    return null;
+  } // step(JSONValue, JSONString, int)
+
+  /**
+   * Copy a hash or array, shallowly, with one member replaced.
+   */
+  static JSONValue copyWith(JSONValue container, JSONString key, int index, JSONValue value) {
+    if (container instanceof JSONHash) {
+      JSONHash copy = new JSONHash();
+      Iterator<KVPair<JSONString, JSONValue>> pairs = ((JSONHash) container).iterator();
+      while (pairs.hasNext()) {
+        KVPair<JSONString, JSONValue> pair = pairs.next();
+        copy.set(pair.key(), pair.value());
+      } // while
+      copy.set(key, value);
+      return copy;
+    } // if
+    JSONArray array = (JSONArray) container;
+    if ((index < 0) || (index >= array.size())) {
+      throw new IllegalArgumentException("No element " + key.getValue() + " in an array of " + array.size());
+    } // if
+    JSONArray copy = new JSONArray();
+    for (JSONValue element : array.values) {
+      copy.add(element);
+    } // for
+    copy.set(index, value);
+    return copy;
+  } // copyWith(JSONValue, JSONString, int, JSONValue)
+
+  /**
+   * Determine whether a value is a frozen hash or array.
+   */
+  static boolean isFrozen(JSONValue value) {
+    return ((value instanceof JSONHash) && ((JSONHash) value).isFrozen())
+        || ((value instanceof JSONArray) && ((JSONArray) value).isFrozen());
+  } // isFrozen(JSONValue)
+
+  /**
+   * Freeze a hash or array.
+   */
+  static void freeze(JSONValue value) {
+    if (value instanceof JSONHash) {
+      ((JSONHash) value).freeze();
+    } else if (value instanceof JSONArray) {
+      ((JSONArray) value).freeze();
+    } // if-else
+  } // freeze(JSONValue)
+
+  /**
+   * Get the pointer made of the first n segments.
+   */
+  String prefix(int n) {
+    int end = 0;
+    for (int i = 0; i < n; i++) {
+      end = this.text.indexOf('/', end + 1);
+      if (end < 0) {
+        return this.text;
+      } // if
+    } // for
+    return this.text.substring(0, end);
+  } // prefix(int)
+
+  /**
+   * Decode ~0 and ~1 in pointer.substring(start, end).
+   */
+  static String unescape(String pointer, int start, int end) {
+    int tilde = pointer.indexOf('~', start);
+    if ((tilde < 0) || (tilde >= end)) {
+      return pointer.substring(start, end);
+    } // if
+    StringBuilder result = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      char ch = pointer.charAt(i);
+      if (ch != '~') {
+        result.append(ch);
+      } else if ((i + 1 < end) && (pointer.charAt(i + 1) == '0')) {
+        result.append('~');
+        i++;
+      } else if ((i + 1 < end) && (pointer.charAt(i + 1) == '1')) {
+        result.append('/');
+        i++;
+      } else {
+        throw new IllegalArgumentException("Invalid escape in JSON pointer: " + pointer);
+      } // if-else
+    } // for
+    return result.toString();
+  } // unescape(String, int, int)
+
+  /**
+   * Get the array index a segment stands for, or -1 if it is not one.
+   * RFC 6901 allows only 0 or digits without a leading zero.
+   */
+  static int arrayIndex(String segment) {
+    int length = segment.length();
+    if ((length == 0) || (length > 9) || ((length > 1) && (segment.charAt(0) == '0'))) {
+      return -1;
+    } // if
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      char ch = segment.charAt(i);
+      if ((ch < '0') || (ch > '9')) {
+        return -1;
+      } // if
+      result = result * 10 + (ch - '0');
+    } // for
+    return result;
+  } // arrayIndex(String)
+
+} // class JSONPointer
@@ -0,0 +1,528 @@
+package src;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * A resumable parser for UTF-8 encoded JSON that is handed its input in
+ * chunks, e.g., as network buffers arrive. Each call to feed consumes a
+ * whole buffer and remembers where it stopped, even in the middle of a
+ * string, escape, number or multi-byte character, so parsing can overlap
+ * with I/O instead of waiting for the complete message.
+ *
+ * Typical use:
+ *   JSONPushParser parser = new JSONPushParser();
+ *   while (channel.read(buf) != -1) {
+ *     buf.flip();
+ *     parser.feed(buf);
+ *     buf.clear();
+ *   }
+ *   JSONValue value = parser.endOfInput();
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JSONPushParser {
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /*
+   * The states we can be suspended in. The first six wait for a structural
+   * character and skip whitespace; the rest are inside a token.
+   */
+  static final int VALUE = 0;
+  static final int VALUE_OR_END = 1;
+  static final int AFTER_VALUE = 2;
+  static final int KEY_OR_END = 3;
+  static final int KEY = 4;
+  static final int COLON = 5;
+  static final int DONE = 6;
+  static final int STRING = 7;
+  static final int ESCAPE = 8;
+  static final int UNICODE = 9;
+  static final int NUMBER = 10;
+  static final int LITERAL = 11;
+  static final int FAILED = 12;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * What we expect next.
+   */
+  int state = VALUE;
+
+  /**
+   * The number of bytes consumed so far.
+   */
+  long offset = 0;
+
+  /**
+   * The arrays and hashes that are still open, innermost last.
+   */
+  ArrayList<JSONValue> open = new ArrayList<JSONValue>();
+
+  /**
+   * The current key for each open hash (null for arrays).
+   */
+  ArrayList<JSONString> keys = new ArrayList<JSONString>();
+
+  /**
+   * The completed top-level value.
+   */
+  JSONValue result = null;
+
+  /**
+   * The characters of the string or number being read.
+   */
+  StringBuilder token = new StringBuilder();
+
+  /**
+   * Whether the string being read is a key.
+   */
+  boolean stringIsKey;
+
+  /**
+   * Progress through a \\uXXXX escape.
+   */
+  int unicodeDigits;
+  int unicodeValue;
+
+  /**
+   * Progress through a multi-byte UTF-8 character, and the range the
+   * next byte must fall in for the character to be well formed (not
+   * overlong, not a surrogate, and at most U+10FFFF).
+   */
+  int utf8Remaining = 0;
+  int utf8CodePoint;
+  int utf8Lower;
+  int utf8Upper;
+
+  /**
+   * Progress through true, false or null.
+   */
+  String literal;
+  int literalPos;
+  JSONValue literalValue;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a parser, ready for the first chunk of a document.
+   */
+  public JSONPushParser() {
+  } // JSONPushParser()
+
+  // +----------------+----------------------------------------------
+  // | Parser methods |
+  // +----------------+
+
+  /**
+   * Consume all of the remaining bytes in a buffer. Returns true if the
+   * parser needs more input to complete the value, false once a complete
+   * value has been read. (A top-level number is only known to be complete
+   * at endOfInput.)
+   */
+  public boolean feed(ByteBuffer input) throws InvalidJSONException {
+    if (this.state == FAILED) {
+      throw new InvalidJSONException("Parser has already failed");
+    } // if
+    try {
+      while (input.hasRemaining()) {
+        int b = input.get() & 0xFF;
+        this.offset++;
+        // read plain string characters without going through consume
+        if ((this.state == STRING) && (this.utf8Remaining == 0)
+            && (b >= 0x20) && (b < 0x80) && (b != '"') && (b != '\\')) {
+          this.token.append((char) b);
+          continue;
+        } // if
+        consume(b);
+      } // while
+    } catch (InvalidJSONException | RuntimeException e) {
+      this.state = FAILED;
+      throw e;
+    } // try-catch
+    return this.state != DONE;
+  } // feed(ByteBuffer)
+
+  /**
+   * Signal that there is no more input. Returns the parsed value.
+   */
+  public JSONValue endOfInput() throws InvalidJSONException {
+    if (this.state == NUMBER) {
+      finishNumber();
+    } // if
+    if (this.state != DONE) {
+      this.state = FAILED;
+      throw error("Unexpected end of input");
+    } // if
+    return this.result;
+  } // endOfInput()
+
+  /**
+   * Get ready to parse another document.
+   */
+  public void reset() {
+    this.state = VALUE;
+    this.offset = 0;
+    this.open.clear();
+    this.keys.clear();
+    this.result = null;
+    this.token.setLength(0);
+    this.utf8Remaining = 0;
+  } // reset()
+
+  /**
+   * Get the number of bytes consumed so far.
+   */
+  public long offset() {
+    return this.offset;
+  } // offset()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Handle one byte of input.
+   */
+  void consume(int b) throws InvalidJSONException {
+    switch (this.state) {
+      case STRING:
+        stringByte(b);
+        return;
+      case ESCAPE:
+        escapeByte(b);
+        return;
+      case UNICODE:
+        int digit = Character.digit(b, 16);
+        if (digit < 0) {
+          throw error("Invalid unicode character");
+        } // if
+        this.unicodeValue = this.unicodeValue * 16 + digit;
+        if (++this.unicodeDigits == 4) {
+          this.token.append((char) this.unicodeValue);
+          this.state = STRING;
+        } // if
+        return;
+      case NUMBER:
+        if (((b >= '0') && (b <= '9')) || (b == '.') || (b == 'e') || (b == 'E')
+            || (b == '-') || (b == '+')) {
+          this.token.append((char) b);
+          return;
+        } // if
+        finishNumber();
+        // the byte that ended the number still needs handling
+        consume(b);
+        return;
+      case LITERAL:
+        if (b != this.literal.charAt(this.literalPos)) {
+          throw error("Invalid constant syntax");
+        } // if
+        if (++this.literalPos == this.literal.length()) {
+          value(this.literalValue);
+        } // if
+        return;
+      default:
+        break;
+    } // switch
+
+    if (JSON.isWhitespace(b)) {
+      return;
+    } // if
+    switch (this.state) {
+      case VALUE_OR_END:
+        if (b == ']') {
+          close();
+        } else {
+          startValue(b);
+        } // if-else
+        return;
+      case VALUE:
+        startValue(b);
+        return;
+      case KEY_OR_END:
+        if (b == '}') {
+          close();
+        } else {
+          startKey(b);
+        } // if-else
+        return;
+      case KEY:
+        startKey(b);
+        return;
+      case COLON:
+        if (b != ':') {
+          throw error("Invalid Hash object");
+        } // if
+        this.state = VALUE;
+        return;
+      case AFTER_VALUE:
+        boolean inHash = this.open.get(this.open.size() - 1) instanceof JSONHash;
+        if (b == ',') {
+          this.state = inHash ? KEY : VALUE;
+        } else if ((b == (inHash ? '}' : ']'))) {
+          close();
+        } else {
+          throw error("Expected comma, instead found " + (char) b);
+        } // if-else
+        return;
+      default:
+        throw error("Characters remain at end");
+    } // switch
+  } // consume(int)
+
+  /**
+   * Start reading a value that begins with b.
+   */
+  void startValue(int b) throws InvalidJSONException {
+    if (b == '"') {
+      startString(false);
+    } else if ((b == '-') || ((b >= '0') && (b <= '9'))) {
+      this.token.setLength(0);
+      this.token.append((char) b);
+      this.state = NUMBER;
+    } else if (b == '{') {
+      this.open.add(new JSONHash());
+      this.keys.add(null);
+      this.state = KEY_OR_END;
+    } else if (b == '[') {
+      this.open.add(new JSONArray());
+      this.keys.add(null);
+      this.state = VALUE_OR_END;
+    } else if (b == 't') {
+      startLiteral("true", JSONConstant.TRUE);
+    } else if (b == 'f') {
+      startLiteral("false", JSONConstant.FALSE);
+    } else if (b == 'n') {
+      startLiteral("null", JSONConstant.NULL);
+    } else {
+      throw error("Invalid syntax");
+    } // if-else
+  } // startValue(int)
+
+  /**
+   * Start reading a key, which must begin with b.
+   */
+  void startKey(int b) throws InvalidJSONException {
+    if (b != '"') {
+      throw error("Expected a key, instead found " + (char) b);
+    } // if
+    startString(true);
+  } // startKey(int)
+
+  /**
+   * Start reading a string, after its opening quote.
+   */
+  void startString(boolean isKey) {
+    this.token.setLength(0);
+    this.stringIsKey = isKey;
+    this.state = STRING;
+  } // startString(boolean)
+
+  /**
+   * Start reading true, false or null, after its first letter.
+   */
+  void startLiteral(String text, JSONValue value) {
+    this.literal = text;
+    this.literalPos = 1;
+    this.literalValue = value;
+    this.state = LITERAL;
+  } // startLiteral(String, JSONValue)
+
+  /**
+   * Handle a byte inside a string.
+   */
+  void stringByte(int b) throws InvalidJSONException {
+    if (this.utf8Remaining > 0) {
+      if ((b < this.utf8Lower) || (b > this.utf8Upper)) {
+        throw error("Invalid UTF-8 sequence");
+      } // if
+      this.utf8Lower = 0x80;
+      this.utf8Upper = 0xBF;
+      this.utf8CodePoint = (this.utf8CodePoint << 6) | (b & 0x3F);
+      if (--this.utf8Remaining == 0) {
+        this.token.appendCodePoint(this.utf8CodePoint);
+      } // if
+    } else if (b == '"') {
+      String text = this.token.toString();
+      if (this.stringIsKey) {
+        this.keys.set(this.keys.size() - 1, new JSONString(text));
+        this.state = COLON;
+      } else {
+        value(new JSONString(text));
+      } // if-else
+    } else if (b == '\\') {
+      this.state = ESCAPE;
+    } else if (b < 0x20) {
+      throw error("Unescaped control character in string");
+    } else if (b < 0x80) {
+      this.token.append((char) b);
+    } else {
+      startUtf8(b);
+    } // if-else
+  } // stringByte(int)
+
+  /**
+   * Start a multi-byte UTF-8 character with lead byte b, following the
+   * table of well-formed sequences in the Unicode standard: C0, C1 and
+   * F5 to FF never appear, and after E0, ED, F0 and F4 the next byte is
+   * limited so as to rule out overlong forms, surrogates and code points
+   * beyond U+10FFFF.
+   */
+  void startUtf8(int b) throws InvalidJSONException {
+    this.utf8Lower = 0x80;
+    this.utf8Upper = 0xBF;
+    if ((b >= 0xC2) && (b <= 0xDF)) {
+      this.utf8Remaining = 1;
+      this.utf8CodePoint = b & 0x1F;
+    } else if ((b >= 0xE0) && (b <= 0xEF)) {
+      this.utf8Remaining = 2;
+      this.utf8CodePoint = b & 0x0F;
+      if (b == 0xE0) {
+        this.utf8Lower = 0xA0;
+      } else if (b == 0xED) {
+        this.utf8Upper = 0x9F;
+      } // if-else
+    } else if ((b >= 0xF0) && (b <= 0xF4)) {
+      this.utf8Remaining = 3;
+      this.utf8CodePoint = b & 0x07;
+      if (b == 0xF0) {
+        this.utf8Lower = 0x90;
+      } else if (b == 0xF4) {
+        this.utf8Upper = 0x8F;
+      } // if-else
+    } else {
+      throw error("Invalid UTF-8 sequence");
+    } // if-else
+  } // startUtf8(int)
+
+  /**
+   * Handle the byte after a backslash.
+   */
+  void escapeByte(int b) throws InvalidJSONException {
+    this.state = STRING;
+    if ((b == '\\') || (b == '"') || (b == '/')) {
+      this.token.append((char) b);
+    } else if (b == 'n') {
+      this.token.append('\n');
+    } else if (b == 't') {
+      this.token.append('\t');
+    } else if (b == 'r') {
+      this.token.append('\r');
+    } else if (b == 'b') {
+      this.token.append('\b');
+    } else if (b == 'f') {
+      this.token.append('\f');
+    } else if (b == 'u') {
+      this.unicodeDigits = 0;
+      this.unicodeValue = 0;
+      this.state = UNICODE;
+    } else {
+      throw error("Invalid String syntax, backslash not followed by valid character");
+    } // if-else
+  } // escapeByte(int)
+
+  /**
+   * Build the number we have been reading.
+   */
+  void finishNumber() throws InvalidJSONException {
+    String text = this.token.toString();
+    if (!isNumber(text)) {
+      throw error("Invalid numeric value: " + text);
+    } // if
+    if ((text.indexOf('.') >= 0) || (text.indexOf('e') >= 0) || (text.indexOf('E') >= 0)) {
+      value(new JSONReal(text));
+    } else {
+      value(new JSONInteger(text));
+    } // if-else
+  } // finishNumber()
+
+  /**
+   * Close the innermost array or hash.
+   */
+  void close() throws InvalidJSONException {
+    int last = this.open.size() - 1;
+    JSONValue container = this.open.remove(last);
+    this.keys.remove(last);
+    value(container);
+  } // close()
+
+  /**
+   * Store a completed value in its container, or as the result.
+   */
+  void value(JSONValue value) {
+    int last = this.open.size() - 1;
+    if (last < 0) {
+      this.result = value;
+      this.state = DONE;
+      return;
+    } // if
+    JSONValue container = this.open.get(last);
+    if (container instanceof JSONArray) {
+      ((JSONArray) container).add(value);
+    } else {
+      ((JSONHash) container).set(this.keys.get(last), value);
+    } // if-else
+    this.state = AFTER_VALUE;
+  } // value(JSONValue)
+
+  /**
+   * Build an exception that reports where we are.
+   */
+  InvalidJSONException error(String msg) {
+    return new InvalidJSONException(msg + " at byte " + this.offset);
+  } // error(String)
+
+  /**
+   * Determine whether text follows the JSON number grammar,
+   * -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+   */
+  static boolean isNumber(String text) {
+    int i = 0;
+    int len = text.length();
+    if ((i < len) && (text.charAt(i) == '-')) {
+      i++;
+    } // if
+    if ((i < len) && (text.charAt(i) == '0')) {
+      i++;
+    } else {
+      int start = i;
+      while ((i < len) && Character.isDigit(text.charAt(i))) {
+        i++;
+      } // while
+      if (i == start) {
+        return false;
+      } // if
+    } // if-else
+    if ((i < len) && (text.charAt(i) == '.')) {
+      int start = ++i;
+      while ((i < len) && Character.isDigit(text.charAt(i))) {
+        i++;
+      } // while
+      if (i == start) {
+        return false;
+      } // if
+    } // if
+    if ((i < len) && ((text.charAt(i) == 'e') || (text.charAt(i) == 'E'))) {
+      i++;
+      if ((i < len) && ((text.charAt(i) == '+') || (text.charAt(i) == '-'))) {
+        i++;
+      } // if
+      int start = i;
+      while ((i < len) && Character.isDigit(text.charAt(i))) {
+        i++;
+      } // while
+      if (i == start) {
+        return false;
+      } // if
+    } // if
+    return i == len;
+  } // isNumber(String)
+
+} // class JSONPushParser
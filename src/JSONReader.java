@@ -0,0 +1,347 @@
+package src;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads JSON one token at a time, for code that binds text straight to
+ * its own types without building JSONHash and JSONArray values. Used by
+ * JSONMapper and by the code that JsonModelProcessor generates.
+ *
+ * A hash is read as
+ *
+ *   if (in.beginHash()) {
+ *     while (in.hasNext()) {
+ *       String key = in.nextKey();
+ *       ... read or skip the value ...
+ *     }
+ *   }
+ *
+ * and an array the same way, with beginArray and no keys. beginHash and
+ * beginArray return false, having read the null, if the value is null.
+ * The numeric and boolean readers give 0 or false for null.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONReader {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The parser, whose buffer and scalar readers we use.
+   */
+  final JSON parser;
+
+  /**
+   * The closing character of each open array or hash, innermost last.
+   */
+  char[] closers = new char[16];
+
+  /**
+   * The number of open arrays and hashes.
+   */
+  int depth = 0;
+
+  /**
+   * Whether the innermost open array or hash has no members read yet.
+   */
+  boolean first = false;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Read from a string.
+   */
+  public JSONReader(String text) {
+    this.parser = new JSON(new StringReader(text), JSON.DEFAULT_MAX_DEPTH,
+        Math.min(JSON.BUFFER_SIZE, text.length() + 1));
+  } // JSONReader(String)
+
+  /**
+   * Read from a reader.
+   */
+  public JSONReader(Reader source) {
+    this.parser = new JSON(source, JSON.DEFAULT_MAX_DEPTH, JSON.BUFFER_SIZE);
+  } // JSONReader(Reader)
+
+  // +-----------+---------------------------------------------------
+  // | Structure |
+  // +-----------+
+
+  /**
+   * Start reading a hash. Returns false if the value is null instead.
+   */
+  public boolean beginHash() throws Exception {
+    return begin('{', '}');
+  } // beginHash()
+
+  /**
+   * Start reading an array. Returns false if the value is null instead.
+   */
+  public boolean beginArray() throws Exception {
+    return begin('[', ']');
+  } // beginArray()
+
+  /**
+   * Determine whether the innermost open array or hash has another
+   * member, reading the comma before it or the closer after the last.
+   */
+  public boolean hasNext() throws Exception {
+    int ch = this.parser.skipWhitespace();
+    if (ch == this.closers[this.depth - 1]) {
+      this.parser.pos++;
+      this.depth--;
+      this.first = false;
+      return false;
+    } else if (this.first) {
+      this.first = false;
+      return true;
+    } else if (ch == ',') {
+      this.parser.pos++;
+      return true;
+    } else if (ch == -1) {
+      throw new ParseException("Unexpected end of file", (int) this.parser.offset());
+    } // if-else
+    throw this.parser.error("Expected comma, instead found " + (char) ch);
+  } // hasNext()
+
+  /**
+   * Read the key of the next pair in a hash, and the colon after it.
+   */
+  public String nextKey() throws Exception {
+    return this.parser.parseKey(this.parser.skipWhitespace()).getValue();
+  } // nextKey()
+
+  /**
+   * Read null if it comes next. Returns whether it did.
+   */
+  public boolean isNull() throws Exception {
+    if (this.parser.skipWhitespace() == 'n') {
+      this.parser.parseScalar('n');
+      return true;
+    } // if
+    return false;
+  } // isNull()
+
+  /**
+   * Check that nothing but whitespace is left.
+   */
+  public void end() throws Exception {
+    if (-1 != this.parser.skipWhitespace()) {
+      throw new ParseException("Characters remain at end", (int) this.parser.offset());
+    } // if
+  } // end()
+
+  // +--------+------------------------------------------------------
+  // | Values |
+  // +--------+
+
+  /**
+   * Read a whole value, however it is nested.
+   */
+  public JSONValue nextValue() throws Exception {
+    int ch = this.parser.skipWhitespace();
+    if ((ch == '{') || (ch == '[')) {
+      return this.parser.parseKernel();
+    } // if
+    // a scalar needs none of the kernel's stacks
+    return this.parser.parseScalar(ch);
+  } // nextValue()
+
+  /**
+   * Read a value and throw it away, without building it.
+   */
+  public void skipValue() throws Exception {
+    this.parser.skipKernel();
+  } // skipValue()
+
+  /**
+   * Read a string, or null.
+   */
+  public String nextString() throws Exception {
+    JSONValue value = nextScalar();
+    if (value instanceof JSONString) {
+      return ((JSONString) value).getValue();
+    } else if (value == JSONConstant.NULL) {
+      return null;
+    } // if-else
+    throw mismatch(value, "string");
+  } // nextString()
+
+  /**
+   * Read an integer that fits in a long.
+   */
+  public long nextLong() throws Exception {
+    return nextIntegral(Long.MIN_VALUE, Long.MAX_VALUE, "long");
+  } // nextLong()
+
+  /**
+   * Read an integer that fits in an int.
+   */
+  public int nextInt() throws Exception {
+    return (int) nextIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+  } // nextInt()
+
+  /**
+   * Read an integer that fits in a short.
+   */
+  public short nextShort() throws Exception {
+    return (short) nextIntegral(Short.MIN_VALUE, Short.MAX_VALUE, "short");
+  } // nextShort()
+
+  /**
+   * Read an integer that fits in a byte.
+   */
+  public byte nextByte() throws Exception {
+    return (byte) nextIntegral(Byte.MIN_VALUE, Byte.MAX_VALUE, "byte");
+  } // nextByte()
+
+  /**
+   * Read a number as a double.
+   */
+  public double nextDouble() throws Exception {
+    JSONValue value = nextScalar();
+    if ((value instanceof JSONInteger) || (value instanceof JSONReal)) {
+      return value.asDouble(0);
+    } else if (value == JSONConstant.NULL) {
+      return 0;
+    } // if-else
+    throw mismatch(value, "double");
+  } // nextDouble()
+
+  /**
+   * Read true or false.
+   */
+  public boolean nextBoolean() throws Exception {
+    JSONValue value = nextScalar();
+    if ((value == JSONConstant.TRUE) || (value == JSONConstant.FALSE) || (value == JSONConstant.NULL)) {
+      return value == JSONConstant.TRUE;
+    } // if
+    throw mismatch(value, "boolean");
+  } // nextBoolean()
+
+  /**
+   * Read an integer of any size, or null.
+   */
+  public BigInteger nextBigInteger() throws Exception {
+    JSONValue value = nextScalar();
+    if (value instanceof JSONInteger) {
+      return ((JSONInteger) value).getValue();
+    } else if (value == JSONConstant.NULL) {
+      return null;
+    } // if-else
+    throw mismatch(value, "BigInteger");
+  } // nextBigInteger()
+
+  /**
+   * Read a number exactly, or null.
+   */
+  public BigDecimal nextBigDecimal() throws Exception {
+    JSONValue value = nextScalar();
+    if (value instanceof JSONReal) {
+      return ((JSONReal) value).getValue();
+    } else if (value instanceof JSONInteger) {
+      return new BigDecimal(((JSONInteger) value).getValue());
+    } else if (value == JSONConstant.NULL) {
+      return null;
+    } // if-else
+    throw mismatch(value, "BigDecimal");
+  } // nextBigDecimal()
+
+  /**
+   * Read an array, reading each element with element. Returns null if
+   * the value is null.
+   */
+  public <T> List<T> nextList(Element<T> element) throws Exception {
+    if (!beginArray()) {
+      return null;
+    } // if
+    ArrayList<T> result = new ArrayList<T>();
+    while (hasNext()) {
+      result.add(element.read(this));
+    } // while
+    return result;
+  } // nextList(Element<T>)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Read the opener of an array or hash, or a null.
+   */
+  boolean begin(char opener, char closer) throws Exception {
+    int ch = this.parser.skipWhitespace();
+    if (ch == 'n') {
+      this.parser.parseScalar(ch);
+      return false;
+    } else if (ch == -1) {
+      throw new ParseException("Unexpected end of file", (int) this.parser.offset());
+    } else if (ch != opener) {
+      throw this.parser.error("Expected " + opener + ", instead found " + (char) ch);
+    } else if (this.depth >= this.parser.maxDepth) {
+      throw this.parser.error("Maximum nesting depth of " + this.parser.maxDepth + " exceeded");
+    } // if-else
+    this.parser.pos++;
+    if (this.depth == this.closers.length) {
+      char[] bigger = new char[this.depth * 2];
+      System.arraycopy(this.closers, 0, bigger, 0, this.depth);
+      this.closers = bigger;
+    } // if
+    this.closers[this.depth++] = closer;
+    this.first = true;
+    return true;
+  } // begin(char, char)
+
+  /**
+   * Read a string, number or constant.
+   */
+  JSONValue nextScalar() throws Exception {
+    return this.parser.parseScalar(this.parser.skipWhitespace());
+  } // nextScalar()
+
+  /**
+   * Read an integer within bounds; null reads as 0.
+   */
+  long nextIntegral(long min, long max, String type) throws Exception {
+    JSONValue value = nextScalar();
+    if (value instanceof JSONInteger) {
+      BigInteger n = ((JSONInteger) value).getValue();
+      if ((n.bitLength() <= 63) && (n.longValue() >= min) && (n.longValue() <= max)) {
+        return n.longValue();
+      } // if
+    } else if (value == JSONConstant.NULL) {
+      return 0;
+    } // if-else
+    throw mismatch(value, type);
+  } // nextIntegral(long, long, String)
+
+  /**
+   * Report a value of the wrong type.
+   */
+  IllegalArgumentException mismatch(JSONValue value, String type) {
+    return new IllegalArgumentException("Cannot read " + value + " as " + type
+        + " at position " + this.parser.offset());
+  } // mismatch(JSONValue, String)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Reads one element of an array.
+   */
+  public interface Element<T> {
+    T read(JSONReader in) throws Exception;
+  } // interface Element<T>
+
+} // class JSONReader
@@ -38,10 +38,11 @@ public class JSONReal implements JSONValue {
   } // JSONReal(BigDecimal)
 
   /**
-   * Create a new real given a double.
+   * Create a new real given a double, holding the shortest decimal that
+   * reads back as the same double.
    */
   public JSONReal(double d) {
-    this.value = BigDecimal.valueOf(d);
+    this.value = JSONNumbers.toBigDecimal(d);
   } // JSONReal(double)
 
   // +-------------------------+-------------------------------------
@@ -78,7 +79,13 @@ public class JSONReal implements JSONValue {
    * Write the value as JSON.
    */
   public void writeJSON(PrintWriter pen) {
-    pen.print(this.toString());
+    char[] digits = new char[JSONNumbers.MAX_LONG_CHARS + 8];
+    int end = JSONNumbers.writeDecimal(this.value, digits, 0);
+    if (end < 0) {
+      pen.print(this.toString());
+    } else {
+      pen.write(digits, 0, end);
+    } // if-else
     pen.flush();
   } // writeJSON(PrintWriter)
 
@@ -89,4 +96,11 @@ public class JSONReal implements JSONValue {
     return this.value;
   } // getValue()
 
+  /**
+   * Get the value as a double.
+   */
+  public double asDouble(double otherwise) {
+    return this.value.doubleValue();
+  } // asDouble(double)
+
 } // class JSONReal
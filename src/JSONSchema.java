@@ -0,0 +1,782 @@
+package src;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A JSON Schema compiled for checking values that have already been
+ * parsed. Supports the draft 2020-12 keywords type, enum, const,
+ * properties, required, items, minimum, maximum, exclusiveMinimum,
+ * exclusiveMaximum, minLength, maxLength, minItems, maxItems,
+ * minProperties, maxProperties, pattern and $ref (to "#" or a JSON
+ * pointer within the schema, such as "#/$defs/item"). Other keywords
+ * are ignored.
+ *
+ * Each schema object becomes a node holding one check per keyword, with
+ * property keys hashed, bounds converted and patterns compiled up front,
+ * and references resolved to their nodes, so checking a value never
+ * looks at the schema itself. Compiled schemas are immutable and may be
+ * shared between threads.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONSchema {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The keywords we understand.
+   */
+  static final JSONString REF = new JSONString("$ref");
+  static final JSONString TYPE = new JSONString("type");
+  static final JSONString ENUM = new JSONString("enum");
+  static final JSONString CONST = new JSONString("const");
+  static final JSONString PROPERTIES = new JSONString("properties");
+  static final JSONString REQUIRED = new JSONString("required");
+  static final JSONString ITEMS = new JSONString("items");
+  static final JSONString MINIMUM = new JSONString("minimum");
+  static final JSONString MAXIMUM = new JSONString("maximum");
+  static final JSONString EXCLUSIVE_MINIMUM = new JSONString("exclusiveMinimum");
+  static final JSONString EXCLUSIVE_MAXIMUM = new JSONString("exclusiveMaximum");
+  static final JSONString MIN_LENGTH = new JSONString("minLength");
+  static final JSONString MAX_LENGTH = new JSONString("maxLength");
+  static final JSONString MIN_ITEMS = new JSONString("minItems");
+  static final JSONString MAX_ITEMS = new JSONString("maxItems");
+  static final JSONString MIN_PROPERTIES = new JSONString("minProperties");
+  static final JSONString MAX_PROPERTIES = new JSONString("maxProperties");
+  static final JSONString PATTERN = new JSONString("pattern");
+
+  /**
+   * How deeply nested a value may be checked. Checking recurses, once
+   * per level, so deeper values are reported as errors instead.
+   */
+  static final int MAX_DEPTH = 1000;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The node for the whole schema.
+   */
+  final Node root;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  JSONSchema(Node root) {
+    this.root = root;
+  } // JSONSchema(Node)
+
+  /**
+   * Compile a schema.
+   *
+   * @throws IllegalArgumentException if the schema is malformed, uses
+   *   a reference we cannot resolve, or has references that lead round
+   *   in a circle without stepping into the value.
+   */
+  public static JSONSchema compile(JSONValue schema) {
+    Compiler compiler = new Compiler(schema);
+    Node root = compiler.node(schema, "");
+    compiler.checkCycles();
+    return new JSONSchema(root);
+  } // compile(JSONValue)
+
+  /**
+   * Compile a schema from its text.
+   */
+  public static JSONSchema compile(String schema) throws Exception {
+    return compile(JSON.parse(schema));
+  } // compile(String)
+
+  // +----------+----------------------------------------------------
+  // | Checking |
+  // +----------+
+
+  /**
+   * Determine whether a value fits the schema, stopping at the first
+   * error.
+   */
+  public boolean isValid(JSONValue value) {
+    return this.root.check(value, new Run(true));
+  } // isValid(JSONValue)
+
+  /**
+   * Check a value, describing every error found.
+   */
+  public List<String> validate(JSONValue value) {
+    return validate(value, false);
+  } // validate(JSONValue)
+
+  /**
+   * Check a value, describing the errors found. With failFast, stops at
+   * the first. Gives an empty list if the value fits.
+   */
+  public List<String> validate(JSONValue value, boolean failFast) {
+    Run run = new Run(failFast);
+    this.root.check(value, run);
+    return run.errors;
+  } // validate(JSONValue, boolean)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Builds the nodes for a schema, once per schema object, so that
+   * references to the same place share a node and may be recursive.
+   */
+  static final class Compiler {
+    final JSONValue document;
+    final IdentityHashMap<JSONValue, Node> nodes = new IdentityHashMap<JSONValue, Node>();
+    final HashMap<String, Pattern> patterns = new HashMap<String, Pattern>();
+
+    Compiler(JSONValue document) {
+      this.document = document;
+    } // Compiler(JSONValue)
+
+    /**
+     * Get the node for the schema found at path.
+     */
+    Node node(JSONValue schema, String path) {
+      Node node = this.nodes.get(schema);
+      if (node != null) {
+        return node;
+      } // if
+      node = new Node(path);
+      this.nodes.put(schema, node);
+      if (schema == JSONConstant.TRUE) {
+        return node;
+      } else if (schema == JSONConstant.FALSE) {
+        node.checks = new Check[] {new Never()};
+        return node;
+      } else if (!(schema instanceof JSONHash)) {
+        throw new IllegalArgumentException("Schema at " + at(path) + " must be an object or boolean");
+      } // if-else
+      JSONHash hash = (JSONHash) schema;
+      ArrayList<Check> checks = new ArrayList<Check>();
+
+      JSONValue ref = hash.getOrNull(REF);
+      if (ref != null) {
+        node.ref = resolve(ref, path);
+        checks.add(new Ref(node.ref));
+      } // if
+
+      JSONValue type = hash.getOrNull(TYPE);
+      if (type instanceof JSONArray) {
+        int types = 0;
+        for (JSONValue name : ((JSONArray) type).getValue()) {
+          types |= JSONShapeParser.typeBit(name, path);
+        } // for
+        checks.add(new Type(types));
+      } else if (type != null) {
+        checks.add(new Type(JSONShapeParser.typeBit(type, path)));
+      } // if-else
+
+      JSONValue choices = hash.getOrNull(ENUM);
+      if (choices instanceof JSONArray) {
+        checks.add(new Choice(new ArrayList<JSONValue>(((JSONArray) choices).getValue())));
+      } else if (choices != null) {
+        throw new IllegalArgumentException("enum at " + at(path) + " must be an array");
+      } // if-else
+      JSONValue constant = hash.getOrNull(CONST);
+      if (constant != null) {
+        checks.add(new Choice(List.of(constant)));
+      } // if
+
+      JSONValue properties = hash.getOrNull(PROPERTIES);
+      if (properties instanceof JSONHash) {
+        ArrayList<JSONString> keys = new ArrayList<JSONString>();
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        Iterator<KVPair<JSONString, JSONValue>> pairs = ((JSONHash) properties).iterator();
+        while (pairs.hasNext()) {
+          KVPair<JSONString, JSONValue> pair = pairs.next();
+          JSONString key = new JSONString(pair.key().getValue());
+          key.seededHash();
+          keys.add(key);
+          nodes.add(node(pair.value(), path + "/properties/" + JSONShapeParser.escape(key.getValue())));
+        } // while
+        checks.add(new Properties(keys.toArray(new JSONString[0]), nodes.toArray(new Node[0])));
+      } else if (properties != null) {
+        throw new IllegalArgumentException("properties at " + at(path) + " must be an object");
+      } // if-else
+      JSONValue required = hash.getOrNull(REQUIRED);
+      if (required instanceof JSONArray) {
+        ArrayList<JSONString> keys = new ArrayList<JSONString>();
+        for (JSONValue name : ((JSONArray) required).getValue()) {
+          if (!(name instanceof JSONString)) {
+            throw new IllegalArgumentException("required at " + at(path) + " must list strings");
+          } // if
+          JSONString key = new JSONString(((JSONString) name).getValue());
+          key.seededHash();
+          keys.add(key);
+        } // for
+        checks.add(new Required(keys.toArray(new JSONString[0])));
+      } else if (required != null) {
+        throw new IllegalArgumentException("required at " + at(path) + " must be an array");
+      } // if-else
+
+      JSONValue items = hash.getOrNull(ITEMS);
+      if (items != null) {
+        checks.add(new Items(node(items, path + "/items")));
+      } // if
+
+      addBound(checks, hash, MINIMUM, path);
+      addBound(checks, hash, MAXIMUM, path);
+      addBound(checks, hash, EXCLUSIVE_MINIMUM, path);
+      addBound(checks, hash, EXCLUSIVE_MAXIMUM, path);
+      addSize(checks, hash, MIN_LENGTH, JSONShapeParser.STRING, path);
+      addSize(checks, hash, MAX_LENGTH, JSONShapeParser.STRING, path);
+      addSize(checks, hash, MIN_ITEMS, JSONShapeParser.ARRAY, path);
+      addSize(checks, hash, MAX_ITEMS, JSONShapeParser.ARRAY, path);
+      addSize(checks, hash, MIN_PROPERTIES, JSONShapeParser.OBJECT, path);
+      addSize(checks, hash, MAX_PROPERTIES, JSONShapeParser.OBJECT, path);
+
+      JSONValue pattern = hash.getOrNull(PATTERN);
+      if (pattern instanceof JSONString) {
+        String regex = ((JSONString) pattern).getValue();
+        try {
+          checks.add(new Matches(this.patterns.computeIfAbsent(regex, Pattern::compile)));
+        } catch (PatternSyntaxException e) {
+          throw new IllegalArgumentException("Invalid pattern at " + at(path) + ": " + e.getMessage());
+        } // try-catch
+      } else if (pattern != null) {
+        throw new IllegalArgumentException("pattern at " + at(path) + " must be a string");
+      } // if-else
+
+      node.checks = checks.toArray(new Check[0]);
+      return node;
+    } // node(JSONValue, String)
+
+    /**
+     * Find the node a reference refers to.
+     */
+    Node resolve(JSONValue ref, String path) {
+      String target = (ref instanceof JSONString) ? ((JSONString) ref).getValue() : "";
+      if (!target.startsWith("#")) {
+        throw new IllegalArgumentException("Only references within the schema are supported at " + at(path));
+      } // if
+      String pointer = decode(target.substring(1), path);
+      JSONValue schema = JSONPointer.compile(pointer).get(this.document);
+      if (schema == null) {
+        throw new IllegalArgumentException("Cannot resolve " + target + " at " + at(path));
+      } // if
+      return node(schema, pointer);
+    } // resolve(JSONValue, String)
+
+    /**
+     * Undo the percent-encoding of a URI fragment (RFC 3986), reading
+     * each run of %XX as UTF-8. Other chars, including '+', are kept.
+     */
+    String decode(String fragment, String path) {
+      if (fragment.indexOf('%') < 0) {
+        return fragment;
+      } // if
+      StringBuilder result = new StringBuilder(fragment.length());
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      int i = 0;
+      while (i < fragment.length()) {
+        char ch = fragment.charAt(i);
+        if (ch != '%') {
+          result.append(ch);
+          i++;
+          continue;
+        } // if
+        bytes.reset();
+        while ((i < fragment.length()) && (fragment.charAt(i) == '%')) {
+          int high = (i + 2 < fragment.length()) ? hex(fragment.charAt(i + 1)) : -1;
+          int low = (high >= 0) ? hex(fragment.charAt(i + 2)) : -1;
+          if (low < 0) {
+            throw new IllegalArgumentException("Malformed escape in #" + fragment + " at " + at(path));
+          } // if
+          bytes.write((high << 4) | low);
+          i += 3;
+        } // while
+        result.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+      } // while
+      return result.toString();
+    } // decode(String, String)
+
+    /**
+     * Get the value of an ASCII hex digit, or -1.
+     */
+    static int hex(char ch) {
+      return (ch < 128) ? Character.digit(ch, 16) : -1;
+    } // hex(char)
+
+    /**
+     * Reject references that come back round to where they started
+     * without stepping into the value (e.g., {"$ref" : "#"}), since
+     * checking any value against them would never end. Each node has at
+     * most one reference, so following them from a node either stops or
+     * goes round a circle.
+     */
+    void checkCycles() {
+      IdentityHashMap<Node, Node> done = new IdentityHashMap<Node, Node>();
+      for (Node start : this.nodes.values()) {
+        IdentityHashMap<Node, Node> seen = new IdentityHashMap<Node, Node>();
+        for (Node node = start; (node != null) && !done.containsKey(node); node = node.ref) {
+          if (seen.put(node, node) != null) {
+            throw new IllegalArgumentException("$ref at " + at(node.path)
+                + " leads back to itself without stepping into the value");
+          } // if
+        } // for
+        done.putAll(seen);
+      } // for
+    } // checkCycles()
+
+    /**
+     * Add a check for a numeric bound, if the schema has one.
+     */
+    void addBound(ArrayList<Check> checks, JSONHash hash, JSONString keyword, String path) {
+      JSONValue bound = hash.getOrNull(keyword);
+      if (bound instanceof JSONInteger) {
+        checks.add(new Bound(keyword, new BigDecimal(((JSONInteger) bound).getValue())));
+      } else if (bound instanceof JSONReal) {
+        checks.add(new Bound(keyword, ((JSONReal) bound).getValue()));
+      } else if (bound != null) {
+        throw new IllegalArgumentException(keyword + " at " + at(path) + " must be a number");
+      } // if-else
+    } // addBound(ArrayList<Check>, JSONHash, JSONString, String)
+
+    /**
+     * Add a check for a length or count, if the schema has one.
+     */
+    void addSize(ArrayList<Check> checks, JSONHash hash, JSONString keyword, int type, String path) {
+      JSONValue limit = hash.getOrNull(keyword);
+      if (limit != null) {
+        long n = limit.asLong(-1);
+        if (n < 0) {
+          throw new IllegalArgumentException(keyword + " at " + at(path) + " must be a non-negative integer");
+        } // if
+        checks.add(new Size(keyword, type, n));
+      } // if
+    } // addSize(ArrayList<Check>, JSONHash, JSONString, int, String)
+
+    /**
+     * Describe a place in the schema.
+     */
+    static String at(String path) {
+      return JSONShapeParser.display(path);
+    } // at(String)
+  } // class Compiler
+
+  /**
+   * The state of one check: the errors found, and the path to the value
+   * being checked, kept without allocating.
+   */
+  static final class Run {
+    final boolean failFast;
+    final ArrayList<String> errors = new ArrayList<String>();
+
+    /**
+     * The key or, if that is null, the index at each level of the path.
+     */
+    JSONString[] keys = new JSONString[16];
+    int[] indices = new int[16];
+    int depth = 0;
+
+    Run(boolean failFast) {
+      this.failFast = failFast;
+    } // Run(boolean)
+
+    /**
+     * Step into a value in a hash or array.
+     */
+    void push(JSONString key, int index) {
+      if (this.depth == this.keys.length) {
+        this.keys = Arrays.copyOf(this.keys, this.depth * 2);
+        this.indices = Arrays.copyOf(this.indices, this.depth * 2);
+      } // if
+      this.keys[this.depth] = key;
+      this.indices[this.depth++] = index;
+    } // push(JSONString, int)
+
+    /**
+     * Step back out.
+     */
+    void pop() {
+      this.depth--;
+    } // pop()
+
+    /**
+     * Record an error at the current path. Returns false, for checks to
+     * return.
+     */
+    boolean fail(String problem) {
+      StringBuilder path = new StringBuilder();
+      for (int i = 0; i < this.depth; i++) {
+        path.append('/');
+        if (this.keys[i] != null) {
+          path.append(JSONShapeParser.escape(this.keys[i].getValue()));
+        } else {
+          path.append(this.indices[i]);
+        } // if-else
+      } // for
+      this.errors.add("Schema mismatch at " + JSONShapeParser.display(path.toString()) + ": " + problem);
+      return false;
+    } // fail(String)
+  } // class Run
+
+  /**
+   * A compiled schema object: the checks for each of its keywords.
+   */
+  static final class Node {
+    Check[] checks = new Check[0];
+
+    /**
+     * Where the schema object is, and the node its $ref refers to, if
+     * it has one.
+     */
+    final String path;
+    Node ref;
+
+    Node(String path) {
+      this.path = path;
+    } // Node(String)
+
+    /**
+     * Check a value against every keyword, stopping at the first failure
+     * if failing fast. Returns whether all passed.
+     */
+    boolean check(JSONValue value, Run run) {
+      if (run.depth > MAX_DEPTH) {
+        return run.fail("nested more than " + MAX_DEPTH + " deep to check");
+      } // if
+      boolean ok = true;
+      for (Check check : this.checks) {
+        if (!check.check(value, run)) {
+          ok = false;
+          if (run.failFast) {
+            return false;
+          } // if
+        } // if
+      } // for
+      return ok;
+    } // check(JSONValue, Run)
+  } // class Node
+
+  /**
+   * The check for one keyword.
+   */
+  abstract static class Check {
+    /**
+     * Check a value, recording any error in run. Returns whether it
+     * passed.
+     */
+    abstract boolean check(JSONValue value, Run run);
+  } // class Check
+
+  /**
+   * The false schema, which nothing fits.
+   */
+  static final class Never extends Check {
+    boolean check(JSONValue value, Run run) {
+      return run.fail("no value is allowed");
+    } // check(JSONValue, Run)
+  } // class Never
+
+  /**
+   * $ref, checking the value against another node too.
+   */
+  static final class Ref extends Check {
+    final Node target;
+
+    Ref(Node target) {
+      this.target = target;
+    } // Ref(Node)
+
+    boolean check(JSONValue value, Run run) {
+      return this.target.check(value, run);
+    } // check(JSONValue, Run)
+  } // class Ref
+
+  /**
+   * type.
+   */
+  static final class Type extends Check {
+    final int types;
+
+    Type(int types) {
+      this.types = types;
+    } // Type(int)
+
+    boolean check(JSONValue value, Run run) {
+      int type = JSONShapeParser.typeOf(value);
+      if (((this.types & type) != 0)
+          || ((type == JSONShapeParser.INTEGER) && ((this.types & JSONShapeParser.NUMBER) != 0))
+          || ((type == JSONShapeParser.NUMBER) && ((this.types & JSONShapeParser.INTEGER) != 0)
+              && (((JSONReal) value).getValue().stripTrailingZeros().scale() <= 0))) {
+        return true;
+      } // if
+      return run.fail("expected " + JSONShapeParser.describe(this.types) + " but found "
+          + JSONShapeParser.TYPE_NAMES[JSONShapeParser.bit(type)]);
+    } // check(JSONValue, Run)
+  } // class Type
+
+  /**
+   * enum and const. Numbers match by value, so 1 matches 1.0. Scalars
+   * are looked up by hash; hashes and arrays are compared in turn.
+   */
+  static final class Choice extends Check {
+    final List<JSONValue> choices;
+    final HashSet<JSONValue> scalars = new HashSet<JSONValue>();
+    final ArrayList<JSONValue> containers = new ArrayList<JSONValue>();
+
+    Choice(List<JSONValue> choices) {
+      this.choices = choices;
+      for (JSONValue choice : choices) {
+        if (JSONStructure.isContainer(choice)) {
+          this.containers.add(choice);
+        } else {
+          this.scalars.add(key(choice));
+        } // if-else
+      } // for
+    } // Choice(List<JSONValue>)
+
+    boolean check(JSONValue value, Run run) {
+      if (!JSONStructure.isContainer(value)) {
+        if (this.scalars.contains(key(value))) {
+          return true;
+        } // if
+      } else {
+        for (JSONValue choice : this.containers) {
+          if (JSONStructure.equals(choice, value, true)) {
+            return true;
+          } // if
+        } // for
+      } // if-else
+      return run.fail(value + " is not one of " + this.choices);
+    } // check(JSONValue, Run)
+
+    /**
+     * Get the value to look a scalar up by: the same for numbers of
+     * equal value.
+     */
+    static JSONValue key(JSONValue scalar) {
+      BigDecimal number = JSONStructure.decimal(scalar);
+      return (number == null) ? scalar : new JSONReal(number.stripTrailingZeros());
+    } // key(JSONValue)
+  } // class Choice
+
+  /**
+   * properties, checking those present in a hash.
+   */
+  static final class Properties extends Check {
+    final JSONString[] keys;
+    final Node[] nodes;
+
+    Properties(JSONString[] keys, Node[] nodes) {
+      this.keys = keys;
+      this.nodes = nodes;
+    } // Properties(JSONString[], Node[])
+
+    boolean check(JSONValue value, Run run) {
+      if (!(value instanceof JSONHash)) {
+        return true;
+      } // if
+      JSONHash hash = (JSONHash) value;
+      boolean ok = true;
+      for (int i = 0; i < this.keys.length; i++) {
+        JSONValue property = hash.getOrNull(this.keys[i]);
+        if (property != null) {
+          run.push(this.keys[i], -1);
+          boolean passed = this.nodes[i].check(property, run);
+          run.pop();
+          if (!passed) {
+            ok = false;
+            if (run.failFast) {
+              return false;
+            } // if
+          } // if
+        } // if
+      } // for
+      return ok;
+    } // check(JSONValue, Run)
+  } // class Properties
+
+  /**
+   * required.
+   */
+  static final class Required extends Check {
+    final JSONString[] keys;
+
+    Required(JSONString[] keys) {
+      this.keys = keys;
+    } // Required(JSONString[])
+
+    boolean check(JSONValue value, Run run) {
+      if (!(value instanceof JSONHash)) {
+        return true;
+      } // if
+      boolean ok = true;
+      for (JSONString key : this.keys) {
+        if (!((JSONHash) value).containsKey(key)) {
+          ok = run.fail("missing required property " + key);
+          if (run.failFast) {
+            return false;
+          } // if
+        } // if
+      } // for
+      return ok;
+    } // check(JSONValue, Run)
+  } // class Required
+
+  /**
+   * items, checking every element of an array.
+   */
+  static final class Items extends Check {
+    final Node node;
+
+    Items(Node node) {
+      this.node = node;
+    } // Items(Node)
+
+    boolean check(JSONValue value, Run run) {
+      if (!(value instanceof JSONArray)) {
+        return true;
+      } // if
+      ArrayList<JSONValue> elements = ((JSONArray) value).getValue();
+      boolean ok = true;
+      for (int i = 0; i < elements.size(); i++) {
+        run.push(null, i);
+        boolean passed = this.node.check(elements.get(i), run);
+        run.pop();
+        if (!passed) {
+          ok = false;
+          if (run.failFast) {
+            return false;
+          } // if
+        } // if
+      } // for
+      return ok;
+    } // check(JSONValue, Run)
+  } // class Items
+
+  /**
+   * minimum, maximum, exclusiveMinimum and exclusiveMaximum. Integers
+   * within a long are compared without building a BigDecimal.
+   */
+  static final class Bound extends Check {
+    final JSONString keyword;
+    final BigDecimal bound;
+
+    /**
+     * The bound as a long, if it is a whole number that fits.
+     */
+    final boolean whole;
+    final long longBound;
+
+    /**
+     * The signs of value - bound that pass.
+     */
+    final boolean below;
+    final boolean equal;
+    final boolean above;
+
+    Bound(JSONString keyword, BigDecimal bound) {
+      this.keyword = keyword;
+      this.bound = bound;
+      long n = 0;
+      boolean whole = false;
+      try {
+        n = bound.longValueExact();
+        whole = true;
+      } catch (ArithmeticException e) {
+        // compare as BigDecimal
+      } // try-catch
+      this.whole = whole;
+      this.longBound = n;
+      boolean minimum = (keyword == MINIMUM) || (keyword == EXCLUSIVE_MINIMUM);
+      this.below = !minimum;
+      this.above = minimum;
+      this.equal = (keyword == MINIMUM) || (keyword == MAXIMUM);
+    } // Bound(JSONString, BigDecimal)
+
+    boolean check(JSONValue value, Run run) {
+      int sign;
+      if ((value instanceof JSONInteger) && this.whole
+          && (((JSONInteger) value).getValue().bitLength() <= 63)) {
+        sign = Long.compare(((JSONInteger) value).getValue().longValue(), this.longBound);
+      } else if (value instanceof JSONInteger) {
+        sign = new BigDecimal(((JSONInteger) value).getValue()).compareTo(this.bound);
+      } else if (value instanceof JSONReal) {
+        sign = ((JSONReal) value).getValue().compareTo(this.bound);
+      } else {
+        return true;
+      } // if-else
+      if ((sign < 0) ? this.below : (sign == 0) ? this.equal : this.above) {
+        return true;
+      } // if
+      return run.fail(value + " does not meet " + this.keyword + " " + this.bound);
+    } // check(JSONValue, Run)
+  } // class Bound
+
+  /**
+   * minLength, maxLength, minItems, maxItems, minProperties and
+   * maxProperties.
+   */
+  static final class Size extends Check {
+    final JSONString keyword;
+    final int type;
+    final long limit;
+    final boolean minimum;
+
+    Size(JSONString keyword, int type, long limit) {
+      this.keyword = keyword;
+      this.type = type;
+      this.limit = limit;
+      this.minimum = keyword.getValue().startsWith("min");
+    } // Size(JSONString, int, long)
+
+    boolean check(JSONValue value, Run run) {
+      long size;
+      if ((this.type == JSONShapeParser.STRING) && (value instanceof JSONString)) {
+        String string = ((JSONString) value).getValue();
+        size = string.codePointCount(0, string.length());
+      } else if ((this.type == JSONShapeParser.ARRAY) && (value instanceof JSONArray)) {
+        size = ((JSONArray) value).size();
+      } else if ((this.type == JSONShapeParser.OBJECT) && (value instanceof JSONHash)) {
+        size = ((JSONHash) value).size();
+      } else {
+        return true;
+      } // if-else
+      if (this.minimum ? (size >= this.limit) : (size <= this.limit)) {
+        return true;
+      } // if
+      return run.fail("size " + size + " does not meet " + this.keyword + " " + this.limit);
+    } // check(JSONValue, Run)
+  } // class Size
+
+  /**
+   * pattern, which like ECMA-262 regular expressions is not anchored.
+   */
+  static final class Matches extends Check {
+    final Pattern pattern;
+
+    Matches(Pattern pattern) {
+      this.pattern = pattern;
+    } // Matches(Pattern)
+
+    boolean check(JSONValue value, Run run) {
+      if (!(value instanceof JSONString) || this.pattern.matcher(((JSONString) value).getValue()).find()) {
+        return true;
+      } // if
+      return run.fail(value + " does not match " + this.pattern.pattern());
+    } // check(JSONValue, Run)
+  } // class Matches
+
+} // class JSONSchema
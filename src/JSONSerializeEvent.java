@@ -0,0 +1,26 @@
+package src;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one value written by JSON.write.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+@Name("json.Serialize")
+@Label("JSON Serialize")
+@Category("JSON")
+@Description("Serialization of one JSON value")
+class JSONSerializeEvent extends jdk.jfr.Event {
+
+  @Label("Characters")
+  @Description("Characters written")
+  long chars;
+
+  @Label("Value Type")
+  String valueType;
+
+} // class JSONSerializeEvent
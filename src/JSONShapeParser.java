@@ -0,0 +1,639 @@
+package src;
+import java.io.Reader;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * A parser specialized for documents of a known shape, compiled from a
+ * subset of JSON Schema: type, properties, required, enum, items and a
+ * boolean additionalProperties. Other keywords are ignored.
+ *
+ * Documents are checked against the schema as they are parsed. Each key
+ * is first matched in place against the property expected next, and the
+ * key from the schema is shared with every document rather than copied.
+ * Which property comes next is learned from the documents seen, so it
+ * settles on the order they use; keys out of that order are looked up by
+ * name. Parts the schema does
+ * not describe, such as unknown properties, go through the generic
+ * parser. Parsing either builds the usual JSONHash and JSONArray tree or
+ * hands each value to a Sink without building containers.
+ *
+ * Compiled parsers may be shared between threads. The learned key order
+ * is the only state they change, and a stale view of it only costs a
+ * lookup by name.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONShapeParser {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The JSON Schema types, as bits.
+   */
+  static final int OBJECT = 1;
+  static final int ARRAY = 2;
+  static final int STRING = 4;
+  static final int INTEGER = 8;
+  static final int NUMBER = 16;
+  static final int BOOLEAN = 32;
+  static final int NULL = 64;
+  static final int ANY = 127;
+
+  /**
+   * The type names, in bit order.
+   */
+  static final String[] TYPE_NAMES =
+      {"object", "array", "string", "integer", "number", "boolean", "null"};
+
+  /**
+   * The keywords we understand.
+   */
+  static final JSONString TYPE = new JSONString("type");
+  static final JSONString PROPERTIES = new JSONString("properties");
+  static final JSONString REQUIRED = new JSONString("required");
+  static final JSONString ENUM = new JSONString("enum");
+  static final JSONString ITEMS = new JSONString("items");
+  static final JSONString ADDITIONAL = new JSONString("additionalProperties");
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The shape of the whole document.
+   */
+  final Shape root;
+
+  /**
+   * Every shape, indexed by slot.
+   */
+  final ArrayList<Shape> shapes;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  JSONShapeParser(Shape root, ArrayList<Shape> shapes) {
+    this.root = root;
+    this.shapes = shapes;
+  } // JSONShapeParser(Shape, ArrayList<Shape>)
+
+  /**
+   * Compile a parser from a schema.
+   *
+   * @throws IllegalArgumentException if the schema is malformed.
+   */
+  public static JSONShapeParser compile(JSONValue schema) {
+    ArrayList<Shape> shapes = new ArrayList<Shape>();
+    Shape root = build(schema, "", shapes);
+    return new JSONShapeParser(root, shapes);
+  } // compile(JSONValue)
+
+  /**
+   * Compile a parser from the text of a schema.
+   *
+   * @throws IllegalArgumentException if the schema is malformed.
+   */
+  public static JSONShapeParser compile(String schema) throws Exception {
+    return compile(JSON.parse(schema));
+  } // compile(String)
+
+  // +---------+-----------------------------------------------------
+  // | Parsing |
+  // +---------+
+
+  /**
+   * Parse and check a document.
+   *
+   * @throws InvalidJSONException if the text is not JSON or does not fit
+   *   the schema.
+   */
+  public JSONValue parse(String text) throws Exception {
+    return run(open(text), null);
+  } // parse(String)
+
+  /**
+   * Parse and check a document from a reader.
+   */
+  public JSONValue parse(Reader source) throws Exception {
+    return run(new JSON(source, JSON.DEFAULT_MAX_DEPTH, JSON.BUFFER_SIZE), null);
+  } // parse(Reader)
+
+  /**
+   * Parse and check a document, giving its values to sink rather than
+   * building a tree.
+   */
+  public void parse(String text, Sink sink) throws Exception {
+    run(open(text), sink);
+  } // parse(String, Sink)
+
+  /**
+   * Parse and check a document from a reader, giving its values to sink
+   * rather than building a tree.
+   */
+  public void parse(Reader source, Sink sink) throws Exception {
+    run(new JSON(source, JSON.DEFAULT_MAX_DEPTH, JSON.BUFFER_SIZE), sink);
+  } // parse(Reader, Sink)
+
+  // +-------+-------------------------------------------------------
+  // | Slots |
+  // +-------+
+
+  /**
+   * Get the slot a Sink is given for the values at path, which is a JSON
+   * pointer through the schema's properties with * standing for every
+   * array element, so the skus of an array of lines are at "/lines/*"
+   * followed by "/sku". Returns -1 if the schema has no such path.
+   */
+  public int slot(String path) {
+    for (Shape shape : this.shapes) {
+      if (shape.path.equals(path)) {
+        return shape.slot;
+      } // if
+    } // for
+    return -1;
+  } // slot(String)
+
+  /**
+   * Get the path of a slot.
+   */
+  public String path(int slot) {
+    return this.shapes.get(slot).path;
+  } // path(int)
+
+  /**
+   * Get the number of slots.
+   */
+  public int slots() {
+    return this.shapes.size();
+  } // slots()
+
+  // +-----------+---------------------------------------------------
+  // | Compiling |
+  // +-----------+
+
+  /**
+   * Build the shape for a schema found at path.
+   */
+  static Shape build(JSONValue schema, String path, ArrayList<Shape> shapes) {
+    Shape shape = new Shape(shapes.size(), path);
+    shapes.add(shape);
+    if (schema == JSONConstant.TRUE) {
+      return shape;
+    } else if (!(schema instanceof JSONHash)) {
+      throw new IllegalArgumentException("Schema at " + display(path) + " must be an object");
+    } // if-else
+    JSONHash hash = (JSONHash) schema;
+
+    JSONValue type = hash.getOrNull(TYPE);
+    if (type instanceof JSONArray) {
+      shape.types = 0;
+      for (JSONValue name : ((JSONArray) type).getValue()) {
+        shape.types |= typeBit(name, path);
+      } // for
+    } else if (type != null) {
+      shape.types = typeBit(type, path);
+    } // if-else
+
+    JSONValue choices = hash.getOrNull(ENUM);
+    if (choices instanceof JSONArray) {
+      shape.choices = new HashSet<JSONValue>(((JSONArray) choices).getValue());
+    } else if (choices != null) {
+      throw new IllegalArgumentException("enum at " + display(path) + " must be an array");
+    } // if-else
+
+    ArrayList<JSONString> keys = new ArrayList<JSONString>();
+    ArrayList<JSONValue> schemas = new ArrayList<JSONValue>();
+    JSONValue properties = hash.getOrNull(PROPERTIES);
+    if (properties instanceof JSONHash) {
+      Iterator<KVPair<JSONString, JSONValue>> pairs = ((JSONHash) properties).iterator();
+      while (pairs.hasNext()) {
+        KVPair<JSONString, JSONValue> pair = pairs.next();
+        keys.add(pair.key());
+        schemas.add(pair.value());
+      } // while
+    } else if (properties != null) {
+      throw new IllegalArgumentException("properties at " + display(path) + " must be an object");
+    } // if-else
+    JSONValue required = hash.getOrNull(REQUIRED);
+    if (required instanceof JSONArray) {
+      for (JSONValue name : ((JSONArray) required).getValue()) {
+        if (!(name instanceof JSONString)) {
+          throw new IllegalArgumentException("required at " + display(path) + " must list strings");
+        } else if (!keys.contains(name)) {
+          // required but otherwise unconstrained
+          keys.add((JSONString) name);
+          schemas.add(JSONConstant.TRUE);
+        } // if-else
+      } // for
+    } else if (required != null) {
+      throw new IllegalArgumentException("required at " + display(path) + " must be an array");
+    } // if-else
+
+    int n = keys.size();
+    shape.keys = new JSONString[n];
+    shape.keyChars = new char[n][];
+    shape.properties = new Shape[n];
+    shape.required = new boolean[n];
+    shape.next = new int[n + 1];
+    for (int i = 0; i < n; i++) {
+      String key = keys.get(i).getValue();
+      shape.keys[i] = new JSONString(key);
+      shape.keys[i].seededHash();
+      shape.keyChars[i] = plain(key) ? key.toCharArray() : null;
+      shape.required[i] = (required != null) && ((JSONArray) required).getValue().contains(keys.get(i));
+      shape.index.put(key, i);
+      shape.next[i + 1] = i + 1;
+      shape.properties[i] = build(schemas.get(i), path + "/" + escape(key), shapes);
+    } // for
+
+    JSONValue additional = hash.getOrNull(ADDITIONAL);
+    if (additional == JSONConstant.FALSE) {
+      shape.closed = true;
+    } else if ((additional != null) && (additional != JSONConstant.TRUE)) {
+      throw new IllegalArgumentException("Only true or false is supported for additionalProperties at "
+          + display(path));
+    } // if-else
+
+    JSONValue items = hash.getOrNull(ITEMS);
+    if (items != null) {
+      shape.items = build(items, path + "/*", shapes);
+    } // if
+    return shape;
+  } // build(JSONValue, String, ArrayList<Shape>)
+
+  /**
+   * Get the bit for a type name.
+   */
+  static int typeBit(JSONValue name, String path) {
+    for (int i = 0; i < TYPE_NAMES.length; i++) {
+      if ((name instanceof JSONString) && ((JSONString) name).getValue().equals(TYPE_NAMES[i])) {
+        return 1 << i;
+      } // if
+    } // for
+    throw new IllegalArgumentException("Unknown type " + name + " at " + display(path));
+  } // typeBit(JSONValue, String)
+
+  /**
+   * Determine whether a key is written the same way in JSON text, so it
+   * can be matched against the text directly.
+   */
+  static boolean plain(String key) {
+    for (int i = 0; i < key.length(); i++) {
+      char ch = key.charAt(i);
+      if ((ch == '"') || (ch == '\\') || (ch < 0x20)) {
+        return false;
+      } // if
+    } // for
+    return true;
+  } // plain(String)
+
+  /**
+   * Escape a key for use in a path.
+   */
+  static String escape(String key) {
+    return key.replace("~", "~0").replace("/", "~1");
+  } // escape(String)
+
+  /**
+   * Describe a path in a message.
+   */
+  static String display(String path) {
+    return path.isEmpty() ? "the root" : path;
+  } // display(String)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Set up a parser over text.
+   */
+  static JSON open(String text) {
+    return new JSON(new StringReader(text), JSON.DEFAULT_MAX_DEPTH,
+        Math.min(JSON.BUFFER_SIZE, text.length() + 1));
+  } // open(String)
+
+  /**
+   * Parse a whole document.
+   */
+  JSONValue run(JSON in, Sink sink) throws Exception {
+    JSONValue result = read(in, this.root, sink);
+    if (-1 != in.skipWhitespace()) {
+      throw new ParseException("Characters remain at end", (int) in.offset());
+    } // if
+    return result;
+  } // run(JSON, Sink)
+
+  /**
+   * Read one value of a shape. Hashes and arrays the shape describes are
+   * read here; anything else is read generically and then checked.
+   */
+  static JSONValue read(JSON in, Shape shape, Sink sink) throws Exception {
+    int ch = in.skipWhitespace();
+    if ((ch == '{') && ((shape.types & OBJECT) != 0) && ((shape.keys.length > 0) || shape.closed)) {
+      return readHash(in, shape, sink);
+    } else if ((ch == '[') && ((shape.types & ARRAY) != 0) && (shape.items != null)) {
+      return readArray(in, shape, sink);
+    } // if-else
+    JSONValue value = ((ch == '{') || (ch == '[')) ? in.parseKernel() : in.parseScalar(ch);
+    check(in, shape, value);
+    if (sink != null) {
+      sink.value(shape.slot, value);
+    } // if
+    return value;
+  } // read(JSON, Shape, Sink)
+
+  /**
+   * Read a hash whose properties the shape describes. Returns null when
+   * giving values to a sink.
+   */
+  static JSONValue readHash(JSON in, Shape shape, Sink sink) throws Exception {
+    in.pos++;
+    JSONHash result = (sink == null) ? new JSONHash() : null;
+    if (sink != null) {
+      sink.begin(shape.slot);
+    } // if
+    boolean[] seen = new boolean[shape.keys.length];
+    int previous = 0;
+    int ch = in.skipWhitespace();
+    if (ch == '}') {
+      in.pos++;
+    } else {
+      while (true) {
+        JSONString key;
+        int i;
+        int expected = shape.next[previous];
+        char[] chars = (expected < shape.keyChars.length) ? shape.keyChars[expected] : null;
+        if ((chars != null) && matchKey(in, chars)) {
+          i = expected;
+          key = shape.keys[i];
+        } else {
+          key = in.parseKey(ch);
+          Integer found = shape.index.get(key.getValue());
+          i = (found == null) ? -1 : found;
+          if (i >= 0) {
+            key = shape.keys[i];
+            shape.next[previous] = i;
+          } // if
+        } // if-else
+        JSONValue value;
+        if (i >= 0) {
+          value = read(in, shape.properties[i], sink);
+          seen[i] = true;
+          previous = i + 1;
+        } else if (shape.closed) {
+          throw mismatch(in, shape, "unexpected property " + key);
+        } else {
+          value = in.parseKernel();
+        } // if-else
+        if (result != null) {
+          result.set(key, value);
+        } // if
+        ch = in.skipWhitespace();
+        if (ch == ',') {
+          in.pos++;
+          ch = in.skipWhitespace();
+        } else if (ch == '}') {
+          in.pos++;
+          break;
+        } else if (ch == -1) {
+          throw new ParseException("Unexpected end of file", (int) in.offset());
+        } else {
+          throw in.error("Expected comma, instead found " + (char) ch);
+        } // if-else
+      } // while
+    } // if-else
+    for (int i = 0; i < seen.length; i++) {
+      if (shape.required[i] && !seen[i]) {
+        throw mismatch(in, shape, "missing required property " + shape.keys[i]);
+      } // if
+    } // for
+    if ((result != null) && (shape.choices != null) && !shape.choices.contains(result)) {
+      throw mismatch(in, shape, "value is not one of " + shape.choices);
+    } // if
+    if (sink != null) {
+      sink.end(shape.slot);
+    } // if
+    return result;
+  } // readHash(JSON, Shape, Sink)
+
+  /**
+   * Read an array whose elements the shape describes. Returns null when
+   * giving values to a sink.
+   */
+  static JSONValue readArray(JSON in, Shape shape, Sink sink) throws Exception {
+    in.pos++;
+    JSONArray result = (sink == null) ? new JSONArray() : null;
+    if (sink != null) {
+      sink.begin(shape.slot);
+    } // if
+    int ch = in.skipWhitespace();
+    if (ch == ']') {
+      in.pos++;
+    } else {
+      while (true) {
+        JSONValue value = read(in, shape.items, sink);
+        if (result != null) {
+          result.add(value);
+        } // if
+        ch = in.skipWhitespace();
+        if (ch == ',') {
+          in.pos++;
+        } else if (ch == ']') {
+          in.pos++;
+          break;
+        } else if (ch == -1) {
+          throw new ParseException("Unexpected end of file", (int) in.offset());
+        } else {
+          throw in.error("Expected comma, instead found " + (char) ch);
+        } // if-else
+      } // while
+    } // if-else
+    if ((result != null) && (shape.choices != null) && !shape.choices.contains(result)) {
+      throw mismatch(in, shape, "value is not one of " + shape.choices);
+    } // if
+    if (sink != null) {
+      sink.end(shape.slot);
+    } // if
+    return result;
+  } // readArray(JSON, Shape, Sink)
+
+  /**
+   * Read key, and the colon after it, if it comes next and is wholly in
+   * the buffer. Returns whether it did.
+   */
+  static boolean matchKey(JSON in, char[] key) throws Exception {
+    char[] buf = in.buf;
+    int start = in.pos + 1;
+    int end = start + key.length;
+    if ((end >= in.limit) || (buf[in.pos] != '"') || (buf[end] != '"')) {
+      return false;
+    } // if
+    for (int i = 0; i < key.length; i++) {
+      if (buf[start + i] != key[i]) {
+        return false;
+      } // if
+    } // for
+    in.pos = end + 1;
+    if (in.skipWhitespace() != ':') {
+      throw in.error("Invalid Hash object");
+    } // if
+    in.pos++;
+    return true;
+  } // matchKey(JSON, char[])
+
+  /**
+   * Check a value read generically against a shape.
+   */
+  static void check(JSON in, Shape shape, JSONValue value) throws InvalidJSONException {
+    int type = typeOf(value);
+    boolean fits = ((shape.types & type) != 0)
+        || ((type == INTEGER) && ((shape.types & NUMBER) != 0))
+        // 1.0 is an integer too
+        || ((type == NUMBER) && ((shape.types & INTEGER) != 0)
+            && (((JSONReal) value).getValue().stripTrailingZeros().scale() <= 0));
+    if (!fits) {
+      throw mismatch(in, shape, "expected " + describe(shape.types) + " but found " + TYPE_NAMES[bit(type)]);
+    } else if ((shape.choices != null) && !shape.choices.contains(value)) {
+      throw mismatch(in, shape, value + " is not one of " + shape.choices);
+    } // if-else
+  } // check(JSON, Shape, JSONValue)
+
+  /**
+   * Get the type bit of a value.
+   */
+  static int typeOf(JSONValue value) {
+    if (value instanceof JSONString) {
+      return STRING;
+    } else if (value instanceof JSONInteger) {
+      return INTEGER;
+    } else if (value instanceof JSONReal) {
+      return NUMBER;
+    } else if (value == JSONConstant.NULL) {
+      return NULL;
+    } else if (value instanceof JSONConstant) {
+      return BOOLEAN;
+    } else if (value instanceof JSONArray) {
+      return ARRAY;
+    } // if-else
+    return OBJECT;
+  } // typeOf(JSONValue)
+
+  /**
+   * Get the position of the one bit in type.
+   */
+  static int bit(int type) {
+    return Integer.numberOfTrailingZeros(type);
+  } // bit(int)
+
+  /**
+   * Name the types in a set of bits.
+   */
+  static String describe(int types) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < TYPE_NAMES.length; i++) {
+      if ((types & (1 << i)) != 0) {
+        result.append((result.length() == 0) ? "" : " or ").append(TYPE_NAMES[i]);
+      } // if
+    } // for
+    return result.toString();
+  } // describe(int)
+
+  /**
+   * Build an exception for input that does not fit a shape.
+   */
+  static InvalidJSONException mismatch(JSON in, Shape shape, String problem) {
+    return in.error("Schema mismatch at " + display(shape.path) + ": " + problem);
+  } // mismatch(JSON, Shape, String)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Receives the values of a document in order, in place of a tree.
+   * Each value comes with the slot of the schema that describes it;
+   * parts of the document the schema does not describe are given whole.
+   */
+  public interface Sink {
+    /**
+     * Take a value that is not a hash or array the schema describes.
+     */
+    void value(int slot, JSONValue value) throws Exception;
+
+    /**
+     * Note the start of a hash or array the schema describes.
+     */
+    default void begin(int slot) throws Exception {
+    } // begin(int)
+
+    /**
+     * Note the end of a hash or array the schema describes.
+     */
+    default void end(int slot) throws Exception {
+    } // end(int)
+  } // interface Sink
+
+  /**
+   * What the schema says about one place in a document.
+   */
+  static final class Shape {
+    /**
+     * Where in the schema this is, and its number.
+     */
+    final int slot;
+    final String path;
+
+    /**
+     * The types allowed, as bits.
+     */
+    int types = ANY;
+
+    /**
+     * The allowed values, or null if any are allowed.
+     */
+    HashSet<JSONValue> choices;
+
+    /**
+     * The properties, with their keys as written in
+     * text (null if they need escapes), their shapes, whether they are
+     * required and where they are by name.
+     */
+    JSONString[] keys = new JSONString[0];
+    char[][] keyChars = new char[0][];
+    Shape[] properties = new Shape[0];
+    boolean[] required = new boolean[0];
+    HashMap<String, Integer> index = new HashMap<String, Integer>();
+
+    /**
+     * The property expected first, at next[0], and after property i, at
+     * next[i + 1]; learned as documents are read.
+     */
+    int[] next = new int[1];
+
+    /**
+     * Whether properties not listed are forbidden.
+     */
+    boolean closed = false;
+
+    /**
+     * The shape of array elements, or null if not given.
+     */
+    Shape items;
+
+    Shape(int slot, String path) {
+      this.slot = slot;
+      this.path = path;
+    } // Shape(int, String)
+  } // class Shape
+
+} // class JSONShapeParser
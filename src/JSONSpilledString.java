@@ -0,0 +1,397 @@
+package src;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A JSON string too long to keep in the heap, whose contents are kept in
+ * a temporary file (in UTF-8) instead. The parser makes these for string
+ * values longer than the spill threshold given to JSON.parse or
+ * JSON.parseFile, writing each to its file as it reads it, so the whole
+ * string is never in the heap at once.
+ *
+ * Read the contents with openReader, openStream or openChannel, and
+ * write them with writeJSON, all of which stream from the file. getValue,
+ * toString and asString build the whole String, and so cost all the heap
+ * spilling saved.
+ *
+ * The file is deleted by close, or once the string is no longer
+ * reachable; close strings that may still be reachable when the JVM
+ * exits. As when writing a file in UTF-8, an unpaired surrogate is kept
+ * as '?'.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JSONSpilledString extends JSONString implements Closeable {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Deletes the files of strings no longer reachable.
+   */
+  static final Cleaner CLEANER = Cleaner.create();
+
+  /**
+   * The number of chars copied at a time.
+   */
+  static final int CHUNK_SIZE = 8192;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The file holding the contents.
+   */
+  final Path file;
+
+  /**
+   * The number of chars in the string.
+   */
+  final long length;
+
+  /**
+   * The hash code the String would have.
+   */
+  final int hash;
+
+  /**
+   * Deletes the file.
+   */
+  final Cleaner.Cleanable cleanable;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a string from a finished spill.
+   */
+  JSONSpilledString(Path file, long length, int hash) {
+    super(null);
+    this.file = file;
+    this.length = length;
+    this.hash = hash;
+    this.cleanable = CLEANER.register(this, new Deleter(file));
+  } // JSONSpilledString(Path, long, int)
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string, reading the whole file.
+   */
+  @Override
+  public String toString() {
+    try {
+      return new String(Files.readAllBytes(this.file), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } // try-catch
+  } // toString()
+
+  /**
+   * Compare to another string, a chunk at a time.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    } else if (!(other instanceof JSONString)) {
+      return false;
+    } // if-else
+    JSONString that = (JSONString) other;
+    if (that instanceof JSONSpilledString) {
+      JSONSpilledString spilled = (JSONSpilledString) that;
+      if ((spilled.length != this.length) || (spilled.hash != this.hash)) {
+        return false;
+      } // if
+    } else if ((that.value.length() != this.length) || (that.value.hashCode() != this.hash)) {
+      return false;
+    } // if-else
+    try (Reader mine = openReader(); Reader theirs = that.openReader()) {
+      char[] a = new char[CHUNK_SIZE];
+      char[] b = new char[CHUNK_SIZE];
+      int count;
+      while ((count = fill(mine, a, CHUNK_SIZE)) > 0) {
+        if (fill(theirs, b, count) != count) {
+          return false;
+        } // if
+        for (int i = 0; i < count; i++) {
+          if (a[i] != b[i]) {
+            return false;
+          } // if
+        } // for
+      } // while
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } // try-catch
+  } // equals(Object)
+
+  /**
+   * Get the hash code the String would have.
+   */
+  @Override
+  public int hashCode() {
+    return this.hash;
+  } // hashCode()
+
+  // +--------------------+------------------------------------------
+  // | Additional methods |
+  // +--------------------+
+
+  /**
+   * Write the value as JSON, a chunk at a time. Escapes are never more
+   * than one char long, so a chunk boundary cannot split one.
+   */
+  @Override
+  public void writeJSON(PrintWriter pen) {
+    pen.print('"');
+    try (Reader in = openReader()) {
+      char[] chunk = new char[CHUNK_SIZE];
+      int count;
+      while ((count = in.read(chunk)) != -1) {
+        writeEscaped(chunk, count, pen);
+      } // while
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } // try-catch
+    pen.print('"');
+    pen.flush();
+  } // writeJSON(PrintWriter)
+
+  /**
+   * Get the underlying value, reading the whole file.
+   */
+  @Override
+  public String getValue() {
+    return toString();
+  } // getValue()
+
+  /**
+   * Get the value as a String, reading the whole file.
+   */
+  @Override
+  public String asString(String otherwise) {
+    return toString();
+  } // asString(String)
+
+  /**
+   * Get the number of chars in the string.
+   */
+  public long length() {
+    return this.length;
+  } // length()
+
+  /**
+   * Read the contents as chars.
+   */
+  @Override
+  public Reader openReader() throws IOException {
+    return new InputStreamReader(openStream(), StandardCharsets.UTF_8);
+  } // openReader()
+
+  /**
+   * Read the contents as UTF-8 bytes.
+   */
+  public InputStream openStream() throws IOException {
+    return Files.newInputStream(this.file);
+  } // openStream()
+
+  /**
+   * Read the contents as UTF-8 bytes, through a channel.
+   */
+  public ReadableByteChannel openChannel() throws IOException {
+    return FileChannel.open(this.file, StandardOpenOption.READ);
+  } // openChannel()
+
+  /**
+   * Delete the file. The string cannot be read afterwards.
+   */
+  @Override
+  public void close() {
+    this.cleanable.clean();
+  } // close()
+
+  /**
+   * Compute seededHash a chunk at a time.
+   */
+  @Override
+  int seededHash() {
+    int result = this.seededHash;
+    if (result == 0) {
+      long h = HASH_SEED;
+      try (Reader in = openReader()) {
+        char[] chunk = new char[CHUNK_SIZE];
+        int count;
+        while ((count = in.read(chunk)) != -1) {
+          for (int i = 0; i < count; i++) {
+            h = (h ^ chunk[i]) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 32;
+          } // for
+        } // while
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } // try-catch
+      h = (h ^ (int) this.length) * 0xFF51AFD7ED558CCDL;
+      result = (int) (h ^ (h >>> 33));
+      this.seededHash = result;
+    } // if
+    return result;
+  } // seededHash()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Read up to length chars into buf, stopping short only at the end.
+   * Returns the number read.
+   */
+  static int fill(Reader in, char[] buf, int length) throws IOException {
+    int total = 0;
+    int count;
+    while ((total < length) && ((count = in.read(buf, total, length - total)) != -1)) {
+      total += count;
+    } // while
+    return total;
+  } // fill(Reader, char[], int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A string being spilled to a new temporary file. Append to it, then
+   * finish it or, if reading failed, discard it.
+   */
+  static final class Spill {
+    final Path file;
+    final Writer out;
+    long length = 0;
+    int hash = 0;
+
+    /**
+     * A high surrogate at the end of the last append, or 0. The hash
+     * counts it once we know whether it is paired.
+     */
+    char high = 0;
+
+    /**
+     * Where chars are copied on their way to out.
+     */
+    final char[] chunk = new char[CHUNK_SIZE];
+
+    Spill() throws IOException {
+      this.file = Files.createTempFile("json-", ".str");
+      try {
+        this.out = new OutputStreamWriter(new BufferedOutputStream(Files.newOutputStream(this.file)),
+            StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        Files.deleteIfExists(this.file);
+        throw e;
+      } // try-catch
+    } // Spill()
+
+    /**
+     * Append the chars in text, which may then be reused.
+     */
+    void append(StringBuilder text) throws IOException {
+      // hash what the file will hold, with '?' for unpaired surrogates
+      int h = this.hash;
+      char high = this.high;
+      for (int i = 0; i < text.length(); i++) {
+        char ch = text.charAt(i);
+        if (high != 0) {
+          if (Character.isLowSurrogate(ch)) {
+            h = 31 * (31 * h + high) + ch;
+            high = 0;
+            continue;
+          } // if
+          h = 31 * h + '?';
+          high = 0;
+        } // if
+        if (Character.isHighSurrogate(ch)) {
+          high = ch;
+          continue;
+        } else if (Character.isLowSurrogate(ch)) {
+          ch = '?';
+        } // if-else
+        h = 31 * h + ch;
+      } // for
+      this.hash = h;
+      this.high = high;
+      this.length += text.length();
+      for (int start = 0; start < text.length(); start += CHUNK_SIZE) {
+        int end = Math.min(start + CHUNK_SIZE, text.length());
+        text.getChars(start, end, this.chunk, 0);
+        this.out.write(this.chunk, 0, end - start);
+      } // for
+    } // append(StringBuilder)
+
+    /**
+     * Append the last chars and build the string.
+     */
+    JSONSpilledString finish(StringBuilder text) throws IOException {
+      append(text);
+      if (this.high != 0) {
+        this.hash = 31 * this.hash + '?';
+      } // if
+      this.out.close();
+      return new JSONSpilledString(this.file, this.length, this.hash);
+    } // finish(StringBuilder)
+
+    /**
+     * Give up on the string and delete its file.
+     */
+    void discard() {
+      try {
+        this.out.close();
+      } catch (IOException e) {
+        // the file is going anyway
+      } // try-catch
+      new Deleter(this.file).run();
+    } // discard()
+  } // class Spill
+
+  /**
+   * Deletes a file. Refers only to the path, so that it does not keep
+   * the string reachable.
+   */
+  static final class Deleter implements Runnable {
+    final Path file;
+
+    Deleter(Path file) {
+      this.file = file;
+    } // Deleter(Path)
+
+    @Override
+    public void run() {
+      try {
+        Files.deleteIfExists(this.file);
+      } catch (IOException e) {
+        // nothing more to do; the file is in the temporary directory
+      } // try-catch
+    } // run()
+  } // class Deleter
+
+} // class JSONSpilledString
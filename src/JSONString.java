@@ -1,5 +1,9 @@
 package src;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.security.SecureRandom;
 
 /**
  * JSON strings.
@@ -9,6 +13,15 @@ import java.io.PrintWriter;
  */
 public class JSONString implements JSONValue {
 
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The secret seed for seededHash, chosen afresh by each process.
+   */
+  static final long HASH_SEED = new SecureRandom().nextLong();
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -18,6 +31,13 @@ public class JSONString implements JSONValue {
    */
   String value;
 
+  /**
+   * The cached result of seededHash, or 0 if not yet computed. As with
+   * String.hashCode, a single int field is safe to share between threads
+   * without locking.
+   */
+  int seededHash = 0;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -64,10 +84,75 @@ public class JSONString implements JSONValue {
    * Write the value as JSON.
    */
   public void writeJSON(PrintWriter pen) {
-    pen.print("\""+this.toString()+"\"");
+    pen.print('"');
+    writeEscaped(this.value, pen);
+    pen.print('"');
     pen.flush();
   } // writeJSON(PrintWriter)
 
+  /**
+   * Get what JSON text must hold in place of ch, or null if ch may be
+   * written as it is. Only '"', '\\' and control characters need an
+   * escape, and those with a short form get it.
+   */
+  static String escape(char ch) {
+    switch (ch) {
+      case '"':
+        return "\\\"";
+      case '\\':
+        return "\\\\";
+      case '\b':
+        return "\\b";
+      case '\f':
+        return "\\f";
+      case '\n':
+        return "\\n";
+      case '\r':
+        return "\\r";
+      case '\t':
+        return "\\t";
+      default:
+        if (ch < 0x20) {
+          return "\\u00" + JSONCanonical.HEX[ch >> 4] + JSONCanonical.HEX[ch & 0xF];
+        } // if
+        return null;
+    } // switch
+  } // escape(char)
+
+  /**
+   * Write text to pen with the escapes JSON requires, copying the runs
+   * between escapes whole.
+   */
+  static void writeEscaped(String text, PrintWriter pen) {
+    int run = 0;
+    for (int i = 0; i < text.length(); i++) {
+      String escape = escape(text.charAt(i));
+      if (escape != null) {
+        pen.write(text, run, i - run);
+        pen.write(escape);
+        run = i + 1;
+      } // if
+    } // for
+    pen.write(text, run, text.length() - run);
+  } // writeEscaped(String, PrintWriter)
+
+  /**
+   * Write the first count chars of chunk to pen with the escapes JSON
+   * requires.
+   */
+  static void writeEscaped(char[] chunk, int count, PrintWriter pen) {
+    int run = 0;
+    for (int i = 0; i < count; i++) {
+      String escape = escape(chunk[i]);
+      if (escape != null) {
+        pen.write(chunk, run, i - run);
+        pen.write(escape);
+        run = i + 1;
+      } // if
+    } // for
+    pen.write(chunk, run, count - run);
+  } // writeEscaped(char[], int, PrintWriter)
+
   /**
    * Get the underlying value.
    */
@@ -75,4 +160,42 @@ public class JSONString implements JSONValue {
     return this.value;
   } // getValue()
 
+  /**
+   * Get the value as a String.
+   */
+  public String asString(String otherwise) {
+    return this.value;
+  } // asString(String)
+
+  /**
+   * Read the value as chars. JSONSpilledString reads from its file, so
+   * this works for strings of any length.
+   */
+  public Reader openReader() throws IOException {
+    return new StringReader(this.value);
+  } // openReader()
+
+  /**
+   * Compute a hash code that depends on HASH_SEED, for placing keys in
+   * a JSONHash. Strings that share a hashCode (such as "Aa" and "BB")
+   * almost never share a seededHash, and since the seed is secret,
+   * colliding keys cannot be precomputed. This is not a cryptographic
+   * hash; JSONHash also bounds the cost of any collisions that remain.
+   */
+  int seededHash() {
+    int result = this.seededHash;
+    if (result == 0) {
+      long h = HASH_SEED;
+      String str = this.value;
+      for (int i = 0; i < str.length(); i++) {
+        h = (h ^ str.charAt(i)) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+      } // for
+      h = (h ^ str.length()) * 0xFF51AFD7ED558CCDL;
+      result = (int) (h ^ (h >>> 33));
+      this.seededHash = result;
+    } // if
+    return result;
+  } // seededHash()
+
 } // class JSONString
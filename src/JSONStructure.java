@@ -0,0 +1,278 @@
+package src;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Hashes, compares and freezes nested hashes and arrays without
+ * recursion. Values still to be visited are kept on explicit stacks, so
+ * anything the parser accepts, however deeply nested, costs heap rather
+ * than call stack. Used by hashCode, equals and freeze in JSONArray and
+ * JSONHash.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+final class JSONStructure {
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  private JSONStructure() {
+  } // JSONStructure()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Compute the hash code of a hash or array: for an array, as
+   * List.hashCode does; for a hash, the sum of key.hashCode() ^
+   * value.hashCode() over its pairs. Frozen containers keep their codes,
+   * and those already kept are not visited again.
+   */
+  static int hashCode(JSONValue root) {
+    ArrayList<Frame> stack = new ArrayList<Frame>();
+    stack.add(new Frame(root));
+    while (true) {
+      Frame frame = stack.get(stack.size() - 1);
+      if (frame.members.hasNext()) {
+        JSONValue child;
+        if (frame.isHash) {
+          @SuppressWarnings("unchecked")
+          KVPair<JSONString, JSONValue> pair = (KVPair<JSONString, JSONValue>) frame.members.next();
+          frame.keyHash = pair.key().hashCode();
+          child = pair.value();
+        } else {
+          child = (JSONValue) frame.members.next();
+        } // if-else
+        if (isContainer(child) && !hasKeptHash(child)) {
+          stack.add(new Frame(child));
+        } else {
+          frame.add(child.hashCode());
+        } // if-else
+        continue;
+      } // if
+      stack.remove(stack.size() - 1);
+      keepHash(frame.container, frame.hash);
+      if (stack.isEmpty()) {
+        return frame.hash;
+      } // if
+      stack.get(stack.size() - 1).add(frame.hash);
+    } // while
+  } // hashCode(JSONValue)
+
+  /**
+   * Determine whether two values are equal: arrays with equal elements
+   * in the same order, hashes with the same keys and equal values, or
+   * equal scalars.
+   */
+  static boolean equals(JSONValue a, JSONValue b) {
+    return equals(a, b, false);
+  } // equals(JSONValue, JSONValue)
+
+  /**
+   * Determine whether two values are equal, as above, but, if numeric,
+   * with numbers equal when their values are (so 1 equals 1.0), as JSON
+   * Schema compares them.
+   */
+  static boolean equals(JSONValue a, JSONValue b, boolean numeric) {
+    // pairs of values still to compare, each pushed second then first
+    ArrayDeque<JSONValue> pending = new ArrayDeque<JSONValue>();
+    pending.push(b);
+    pending.push(a);
+    while (!pending.isEmpty()) {
+      JSONValue x = pending.pop();
+      JSONValue y = pending.pop();
+      if (x == y) {
+        continue;
+      } else if (x instanceof JSONArray) {
+        if (!(y instanceof JSONArray)) {
+          return false;
+        } // if
+        JSONArray p = (JSONArray) x;
+        JSONArray q = (JSONArray) y;
+        if ((p.size() != q.size()) || differ(p, q, !numeric && p.frozen && q.frozen)) {
+          return false;
+        } // if
+        for (int i = p.size() - 1; i >= 0; i--) {
+          pending.push(q.values.get(i));
+          pending.push(p.values.get(i));
+        } // for
+      } else if (x instanceof JSONHash) {
+        if (!(y instanceof JSONHash)) {
+          return false;
+        } // if
+        JSONHash p = (JSONHash) x;
+        JSONHash q = (JSONHash) y;
+        if ((p.size() != q.size()) || differ(p, q, !numeric && p.frozen && q.frozen)) {
+          return false;
+        } // if
+        Iterator<KVPair<JSONString, JSONValue>> pairs = p.iterator();
+        while (pairs.hasNext()) {
+          KVPair<JSONString, JSONValue> pair = pairs.next();
+          JSONValue other = q.getOrNull(pair.key());
+          if (other == null) {
+            return false;
+          } // if
+          pending.push(other);
+          pending.push(pair.value());
+        } // while
+      } else if (numeric && (decimal(x) != null) && (decimal(y) != null)) {
+        if (decimal(x).compareTo(decimal(y)) != 0) {
+          return false;
+        } // if
+      } else if (!x.equals(y)) {
+        return false;
+      } // if-else
+    } // while
+    return true;
+  } // equals(JSONValue, JSONValue, boolean)
+
+  /**
+   * Make a hash or array, and every value nested inside it, read-only.
+   * Containers already frozen hold only frozen values, so are skipped.
+   */
+  static void freeze(JSONValue root) {
+    ArrayDeque<JSONValue> pending = new ArrayDeque<JSONValue>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      JSONValue value = pending.pop();
+      if (value instanceof JSONHash) {
+        JSONHash hash = (JSONHash) value;
+        if (hash.frozen) {
+          continue;
+        } // if
+        hash.frozen = true;
+        Iterator<KVPair<JSONString, JSONValue>> pairs = hash.iterator();
+        while (pairs.hasNext()) {
+          JSONValue child = pairs.next().value();
+          if (isContainer(child)) {
+            pending.push(child);
+          } // if
+        } // while
+      } else if (value instanceof JSONArray) {
+        JSONArray array = (JSONArray) value;
+        if (array.frozen) {
+          continue;
+        } // if
+        array.frozen = true;
+        for (JSONValue child : array.values) {
+          if (isContainer(child)) {
+            pending.push(child);
+          } // if
+        } // for
+      } // if-else
+    } // while
+  } // freeze(JSONValue)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Determine whether a value is a hash or array.
+   */
+  static boolean isContainer(JSONValue value) {
+    return (value instanceof JSONHash) || (value instanceof JSONArray);
+  } // isContainer(JSONValue)
+
+  /**
+   * Get the value of a number, or null if the value is not one.
+   */
+  static BigDecimal decimal(JSONValue value) {
+    if (value instanceof JSONInteger) {
+      return new BigDecimal(((JSONInteger) value).getValue());
+    } else if (value instanceof JSONReal) {
+      return ((JSONReal) value).getValue();
+    } // if-else
+    return null;
+  } // decimal(JSONValue)
+
+  /**
+   * Determine whether two frozen containers have different hash codes,
+   * which are cheap once kept. Unfrozen ones are not checked, since
+   * computing their codes costs as much as comparing them.
+   */
+  static boolean differ(JSONValue a, JSONValue b, boolean frozen) {
+    return frozen && (a.hashCode() != b.hashCode());
+  } // differ(JSONValue, JSONValue, boolean)
+
+  /**
+   * Determine whether a container has kept its hash code.
+   */
+  static boolean hasKeptHash(JSONValue container) {
+    return (container instanceof JSONHash) ? ((JSONHash) container).hashValid
+        : ((JSONArray) container).hashValid;
+  } // hasKeptHash(JSONValue)
+
+  /**
+   * Keep the hash code of a container, if it is frozen.
+   */
+  static void keepHash(JSONValue container, int hash) {
+    if (container instanceof JSONHash) {
+      JSONHash table = (JSONHash) container;
+      if (table.frozen) {
+        table.hash = hash;
+        table.hashValid = true;
+      } // if
+    } else {
+      JSONArray array = (JSONArray) container;
+      if (array.frozen) {
+        array.hash = hash;
+        array.hashValid = true;
+      } // if
+    } // if-else
+  } // keepHash(JSONValue, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A container whose hash code is being computed.
+   */
+  static final class Frame {
+    final JSONValue container;
+    final boolean isHash;
+
+    /**
+     * The pairs or elements not yet hashed.
+     */
+    final Iterator<?> members;
+
+    /**
+     * The code so far, and the hash code of the key of the pair whose
+     * value is being hashed.
+     */
+    int hash;
+    int keyHash;
+
+    Frame(JSONValue container) {
+      this.container = container;
+      this.isHash = container instanceof JSONHash;
+      if (this.isHash) {
+        this.members = ((JSONHash) container).iterator();
+        this.hash = 0;
+      } else {
+        this.members = ((JSONArray) container).values.iterator();
+        this.hash = 1;
+      } // if-else
+    } // Frame(JSONValue)
+
+    /**
+     * Fold in the hash code of the next element, or of the value of the
+     * next pair.
+     */
+    void add(int valueHash) {
+      if (this.isHash) {
+        this.hash += this.keyHash ^ valueHash;
+      } else {
+        this.hash = 31 * this.hash + valueHash;
+      } // if-else
+    } // add(int)
+  } // class Frame
+
+} // class JSONStructure
@@ -0,0 +1,691 @@
+package src;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parsed document stored compactly: one long[] "tape" of tagged
+ * entries and one char[] holding the text of every string and of numbers
+ * that do not fit a long. A tree of JSONValues costs several objects per
+ * node; a tape is two arrays, whatever the size of the document, so it
+ * takes a fraction of the heap and gives the garbage collector nothing to
+ * trace.
+ *
+ * Each entry keeps its tag in the top byte and a payload in the rest:
+ *
+ *   {  [    the index just past the matching close, and (above bit 32)
+ *           the number of members, up to 0xFFFFFF
+ *   }  ]    the index of the matching open
+ *   "       where the string is in the text, as a two-char length and
+ *           then the characters
+ *   l       an integer that fits a long, held whole in the next entry
+ *   I  d    a larger integer, or a real, kept as its text like a string
+ *   t f n   true, false and null
+ *
+ * Keys are string entries that come just before their values. Values are
+ * read through Cursors, which are small objects naming one entry; a
+ * Cursor can be turned into the usual JSONValue with toValue.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONTape {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The payload bits of an entry.
+   */
+  static final long PAYLOAD = (1L << 56) - 1;
+
+  /**
+   * The largest member count kept in an open entry; more must be counted.
+   */
+  static final int MAX_COUNT = 0xFFFFFF;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The entries.
+   */
+  final long[] tape;
+
+  /**
+   * The text of strings and unusual numbers.
+   */
+  final char[] text;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  JSONTape(long[] tape, char[] text) {
+    this.tape = tape;
+    this.text = text;
+  } // JSONTape(long[], char[])
+
+  /**
+   * Parse a string onto a tape.
+   */
+  public static JSONTape parse(String source) throws Exception {
+    return build(new JSON(new StringReader(source), JSON.DEFAULT_MAX_DEPTH,
+        Math.min(JSON.BUFFER_SIZE, source.length() + 1)));
+  } // parse(String)
+
+  /**
+   * Parse the contents of a reader onto a tape.
+   */
+  public static JSONTape parse(Reader source) throws Exception {
+    return build(new JSON(source, JSON.DEFAULT_MAX_DEPTH, JSON.BUFFER_SIZE));
+  } // parse(Reader)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get a cursor on the whole document.
+   */
+  public Cursor root() {
+    return new Cursor(this, 0);
+  } // root()
+
+  /**
+   * Convert the whole document to JSON values.
+   */
+  public JSONValue toValue() {
+    return root().toValue();
+  } // toValue()
+
+  /**
+   * Get the number of bytes the tape holds on the heap, counting the
+   * headers of its arrays.
+   */
+  public long bytes() {
+    return 3 * 16 + 8L * this.tape.length + 2L * this.text.length;
+  } // bytes()
+
+  /**
+   * Convert to a string.
+   */
+  public String toString() {
+    return toValue().toString();
+  } // toString()
+
+  // +----------+----------------------------------------------------
+  // | Building |
+  // +----------+
+
+  /**
+   * Parse one value onto a new tape. Like JSON.parseKernel, this keeps
+   * open arrays and hashes on an explicit stack.
+   */
+  static JSONTape build(JSON in) throws Exception {
+    Builder out = new Builder();
+    int ch = in.skipWhitespace();
+    while (true) {
+      // ch starts a value
+      if ((ch == '{') || (ch == '[')) {
+        in.pos++;
+        if (out.depth >= in.maxDepth) {
+          throw in.error("Maximum nesting depth of " + in.maxDepth + " exceeded");
+        } // if
+        out.open((char) ch);
+        ch = in.skipWhitespace();
+        if (ch != ((out.isHash()) ? '}' : ']')) {
+          if (out.isHash()) {
+            out.key(in, ch);
+            ch = in.skipWhitespace();
+          } // if
+          continue;
+        } // if
+        in.pos++;
+        out.close();
+      } else {
+        out.scalar(in, ch);
+      } // if-else
+
+      // count the value, closing any containers it completes
+      while (true) {
+        if (out.depth == 0) {
+          if (-1 != in.skipWhitespace()) {
+            throw new ParseException("Characters remain at end", (int) in.offset());
+          } // if
+          return new JSONTape(Arrays.copyOf(out.tape, out.size), Arrays.copyOf(out.text, out.used));
+        } // if
+        out.counts[out.depth - 1]++;
+        ch = in.skipWhitespace();
+        if (ch == ',') {
+          in.pos++;
+          ch = in.skipWhitespace();
+          if (out.isHash()) {
+            out.key(in, ch);
+            ch = in.skipWhitespace();
+          } // if
+          break;
+        } else if (ch == ((out.isHash()) ? '}' : ']')) {
+          in.pos++;
+          out.close();
+        } else if (ch == -1) {
+          throw new ParseException("Unexpected end of file", (int) in.offset());
+        } else {
+          throw in.error("Expected comma, instead found " + (char) ch);
+        } // if-else
+      } // while
+    } // while
+  } // build(JSON)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the tag of an entry.
+   */
+  static char tag(long entry) {
+    return (char) (entry >>> 56);
+  } // tag(long)
+
+  /**
+   * Make an entry.
+   */
+  static long entry(char tag, long payload) {
+    return ((long) tag << 56) | payload;
+  } // entry(char, long)
+
+  /**
+   * Get the index just past the value whose entry is at i.
+   */
+  int skip(int i) {
+    char tag = tag(this.tape[i]);
+    if ((tag == '{') || (tag == '[')) {
+      return (int) this.tape[i];
+    } else if (tag == 'l') {
+      return i + 2;
+    } // if-else
+    return i + 1;
+  } // skip(int)
+
+  /**
+   * Get the string whose text starts at offset.
+   */
+  String string(int offset) {
+    return new String(this.text, offset + 2, length(offset));
+  } // string(int)
+
+  /**
+   * Get the length of the string whose text starts at offset.
+   */
+  int length(int offset) {
+    return (this.text[offset] << 16) | this.text[offset + 1];
+  } // length(int)
+
+  /**
+   * Determine whether the string whose text starts at offset is key,
+   * without building it.
+   */
+  boolean matches(int offset, String key) {
+    int length = length(offset);
+    if (length != key.length()) {
+      return false;
+    } // if
+    for (int i = 0; i < length; i++) {
+      if (this.text[offset + 2 + i] != key.charAt(i)) {
+        return false;
+      } // if
+    } // for
+    return true;
+  } // matches(int, String)
+
+  /**
+   * Convert the scalar entry at i to a JSON value.
+   */
+  JSONValue scalar(int i) {
+    long entry = this.tape[i];
+    int offset = (int) (entry & PAYLOAD);
+    switch (tag(entry)) {
+      case '"':
+        return new JSONString(string(offset));
+      case 'l':
+        return new JSONInteger(this.tape[i + 1]);
+      case 'I':
+        return new JSONInteger(new BigInteger(string(offset)));
+      case 'd':
+        return new JSONReal(new BigDecimal(string(offset)));
+      case 't':
+        return JSONConstant.TRUE;
+      case 'f':
+        return JSONConstant.FALSE;
+      default:
+        return JSONConstant.NULL;
+    } // switch
+  } // scalar(int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Collects the entries and text while parsing.
+   */
+  static final class Builder {
+    long[] tape = new long[64];
+    int size = 0;
+    char[] text = new char[256];
+    int used = 0;
+
+    /**
+     * Where each open array or hash starts, and how many members it has
+     * so far.
+     */
+    int[] starts = new int[16];
+    int[] counts = new int[16];
+    int depth = 0;
+
+    /**
+     * Add an entry.
+     */
+    void add(long entry) {
+      if (this.size == this.tape.length) {
+        this.tape = Arrays.copyOf(this.tape, this.size * 2);
+      } // if
+      this.tape[this.size++] = entry;
+    } // add(long)
+
+    /**
+     * Add an entry whose payload is the text in in.token.
+     */
+    void addText(char tag, JSON in) {
+      StringBuilder token = in.token;
+      int length = token.length();
+      if (this.used + length + 2 > this.text.length) {
+        this.text = Arrays.copyOf(this.text, Math.max(this.text.length * 2, this.used + length + 2));
+      } // if
+      add(entry(tag, this.used));
+      this.text[this.used++] = (char) (length >>> 16);
+      this.text[this.used++] = (char) length;
+      token.getChars(0, length, this.text, this.used);
+      this.used += length;
+    } // addText(char, JSON)
+
+    /**
+     * Determine whether the innermost open container is a hash.
+     */
+    boolean isHash() {
+      return tag(this.tape[this.starts[this.depth - 1]]) == '{';
+    } // isHash()
+
+    /**
+     * Start an array or hash.
+     */
+    void open(char opener) {
+      if (this.depth == this.starts.length) {
+        this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+        this.counts = Arrays.copyOf(this.counts, this.depth * 2);
+      } // if
+      this.starts[this.depth] = this.size;
+      this.counts[this.depth++] = 0;
+      add(entry(opener, 0));
+    } // open(char)
+
+    /**
+     * End the innermost array or hash, filling in its open entry.
+     */
+    void close() {
+      int start = this.starts[--this.depth];
+      char opener = tag(this.tape[start]);
+      add(entry((opener == '{') ? '}' : ']', start));
+      long count = Math.min(this.counts[this.depth], MAX_COUNT);
+      this.tape[start] = entry(opener, (count << 32) | this.size);
+    } // close()
+
+    /**
+     * Read a key and the colon after it. ch is the first character.
+     */
+    void key(JSON in, int ch) throws Exception {
+      if (ch != '"') {
+        if (ch == -1) {
+          throw new ParseException("Unexpected end of file", (int) in.offset());
+        } // if
+        throw in.error("Expected JSONString but found " + (char) ch);
+      } // if
+      in.pos++;
+      in.readString();
+      addText('"', in);
+      if (in.skipWhitespace() != ':') {
+        throw in.error("Invalid Hash object");
+      } // if
+      in.pos++;
+    } // key(JSON, int)
+
+    /**
+     * Read a string, number or constant. ch is the first character.
+     */
+    void scalar(JSON in, int ch) throws Exception {
+      if (ch == '"') {
+        in.pos++;
+        in.readString();
+        addText('"', in);
+      } else if ((ch == '-') || ((ch >= '0') && (ch <= '9'))) {
+        if (in.readNumber()) {
+          addText('d', in);
+        } else if (!addLong(in.token)) {
+          addText('I', in);
+        } // if-else
+      } else {
+        JSONValue constant = in.parseScalar(ch);
+        add(entry((constant == JSONConstant.TRUE) ? 't' : (constant == JSONConstant.FALSE) ? 'f' : 'n', 0));
+      } // if-else
+    } // scalar(JSON, int)
+
+    /**
+     * Add the integer in digits as a long, if it fits. Returns whether
+     * it did.
+     */
+    boolean addLong(StringBuilder digits) {
+      boolean negative = digits.charAt(0) == '-';
+      int start = negative ? 1 : 0;
+      if (digits.length() - start > 18) {
+        BigInteger big = new BigInteger(digits.toString());
+        if (big.bitLength() > 63) {
+          return false;
+        } // if
+        add(entry('l', 0));
+        add(big.longValue());
+        return true;
+      } // if
+      long n = 0;
+      for (int i = start; i < digits.length(); i++) {
+        n = n * 10 + (digits.charAt(i) - '0');
+      } // for
+      add(entry('l', 0));
+      add(negative ? -n : n);
+      return true;
+    } // addLong(StringBuilder)
+  } // class Builder
+
+  /**
+   * A position on a tape: one value of the document. Cursors are cheap
+   * to make and hold nothing but the tape and an index.
+   */
+  public static final class Cursor {
+    final JSONTape tape;
+    final int index;
+
+    Cursor(JSONTape tape, int index) {
+      this.tape = tape;
+      this.index = index;
+    } // Cursor(JSONTape, int)
+
+    // +------------+------------------------------------------------
+    // | Predicates |
+    // +------------+
+
+    /**
+     * Determine whether the value is a hash.
+     */
+    public boolean isHash() {
+      return tag() == '{';
+    } // isHash()
+
+    /**
+     * Determine whether the value is an array.
+     */
+    public boolean isArray() {
+      return tag() == '[';
+    } // isArray()
+
+    /**
+     * Determine whether the value is a string.
+     */
+    public boolean isString() {
+      return tag() == '"';
+    } // isString()
+
+    /**
+     * Determine whether the value is a number.
+     */
+    public boolean isNumber() {
+      char tag = tag();
+      return (tag == 'l') || (tag == 'I') || (tag == 'd');
+    } // isNumber()
+
+    /**
+     * Determine whether the value is true or false.
+     */
+    public boolean isBoolean() {
+      char tag = tag();
+      return (tag == 't') || (tag == 'f');
+    } // isBoolean()
+
+    /**
+     * Determine whether the value is null.
+     */
+    public boolean isNull() {
+      return tag() == 'n';
+    } // isNull()
+
+    // +------------+------------------------------------------------
+    // | Navigation |
+    // +------------+
+
+    /**
+     * Get the number of members of a hash or array, or 0 for anything
+     * else.
+     */
+    public int size() {
+      if (!isHash() && !isArray()) {
+        return 0;
+      } // if
+      long entry = this.tape.tape[this.index];
+      int count = (int) ((entry & PAYLOAD) >>> 32);
+      if (count < MAX_COUNT) {
+        return count;
+      } // if
+      count = 0;
+      for (int i = this.index + 1; i < end(); i = next(i)) {
+        count++;
+      } // for
+      return count;
+    } // size()
+
+    /**
+     * Get the value for a key in a hash, or null if there is none (or
+     * this is not a hash). If the key appears more than once, the last
+     * value wins, as in toValue.
+     */
+    public Cursor get(String key) {
+      if (!isHash()) {
+        return null;
+      } // if
+      int end = end();
+      int found = -1;
+      for (int i = this.index + 1; i < end; i = this.tape.skip(i + 1)) {
+        if (this.tape.matches((int) (this.tape.tape[i] & PAYLOAD), key)) {
+          found = i + 1;
+        } // if
+      } // for
+      return (found < 0) ? null : new Cursor(this.tape, found);
+    } // get(String)
+
+    /**
+     * Get an element of an array, or null if there is none (or this is
+     * not an array).
+     */
+    public Cursor get(int position) {
+      if (!isArray() || (position < 0)) {
+        return null;
+      } // if
+      int end = end();
+      for (int i = this.index + 1; i < end; i = this.tape.skip(i)) {
+        if (position-- == 0) {
+          return new Cursor(this.tape, i);
+        } // if
+      } // for
+      return null;
+    } // get(int)
+
+    /**
+     * Get the elements of an array, or the values of a hash, in order.
+     */
+    public List<Cursor> elements() {
+      ArrayList<Cursor> result = new ArrayList<Cursor>();
+      int end = end();
+      for (int i = this.index + 1; i < end; i = next(i)) {
+        result.add(new Cursor(this.tape, isHash() ? i + 1 : i));
+      } // for
+      return result;
+    } // elements()
+
+    /**
+     * Get the keys of a hash, in order.
+     */
+    public List<String> keys() {
+      ArrayList<String> result = new ArrayList<String>();
+      if (isHash()) {
+        int end = end();
+        for (int i = this.index + 1; i < end; i = next(i)) {
+          result.add(this.tape.string((int) (this.tape.tape[i] & PAYLOAD)));
+        } // for
+      } // if
+      return result;
+    } // keys()
+
+    // +--------+----------------------------------------------------
+    // | Values |
+    // +--------+
+
+    /**
+     * Get the value as a long, or otherwise if it is not an integer
+     * that fits.
+     */
+    public long asLong(long otherwise) {
+      return (tag() == 'l') ? this.tape.tape[this.index + 1] : otherwise;
+    } // asLong(long)
+
+    /**
+     * Get the value as a double, or otherwise if it is not a number.
+     */
+    public double asDouble(double otherwise) {
+      char tag = tag();
+      if (tag == 'l') {
+        return this.tape.tape[this.index + 1];
+      } else if ((tag == 'I') || (tag == 'd')) {
+        return Double.parseDouble(this.tape.string(offset()));
+      } // if-else
+      return otherwise;
+    } // asDouble(double)
+
+    /**
+     * Get the value as a string, or otherwise if it is not a string.
+     */
+    public String asString(String otherwise) {
+      return isString() ? this.tape.string(offset()) : otherwise;
+    } // asString(String)
+
+    /**
+     * Get the value as a boolean, or otherwise if it is not one.
+     */
+    public boolean asBoolean(boolean otherwise) {
+      char tag = tag();
+      return (tag == 't') || ((tag != 'f') && otherwise);
+    } // asBoolean(boolean)
+
+    /**
+     * Convert to JSON values, building the whole subtree. Uses an
+     * explicit stack, so deep nesting is safe.
+     */
+    public JSONValue toValue() {
+      if (!isHash() && !isArray()) {
+        return this.tape.scalar(this.index);
+      } // if
+      long[] entries = this.tape.tape;
+      ArrayList<JSONValue> open = new ArrayList<JSONValue>();
+      ArrayList<JSONString> keys = new ArrayList<JSONString>();
+      int i = this.index;
+      while (true) {
+        char tag = JSONTape.tag(entries[i]);
+        JSONValue value;
+        if ((tag == '{') || (tag == '[')) {
+          open.add((tag == '{') ? new JSONHash() : new JSONArray());
+          keys.add(null);
+          i++;
+          if ((tag == '{') && (JSONTape.tag(entries[i]) != '}')) {
+            keys.set(keys.size() - 1, (JSONString) this.tape.scalar(i));
+            i++;
+          } // if
+          continue;
+        } else if ((tag == '}') || (tag == ']')) {
+          value = open.remove(open.size() - 1);
+          keys.remove(keys.size() - 1);
+          i++;
+        } else {
+          value = this.tape.scalar(i);
+          i = this.tape.skip(i);
+        } // if-else
+        int last = open.size() - 1;
+        if (last < 0) {
+          return value;
+        } else if (open.get(last) instanceof JSONArray) {
+          ((JSONArray) open.get(last)).add(value);
+        } else {
+          ((JSONHash) open.get(last)).set(keys.get(last), value);
+          if (JSONTape.tag(entries[i]) != '}') {
+            keys.set(last, (JSONString) this.tape.scalar(i));
+            i++;
+          } // if
+        } // if-else
+      } // while
+    } // toValue()
+
+    /**
+     * Convert to a string.
+     */
+    public String toString() {
+      return toValue().toString();
+    } // toString()
+
+    // +---------+---------------------------------------------------
+    // | Helpers |
+    // +---------+
+
+    /**
+     * Get the tag of the entry.
+     */
+    char tag() {
+      return JSONTape.tag(this.tape.tape[this.index]);
+    } // tag()
+
+    /**
+     * Get the payload of the entry, as an offset into the text.
+     */
+    int offset() {
+      return (int) (this.tape.tape[this.index] & PAYLOAD);
+    } // offset()
+
+    /**
+     * Get the index of the closing entry of a hash or array.
+     */
+    int end() {
+      return (int) this.tape.tape[this.index] - 1;
+    } // end()
+
+    /**
+     * Get the index of the member after the one at i: past a key and its
+     * value in a hash, or past an element in an array.
+     */
+    int next(int i) {
+      return isHash() ? this.tape.skip(i + 1) : this.tape.skip(i);
+    } // next(int)
+  } // class Cursor
+
+} // class JSONTape
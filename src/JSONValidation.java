@@ -0,0 +1,113 @@
+package src;
+
+/**
+ * The result of checking whether some text is well-formed JSON: either
+ * VALID, or a description of the first error and where it is.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JSONValidation {
+
+  // +---------------+-----------------------------------------------
+  // | Static fields |
+  // +---------------+
+
+  /**
+   * The result for well-formed input.
+   */
+  public static final JSONValidation VALID = new JSONValidation(null, -1, -1, -1);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * What went wrong, or null if nothing did.
+   */
+  private String message;
+
+  /**
+   * The offset of the offending character, counting from 0.
+   */
+  private long offset;
+
+  /**
+   * The line of the offending character, counting from 1.
+   */
+  private long line;
+
+  /**
+   * The column of the offending character, counting from 1.
+   */
+  private long column;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a result describing an error.
+   */
+  public JSONValidation(String message, long offset, long line, long column) {
+    this.message = message;
+    this.offset = offset;
+    this.line = line;
+    this.column = column;
+  } // JSONValidation(String, long, long, long)
+
+  // +------------------+--------------------------------------------
+  // | Standard methods |
+  // +------------------+
+
+  /**
+   * Convert to string form.
+   */
+  @Override
+  public String toString() {
+    if (this.isValid()) {
+      return "valid";
+    } // if
+    return this.message + " at line " + this.line + ", column " + this.column
+        + " (offset " + this.offset + ")";
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Determine whether the input was well-formed.
+   */
+  public boolean isValid() {
+    return this.message == null;
+  } // isValid()
+
+  /**
+   * Get a description of the error, or null if there was none.
+   */
+  public String message() {
+    return this.message;
+  } // message()
+
+  /**
+   * Get the offset of the offending character (-1 if valid).
+   */
+  public long offset() {
+    return this.offset;
+  } // offset()
+
+  /**
+   * Get the line of the offending character, from 1 (-1 if valid).
+   */
+  public long line() {
+    return this.line;
+  } // line()
+
+  /**
+   * Get the column of the offending character, from 1 (-1 if valid).
+   */
+  public long column() {
+    return this.column;
+  } // column()
+} // class JSONValidation
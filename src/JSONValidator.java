@@ -0,0 +1,409 @@
+package src;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Checks that text is well-formed JSON without building any values. Uses
+ * the same grammar as the parser, but keeps only a bit per open array or
+ * hash, so the work per character is a comparison or two and nothing is
+ * allocated after the read buffer. Nesting is tracked on that bit stack
+ * rather than the call stack, so deep documents cannot overflow it, and
+ * limited to the same depth as the parser, so the two agree on what is
+ * valid.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+class JSONValidator {
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The size of the read buffer.
+   */
+  static final int BUFFER_SIZE = 8192;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where text comes from when reading from a Reader.
+   */
+  Reader source;
+
+  /**
+   * Where text comes from when validating a String.
+   */
+  String text;
+
+  /**
+   * The current chunk of input.
+   */
+  char[] buf;
+
+  /**
+   * The next unread character in buf.
+   */
+  int pos = 0;
+
+  /**
+   * The number of valid characters in buf.
+   */
+  int limit = 0;
+
+  /**
+   * The offset in the input of buf[0].
+   */
+  long base = 0;
+
+  /**
+   * The current line, from 1.
+   */
+  long line = 1;
+
+  /**
+   * The offset in the input at which the current line starts.
+   */
+  long lineStart = 0;
+
+  /**
+   * One bit per open container: set for a hash, clear for an array.
+   */
+  long[] kinds = new long[1];
+
+  /**
+   * The number of open containers, and the most that may be open.
+   */
+  int depth = 0;
+  final int maxDepth;
+
+  /**
+   * The first error found.
+   */
+  JSONValidation error;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Get ready to validate the text from a reader, allowing arrays and
+   * hashes to nest at most maxDepth deep, as the parser does.
+   */
+  JSONValidator(Reader source, int maxDepth) {
+    this.source = source;
+    this.maxDepth = maxDepth;
+    this.buf = new char[BUFFER_SIZE];
+  } // JSONValidator(Reader, int)
+
+  /**
+   * Get ready to validate a string, likewise.
+   */
+  JSONValidator(String text, int maxDepth) {
+    this.text = text;
+    this.maxDepth = maxDepth;
+    // short strings need only a short buffer
+    this.buf = new char[Math.max(16, Math.min(BUFFER_SIZE, text.length()))];
+  } // JSONValidator(String, int)
+
+  // +------------+--------------------------------------------------
+  // | Validating |
+  // +------------+
+
+  /**
+   * Check the input, which must hold exactly one value.
+   */
+  JSONValidation validate() throws IOException {
+    int ch = skipWhitespace();
+    while (true) {
+      // ch starts a value
+      if ((ch == '{') || (ch == '[')) {
+        boolean isHash = (ch == '{');
+        this.pos++;
+        if (!push(isHash)) {
+          return this.error;
+        } // if
+        ch = skipWhitespace();
+        if (ch == (isHash ? '}' : ']')) {
+          this.pos++;
+          this.depth--;
+        } else {
+          if (isHash) {
+            if (!key(ch)) {
+              return this.error;
+            } // if
+            ch = skipWhitespace();
+          } // if
+          continue;
+        } // if-else
+      } else if (!scalar(ch)) {
+        return this.error;
+      } // if-else
+
+      // a value just ended; close as many containers as we can
+      while (true) {
+        ch = skipWhitespace();
+        if (this.depth == 0) {
+          return (ch == -1) ? JSONValidation.VALID : fail("Characters remain at end");
+        } // if
+        boolean inHash = (this.kinds[(this.depth - 1) >>> 6] & (1L << (this.depth - 1))) != 0;
+        if (ch == ',') {
+          this.pos++;
+          ch = skipWhitespace();
+          if (inHash) {
+            if (!key(ch)) {
+              return this.error;
+            } // if
+            ch = skipWhitespace();
+          } // if
+          break;
+        } else if (ch == (inHash ? '}' : ']')) {
+          this.pos++;
+          this.depth--;
+        } else if (ch == -1) {
+          return fail("Unexpected end of input");
+        } else {
+          return fail("Expected comma, instead found " + (char) ch);
+        } // if-else
+      } // while
+    } // while
+  } // validate()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Check a key and the colon after it. ch is the first character.
+   */
+  boolean key(int ch) throws IOException {
+    if (ch != '"') {
+      fail((ch == -1) ? "Unexpected end of input" : "Expected a key");
+      return false;
+    } // if
+    this.pos++;
+    if (!string()) {
+      return false;
+    } // if
+    if (skipWhitespace() != ':') {
+      fail("Invalid Hash object");
+      return false;
+    } // if
+    this.pos++;
+    return true;
+  } // key(int)
+
+  /**
+   * Check a string, number or constant starting with ch.
+   */
+  boolean scalar(int ch) throws IOException {
+    if (ch == '"') {
+      this.pos++;
+      return string();
+    } else if ((ch == '-') || ((ch >= '0') && (ch <= '9'))) {
+      return number();
+    } else if (ch == 't') {
+      return literal("true");
+    } else if (ch == 'f') {
+      return literal("false");
+    } else if (ch == 'n') {
+      return literal("null");
+    } else if (ch == -1) {
+      fail("Unexpected end of input");
+    } else {
+      fail("Invalid syntax");
+    } // if-else
+    return false;
+  } // scalar(int)
+
+  /**
+   * Check the rest of a string, after the opening quote.
+   */
+  boolean string() throws IOException {
+    while (true) {
+      // skip ordinary characters straight from the buffer
+      char[] chars = this.buf;
+      int i = this.pos;
+      int end = this.limit;
+      while ((i < end) && (chars[i] != '"') && (chars[i] != '\\') && (chars[i] >= 0x20)) {
+        i++;
+      } // while
+      this.pos = i;
+      int ch = peek();
+      if (ch == -1) {
+        fail("Unexpected end of input in string");
+        return false;
+      } else if (ch == '"') {
+        this.pos++;
+        return true;
+      } else if (ch == '\\') {
+        this.pos++;
+        int esc = peek();
+        if (esc == 'u') {
+          this.pos++;
+          for (int d = 0; d < 4; d++) {
+            if (Character.digit(peek(), 16) < 0) {
+              fail("Invalid unicode character");
+              return false;
+            } // if
+            this.pos++;
+          } // for
+        } else if ((esc == '"') || (esc == '\\') || (esc == '/') || (esc == 'b')
+            || (esc == 'f') || (esc == 'n') || (esc == 'r') || (esc == 't')) {
+          this.pos++;
+        } else {
+          fail("Invalid String syntax, backslash not followed by valid character");
+          return false;
+        } // if-else
+      } else if (ch < 0x20) {
+        fail("Unescaped control character in string");
+        return false;
+      } // if-else
+    } // while
+  } // string()
+
+  /**
+   * Check a number: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+   */
+  boolean number() throws IOException {
+    if (peek() == '-') {
+      this.pos++;
+    } // if
+    int ch = peek();
+    if (ch == '0') {
+      this.pos++;
+    } else if (!digits()) {
+      fail("Invalid numeric value: expected a digit");
+      return false;
+    } // if-else
+    if (peek() == '.') {
+      this.pos++;
+      if (!digits()) {
+        fail("Invalid numeric value: expected a digit after the decimal point");
+        return false;
+      } // if
+    } // if
+    ch = peek();
+    if ((ch == 'e') || (ch == 'E')) {
+      this.pos++;
+      ch = peek();
+      if ((ch == '+') || (ch == '-')) {
+        this.pos++;
+      } // if
+      if (!digits()) {
+        fail("Invalid numeric value: expected a digit in the exponent");
+        return false;
+      } // if
+    } // if
+    return true;
+  } // number()
+
+  /**
+   * Skip one or more digits. Returns false if there are none.
+   */
+  boolean digits() throws IOException {
+    int count = 0;
+    int ch = peek();
+    while ((ch >= '0') && (ch <= '9')) {
+      this.pos++;
+      count++;
+      ch = peek();
+    } // while
+    return count > 0;
+  } // digits()
+
+  /**
+   * Check for true, false or null.
+   */
+  boolean literal(String word) throws IOException {
+    for (int i = 0; i < word.length(); i++) {
+      if (peek() != word.charAt(i)) {
+        fail("Invalid constant syntax");
+        return false;
+      } // if
+      this.pos++;
+    } // for
+    return true;
+  } // literal(String)
+
+  /**
+   * Get the next character other than whitespace, without consuming it.
+   */
+  int skipWhitespace() throws IOException {
+    while (true) {
+      int ch = peek();
+      if (ch == '\n') {
+        this.pos++;
+        this.line++;
+        this.lineStart = this.base + this.pos;
+      } else if ((ch == ' ') || (ch == '\t') || (ch == '\r')) {
+        this.pos++;
+      } else {
+        return ch;
+      } // if-else
+    } // while
+  } // skipWhitespace()
+
+  /**
+   * Get the next character without consuming it, or -1 at the end.
+   */
+  int peek() throws IOException {
+    if ((this.pos == this.limit) && !fill()) {
+      return -1;
+    } // if
+    return this.buf[this.pos];
+  } // peek()
+
+  /**
+   * Read the next chunk of input. Returns false at the end of input.
+   */
+  boolean fill() throws IOException {
+    this.base += this.limit;
+    this.pos = 0;
+    if (this.text != null) {
+      int end = (int) Math.min(this.text.length(), this.base + this.buf.length);
+      this.limit = Math.max(0, end - (int) this.base);
+      this.text.getChars((int) this.base, (int) this.base + this.limit, this.buf, 0);
+    } else {
+      this.limit = Math.max(0, this.source.read(this.buf, 0, this.buf.length));
+    } // if-else
+    return this.limit > 0;
+  } // fill()
+
+  /**
+   * Open a container. Returns false, having recorded the error, if that
+   * would nest containers too deeply.
+   */
+  boolean push(boolean isHash) {
+    if (this.depth >= this.maxDepth) {
+      fail("Maximum nesting depth of " + this.maxDepth + " exceeded");
+      return false;
+    } // if
+    if ((this.depth >>> 6) == this.kinds.length) {
+      long[] bigger = new long[this.kinds.length * 2];
+      System.arraycopy(this.kinds, 0, bigger, 0, this.kinds.length);
+      this.kinds = bigger;
+    } // if
+    long bit = 1L << this.depth;
+    if (isHash) {
+      this.kinds[this.depth >>> 6] |= bit;
+    } else {
+      this.kinds[this.depth >>> 6] &= ~bit;
+    } // if-else
+    this.depth++;
+    return true;
+  } // push(boolean)
+
+  /**
+   * Record an error at the next unread character.
+   */
+  JSONValidation fail(String message) {
+    long offset = this.base + this.pos;
+    this.error = new JSONValidation(message, offset, this.line, offset - this.lineStart + 1);
+    return this.error;
+  } // fail(String)
+
+} // class JSONValidator
@@ -40,4 +40,45 @@ public interface JSONValue {
    */
   public Object getValue();
 
+  /**
+   * Compute the SHA-256 digest of the value's canonical (RFC 8785) form,
+   * e.g., for signing.
+   */
+  public default byte[] canonicalHash() {
+    return JSONCanonical.hash(this);
+  } // canonicalHash()
+
+  // +-----------------+---------------------------------------------
+  // | Typed accessors |
+  // +-----------------+
+
+  /**
+   * Get the value as a long, or otherwise if it is not an integer that
+   * fits in one.
+   */
+  public default long asLong(long otherwise) {
+    return otherwise;
+  } // asLong(long)
+
+  /**
+   * Get the value as a double, or otherwise if it is not a number.
+   */
+  public default double asDouble(double otherwise) {
+    return otherwise;
+  } // asDouble(double)
+
+  /**
+   * Get the value as a String, or otherwise if it is not a string.
+   */
+  public default String asString(String otherwise) {
+    return otherwise;
+  } // asString(String)
+
+  /**
+   * Get the value as a boolean, or otherwise if it is not true or false.
+   */
+  public default boolean asBoolean(boolean otherwise) {
+    return otherwise;
+  } // asBoolean(boolean)
+
 } // interface JSONValue
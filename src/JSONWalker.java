@@ -0,0 +1,364 @@
+package src;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs visitors over every value in a tree in parallel, on a fork/join
+ * pool (the common pool unless one is given). Each task walks its part
+ * of the tree with an explicit stack and hands nested hashes and arrays
+ * to new tasks only while the pool is short of queued work, so small
+ * trees cost little more than a sequential walk and deep nesting cannot
+ * overflow the call stack. Tasks finish as CountedCompleters, without
+ * joining, for the same reason.
+ *
+ * Visitors may be called from many threads at once and in any order.
+ * The tree must not change during a walk.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class JSONWalker {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Hashes and arrays with fewer members than this are always walked
+   * by the task that finds them.
+   */
+  static final int FORK_SIZE = 8;
+
+  /**
+   * A task forks only while its worker has at most this many tasks
+   * queued that no one has stolen.
+   */
+  static final int SURPLUS = 3;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The pool the tasks run on.
+   */
+  final ForkJoinPool pool;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a walker that runs on pool.
+   */
+  public JSONWalker(ForkJoinPool pool) {
+    this.pool = pool;
+  } // JSONWalker(ForkJoinPool)
+
+  /**
+   * Build a walker that runs on the common pool.
+   */
+  public JSONWalker() {
+    this(ForkJoinPool.commonPool());
+  } // JSONWalker()
+
+  // +---------+-----------------------------------------------------
+  // | Walking |
+  // +---------+
+
+  /**
+   * Visit every value in the tree (the root, and every hash, array and
+   * scalar within it, but not hash keys), combining what visit gives
+   * for each. combine must be associative and identity must be its
+   * identity, since results are combined in no particular grouping.
+   */
+  public <R> R reduce(JSONValue root, R identity, Function<? super JSONValue, ? extends R> visit,
+      BinaryOperator<R> combine) {
+    return this.pool.invoke(new Reduce<R>(null, this.pool, root, identity, visit, combine, null, null));
+  } // reduce(JSONValue, R, Function, BinaryOperator)
+
+  /**
+   * Count the values in the tree for which test holds.
+   */
+  public long count(JSONValue root, Predicate<? super JSONValue> test) {
+    return reduce(root, 0L, (value) -> test.test(value) ? 1L : 0L, Long::sum);
+  } // count(JSONValue, Predicate)
+
+  /**
+   * Find a value in the tree for which test holds, or null if there is
+   * none. With more than one, which is found is unpredictable. The walk
+   * stops soon after the first is found.
+   */
+  public JSONValue find(JSONValue root, Predicate<? super JSONValue> test) {
+    return this.pool.invoke(new Reduce<JSONValue>(null, this.pool, root, null,
+        (value) -> test.test(value) ? value : null,
+        (a, b) -> (a != null) ? a : b,
+        (found) -> found != null, new AtomicBoolean()));
+  } // find(JSONValue, Predicate)
+
+  /**
+   * Build a copy of the tree with every scalar (string, number or
+   * constant) replaced by what leaf gives for it. Hashes and arrays are
+   * copied with the same keys and order, and are not frozen.
+   */
+  public JSONValue transform(JSONValue root, UnaryOperator<JSONValue> leaf) {
+    return this.pool.invoke(new Copy(null, this.pool, root, leaf));
+  } // transform(JSONValue, UnaryOperator)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Determine whether a value is a hash or array big enough to be worth
+   * handing to a task of its own, and whether pool wants more work. A
+   * thread outside the pool (e.g., the caller, helping) has no queue of
+   * its own, so goes by the pool's queue of submissions instead.
+   */
+  static boolean shouldFork(JSONValue value, ForkJoinPool pool) {
+    int size;
+    if (value instanceof JSONHash) {
+      size = ((JSONHash) value).size();
+    } else if (value instanceof JSONArray) {
+      size = ((JSONArray) value).size();
+    } else {
+      return false;
+    } // if-else
+    int surplus = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getSurplusQueuedTaskCount()
+        : pool.getQueuedSubmissionCount();
+    return (size >= FORK_SIZE) && (surplus <= SURPLUS);
+  } // shouldFork(JSONValue, ForkJoinPool)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Reduces one subtree, plus the subtrees it forks.
+   */
+  static final class Reduce<R> extends CountedCompleter<R> {
+    // tasks are never serialized, but ForkJoinTask is Serializable
+    private static final long serialVersionUID = 1L;
+
+    final JSONValue root;
+    final R identity;
+    final Function<? super JSONValue, ? extends R> visit;
+    final BinaryOperator<R> combine;
+
+    /**
+     * When a result satisfies done, stop is set and every task stops
+     * early. Both null if the walk never stops early.
+     */
+    final Predicate<R> done;
+    final AtomicBoolean stop;
+
+    /**
+     * The pool the walk runs on.
+     */
+    final ForkJoinPool pool;
+
+    /**
+     * What this task found, and the tasks it forked, linked through
+     * forkedNext.
+     */
+    R result;
+    Reduce<R> forked;
+    Reduce<R> forkedNext;
+
+    Reduce(CountedCompleter<?> parent, ForkJoinPool pool, JSONValue root, R identity,
+        Function<? super JSONValue, ? extends R> visit, BinaryOperator<R> combine, Predicate<R> done,
+        AtomicBoolean stop) {
+      super(parent);
+      this.pool = pool;
+      this.root = root;
+      this.identity = identity;
+      this.visit = visit;
+      this.combine = combine;
+      this.done = done;
+      this.stop = stop;
+    } // Reduce(...)
+
+    @Override
+    public void compute() {
+      R acc = this.identity;
+      ArrayDeque<JSONValue> stack = new ArrayDeque<JSONValue>();
+      stack.push(this.root);
+      while (!stack.isEmpty()) {
+        if ((this.stop != null) && this.stop.get()) {
+          break;
+        } // if
+        JSONValue value = stack.pop();
+        acc = this.combine.apply(acc, this.visit.apply(value));
+        if ((this.done != null) && this.done.test(acc)) {
+          this.stop.set(true);
+          break;
+        } // if
+        if (value instanceof JSONHash) {
+          Iterator<KVPair<JSONString, JSONValue>> pairs = ((JSONHash) value).iterator();
+          while (pairs.hasNext()) {
+            push(pairs.next().value(), stack);
+          } // while
+        } else if (value instanceof JSONArray) {
+          for (JSONValue element : ((JSONArray) value).values) {
+            push(element, stack);
+          } // for
+        } // if-else
+      } // while
+      this.result = acc;
+      tryComplete();
+    } // compute()
+
+    /**
+     * Walk a child here, or fork a task for it.
+     */
+    void push(JSONValue child, ArrayDeque<JSONValue> stack) {
+      if (shouldFork(child, this.pool)) {
+        Reduce<R> task = new Reduce<R>(this, this.pool, child, this.identity, this.visit, this.combine, this.done, this.stop);
+        task.forkedNext = this.forked;
+        this.forked = task;
+        addToPendingCount(1);
+        task.fork();
+      } else {
+        stack.push(child);
+      } // if-else
+    } // push(JSONValue, ArrayDeque)
+
+    @Override
+    public void onCompletion(CountedCompleter<?> caller) {
+      for (Reduce<R> task = this.forked; task != null; task = task.forkedNext) {
+        this.result = this.combine.apply(this.result, task.result);
+      } // for
+    } // onCompletion(CountedCompleter)
+
+    @Override
+    public R getRawResult() {
+      return this.result;
+    } // getRawResult()
+  } // class Reduce
+
+  /**
+   * Copies one subtree. Each subtree forked to another task is held by
+   * a placeholder until that task completes, then patched in.
+   */
+  static final class Copy extends CountedCompleter<JSONValue> {
+    // as for Reduce
+    private static final long serialVersionUID = 1L;
+
+    final ForkJoinPool pool;
+    final JSONValue root;
+    final UnaryOperator<JSONValue> leaf;
+
+    /**
+     * The copy, and the tasks forked for parts of it. Each forked task
+     * goes at into[i] under key keys[i] (for a hash) or index indices[i]
+     * (for an array).
+     */
+    JSONValue result;
+    final ArrayList<Copy> forked = new ArrayList<Copy>();
+    final ArrayList<JSONValue> into = new ArrayList<JSONValue>();
+    final ArrayList<JSONString> keys = new ArrayList<JSONString>();
+    final ArrayList<Integer> indices = new ArrayList<Integer>();
+
+    Copy(CountedCompleter<?> parent, ForkJoinPool pool, JSONValue root, UnaryOperator<JSONValue> leaf) {
+      super(parent);
+      this.pool = pool;
+      this.root = root;
+      this.leaf = leaf;
+    } // Copy(CountedCompleter, ForkJoinPool, JSONValue, UnaryOperator)
+
+    @Override
+    public void compute() {
+      this.result = empty(this.root);
+      if (this.result == null) {
+        this.result = this.leaf.apply(this.root);
+        tryComplete();
+        return;
+      } // if
+      // pairs of values and their copies, still to be filled
+      ArrayDeque<JSONValue> stack = new ArrayDeque<JSONValue>();
+      stack.push(this.root);
+      stack.push(this.result);
+      while (!stack.isEmpty()) {
+        JSONValue copy = stack.pop();
+        JSONValue value = stack.pop();
+        if (value instanceof JSONHash) {
+          Iterator<KVPair<JSONString, JSONValue>> pairs = ((JSONHash) value).iterator();
+          while (pairs.hasNext()) {
+            KVPair<JSONString, JSONValue> pair = pairs.next();
+            ((JSONHash) copy).set(pair.key(), member(pair.value(), copy, pair.key(), -1, stack));
+          } // while
+        } else {
+          ArrayList<JSONValue> elements = ((JSONArray) value).values;
+          for (int i = 0; i < elements.size(); i++) {
+            ((JSONArray) copy).add(member(elements.get(i), copy, null, i, stack));
+          } // for
+        } // if-else
+      } // while
+      tryComplete();
+    } // compute()
+
+    /**
+     * Get what goes in a copy in place of child: a copied scalar, an
+     * empty hash or array to be filled by this task, or a placeholder for
+     * one filled by a forked task.
+     */
+    JSONValue member(JSONValue child, JSONValue copy, JSONString key, int index, ArrayDeque<JSONValue> stack) {
+      JSONValue empty = empty(child);
+      if (empty == null) {
+        return this.leaf.apply(child);
+      } else if (shouldFork(child, this.pool)) {
+        Copy task = new Copy(this, this.pool, child, this.leaf);
+        this.forked.add(task);
+        this.into.add(copy);
+        this.keys.add(key);
+        this.indices.add(index);
+        addToPendingCount(1);
+        task.fork();
+        return JSONConstant.NULL;
+      } // if-else
+      stack.push(child);
+      stack.push(empty);
+      return empty;
+    } // member(JSONValue, JSONValue, JSONString, int, ArrayDeque)
+
+    @Override
+    public void onCompletion(CountedCompleter<?> caller) {
+      for (int i = 0; i < this.forked.size(); i++) {
+        JSONValue copy = this.into.get(i);
+        if (copy instanceof JSONHash) {
+          ((JSONHash) copy).set(this.keys.get(i), this.forked.get(i).result);
+        } else {
+          ((JSONArray) copy).set(this.indices.get(i), this.forked.get(i).result);
+        } // if-else
+      } // for
+    } // onCompletion(CountedCompleter)
+
+    @Override
+    public JSONValue getRawResult() {
+      return this.result;
+    } // getRawResult()
+
+    /**
+     * Get a new empty hash or array like value, or null if value is a
+     * scalar.
+     */
+    static JSONValue empty(JSONValue value) {
+      if (value instanceof JSONHash) {
+        return new JSONHash();
+      } else if (value instanceof JSONArray) {
+        return new JSONArray();
+      } // if-else
+      return null;
+    } // empty(JSONValue)
+  } // class Copy
+
+} // class JSONWalker
@@ -0,0 +1,197 @@
+package src;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Writes arrays and hashes without recursion. The containers still being
+ * written are kept on an explicit stack, so deeply nested values cost
+ * heap rather than call stack. Used by writeJSON and toString in
+ * JSONArray and JSONHash.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+class JSONWriter {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the JSON goes, or null if we are building a string.
+   */
+  PrintWriter pen;
+
+  /**
+   * Where the text goes when we are building a string.
+   */
+  StringBuilder text;
+
+  /**
+   * Whether to use toString's layout rather than writeJSON's.
+   */
+  boolean plain;
+
+  /**
+   * Where numbers are formatted before they are written.
+   */
+  char[] digits = new char[JSONNumbers.MAX_LONG_CHARS + 8];
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a writer that prints JSON to pen.
+   */
+  JSONWriter(PrintWriter pen) {
+    this.pen = pen;
+    this.plain = false;
+  } // JSONWriter(PrintWriter)
+
+  /**
+   * Create a writer that builds a string in toString's layout.
+   */
+  JSONWriter(StringBuilder text) {
+    this.text = text;
+    this.plain = true;
+  } // JSONWriter(StringBuilder)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Write a value in JSON, as writeJSON does.
+   */
+  static void writeJSON(JSONValue value, PrintWriter pen) {
+    new JSONWriter(pen).write(value);
+    pen.flush();
+  } // writeJSON(JSONValue, PrintWriter)
+
+  /**
+   * Convert a value to a string, as toString does.
+   */
+  static String toString(JSONValue value) {
+    StringBuilder text = new StringBuilder();
+    new JSONWriter(text).write(value);
+    return text.toString();
+  } // toString(JSONValue)
+
+  /**
+   * Write a value and everything nested inside it.
+   */
+  @SuppressWarnings("unchecked")
+  void write(JSONValue value) {
+    ArrayList<Frame> stack = new ArrayList<Frame>();
+    while (true) {
+      // start the value: leaves are written whole, containers are opened
+      if (value instanceof JSONHash) {
+        emit("{");
+        stack.add(new Frame(((JSONHash) value).iterator(), true));
+      } else if (value instanceof JSONArray) {
+        emit("[");
+        stack.add(new Frame(((JSONArray) value).iterator(), false));
+      } else {
+        leaf(value);
+      } // if-else
+
+      // find the next value, closing any containers that are done
+      value = null;
+      while (value == null) {
+        int last = stack.size() - 1;
+        if (last < 0) {
+          return;
+        } // if
+        Frame frame = stack.get(last);
+        if (!frame.values.hasNext()) {
+          emit(frame.isHash ? "}" : "]");
+          stack.remove(last);
+          continue;
+        } // if
+        if (!frame.first) {
+          emit((this.plain && frame.isHash) ? "," : ", ");
+        } // if
+        frame.first = false;
+        if (frame.isHash) {
+          KVPair<JSONString, JSONValue> pair = (KVPair<JSONString, JSONValue>) frame.values.next();
+          leaf(pair.key());
+          emit(" : ");
+          value = pair.value();
+        } else {
+          value = (JSONValue) frame.values.next();
+        } // if-else
+      } // while
+    } // while
+  } // write(JSONValue)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Write a value that holds no other values.
+   */
+  void leaf(JSONValue value) {
+    // numbers that fit in a long are formatted here, without a String
+    int end = -1;
+    if (value instanceof JSONInteger) {
+      end = JSONNumbers.writeInteger(((JSONInteger) value).value, this.digits, 0);
+    } else if (value instanceof JSONReal) {
+      end = JSONNumbers.writeDecimal(((JSONReal) value).value, this.digits, 0);
+    } // if-else
+    if (end >= 0) {
+      if (this.plain) {
+        this.text.append(this.digits, 0, end);
+      } else {
+        this.pen.write(this.digits, 0, end);
+      } // if-else
+    } else if (this.plain) {
+      this.text.append(value.toString());
+    } else {
+      value.writeJSON(this.pen);
+    } // if-else
+  } // leaf(JSONValue)
+
+  /**
+   * Write some punctuation.
+   */
+  void emit(String str) {
+    if (this.plain) {
+      this.text.append(str);
+    } else {
+      this.pen.print(str);
+    } // if-else
+  } // emit(String)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A container that is being written.
+   */
+  static class Frame {
+    /**
+     * The values (or pairs) not yet written.
+     */
+    Iterator<?> values;
+
+    /**
+     * Whether the container is a hash.
+     */
+    boolean isHash;
+
+    /**
+     * Whether nothing has been written inside the container yet.
+     */
+    boolean first = true;
+
+    Frame(Iterator<?> values, boolean isHash) {
+      this.values = values;
+      this.isHash = isHash;
+    } // Frame(Iterator<?>, boolean)
+  } // class Frame
+
+} // class JSONWriter
@@ -0,0 +1,20 @@
+package src;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a record for which JsonModelProcessor should generate a codec.
+ * For a record Order, the processor writes OrderJson (Outer_OrderJson
+ * for a record nested in Outer) in the same package, with static
+ * read(String), read(JSONReader), write(Order) and writeJSON(Order,
+ * PrintWriter) methods.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+} // @interface JsonModel
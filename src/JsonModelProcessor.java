@@ -0,0 +1,353 @@
+package src;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a codec for each @JsonModel record. The generated code reads
+ * tokens with JSONReader, switching on keys, and writes by building
+ * JSONHash and JSONArray values, so it uses no reflection and suits
+ * ahead-of-time compilers such as GraalVM native-image.
+ *
+ * Components may be primitives other than char, their boxes, String,
+ * BigInteger, BigDecimal, enums, JSONValue types, other @JsonModel
+ * records, and Lists of any of these.
+ *
+ * Run with: javac -processorpath DIR -processor src.JsonModelProcessor
+ * where DIR holds the compiled src classes.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+@SupportedAnnotationTypes("src.JsonModel")
+public class JsonModelProcessor extends AbstractProcessor {
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Support whatever version of Java we are run by; records need 16.
+   */
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  } // getSupportedSourceVersion()
+
+  /**
+   * Generate a codec for each annotated record.
+   */
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+    for (Element element : env.getElementsAnnotatedWith(JsonModel.class)) {
+      if (element.getKind() != ElementKind.RECORD) {
+        error(element, "@JsonModel can only be applied to records");
+        continue;
+      } // if
+      TypeElement record = (TypeElement) element;
+      try {
+        String source = generate(record);
+        try (Writer out = this.processingEnv.getFiler()
+            .createSourceFile(codecName(record), record).openWriter()) {
+          out.write(source);
+        } // try
+      } catch (IllegalArgumentException | IOException e) {
+        error(element, e.getMessage());
+      } // try-catch
+    } // for
+    return true;
+  } // process(Set<? extends TypeElement>, RoundEnvironment)
+
+  // +------------+--------------------------------------------------
+  // | Generating |
+  // +------------+
+
+  /**
+   * Generate the codec for a record.
+   *
+   * @throws IllegalArgumentException if a component has a type we cannot
+   *   handle.
+   */
+  String generate(TypeElement record) {
+    String type = record.getQualifiedName().toString();
+    String name = simpleCodecName(record);
+    String pkg = this.processingEnv.getElementUtils().getPackageOf(record).getQualifiedName().toString();
+    List<? extends RecordComponentElement> components = record.getRecordComponents();
+
+    StringBuilder out = new StringBuilder();
+    if (!pkg.isEmpty()) {
+      out.append("package ").append(pkg).append(";\n\n");
+    } // if
+    out.append("import java.io.PrintWriter;\n");
+    out.append("import java.util.List;\n");
+    out.append("import java.util.function.Function;\n");
+    out.append("import src.JSONArray;\n");
+    out.append("import src.JSONConstant;\n");
+    out.append("import src.JSONHash;\n");
+    out.append("import src.JSONInteger;\n");
+    out.append("import src.JSONReader;\n");
+    out.append("import src.JSONReal;\n");
+    out.append("import src.JSONString;\n");
+    out.append("import src.JSONValue;\n\n");
+    out.append("/**\n * Reads and writes ").append(type).append(" as JSON.\n");
+    out.append(" * Generated by src.JsonModelProcessor; do not edit.\n */\n");
+    out.append("public final class ").append(name).append(" {\n\n");
+
+    // keys, hashed once
+    for (RecordComponentElement component : components) {
+      String field = component.getSimpleName().toString();
+      out.append("  private static final JSONString KEY_").append(field)
+          .append(" = new JSONString(\"").append(field).append("\");\n");
+    } // for
+    out.append("\n  private ").append(name).append("() {\n  }\n\n");
+
+    // read(String)
+    out.append("  /**\n   * Parse text holding one ").append(record.getSimpleName()).append(".\n   */\n");
+    out.append("  public static ").append(type).append(" read(String text) throws Exception {\n");
+    out.append("    JSONReader in = new JSONReader(text);\n");
+    out.append("    ").append(type).append(" result = read(in);\n");
+    out.append("    in.end();\n");
+    out.append("    return result;\n");
+    out.append("  }\n\n");
+
+    // read(JSONReader)
+    out.append("  /**\n   * Read one ").append(record.getSimpleName()).append(", or null.\n   */\n");
+    out.append("  public static ").append(type).append(" read(JSONReader in) throws Exception {\n");
+    out.append("    if (!in.beginHash()) {\n      return null;\n    }\n");
+    for (RecordComponentElement component : components) {
+      TypeMirror t = component.asType();
+      out.append("    ").append(t.toString()).append(" f_").append(component.getSimpleName())
+          .append(" = ").append(zero(t)).append(";\n");
+    } // for
+    out.append("    while (in.hasNext()) {\n");
+    out.append("      switch (in.nextKey()) {\n");
+    for (RecordComponentElement component : components) {
+      String field = component.getSimpleName().toString();
+      out.append("        case \"").append(field).append("\":\n");
+      out.append("          f_").append(field).append(" = ").append(readExpr(component.asType(), "in", 0)).append(";\n");
+      out.append("          break;\n");
+    } // for
+    out.append("        default:\n          in.skipValue();\n          break;\n");
+    out.append("      }\n    }\n");
+    out.append("    return new ").append(type).append("(");
+    for (int i = 0; i < components.size(); i++) {
+      out.append((i == 0) ? "" : ", ").append("f_").append(components.get(i).getSimpleName());
+    } // for
+    out.append(");\n  }\n\n");
+
+    // write
+    out.append("  /**\n   * Convert value to a JSON value.\n   */\n");
+    out.append("  public static JSONValue write(").append(type).append(" value) {\n");
+    out.append("    if (value == null) {\n      return JSONConstant.NULL;\n    }\n");
+    out.append("    JSONHash result = new JSONHash();\n");
+    for (RecordComponentElement component : components) {
+      String field = component.getSimpleName().toString();
+      out.append("    result.set(KEY_").append(field).append(", ")
+          .append(writeExpr(component.asType(), "value." + field + "()", 0)).append(");\n");
+    } // for
+    out.append("    return result;\n  }\n\n");
+
+    // writeJSON
+    out.append("  /**\n   * Write value as JSON.\n   */\n");
+    out.append("  public static void writeJSON(").append(type).append(" value, PrintWriter pen) {\n");
+    out.append("    write(value).writeJSON(pen);\n  }\n\n");
+
+    // helper
+    out.append("  private static <T> JSONValue writeList(List<T> list, Function<T, JSONValue> writer) {\n");
+    out.append("    if (list == null) {\n      return JSONConstant.NULL;\n    }\n");
+    out.append("    JSONArray result = new JSONArray();\n");
+    out.append("    for (T element : list) {\n      result.add(writer.apply(element));\n    }\n");
+    out.append("    return result;\n  }\n\n");
+    out.append("}\n");
+    return out.toString();
+  } // generate(TypeElement)
+
+  /**
+   * Get an expression that reads a value of type t from the JSONReader
+   * named in.
+   */
+  String readExpr(TypeMirror t, String in, int depth) {
+    switch (t.getKind()) {
+      case LONG:
+        return in + ".nextLong()";
+      case INT:
+        return in + ".nextInt()";
+      case SHORT:
+        return in + ".nextShort()";
+      case BYTE:
+        return in + ".nextByte()";
+      case DOUBLE:
+        return in + ".nextDouble()";
+      case FLOAT:
+        return "(float) " + in + ".nextDouble()";
+      case BOOLEAN:
+        return in + ".nextBoolean()";
+      case DECLARED:
+        break;
+      default:
+        throw unsupported(t);
+    } // switch
+    DeclaredType declared = (DeclaredType) t;
+    TypeElement element = (TypeElement) declared.asElement();
+    String qualified = element.getQualifiedName().toString();
+    TypeMirror primitive = unboxed(t);
+    if (primitive != null) {
+      return "(" + in + ".isNull() ? null : " + readExpr(primitive, in, depth) + ")";
+    } else if (qualified.equals("java.lang.String")) {
+      return in + ".nextString()";
+    } else if (qualified.equals("java.math.BigInteger")) {
+      return in + ".nextBigInteger()";
+    } else if (qualified.equals("java.math.BigDecimal")) {
+      return in + ".nextBigDecimal()";
+    } else if (element.getKind() == ElementKind.ENUM) {
+      return "(" + in + ".isNull() ? null : " + qualified + ".valueOf(" + in + ".nextString()))";
+    } else if (isModel(element)) {
+      return codecName(element) + ".read(" + in + ")";
+    } else if (isJSONValue(t)) {
+      return "(" + qualified + ") " + in + ".nextValue()";
+    } else if (qualified.equals("java.util.List") && (declared.getTypeArguments().size() == 1)) {
+      String r = "r" + (depth + 1);
+      return in + ".nextList(" + r + " -> " + readExpr(declared.getTypeArguments().get(0), r, depth + 1) + ")";
+    } // if-else
+    throw unsupported(t);
+  } // readExpr(TypeMirror, String, int)
+
+  /**
+   * Get an expression that converts value, of type t, to a JSONValue.
+   */
+  String writeExpr(TypeMirror t, String value, int depth) {
+    switch (t.getKind()) {
+      case LONG:
+      case INT:
+      case SHORT:
+      case BYTE:
+        return "new JSONInteger(" + value + ")";
+      case DOUBLE:
+        return "new JSONReal(" + value + ")";
+      case FLOAT:
+        return "new JSONReal(Float.toString(" + value + "))";
+      case BOOLEAN:
+        return "(" + value + " ? JSONConstant.TRUE : JSONConstant.FALSE)";
+      case DECLARED:
+        break;
+      default:
+        throw unsupported(t);
+    } // switch
+    DeclaredType declared = (DeclaredType) t;
+    TypeElement element = (TypeElement) declared.asElement();
+    String qualified = element.getQualifiedName().toString();
+    TypeMirror primitive = unboxed(t);
+    String nonNull;
+    if (primitive != null) {
+      nonNull = writeExpr(primitive, value, depth);
+    } else if (qualified.equals("java.lang.String")) {
+      nonNull = "new JSONString(" + value + ")";
+    } else if (qualified.equals("java.math.BigInteger")) {
+      nonNull = "new JSONInteger(" + value + ")";
+    } else if (qualified.equals("java.math.BigDecimal")) {
+      nonNull = "new JSONReal(" + value + ")";
+    } else if (element.getKind() == ElementKind.ENUM) {
+      nonNull = "new JSONString(" + value + ".name())";
+    } else if (isModel(element)) {
+      return codecName(element) + ".write(" + value + ")";
+    } else if (isJSONValue(t)) {
+      nonNull = value;
+    } else if (qualified.equals("java.util.List") && (declared.getTypeArguments().size() == 1)) {
+      String e = "e" + (depth + 1);
+      return "writeList(" + value + ", " + e + " -> " + writeExpr(declared.getTypeArguments().get(0), e, depth + 1) + ")";
+    } else {
+      throw unsupported(t);
+    } // if-else
+    return "(" + value + " == null ? JSONConstant.NULL : (JSONValue) " + nonNull + ")";
+  } // writeExpr(TypeMirror, String, int)
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the value a component has when the JSON leaves it out.
+   */
+  static String zero(TypeMirror t) {
+    if (t.getKind() == TypeKind.BOOLEAN) {
+      return "false";
+    } else if (t.getKind().isPrimitive()) {
+      return "(" + t + ") 0";
+    } // if-else
+    return "null";
+  } // zero(TypeMirror)
+
+  /**
+   * Get the primitive type that t boxes, or null if it is not a box.
+   */
+  TypeMirror unboxed(TypeMirror t) {
+    try {
+      return this.processingEnv.getTypeUtils().unboxedType(t);
+    } catch (IllegalArgumentException e) {
+      return null;
+    } // try-catch
+  } // unboxed(TypeMirror)
+
+  /**
+   * Determine whether a type is a record we generate a codec for.
+   */
+  static boolean isModel(TypeElement element) {
+    return (element.getKind() == ElementKind.RECORD) && (element.getAnnotation(JsonModel.class) != null);
+  } // isModel(TypeElement)
+
+  /**
+   * Determine whether a type is JSONValue or one of its subtypes.
+   */
+  boolean isJSONValue(TypeMirror t) {
+    TypeElement value = this.processingEnv.getElementUtils().getTypeElement("src.JSONValue");
+    return (value != null)
+        && this.processingEnv.getTypeUtils().isAssignable(t, value.asType());
+  } // isJSONValue(TypeMirror)
+
+  /**
+   * Get the simple name of the codec for a record: OrderJson, or
+   * Outer_OrderJson for a record nested in Outer.
+   */
+  static String simpleCodecName(TypeElement record) {
+    StringBuilder result = new StringBuilder(record.getSimpleName());
+    for (Element outer = record.getEnclosingElement(); outer instanceof TypeElement;
+        outer = outer.getEnclosingElement()) {
+      result.insert(0, outer.getSimpleName() + "_");
+    } // for
+    return result.append("Json").toString();
+  } // simpleCodecName(TypeElement)
+
+  /**
+   * Get the qualified name of the codec for a record.
+   */
+  String codecName(TypeElement record) {
+    String pkg = this.processingEnv.getElementUtils().getPackageOf(record).getQualifiedName().toString();
+    return (pkg.isEmpty() ? "" : pkg + ".") + simpleCodecName(record);
+  } // codecName(TypeElement)
+
+  /**
+   * Report a type we cannot generate code for.
+   */
+  static IllegalArgumentException unsupported(TypeMirror t) {
+    return new IllegalArgumentException("@JsonModel does not support components of type " + t);
+  } // unsupported(TypeMirror)
+
+  /**
+   * Report an error against an element.
+   */
+  void error(Element element, String message) {
+    this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  } // error(Element, String)
+
+} // class JsonModelProcessor
@@ -0,0 +1,104 @@
+package src;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares the first-call cost of the codecs JsonModelProcessor generates
+ * with that of JSONMapper, which builds its bindings by reflection the
+ * first time it sees a class. Each measurement runs in a fresh JVM, so
+ * class loading and binding are included.
+ *
+ * Run with: java src.JsonModelStartup [runs]
+ *
+ * The generated codec is only there if the sources were compiled with
+ * -processor src.JsonModelProcessor.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class JsonModelStartup {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+  @JsonModel
+  record Address(String street, String city, String zip) { }
+
+  @JsonModel
+  record User(long id, String name, String email, boolean active, double score,
+      List<String> tags, Address address) { }
+
+  /**
+   * The document each run reads and writes back.
+   */
+  static final String TEXT =
+      "{\"id\": 48213, \"name\": \"Ada Lovelace\", \"email\": \"ada@example.com\","
+      + " \"active\": true, \"score\": 97.5, \"tags\": [\"admin\", \"math\", \"poet\"],"
+      + " \"address\": {\"street\": \"12 St James's Square\", \"city\": \"London\","
+      + " \"zip\": \"SW1Y 4JH\"}}";
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  public static void main(String[] args) throws Throwable {
+    if ((args.length > 0) && args[0].equals("generated")) {
+      long start = System.nanoTime();
+      Class<?> codec = Class.forName("src.JsonModelStartup_UserJson");
+      MethodHandle read = MethodHandles.publicLookup().findStatic(codec, "read",
+          MethodType.methodType(User.class, String.class));
+      MethodHandle write = MethodHandles.publicLookup().findStatic(codec, "write",
+          MethodType.methodType(JSONValue.class, User.class));
+      User user = (User) read.invokeExact(TEXT);
+      JSONValue value = (JSONValue) write.invokeExact(user);
+      System.out.println((System.nanoTime() - start) + " " + value.hashCode());
+    } else if ((args.length > 0) && args[0].equals("mapper")) {
+      long start = System.nanoTime();
+      User user = JSONMapper.read(TEXT, User.class);
+      JSONValue value = JSONMapper.write(user);
+      System.out.println((System.nanoTime() - start) + " " + value.hashCode());
+    } else {
+      int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+      try {
+        Class.forName("src.JsonModelStartup_UserJson");
+      } catch (ClassNotFoundException e) {
+        System.out.println("No generated codec; compile with -processor src.JsonModelProcessor");
+        return;
+      } // try-catch
+      System.out.printf("%-12s %14s%n", "codec", "first call us");
+      for (String mode : new String[] {"generated", "mapper"}) {
+        System.out.printf("%-12s %14.1f%n", mode, median(mode, runs) / 1000.0);
+      } // for
+    } // if-else
+  } // main(String[])
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Run one mode in runs fresh JVMs and give the median time, in
+   * nanoseconds.
+   */
+  static long median(String mode, int runs) throws Exception {
+    String java = System.getProperty("java.home") + "/bin/java";
+    ArrayList<Long> times = new ArrayList<Long>();
+    for (int i = 0; i < runs; i++) {
+      Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+          JsonModelStartup.class.getName(), mode).redirectErrorStream(true).start();
+      String output = new String(process.getInputStream().readAllBytes()).trim();
+      if (process.waitFor() != 0) {
+        throw new IllegalStateException(mode + " run failed: " + output);
+      } // if
+      times.add(Long.parseLong(output.substring(0, output.indexOf(' '))));
+    } // for
+    Collections.sort(times);
+    return times.get(runs / 2);
+  } // median(String, int)
+
+} // class JsonModelStartup
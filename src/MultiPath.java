@@ -0,0 +1,198 @@
+package src;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Pulls the values at many JSON pointers out of one document in a single
+ * traversal. The pointers are merged into a trie, so a prefix they share,
+ * such as "/order/items/0" in "/order/items/0/sku" and
+ * "/order/items/0/qty", is followed only once per document. Like
+ * JSONPointer, a MultiPath is immutable and may be shared between
+ * threads.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public final class MultiPath {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The pointers, in the order their values are reported.
+   */
+  final JSONPointer[] pointers;
+
+  /**
+   * The root of the trie, standing for the whole document.
+   */
+  final Node root;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a MultiPath from compiled pointers.
+   */
+  public MultiPath(JSONPointer... pointers) {
+    this.pointers = pointers.clone();
+    Builder root = new Builder(null, -1);
+    for (int p = 0; p < pointers.length; p++) {
+      Builder node = root;
+      for (int i = 0; i < pointers[p].size(); i++) {
+        node = node.child(pointers[p].keys[i], pointers[p].indices[i]);
+      } // for
+      node.targets.add(p);
+    } // for
+    this.root = root.build();
+  } // MultiPath(JSONPointer...)
+
+  /**
+   * Compile a MultiPath from pointer strings.
+   *
+   * @throws IllegalArgumentException if any pointer is malformed.
+   */
+  public static MultiPath compile(String... pointers) {
+    JSONPointer[] compiled = new JSONPointer[pointers.length];
+    for (int i = 0; i < pointers.length; i++) {
+      compiled[i] = JSONPointer.compile(pointers[i]);
+    } // for
+    return new MultiPath(compiled);
+  } // compile(String...)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the value at each pointer in doc, in the order the pointers were
+   * given, with null for any that lead nowhere.
+   */
+  public JSONValue[] extract(JSONValue doc) {
+    JSONValue[] results = new JSONValue[this.pointers.length];
+    extract(doc, results);
+    return results;
+  } // extract(JSONValue)
+
+  /**
+   * Store the value at each pointer in doc into results, which must be
+   * at least size() long. Lets one array be reused across documents.
+   */
+  public void extract(JSONValue doc, JSONValue[] results) {
+    Arrays.fill(results, 0, this.pointers.length, null);
+    visit(this.root, doc, results);
+  } // extract(JSONValue, JSONValue[])
+
+  /**
+   * Get the pointer whose value is reported at a position.
+   */
+  public JSONPointer pointer(int i) {
+    return this.pointers[i];
+  } // pointer(int)
+
+  /**
+   * Get the number of pointers.
+   */
+  public int size() {
+    return this.pointers.length;
+  } // size()
+
+  // +---------+---------------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Record value for every pointer that ends at node, then follow each
+   * child. The recursion is only as deep as the longest pointer.
+   */
+  static void visit(Node node, JSONValue value, JSONValue[] results) {
+    for (int target : node.targets) {
+      results[target] = value;
+    } // for
+    for (Node child : node.children) {
+      JSONValue next = JSONPointer.step(value, child.key, child.index);
+      if (next != null) {
+        visit(child, next, results);
+      } // if
+    } // for
+  } // visit(Node, JSONValue, JSONValue[])
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * One segment in the trie.
+   */
+  static final class Node {
+    /**
+     * The segment leading here from the parent.
+     */
+    final JSONString key;
+    final int index;
+
+    /**
+     * The positions of the pointers that end here.
+     */
+    final int[] targets;
+
+    /**
+     * The segments that follow this one.
+     */
+    final Node[] children;
+
+    Node(JSONString key, int index, int[] targets, Node[] children) {
+      this.key = key;
+      this.index = index;
+      this.targets = targets;
+      this.children = children;
+    } // Node(JSONString, int, int[], Node[])
+  } // class Node
+
+  /**
+   * A trie node that is still being built.
+   */
+  static final class Builder {
+    final JSONString key;
+    final int index;
+    final ArrayList<Integer> targets = new ArrayList<Integer>();
+    final ArrayList<Builder> children = new ArrayList<Builder>();
+
+    Builder(JSONString key, int index) {
+      this.key = key;
+      this.index = index;
+    } // Builder(JSONString, int)
+
+    /**
+     * Get the child for a segment, adding it if need be.
+     */
+    Builder child(JSONString key, int index) {
+      for (Builder child : this.children) {
+        if (child.key.equals(key)) {
+          return child;
+        } // if
+      } // for
+      Builder child = new Builder(key, index);
+      this.children.add(child);
+      return child;
+    } // child(JSONString, int)
+
+    /**
+     * Convert this node and its children to their final form.
+     */
+    Node build() {
+      int[] targets = new int[this.targets.size()];
+      for (int i = 0; i < targets.length; i++) {
+        targets[i] = this.targets.get(i);
+      } // for
+      Node[] children = new Node[this.children.size()];
+      for (int i = 0; i < children.length; i++) {
+        children[i] = this.children.get(i).build();
+      } // for
+      return new Node(this.key, this.index, targets, children);
+    } // build()
+  } // class Builder
+
+} // class MultiPath
@@ -0,0 +1,19 @@
+package src;
+
+/**
+ * Something that wants to hear about each document the parser reads,
+ * e.g., to collect metrics. Passing no listener to the parser costs
+ * nothing; passing one costs a little bookkeeping per value.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public interface ParseListener {
+
+  /**
+   * Called after each document parses successfully. The listener may keep
+   * stats; the parser will not change it again.
+   */
+  public void documentParsed(ParseStats stats);
+
+} // interface ParseListener
@@ -0,0 +1,172 @@
+package src;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A ParseListener that totals the stats of every document it hears
+ * about. Safe to share between threads parsing at the same time.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class ParseMetrics implements ParseListener {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  final LongAdder documents = new LongAdder();
+  final LongAdder chars = new LongAdder();
+  final LongAdder nanos = new LongAdder();
+  final LongAdder nodes = new LongAdder();
+  final LongAdder strings = new LongAdder();
+  final LongAdder integers = new LongAdder();
+  final LongAdder reals = new LongAdder();
+  final LongAdder constants = new LongAdder();
+  final LongAdder arrays = new LongAdder();
+  final LongAdder hashes = new LongAdder();
+  final LongAdder stringChars = new LongAdder();
+  final LongAdder escapes = new LongAdder();
+  final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+  final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  // +------------------+--------------------------------------------
+  // | Standard methods |
+  // +------------------+
+
+  /**
+   * Convert to string form.
+   */
+  @Override
+  public String toString() {
+    return "documents=" + documents() + " chars=" + chars() + " nanos=" + nanos()
+        + " maxNanos=" + maxNanos() + " nodes=" + nodes() + " maxDepth=" + maxDepth()
+        + " stringChars=" + stringChars() + " escapes=" + escapes();
+  } // toString()
+
+  // +----------+----------------------------------------------------
+  // | Listener |
+  // +----------+
+
+  /**
+   * Add one document's stats to the totals.
+   */
+  public void documentParsed(ParseStats stats) {
+    this.documents.increment();
+    this.chars.add(stats.chars);
+    this.nanos.add(stats.nanos);
+    this.nodes.add(stats.nodes());
+    this.strings.add(stats.strings);
+    this.integers.add(stats.integers);
+    this.reals.add(stats.reals);
+    this.constants.add(stats.constants);
+    this.arrays.add(stats.arrays);
+    this.hashes.add(stats.hashes);
+    this.stringChars.add(stats.stringChars);
+    this.escapes.add(stats.escapes);
+    this.maxDepth.accumulate(stats.maxDepth);
+    this.maxNanos.accumulate(stats.nanos);
+  } // documentParsed(ParseStats)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of documents parsed.
+   */
+  public long documents() {
+    return this.documents.sum();
+  } // documents()
+
+  /**
+   * Get the characters consumed.
+   */
+  public long chars() {
+    return this.chars.sum();
+  } // chars()
+
+  /**
+   * Get the total parse time, in nanoseconds.
+   */
+  public long nanos() {
+    return this.nanos.sum();
+  } // nanos()
+
+  /**
+   * Get the longest time taken by one document, in nanoseconds.
+   */
+  public long maxNanos() {
+    return this.maxNanos.get();
+  } // maxNanos()
+
+  /**
+   * Get the number of values of all types.
+   */
+  public long nodes() {
+    return this.nodes.sum();
+  } // nodes()
+
+  /**
+   * Get the number of strings, including keys.
+   */
+  public long strings() {
+    return this.strings.sum();
+  } // strings()
+
+  /**
+   * Get the number of integers.
+   */
+  public long integers() {
+    return this.integers.sum();
+  } // integers()
+
+  /**
+   * Get the number of reals.
+   */
+  public long reals() {
+    return this.reals.sum();
+  } // reals()
+
+  /**
+   * Get the number of true, false and null values.
+   */
+  public long constants() {
+    return this.constants.sum();
+  } // constants()
+
+  /**
+   * Get the number of arrays.
+   */
+  public long arrays() {
+    return this.arrays.sum();
+  } // arrays()
+
+  /**
+   * Get the number of hashes.
+   */
+  public long hashes() {
+    return this.hashes.sum();
+  } // hashes()
+
+  /**
+   * Get the deepest nesting seen in any document.
+   */
+  public long maxDepth() {
+    return this.maxDepth.get();
+  } // maxDepth()
+
+  /**
+   * Get the number of characters in strings.
+   */
+  public long stringChars() {
+    return this.stringChars.sum();
+  } // stringChars()
+
+  /**
+   * Get the number of backslash escapes.
+   */
+  public long escapes() {
+    return this.escapes.sum();
+  } // escapes()
+} // class ParseMetrics
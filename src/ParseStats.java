@@ -0,0 +1,157 @@
+package src;
+
+/**
+ * What the parser saw while reading one document.
+ *
+ * @author Garikai
+ * @author Zakariye
+ */
+public class ParseStats {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Characters consumed, including whitespace.
+   */
+  long chars;
+
+  /**
+   * Time taken to parse the document, in nanoseconds.
+   */
+  long nanos;
+
+  /**
+   * Number of values of each type.
+   */
+  long strings;
+  long integers;
+  long reals;
+  long constants;
+  long arrays;
+  long hashes;
+
+  /**
+   * The deepest nesting of arrays and hashes (0 for a lone scalar).
+   */
+  int maxDepth;
+
+  /**
+   * The current nesting, while parsing.
+   */
+  int depth;
+
+  /**
+   * Characters in all strings (keys included), after unescaping.
+   */
+  long stringChars;
+
+  /**
+   * Backslash escapes in all strings.
+   */
+  long escapes;
+
+  // +------------------+--------------------------------------------
+  // | Standard methods |
+  // +------------------+
+
+  /**
+   * Convert to string form.
+   */
+  @Override
+  public String toString() {
+    return "chars=" + chars + " nanos=" + nanos + " nodes=" + nodes()
+        + " (strings=" + strings + " integers=" + integers + " reals=" + reals
+        + " constants=" + constants + " arrays=" + arrays + " hashes=" + hashes
+        + ") maxDepth=" + maxDepth + " stringChars=" + stringChars + " escapes=" + escapes;
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of characters consumed.
+   */
+  public long chars() {
+    return this.chars;
+  } // chars()
+
+  /**
+   * Get the time taken, in nanoseconds.
+   */
+  public long nanos() {
+    return this.nanos;
+  } // nanos()
+
+  /**
+   * Get the number of strings, including keys.
+   */
+  public long strings() {
+    return this.strings;
+  } // strings()
+
+  /**
+   * Get the number of integers.
+   */
+  public long integers() {
+    return this.integers;
+  } // integers()
+
+  /**
+   * Get the number of reals.
+   */
+  public long reals() {
+    return this.reals;
+  } // reals()
+
+  /**
+   * Get the number of true, false and null values.
+   */
+  public long constants() {
+    return this.constants;
+  } // constants()
+
+  /**
+   * Get the number of arrays.
+   */
+  public long arrays() {
+    return this.arrays;
+  } // arrays()
+
+  /**
+   * Get the number of hashes.
+   */
+  public long hashes() {
+    return this.hashes;
+  } // hashes()
+
+  /**
+   * Get the total number of values, including keys.
+   */
+  public long nodes() {
+    return this.strings + this.integers + this.reals + this.constants + this.arrays + this.hashes;
+  } // nodes()
+
+  /**
+   * Get the deepest nesting of arrays and hashes.
+   */
+  public int maxDepth() {
+    return this.maxDepth;
+  } // maxDepth()
+
+  /**
+   * Get the number of characters in strings, after unescaping.
+   */
+  public long stringChars() {
+    return this.stringChars;
+  } // stringChars()
+
+  /**
+   * Get the number of backslash escapes.
+   */
+  public long escapes() {
+    return this.escapes;
+  } // escapes()
+} // class ParseStats
@@ -1,10 +1,49 @@
 package src;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -12,6 +51,8 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import org.junit.jupiter.api.Test;
@@ -367,5 +408,1177 @@ public class ZakGarikaiJSONTests {
       fail("Could not parse hash");
     } // try-catch
   }// constantsArrayHashTest()
+
+  /*
+   * Check that concurrent compute calls on a ConcurrentJSONHash never lose updates
+   */
+  @Test
+  void concurrentHashComputeTest() throws Exception {
+    ConcurrentJSONHash hash = new ConcurrentJSONHash();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          JSONString key = new JSONString(words[i % words.length]);
+          hash.compute(key, (k, v) -> new JSONInteger((v == null) ? 1 : ((JSONInteger) v).getValue().longValue() + 1));
+        } // for
+      });
+      threads[t].start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+    assertEquals(words.length, hash.size());
+    long total = 0;
+    for (int i = 0; i < words.length; i++) {
+      total += ((JSONInteger) hash.get(new JSONString(words[i]))).getValue().longValue();
+    } // for
+    assertEquals(8000, total);
+    assertNull(hash.putIfAbsent(new JSONString("new"), new JSONInteger(1)));
+    assertEquals(new JSONInteger(1), hash.putIfAbsent(new JSONString("new"), new JSONInteger(2)));
+  } // concurrentHashComputeTest()
+
+  /*
+   * Check that equal hashes and arrays have equal hash codes, whatever the insertion order
+   */
+  @Test
+  void structuralHashCodeTest() throws Exception {
+    JSONHash hash = new JSONHash();
+    JSONHash hash1 = new JSONHash();
+    for (int i = 0; i < words.length; i++) {
+      hash.set(new JSONString(words[i]), new JSONInteger(i));
+      hash1.set(new JSONString(words[words.length - i - 1]), new JSONInteger(words.length - i - 1));
+    } // for
+    assertEquals(hash.hashCode(), hash1.hashCode());
+    // setting a value must invalidate the cached code
+    hash.set(new JSONString(words[0]), new JSONString("changed"));
+    assertFalse(hash.equals(hash1));
+    hash1.set(new JSONString(words[0]), new JSONString("changed"));
+    assertEquals(hash.hashCode(), hash1.hashCode());
+    // parsed documents can be used as keys
+    HashMap<JSONValue, String> cache = new HashMap<JSONValue, String>();
+    cache.put(JSON.parse("{\"a\":[1, 2, {\"b\":null}], \"c\":\"d\"}"), "found");
+    assertEquals("found", cache.get(JSON.parse("{\"c\":\"d\", \"a\":[1, 2, {\"b\":null}]}")));
+    // changes in place to nested values, or through getValue, are seen
+    JSONHash outer = (JSONHash) JSON.parse("{\"a\":{\"b\":1}, \"c\":[1]}");
+    JSONHash other = (JSONHash) JSON.parse("{\"a\":{\"b\":2}, \"c\":[1, 2]}");
+    assertFalse(outer.equals(other));
+    ((JSONHash) outer.get(new JSONString("a"))).set(new JSONString("b"), new JSONInteger(2));
+    ((JSONArray) outer.get(new JSONString("c"))).getValue().add(new JSONInteger(2));
+    assertEquals(outer, other);
+    assertEquals(other.hashCode(), outer.hashCode());
+    outer.freeze();
+    other.freeze();
+    assertEquals(outer, other);
+    assertEquals(other.hashCode(), outer.hashCode());
+  } // structuralHashCodeTest()
+
+  /*
+   * Check that the file cache reuses parses until the file changes, hands out frozen values, and
+   * does not share a parse of another version of the file, however deep
+   */
+  @Test
+  void fileCacheTest() throws Exception {
+    File file = File.createTempFile("cache", ".json");
+    file.deleteOnExit();
+    Files.writeString(file.toPath(), "{\"a\":[1, 2]}");
+    JSONFileCache cache = new JSONFileCache(1 << 20);
+    JSONValue first = cache.get(file.getPath());
+    assertTrue(first == cache.get(file.getPath()));
+    assertEquals(1, cache.hits());
+    assertThrows(UnsupportedOperationException.class,
+        () -> ((JSONHash) first).set(new JSONString("b"), new JSONInteger(3)));
+    assertThrows(UnsupportedOperationException.class,
+        () -> ((JSONArray) ((JSONHash) first).get(new JSONString("a"))).add(new JSONInteger(3)));
+    // a change in size means a new parse
+    Files.writeString(file.toPath(), "{\"a\":[1, 2, 3]}");
+    assertEquals(JSON.parse("{\"a\":[1, 2, 3]}"), cache.get(file.getPath()));
+    assertEquals(2, cache.loads());
+    // a parse of another version of the file is not shared
+    Path path = file.toPath().toAbsolutePath().normalize();
+    FutureTask<JSONFileCache.Entry> stale = new FutureTask<JSONFileCache.Entry>(
+        () -> new JSONFileCache.Entry(JSON.parse("0"), 0, 0, 16));
+    stale.run();
+    cache.loading.put(new JSONFileCache.Version(path, 0, 0), stale);
+    Files.writeString(file.toPath(), "[]");
+    assertEquals(new JSONArray(), cache.get(file.getPath()));
+    // a deeply nested file is frozen and measured without recursion
+    Files.writeString(file.toPath(), "[{\"a\":".repeat(4000) + "1" + "}]".repeat(4000));
+    assertTrue(((JSONArray) cache.get(file.getPath())).isFrozen());
+  } // fileCacheTest()
+
+  /*
+   * Check that the push parser gives the same result however the input is split into chunks,
+   * and rejects ill-formed UTF-8
+   */
+  @Test
+  void pushParserChunkTest() throws Exception {
+    String source = "{\"na\u00efve\" : [1.5e3, -2, true, null, \"tab\\there \\u0041\"], \"e\" : {}}";
+    JSONHash expected = new JSONHash();
+    JSONArray arr = new JSONArray();
+    arr.add(new JSONReal("1.5e3"));
+    arr.add(new JSONInteger(-2));
+    arr.add(new JSONConstant(true));
+    arr.add(new JSONConstant(null));
+    arr.add(new JSONString("tab\there A"));
+    expected.set(new JSONString("na\u00efve"), arr);
+    expected.set(new JSONString("e"), new JSONHash());
+    byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+    for (int chunk = 1; chunk <= bytes.length; chunk++) {
+      JSONPushParser parser = new JSONPushParser();
+      for (int i = 0; i < bytes.length; i += chunk) {
+        parser.feed(ByteBuffer.wrap(bytes, i, Math.min(chunk, bytes.length - i)));
+      } // for
+      assertEquals(expected, parser.endOfInput());
+    } // for
+    // a top-level number is only complete at the end of the input
+    JSONPushParser parser = new JSONPushParser();
+    assertTrue(parser.feed(ByteBuffer.wrap("12".getBytes())));
+    assertTrue(parser.feed(ByteBuffer.wrap("34".getBytes())));
+    assertEquals(new JSONInteger(1234), parser.endOfInput());
+    // incomplete input is an error
+    JSONPushParser bad = new JSONPushParser();
+    bad.feed(ByteBuffer.wrap("[1, 2".getBytes()));
+    assertThrows(InvalidJSONException.class, () -> bad.endOfInput());
+    // ill-formed UTF-8 is an error, after which the parser stays failed
+    int[][] ills = {{0xF7, 0xBF, 0xBF, 0xBF}, {0xF4, 0x90, 0x80, 0x80}, {0xED, 0xA0, 0x80},
+        {0xC0, 0xAF}, {0xE0, 0x80, 0xAF}, {0xF0, 0x80, 0x80, 0xAF}, {0xBF}};
+    for (int[] ill : ills) {
+      byte[] input = new byte[ill.length + 2];
+      input[0] = '"';
+      for (int i = 0; i < ill.length; i++) {
+        input[i + 1] = (byte) ill[i];
+      } // for
+      input[input.length - 1] = '"';
+      JSONPushParser failing = new JSONPushParser();
+      assertThrows(InvalidJSONException.class, () -> failing.feed(ByteBuffer.wrap(input)));
+      assertThrows(InvalidJSONException.class, () -> failing.feed(ByteBuffer.wrap("1".getBytes())));
+    } // for
+    JSONPushParser edges = new JSONPushParser();
+    edges.feed(ByteBuffer.wrap(new byte[] {'"', (byte) 0xF4, (byte) 0x8F, (byte) 0xBF, (byte) 0xBF,
+        (byte) 0xEE, (byte) 0x80, (byte) 0x80, (byte) 0xC2, (byte) 0x80, '"'}));
+    assertEquals(new JSONString("\udbff\udfff\ue000\u0080"), edges.endOfInput());
+  } // pushParserChunkTest()
+
+  /*
+   * Check that parseFiles keeps results in order and reports bad files without stopping
+   */
+  @Test
+  void parseFilesTest() throws Exception {
+    ArrayList<Path> paths = new ArrayList<Path>();
+    for (int i = 0; i < 50; i++) {
+      Path path = Files.createTempFile("batch", ".json");
+      path.toFile().deleteOnExit();
+      Files.writeString(path, (i == 7) ? "[1, 2" : "{\"n\":" + i + "}");
+      paths.add(path);
+    } // for
+    List<JSONFileResult> results = JSON.parseFiles(paths, 4);
+    assertEquals(50, results.size());
+    for (int i = 0; i < 50; i++) {
+      assertEquals(paths.get(i), results.get(i).path());
+      if (i == 7) {
+        assertFalse(results.get(i).succeeded());
+      } else {
+        assertEquals(new JSONInteger(i), ((JSONHash) results.get(i).value()).get(new JSONString("n")));
+      } // if-else
+    } // for
+  } // parseFilesTest()
+
+  /*
+   * Check that a parse listener sees the right counts
+   */
+  @Test
+  void parseListenerTest() throws Exception {
+    ParseMetrics metrics = new ParseMetrics();
+    String source = "{\"a\" : [1, 2.5, true, \"x\\ny\"], \"b\" : {\"c\" : null}}";
+    JSON.parse(source, metrics);
+    JSON.parse("[]", metrics);
+    assertEquals(2, metrics.documents());
+    assertEquals(source.length() + 2, metrics.chars());
+    assertEquals(4, metrics.strings());
+    assertEquals(1, metrics.integers());
+    assertEquals(1, metrics.reals());
+    assertEquals(2, metrics.constants());
+    assertEquals(2, metrics.arrays());
+    assertEquals(2, metrics.hashes());
+    assertEquals(2, metrics.maxDepth());
+    assertEquals(1, metrics.escapes());
+  } // parseListenerTest()
+
+  /*
+   * Check that validate accepts good JSON, reports where bad JSON goes wrong, and limits nesting
+   * as parse does
+   */
+  @Test
+  void validateTest() throws Exception {
+    assertTrue(JSON.validate("{\"1st\":1, \"2nd\":[2.5e-3, true, null, \"a\\u00e9\"], \"3rd\":{}}").isValid());
+    assertTrue(JSON.validate(" [ ] ").isValid());
+    // missing comma between values, on the second line
+    JSONValidation result = JSON.validate("[123,\n 456  \"super\"]");
+    assertFalse(result.isValid());
+    assertEquals(2, result.line());
+    assertEquals(7, result.column());
+    assertEquals(12, result.offset());
+    // missing colon
+    assertEquals(7, JSON.validate("{\"1st\" 1}").offset());
+    assertFalse(JSON.validate("[1, 2").isValid());
+    assertFalse(JSON.validate("01").isValid());
+    assertFalse(JSON.validate("[1] x").isValid());
+    // strings may not hold raw control characters
+    assertFalse(JSON.validate("\"tab\there\"").isValid());
+    // nesting far deeper than any sensible document does not overflow
+    // the stack, but is limited as parse limits it
+    StringBuilder deep = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      deep.append("[");
+    } // for
+    for (int i = 0; i < 100000; i++) {
+      deep.append("]");
+    } // for
+    assertTrue(JSON.validate(deep.toString(), 100000).isValid());
+    assertFalse(JSON.validate(deep.toString()).isValid());
+    assertTrue(JSON.validate(deep.toString()).message().startsWith("Maximum nesting depth"));
+
+    // validate and parse agree at the limit
+    String atLimit = "[{\"a\" : ".repeat(50) + "1" + "}]".repeat(50);
+    assertTrue(JSON.validate(atLimit, 100).isValid());
+    JSON.parse(atLimit, 100);
+    String overLimit = "[" + atLimit + "]";
+    assertFalse(JSON.validate(overLimit, 100).isValid());
+    assertThrows(InvalidJSONException.class, () -> JSON.parse(overLimit, 100));
+    assertFalse(JSON.validate(new StringReader(overLimit), 100).isValid());
+  } // validateTest()
   
+  /*
+   * Check that deeply nested documents parse and print without overflowing
+   * the stack, and that the depth limit is enforced
+   */
+  @Test
+  void deepNestingTest() throws Exception {
+    int depth = 100000;
+    StringBuilder deep = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      deep.append((i % 2 == 0) ? "{\"k\" : " : "[");
+    } // for
+    deep.append("0");
+    for (int i = depth - 1; i >= 0; i--) {
+      deep.append((i % 2 == 0) ? "}" : "]");
+    } // for
+    String text = deep.toString();
+    JSONValue value = JSON.parse(text, depth);
+    StringWriter out = new StringWriter();
+    value.writeJSON(new PrintWriter(out));
+    assertEquals(text, out.toString());
+    assertTrue(value.toString().startsWith("{k : [{k : ["));
+    // hashing, comparing and freezing do not recurse either
+    JSONValue copy = JSON.parse(text, depth);
+    assertEquals(value.hashCode(), copy.hashCode());
+    assertEquals(value, copy);
+    ((JSONHash) copy).freeze();
+    assertTrue(((JSONHash) copy).isFrozen());
+    assertEquals(value.hashCode(), copy.hashCode());
+    assertEquals(copy, value);
+    // the default limit rejects it
+    assertThrows(InvalidJSONException.class, () -> JSON.parse(text));
+    assertThrows(InvalidJSONException.class, () -> JSON.parse("[[[1]]]", 2));
+    assertEquals(JSON.parse("[[1]]"), JSON.parse("[[1]]", 2));
+  } // deepNestingTest()
+
+  /*
+   * Check that strings holding quotes, backslashes and control characters
+   * are escaped when written, held in memory or spilled, and read back
+   * as they were
+   */
+  @Test
+  void escapedStringTest() throws Exception {
+    String odd = "say \"hi\"\\\n\tthen\r\b\f\u0001 bye";
+    JSONHash hash = new JSONHash();
+    hash.set(new JSONString("line\none"), new JSONString(odd));
+    StringWriter out = new StringWriter();
+    hash.writeJSON(new PrintWriter(out));
+    assertTrue(out.toString().contains("\"line\\none\""));
+    assertTrue(out.toString().contains("\\u0001"));
+    assertEquals(hash, JSON.parse(out.toString()));
+    assertEquals("\"say \\\"hi\\\"\\\\\\n\\tthen\\r\\b\\f\\u0001 bye\"",
+        JSONCanonical.toString(new JSONString(odd)));
+    // spilled strings escape each chunk as they stream it
+    String text = "[\"" + "x\\\"\\n".repeat(5000) + "\"]";
+    JSONArray spilled = (JSONArray) JSON.parse(new StringReader(text), null, JSON.DEFAULT_MAX_DEPTH, 1000);
+    assertTrue(spilled.get(0) instanceof JSONSpilledString);
+    StringWriter written = new StringWriter();
+    spilled.writeJSON(new PrintWriter(written));
+    assertEquals(text, written.toString());
+    assertEquals(JSON.parse(text), JSON.parse(written.toString()));
+  } // escapedStringTest()
+
+  /*
+   * Check that an object whose keys all share a String hashCode still
+   * parses quickly, and that every key can be found
+   */
+  @Test
+  void collidingKeysTest() throws Exception {
+    // every string made of 16 "Aa"/"BB" blocks has the same hashCode
+    int count = 1 << 16;
+    String[] keys = new String[count];
+    StringBuilder text = new StringBuilder("{");
+    for (int i = 0; i < count; i++) {
+      StringBuilder key = new StringBuilder();
+      for (int bit = 0; bit < 16; bit++) {
+        key.append(((i >> bit) & 1) == 0 ? "Aa" : "BB");
+      } // for
+      keys[i] = key.toString();
+      assertEquals(keys[0].hashCode(), keys[i].hashCode());
+      text.append((i == 0) ? "" : ", ").append('"').append(keys[i]).append("\" : ").append(i);
+    } // for
+    text.append("}");
+    JSONHash hash = assertTimeout(Duration.ofSeconds(10), () -> (JSONHash) JSON.parse(text.toString()));
+    assertEquals(count, hash.size());
+    for (int i = 0; i < count; i += 997) {
+      assertEquals(new JSONInteger(i), hash.get(new JSONString(keys[i])));
+    } // for
+    // iteration still visits every pair once
+    int seen = 0;
+    Iterator<KVPair<JSONString, JSONValue>> pairs = hash.iterator();
+    while (pairs.hasNext()) {
+      pairs.next();
+      seen++;
+    } // while
+    assertEquals(count, seen);
+  } // collidingKeysTest()
+
+  /*
+   * Check the lookups that report missing keys and indices without
+   * throwing, and the typed accessors
+   */
+  @Test
+  void typedAccessorTest() throws Exception {
+    JSONHash hash = (JSONHash) JSON.parse("{\"n\" : 42, \"big\" : 123456789012345678901234567890,"
+        + " \"x\" : 2.5, \"s\" : \"str\", \"t\" : true, \"z\" : null, \"a\" : [7, 1.5, \"q\", false]}");
+    JSONString missing = new JSONString("missing");
+    assertNull(hash.getOrNull(missing));
+    assertFalse(hash.containsKey(missing));
+    assertTrue(hash.containsKey(new JSONString("z")));
+    assertEquals(JSONConstant.NULL, hash.getOrDefault(missing, JSONConstant.NULL));
+    assertEquals(42L, hash.getLong(new JSONString("n"), -1));
+    assertEquals(-1L, hash.getLong(new JSONString("big"), -1));
+    assertEquals(-1L, hash.getLong(new JSONString("x"), -1));
+    assertEquals(-1L, hash.getLong(missing, -1));
+    assertEquals(2.5, hash.getDouble(new JSONString("x"), 0));
+    assertEquals(42.0, hash.getDouble(new JSONString("n"), 0));
+    assertEquals("str", hash.getString(new JSONString("s"), null));
+    assertNull(hash.getString(new JSONString("n"), null));
+    assertTrue(hash.getBoolean(new JSONString("t"), false));
+    assertFalse(hash.getBoolean(new JSONString("z"), false));
+    assertThrows(IndexOutOfBoundsException.class, () -> hash.get(missing));
+
+    JSONArray array = (JSONArray) hash.get(new JSONString("a"));
+    assertNull(array.getOrNull(4));
+    assertNull(array.getOrNull(-1));
+    assertEquals(7L, array.getLong(0, 0));
+    assertEquals(1.5, array.getDouble(1, 0));
+    assertEquals("q", array.getString(2, ""));
+    assertFalse(array.getBoolean(3, true));
+    assertEquals(9L, array.getLong(9, 9));
+
+    // equals no longer depends on exceptions for missing keys
+    assertFalse(JSON.parse("{\"a\" : 1, \"b\" : 2}").equals(JSON.parse("{\"a\" : 1, \"c\" : 2}")));
+    assertTrue(JSON.parse("{\"a\" : 1, \"b\" : 2}").equals(JSON.parse("{\"b\" : 2, \"a\" : 1}")));
+  } // typedAccessorTest()
+
+  /*
+   * Check JSON pointers, including escapes, array indices and missing
+   * paths, and extracting several pointers at once
+   */
+  @Test
+  void pointerTest() throws Exception {
+    JSONValue doc = JSON.parse("{\"order\" : {\"id\" : 17, \"items\" : [{\"sku\" : \"A-1\", \"qty\" : 2},"
+        + " {\"sku\" : \"B-2\", \"qty\" : 1}]}, \"a/b\" : true, \"m~n\" : 1.5, \"\" : 0}");
+    assertEquals("A-1", JSONPointer.compile("/order/items/0/sku").getString(doc, null));
+    assertEquals(1L, JSONPointer.compile("/order/items/1/qty").getLong(doc, -1));
+    assertTrue(JSONPointer.compile("/a~1b").getBoolean(doc, false));
+    assertEquals(1.5, JSONPointer.compile("/m~0n").getDouble(doc, 0));
+    assertEquals(new JSONInteger(0), JSONPointer.compile("/").get(doc));
+    assertSame(doc, JSONPointer.compile("").get(doc));
+    // paths that lead nowhere
+    assertNull(JSONPointer.compile("/order/items/2/sku").get(doc));
+    assertNull(JSONPointer.compile("/order/items/01").get(doc));
+    assertNull(JSONPointer.compile("/order/items/-").get(doc));
+    assertNull(JSONPointer.compile("/order/id/x").get(doc));
+    assertEquals(-1L, JSONPointer.compile("/order/missing").getLong(doc, -1));
+    assertThrows(IllegalArgumentException.class, () -> JSONPointer.compile("order"));
+    assertThrows(IllegalArgumentException.class, () -> JSONPointer.compile("/a~2"));
+
+    MultiPath paths = MultiPath.compile("/order/items/0/sku", "/order/id", "/order/items/0/qty", "/nope", "/order/id");
+    JSONValue[] values = paths.extract(doc);
+    assertEquals(new JSONString("A-1"), values[0]);
+    assertEquals(new JSONInteger(17), values[1]);
+    assertEquals(new JSONInteger(2), values[2]);
+    assertNull(values[3]);
+    assertEquals(new JSONInteger(17), values[4]);
+    // reusing the array clears what the next document lacks
+    paths.extract(JSON.parse("{\"nope\" : null}"), values);
+    assertNull(values[0]);
+    assertEquals(JSONConstant.NULL, values[3]);
+  } // pointerTest()
+
+  /*
+   * Types for mapperTest
+   */
+  enum Status { OPEN, SHIPPED }
+
+  record Item(String sku, int qty, double price) { }
+
+  record Order(long id, Status status, List<Item> items, Map<String, Integer> counts, boolean rush,
+      String[] notes, Order parent) { }
+
+  record Tally(int[] counts, String[] names) { }
+
+  static class Customer {
+    String name;
+    int age;
+    List<Order> orders;
+    transient int ignored = 7;
+  } // class Customer
+
+  /*
+   * Check that JSONMapper reads and writes records, POJOs, collections,
+   * maps, arrays and enums, both from JSON values and straight from text
+   */
+  @Test
+  void mapperTest() throws Exception {
+    String text = "{\"name\" : \"Ada\", \"age\" : 36, \"extra\" : {\"x\" : [1, 2]}, \"orders\" : ["
+        + "{\"id\" : 7, \"status\" : \"SHIPPED\", \"rush\" : true, \"counts\" : {\"a\" : 1},"
+        + " \"items\" : [{\"sku\" : \"A-1\", \"qty\" : 2, \"price\" : 9.5}], \"notes\" : [\"x\", null],"
+        + " \"parent\" : {\"id\" : 6, \"items\" : []}}]}";
+    for (Customer customer : new Customer[] {
+        JSONMapper.read(JSON.parse(text), Customer.class), JSONMapper.read(text, Customer.class)}) {
+      assertEquals("Ada", customer.name);
+      assertEquals(36, customer.age);
+      assertEquals(7, customer.ignored);
+      Order order = customer.orders.get(0);
+      assertEquals(7L, order.id());
+      assertEquals(Status.SHIPPED, order.status());
+      assertTrue(order.rush());
+      assertEquals(new Item("A-1", 2, 9.5), order.items().get(0));
+      assertEquals(Integer.valueOf(1), order.counts().get("a"));
+      assertArrayEquals(new String[] {"x", null}, order.notes());
+      assertEquals(6L, order.parent().id());
+      assertTrue(order.parent().items().isEmpty());
+      // left out, so the defaults
+      assertNull(order.parent().status());
+      assertFalse(order.parent().rush());
+    } // for
+
+    // writing then reading gives the same values
+    Customer customer = JSONMapper.read(text, Customer.class);
+    JSONValue written = JSONMapper.write(customer);
+    assertEquals(JSONMapper.write(JSONMapper.read(written, Customer.class)), written);
+    assertEquals(new JSONString("SHIPPED"), JSONPointer.compile("/orders/0/status").get(written));
+    assertEquals(9.5, JSONPointer.compile("/orders/0/items/0/price").getDouble(written, 0));
+    assertNull(JSONPointer.compile("/ignored").get(written));
+
+    assertEquals(Integer.valueOf(5), JSONMapper.read("5", int.class));
+    assertThrows(IllegalArgumentException.class, () -> JSONMapper.read("\"five\"", int.class));
+    assertThrows(IllegalArgumentException.class, () -> JSONMapper.read("3000000000", int.class));
+    assertThrows(IllegalArgumentException.class, () -> JSONMapper.read("{\"sku\" : 1}", Item.class));
+    assertThrows(InvalidJSONException.class, () -> JSONMapper.read("{\"sku\" : }", Item.class));
+    IllegalArgumentException nan = assertThrows(IllegalArgumentException.class,
+        () -> JSONMapper.write(new Item("A", 1, Double.NaN)));
+    assertTrue(nan.getMessage().contains("Item.price"));
+    assertThrows(IllegalArgumentException.class, () -> JSONMapper.write(Double.POSITIVE_INFINITY));
+    assertThrows(IllegalArgumentException.class, () -> JSONMapper.write(Float.NEGATIVE_INFINITY));
+    assertThrows(IllegalArgumentException.class, () -> JSONMapper.write(new double[] {1.0, Double.NaN}));
+    assertEquals(new JSONReal("0.1"), JSONMapper.write(0.1f));
+
+    // unknown values are skipped without being built, but still checked
+    assertEquals(new Item("B", 1, 2.0), JSONMapper.read("{\"skip\" : [{\"a\" : \"\\\"}]\\u0041\", \"b\" : {}},"
+        + " [], -1.5e3, null, true], \"sku\" : \"B\", \"qty\" : 1, \"price\" : 2}", Item.class));
+    assertThrows(InvalidJSONException.class, () -> JSONMapper.read("{\"skip\" : [1 2], \"sku\" : \"B\"}", Item.class));
+    assertThrows(InvalidJSONException.class, () -> JSONMapper.read("{\"skip\" : \"\\q\"}", Item.class));
+    assertThrows(InvalidJSONException.class, () -> JSONMapper.read("{\"skip\" : {\"a\" 1}}", Item.class));
+    String tooDeep = "[".repeat(JSON.DEFAULT_MAX_DEPTH + 1) + "]".repeat(JSON.DEFAULT_MAX_DEPTH + 1);
+    assertThrows(InvalidJSONException.class, () -> JSONMapper.read("{\"skip\" : " + tooDeep + "}", Item.class));
+
+    // arrays of primitives and of objects
+    String tallyText = "{\"counts\" : [3, null, -1], \"names\" : [\"a\", null]}";
+    for (Tally tally : new Tally[] {
+        JSONMapper.read(JSON.parse(tallyText), Tally.class), JSONMapper.read(tallyText, Tally.class)}) {
+      assertArrayEquals(new int[] {3, 0, -1}, tally.counts());
+      assertArrayEquals(new String[] {"a", null}, tally.names());
+    } // for
+    assertEquals(JSON.parse("{\"counts\" : [1, 2], \"names\" : []}"),
+        JSONMapper.write(new Tally(new int[] {1, 2}, new String[0])));
+    assertThrows(IllegalArgumentException.class,
+        () -> JSONMapper.read("{\"counts\" : [1, \"two\"]}", Tally.class));
+  } // mapperTest()
+
+  /*
+   * Check that JsonModelProcessor generates a codec that reads and
+   * writes records, range-checks shorts and bytes, and rejects
+   * components it cannot handle
+   */
+  @Test
+  void jsonModelProcessorTest() throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    Path dir = Files.createTempDirectory("jsonmodel");
+    Path source = Files.createDirectories(dir.resolve("demo")).resolve("Shop.java");
+    Files.writeString(source, "package demo;\n"
+        + "import java.util.List;\n"
+        + "public class Shop {\n"
+        + "  public enum Size { S, M, L }\n"
+        + "  @src.JsonModel public record Line(String sku, int qty, Size size, java.math.BigDecimal price) { }\n"
+        + "  @src.JsonModel public record Order(long id, boolean rush, Double weight, List<Line> lines,\n"
+        + "      List<List<String>> tags, src.JSONValue extra) { }\n"
+        + "  @src.JsonModel public record Bin(short width, byte depth) { }\n"
+        + "}\n");
+    StandardJavaFileManager files = compiler.getStandardFileManager(null, null, null);
+    JavaCompiler.CompilationTask task = compiler.getTask(null, files, null,
+        List.of("-d", dir.toString(), "-cp", System.getProperty("java.class.path")), null,
+        files.getJavaFileObjects(source.toFile()));
+    task.setProcessors(List.of(new JsonModelProcessor()));
+    assertTrue(task.call());
+
+    String text = "{\"id\" : 7, \"rush\" : true, \"skipped\" : [1, {\"a\" : 2}], \"weight\" : null,"
+        + " \"lines\" : [{\"sku\" : \"A-1\", \"qty\" : 2, \"size\" : \"M\", \"price\" : 9.50}],"
+        + " \"tags\" : [[\"x\"], []], \"extra\" : {\"k\" : [null]}}";
+    try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},
+        getClass().getClassLoader())) {
+      Class<?> codec = loader.loadClass("demo.Shop_OrderJson");
+      Object order = codec.getMethod("read", String.class).invoke(null, text);
+      assertEquals("Order[id=7, rush=true, weight=null, lines=[Line[sku=A-1, qty=2, size=M, price=9.50]],"
+          + " tags=[[x], []], extra={k : [null]}]", order.toString());
+      JSONValue written = (JSONValue) codec.getMethod("write", order.getClass()).invoke(null, order);
+      assertEquals(JSON.parse("{\"id\" : 7, \"rush\" : true, \"weight\" : null,"
+          + " \"lines\" : [{\"sku\" : \"A-1\", \"qty\" : 2, \"size\" : \"M\", \"price\" : 9.50}],"
+          + " \"tags\" : [[\"x\"], []], \"extra\" : {\"k\" : [null]}}"), written);
+      StringWriter json = new StringWriter();
+      written.writeJSON(new PrintWriter(json, true));
+      assertEquals(order, codec.getMethod("read", String.class).invoke(null, json.toString()));
+
+      // shorts and bytes out of range are rejected, not truncated
+      Method bin = loader.loadClass("demo.Shop_BinJson").getMethod("read", String.class);
+      assertEquals("Bin[width=-32768, depth=127]",
+          bin.invoke(null, "{\"width\" : -32768, \"depth\" : 127}").toString());
+      assertTrue(assertThrows(InvocationTargetException.class,
+          () -> bin.invoke(null, "{\"width\" : 40000, \"depth\" : 1}")).getCause()
+          instanceof IllegalArgumentException);
+      assertTrue(assertThrows(InvocationTargetException.class,
+          () -> bin.invoke(null, "{\"width\" : 1, \"depth\" : 128}")).getCause()
+          instanceof IllegalArgumentException);
+    } // try
+
+    // a char component cannot be handled
+    Files.writeString(source, "package demo;\n@src.JsonModel public record Shop(char c) { }\n");
+    task = compiler.getTask(new StringWriter(), files, null,
+        List.of("-d", dir.toString(), "-cp", System.getProperty("java.class.path")), null,
+        files.getJavaFileObjects(source.toFile()));
+    task.setProcessors(List.of(new JsonModelProcessor()));
+    assertFalse(task.call());
+  } // jsonModelProcessorTest()
+
+  /*
+   * Check that JSONShapeParser builds the same tree as JSON.parse, feeds
+   * a sink, and rejects documents that do not fit the schema
+   */
+  @Test
+  void shapeParserTest() throws Exception {
+    JSONShapeParser parser = JSONShapeParser.compile("{\"type\" : \"object\", \"required\" : [\"id\", \"lines\"],"
+        + " \"properties\" : {\"id\" : {\"type\" : \"integer\"}, \"name\" : {\"type\" : [\"string\", \"null\"]},"
+        + " \"status\" : {\"enum\" : [\"open\", \"shipped\"]},"
+        + " \"lines\" : {\"type\" : \"array\", \"items\" : {\"type\" : \"object\","
+        + " \"additionalProperties\" : false, \"required\" : [\"sku\"],"
+        + " \"properties\" : {\"sku\" : {\"type\" : \"string\"}, \"qty\" : {\"type\" : \"number\"}}}}}}");
+    String[] docs = {
+      "{\"id\" : 1, \"name\" : \"a\", \"status\" : \"open\", \"lines\" : [{\"sku\" : \"x\", \"qty\" : 2}]}",
+      // keys in another order, an unknown key, an escaped key and 3.0 as an integer
+      "{\"lines\" : [], \"extra\" : {\"deep\" : [1, 2]}, \"n\\u0061me\" : null, \"id\" : 3.0}",
+      "  {\"id\" : 2, \"lines\" : [{\"qty\" : 1.5, \"sku\" : \"y\"}, {\"sku\" : \"z\"}]}  "};
+    for (int round = 0; round < 2; round++) {
+      for (String doc : docs) {
+        assertEquals(JSON.parse(doc), parser.parse(doc));
+        assertEquals(JSON.parse(doc), parser.parse(new StringReader(doc)));
+      } // for
+    } // for
+
+    int sku = parser.slot("/lines/*/sku");
+    int lines = parser.slot("/lines");
+    assertEquals("/lines/*/sku", parser.path(sku));
+    assertEquals(-1, parser.slot("/missing"));
+    ArrayList<String> seen = new ArrayList<String>();
+    parser.parse(docs[2], new JSONShapeParser.Sink() {
+      public void value(int slot, JSONValue value) {
+        if (slot == sku) {
+          seen.add(value.toString());
+        } // if
+      } // value(int, JSONValue)
+
+      public void end(int slot) {
+        if (slot == lines) {
+          seen.add("end");
+        } // if
+      } // end(int)
+    });
+    assertEquals(List.of("y", "z", "end"), seen);
+
+    String[] bad = {
+      "{\"id\" : \"1\", \"lines\" : []}",
+      "{\"id\" : 1.5, \"lines\" : []}",
+      "{\"id\" : 1}",
+      "{\"id\" : 1, \"lines\" : [{\"qty\" : 1}]}",
+      "{\"id\" : 1, \"lines\" : [{\"sku\" : \"x\", \"color\" : \"red\"}]}",
+      "{\"id\" : 1, \"status\" : \"lost\", \"lines\" : []}",
+      "{\"id\" : 1, \"lines\" : []} x",
+      "{\"id\" : 1, \"lines\" : [}"};
+    for (String doc : bad) {
+      assertThrows(Exception.class, () -> parser.parse(doc), doc);
+    } // for
+    assertTrue(assertThrows(InvalidJSONException.class, () -> parser.parse(bad[3])).getMessage()
+        .startsWith("Schema mismatch at /lines/*: missing required property sku"));
+    assertThrows(IllegalArgumentException.class, () -> JSONShapeParser.compile("{\"type\" : \"float\"}"));
+  } // shapeParserTest()
+
+  /*
+   * Check that JSONSchema applies each keyword, follows references
+   * (including recursive and percent-encoded ones), stops at the first
+   * error when failing fast, and rejects reference cycles and overly
+   * deep values
+   */
+  @Test
+  void schemaTest() throws Exception {
+    JSONSchema schema = JSONSchema.compile("{\"$ref\" : \"#/$defs/node\", \"$defs\" : {\"node\" : {"
+        + " \"type\" : \"object\", \"required\" : [\"name\"], \"properties\" : {"
+        + " \"name\" : {\"type\" : \"string\", \"minLength\" : 1, \"maxLength\" : 8, \"pattern\" : \"^[a-z]+$\"},"
+        + " \"weight\" : {\"type\" : \"number\", \"minimum\" : 0, \"exclusiveMaximum\" : 100.5},"
+        + " \"count\" : {\"type\" : \"integer\", \"maximum\" : 10},"
+        + " \"kind\" : {\"enum\" : [\"leaf\", \"branch\", null]}, \"version\" : {\"const\" : 2},"
+        + " \"children\" : {\"type\" : \"array\", \"maxItems\" : 2, \"items\" : {\"$ref\" : \"#/$defs/node\"}}}}}}");
+    JSONValue good = JSON.parse("{\"name\" : \"root\", \"weight\" : 100, \"count\" : 10.0, \"kind\" : null,"
+        + " \"version\" : 2, \"children\" : [{\"name\" : \"a\", \"children\" : [{\"name\" : \"b\"}]},"
+        + " {\"name\" : \"c\", \"extra\" : true}]}");
+    assertTrue(schema.isValid(good));
+    assertEquals(List.of(), schema.validate(good));
+
+    JSONValue bad = JSON.parse("{\"name\" : \"Root\", \"weight\" : 100.5, \"count\" : 11, \"kind\" : \"twig\","
+        + " \"version\" : 3, \"children\" : [{\"children\" : [{\"name\" : 5}]}]}");
+    assertFalse(schema.isValid(bad));
+    List<String> errors = schema.validate(bad);
+    assertEquals(7, errors.size(), errors.toString());
+    assertTrue(errors.contains("Schema mismatch at /children/0: missing required property name"), errors.toString());
+    assertTrue(errors.contains("Schema mismatch at /children/0/children/0/name: expected string but found integer"),
+        errors.toString());
+    assertEquals(1, schema.validate(bad, true).size());
+
+    assertFalse(JSONSchema.compile("{\"minItems\" : 1, \"maxProperties\" : 0}").isValid(JSON.parse("[]")));
+    assertFalse(JSONSchema.compile("{\"items\" : false}").isValid(JSON.parse("[1]")));
+    assertTrue(JSONSchema.compile("{\"minimum\" : 5}").isValid(JSON.parse("\"text\"")));
+    assertThrows(IllegalArgumentException.class, () -> JSONSchema.compile("{\"$ref\" : \"#/nowhere\"}"));
+    assertThrows(IllegalArgumentException.class, () -> JSONSchema.compile("{\"pattern\" : \"[\"}"));
+    assertThrows(IllegalArgumentException.class, () -> JSONSchema.compile("{\"$ref\" : \"#\"}"));
+    assertThrows(IllegalArgumentException.class, () -> JSONSchema.compile("{\"$ref\" : \"#/$defs/a\","
+        + " \"$defs\" : {\"a\" : {\"$ref\" : \"#/$defs/b\"}, \"b\" : {\"$ref\" : \"#/$defs/a\"}}}"));
+
+    assertTrue(JSONSchema.compile("{\"enum\" : [1, \"a\"]}").isValid(JSON.parse("1.0")));
+    assertTrue(JSONSchema.compile("{\"enum\" : [2.50]}").isValid(JSON.parse("2.5")));
+    assertFalse(JSONSchema.compile("{\"enum\" : [1]}").isValid(JSON.parse("1.5")));
+    assertTrue(JSONSchema.compile("{\"const\" : [1, {\"a\" : 0.0}]}").isValid(JSON.parse("[1.0, {\"a\" : 0}]")));
+    assertFalse(JSONSchema.compile("{\"const\" : [1]}").isValid(JSON.parse("[2]")));
+
+    JSONSchema escaped = JSONSchema.compile("{\"$ref\" : \"#/$defs/a+b%25%C3%A9\","
+        + " \"$defs\" : {\"a+b%\u00e9\" : {\"type\" : \"string\"}}}");
+    assertTrue(escaped.isValid(JSON.parse("\"text\"")));
+    assertFalse(escaped.isValid(JSON.parse("1")));
+    assertThrows(IllegalArgumentException.class, () -> JSONSchema.compile("{\"$ref\" : \"#/$defs/%G1\"}"));
+
+    JSONSchema nested = JSONSchema.compile("{\"items\" : {\"$ref\" : \"#\"}}");
+    int depth = JSONSchema.MAX_DEPTH * 2;
+    JSONValue deep = JSON.parse("[".repeat(depth) + "]".repeat(depth));
+    assertFalse(nested.isValid(deep));
+    assertTrue(nested.validate(deep).get(0).endsWith("nested more than " + JSONSchema.MAX_DEPTH + " deep to check"));
+  } // schemaTest()
+
+  /*
+   * Check that JSONColumns gives the same typed columns from a tree and
+   * straight from text, with nulls, promotion and statistics
+   */
+  @Test
+  void columnsTest() throws Exception {
+    String text = "[{\"id\" : 1, \"price\" : 2, \"sku\" : \"a\", \"ok\" : true, \"mixed\" : 1},"
+        + " {\"id\" : 2, \"price\" : 2.5, \"sku\" : \"b\", \"ok\" : false, \"mixed\" : \"x\"},"
+        + " null, {\"id\" : -7, \"sku\" : \"a\", \"price\" : null, \"late\" : [1]}]";
+    JSONColumns[] all = {JSONColumns.of((JSONArray) JSON.parse(text)), JSONColumns.read(text),
+        JSONColumns.read(new StringReader(text))};
+    for (JSONColumns columns : all) {
+      assertEquals(4, columns.rows());
+      assertEquals(6, columns.size());
+
+      JSONColumns.Column id = columns.get("id");
+      assertEquals(JSONColumns.Kind.LONG, id.kind());
+      assertArrayEquals(new long[] {1, 2, 0, -7}, id.longs());
+      assertTrue(id.isNull(2));
+      assertFalse(id.isNull(3));
+      assertEquals(3, id.count());
+      assertEquals(-7, id.minLong());
+      assertEquals(2, id.maxLong());
+
+      JSONColumns.Column price = columns.get("price");
+      assertEquals(JSONColumns.Kind.DOUBLE, price.kind());
+      assertArrayEquals(new double[] {2, 2.5, 0, 0}, price.doubles());
+      assertEquals(0b1100L, price.nulls()[0]);
+      assertEquals(2.0, price.min());
+      assertEquals(2.5, price.max());
+
+      JSONColumns.Column sku = columns.get("sku");
+      assertEquals(JSONColumns.Kind.STRING, sku.kind());
+      assertArrayEquals(new int[] {0, 1, -1, 0}, sku.codes());
+      assertArrayEquals(new String[] {"a", "b"}, sku.dictionary());
+      assertEquals("b", sku.getString(1));
+      assertNull(sku.getString(2));
+
+      assertArrayEquals(new long[] {1, 0, 0, 0}, columns.get("ok").longs());
+      assertEquals(JSONColumns.Kind.BOOLEAN, columns.get("ok").kind());
+      assertEquals(JSONColumns.Kind.VALUE, columns.get("mixed").kind());
+      assertEquals(new JSONString("x"), columns.get("mixed").get(1));
+      assertEquals(JSON.parse("[1]"), columns.get("late").get(3));
+      assertNull(columns.get("late").get(0));
+      assertThrows(IllegalStateException.class, () -> sku.longs());
+    } // for
+
+    // only the keys asked for, in that order
+    JSONColumns some = JSONColumns.read(text, "sku", "missing");
+    assertEquals(2, some.size());
+    assertEquals("sku", some.column(0).name());
+    assertEquals(JSONColumns.Kind.EMPTY, some.get("missing").kind());
+    assertTrue(some.get("missing").isNull(3));
+    assertThrows(IllegalArgumentException.class, () -> JSONColumns.of((JSONArray) JSON.parse("[{}, 1]")));
+    assertThrows(IllegalArgumentException.class,
+        () -> JSONColumns.of((JSONArray) JSON.parse("[{\"a\" : 1}]"), "a", "b", "a"));
+    assertThrows(IllegalArgumentException.class, () -> JSONColumns.read(text, "sku", "sku"));
+  } // columnsTest()
+
+  /*
+   * Check that a tape holds the same document as the tree, and that
+   * cursors navigate it
+   */
+  @Test
+  void tapeTest() throws Exception {
+    String text = "{\"id\" : 9223372036854775807, \"big\" : 92233720368547758080, \"neg\" : -12,"
+        + " \"pi\" : 3.14e0, \"name\" : \"tab\\there \\u00e9\", \"ok\" : true, \"no\" : false,"
+        + " \"none\" : null, \"empty\" : {}, \"list\" : [[], [1, {\"k\" : \"v\"}], \"x\"]}";
+    for (String doc : new String[] {text, "5", "\"s\"", "[]", " [null] "}) {
+      assertEquals(JSON.parse(doc), JSONTape.parse(doc).toValue());
+      assertEquals(JSON.parse(doc), JSONTape.parse(new StringReader(doc)).toValue());
+    } // for
+
+    JSONTape.Cursor root = JSONTape.parse(text).root();
+    assertTrue(root.isHash());
+    assertEquals(10, root.size());
+    assertEquals(Long.MAX_VALUE, root.get("id").asLong(0));
+    assertEquals(-1, root.get("big").asLong(-1));
+    assertEquals(9.2233720368547758080e19, root.get("big").asDouble(0));
+    assertEquals(-12, root.get("neg").asLong(0));
+    assertEquals(3.14, root.get("pi").asDouble(0));
+    assertEquals("tab\there \u00e9", root.get("name").asString(null));
+    assertTrue(root.get("ok").asBoolean(false));
+    assertFalse(root.get("no").asBoolean(true));
+    assertTrue(root.get("none").isNull());
+    assertEquals(0, root.get("empty").size());
+    assertNull(root.get("missing"));
+    JSONTape.Cursor list = root.get("list");
+    assertEquals(3, list.size());
+    assertEquals("v", list.get(1).get(1).get("k").asString(null));
+    assertNull(list.get(3));
+    assertEquals(List.of("k"), list.get(1).get(1).keys());
+    assertEquals(JSON.parse("[1, {\"k\" : \"v\"}]"), list.get(1).toValue());
+    assertEquals("x", list.elements().get(2).asString(null));
+    assertEquals(10, root.keys().size());
+    // a repeated key reads as its last value, as in the tree
+    JSONTape.Cursor twice = JSONTape.parse("{\"a\" : 1, \"b\" : 2, \"a\" : 3}").root();
+    assertEquals(3, twice.get("a").asLong(0));
+    assertEquals(((JSONHash) twice.toValue()).get(new JSONString("a")), twice.get("a").toValue());
+
+    StringBuilder deep = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      deep.append("[");
+    } // for
+    for (int i = 0; i < 50000; i++) {
+      deep.append("]");
+    } // for
+    assertThrows(InvalidJSONException.class, () -> JSONTape.parse(deep.toString()));
+    assertThrows(Exception.class, () -> JSONTape.parse("{\"a\" : 1,}"));
+    assertThrows(Exception.class, () -> JSONTape.parse("[1] 2"));
+  } // tapeTest()
+
+  /*
+   * Check the canonical form against RFC 8785, that unpaired surrogates
+   * are rejected, and that frozen documents keep (and hand out copies
+   * of) the canonical form of unchanged subtrees
+   */
+  @Test
+  void canonicalTest() throws Exception {
+    String text = "{\"numbers\" : [333333333.33333329, 1E30, 4.50, 2e-3, 0.000000000000000000000000001],"
+        + " \"string\" : \"\\u20ac$\\u000F\\u000aA'\\u0042\\u0022\\u005c\\\\\\\"\\/\","
+        + " \"literals\" : [null, true, false]}";
+    assertEquals("{\"literals\":[null,true,false],\"numbers\":[333333333.3333333,1e+30,4.5,0.002,1e-27],"
+        + "\"string\":\"\u20ac$\\u000f\\nA'B\\\"\\\\\\\\\\\"/\"}", JSONCanonical.toString(JSON.parse(text)));
+    // keys sort by UTF-16 code units, so the emoji's surrogates come before \ufb33
+    assertEquals("{\"\\r\":1,\"1\":2,\"\u0080\":3,\"\u00f6\":4,\"\u20ac\":5,\"\ud83d\ude00\":6,\"\ufb33\":7}",
+        JSONCanonical.toString(JSON.parse("{\"\\u20ac\" : 5, \"\\r\" : 1, \"\\ufb33\" : 7, \"1\" : 2,"
+            + " \"\\ud83d\\ude00\" : 6, \"\\u0080\" : 3, \"\\u00f6\" : 4}")));
+    assertEquals("0", JSONCanonical.number(-0.0));
+    assertEquals("-1.5", JSONCanonical.number(-1.5));
+    assertEquals("123456789012345680000", JSONCanonical.number(123456789012345678901.0));
+    assertEquals("1e+21", JSONCanonical.number(1e21));
+    assertEquals("0.000001", JSONCanonical.number(1e-6));
+    assertEquals("1e-7", JSONCanonical.number(1e-7));
+    assertEquals("5e-324", JSONCanonical.number(Double.MIN_VALUE));
+    assertEquals("1.7976931348623157e+308", JSONCanonical.number(Double.MAX_VALUE));
+    assertEquals("9007199254740992", JSONCanonical.toString(JSON.parse("9007199254740993")));
+    assertThrows(IllegalArgumentException.class, () -> JSONCanonical.number(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> JSONCanonical.toString(JSON.parse("[\"a\\ud83d\"]")));
+    assertThrows(IllegalArgumentException.class, () -> JSONCanonical.toString(JSON.parse("{\"\\ude00b\" : 1}")));
+
+    // the digest is SHA-256 of the canonical bytes
+    JSONValue doc = JSON.parse("{\"b\" : [1, 2], \"a\" : {\"x\" : \"y\"}}");
+    assertArrayEquals(MessageDigest.getInstance("SHA-256")
+        .digest("{\"a\":{\"x\":\"y\"},\"b\":[1,2]}".getBytes("UTF-8")), doc.canonicalHash());
+
+    // replacing a leaf in a frozen document shares, and does not redo,
+    // the canonical form of every subtree off the path
+    JSONHash frozen = (JSONHash) JSON.parse("{\"order\" : {\"id\" : 7, \"items\" : [{\"sku\" : \"a\"}, {\"sku\" : \"b\"}]},"
+        + " \"customer\" : {\"name\" : \"Ada\"}}");
+    frozen.freeze();
+    byte[] before = frozen.canonicalHash();
+    JSONHash changed = (JSONHash) JSONPointer.compile("/order/items/1/sku")
+        .replace(frozen, new JSONString("c"));
+    assertTrue(changed.isFrozen());
+    JSONHash customer = (JSONHash) changed.get(new JSONString("customer"));
+    assertTrue(customer.canonical != null);
+    assertSame(frozen.get(new JSONString("customer")), customer);
+    assertArrayEquals(JSON.parse("{\"customer\" : {\"name\" : \"Ada\"}, \"order\" : {\"id\" : 7,"
+        + " \"items\" : [{\"sku\" : \"a\"}, {\"sku\" : \"c\"}]}}").canonicalHash(), changed.canonicalHash());
+    assertArrayEquals(before, frozen.canonicalHash());
+    // callers get copies of the kept bytes
+    JSONCanonical.bytes(frozen)[0] = 'x';
+    frozen.canonicalHash()[0] ^= 1;
+    assertEquals('{', JSONCanonical.bytes(frozen)[0]);
+    assertArrayEquals(before, frozen.canonicalHash());
+    assertEquals("b", JSONPointer.compile("/order/items/1/sku").getString(frozen, null));
+    assertEquals("c", JSONPointer.compile("/order/items/1/sku").getString(changed, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> JSONPointer.compile("/order/id/x").replace(frozen, JSONConstant.NULL));
+    assertThrows(IllegalArgumentException.class,
+        () -> JSONPointer.compile("/order/items/5").replace(frozen, JSONConstant.NULL));
+  } // canonicalTest()
+
+  /*
+   * Check that compressed files are recognized, and that the background
+   * inflater delivers every char, reports corrupt input and stops when closed
+   */
+  @Test
+  void gzipTest() throws Exception {
+    StringBuilder big = new StringBuilder("[");
+    for (int i = 0; i < 40000; i++) {
+      big.append((i == 0) ? "" : ", ").append("{\"n\" : ").append(i).append(", \"s\" : \"\u00e9t\u00e9 ").append(i).append("\"}");
+    } // for
+    String text = big.append("]").toString();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(text.getBytes("UTF-8"));
+    } // try
+    byte[] gz = bytes.toByteArray();
+
+    JSONValue expected = JSON.parse(text);
+    try (InflatingReader in = new InflatingReader(new ByteArrayInputStream(gz))) {
+      assertEquals(expected, JSON.parse(in));
+    } // try
+    Path path = Files.createTempFile("big", ".json.gz");
+    path.toFile().deleteOnExit();
+    Files.write(path, gz);
+    assertEquals(expected, JSON.parseFile(path.toString()));
+    assertEquals(expected, JSON.parseFiles(List.of(path), 1).get(0).value());
+
+    // truncated input fails rather than ending early
+    byte[] truncated = Arrays.copyOf(gz, gz.length / 2);
+    try (InflatingReader in = new InflatingReader(new ByteArrayInputStream(truncated))) {
+      assertThrows(IOException.class, () -> JSON.parse(in));
+    } // try
+    // closing early stops the inflater, which would otherwise wait for a free chunk
+    InflatingReader early = new InflatingReader(new ByteArrayInputStream(gz));
+    early.read(new char[10], 0, 10);
+    early.close();
+    early.inflater.join(10000);
+    assertFalse(early.inflater.isAlive());
+
+    Path small = Files.createTempFile("small", ".json.gz");
+    small.toFile().deleteOnExit();
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(small))) {
+      out.write("{\"a\" : [1, 2]}".getBytes("UTF-8"));
+    } // try
+    assertEquals(JSON.parse("{\"a\" : [1, 2]}"), JSON.parseFile(small.toString()));
+    Path zstd = Files.createTempFile("data", ".json.zst");
+    zstd.toFile().deleteOnExit();
+    Files.write(zstd, new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0});
+    assertThrows(IOException.class, () -> JSON.parseFile(zstd.toString()));
+  } // gzipTest()
+
+  /*
+   * Check that hash and array spliterators cover every member once when
+   * split, and that the walker counts, finds and transforms in parallel
+   */
+  @Test
+  void parallelTest() throws Exception {
+    JSONHash hash = new JSONHash();
+    JSONArray array = new JSONArray();
+    for (int i = 0; i < 5000; i++) {
+      hash.set(new JSONString("k" + i), new JSONInteger(i));
+      array.add(new JSONInteger(i));
+    } // for
+    long total = 5000L * 4999 / 2;
+    assertEquals(5000, hash.stream().count());
+    assertEquals(total, hash.parallelStream().mapToLong((pair) -> pair.value().asLong(0)).sum());
+    assertEquals(total, array.parallelStream().mapToLong((value) -> value.asLong(0)).sum());
+    assertEquals(5000, hash.spliterator().getExactSizeIfKnown());
+    Spliterator<KVPair<JSONString, JSONValue>> rest = hash.spliterator();
+    Spliterator<KVPair<JSONString, JSONValue>> first = rest.trySplit();
+    assertTrue((first.estimateSize() > 1000) && (rest.estimateSize() > 1000));
+    assertEquals(-1, rest.getExactSizeIfKnown());
+    HashSet<String> seen = new HashSet<String>();
+    rest.tryAdvance((pair) -> seen.add(pair.key().getValue()));
+    first.forEachRemaining((pair) -> seen.add(pair.key().getValue()));
+    rest.forEachRemaining((pair) -> seen.add(pair.key().getValue()));
+    assertEquals(5000, seen.size());
+
+    JSONArray doc = new JSONArray();
+    for (int i = 0; i < 200; i++) {
+      JSONHash row = new JSONHash();
+      JSONArray values = new JSONArray();
+      for (int j = 0; j < 20; j++) {
+        values.add(new JSONInteger(i * 20 + j));
+      } // for
+      row.set(new JSONString("values"), values);
+      row.set(new JSONString("name"), new JSONString("row" + i));
+      doc.add(row);
+    } // for
+    JSONWalker walker = new JSONWalker(new ForkJoinPool(4));
+    assertEquals(1 + 200 * 23, walker.count(doc, (value) -> true));
+    assertEquals(4000, walker.count(doc, (value) -> value instanceof JSONInteger));
+    assertEquals(new JSONString("row123"), walker.find(doc, (value) -> "row123".equals(value.asString(null))));
+    assertNull(walker.find(doc, (value) -> "missing".equals(value.asString(null))));
+    JSONValue doubled = walker.transform(doc,
+        (value) -> (value instanceof JSONInteger) ? new JSONInteger(2 * value.asLong(0)) : value);
+    assertEquals(new JSONInteger(2 * 3999), ((JSONArray) ((JSONHash) ((JSONArray) doubled).get(199))
+        .get(new JSONString("values"))).get(19));
+    assertEquals(new JSONString("row7"), ((JSONHash) ((JSONArray) doubled).get(7)).get(new JSONString("name")));
+    assertEquals(2L * 3999 * 4000 / 2, (long) walker.reduce(doubled, 0L, (value) -> value.asLong(0), Long::sum));
+    assertEquals(new JSONInteger(0), ((JSONArray) ((JSONHash) doc.get(0)).get(new JSONString("values"))).get(0));
+
+    // deep nesting neither overflows the stack nor loses values
+    JSONArray deep = new JSONArray();
+    JSONArray inner = deep;
+    for (int i = 0; i < 100000; i++) {
+      JSONArray next = new JSONArray();
+      for (int j = 0; j < JSONWalker.FORK_SIZE; j++) {
+        inner.add(new JSONInteger(j));
+      } // for
+      inner.add(next);
+      inner = next;
+    } // for
+    assertEquals(100000L * JSONWalker.FORK_SIZE, walker.count(deep, (value) -> value instanceof JSONInteger));
+    assertEquals(100000L * JSONWalker.FORK_SIZE,
+        walker.count(walker.transform(deep, (value) -> value), (value) -> value instanceof JSONInteger));
+  } // parallelTest()
+
+  /*
+   * Numbers are written with the fewest digits that read back the same,
+   * and integers and decimals are written as toString writes them.
+   */
+  @Test
+  void numbersTest() throws Exception {
+    assertEquals("5e-324", JSONCanonical.number(Double.MIN_VALUE));
+    assertEquals("8e-323", JSONCanonical.number(16 * Double.MIN_VALUE));
+    assertEquals("1.7976931348623157e+308", JSONCanonical.number(Double.MAX_VALUE));
+    assertEquals("9007199254740992", JSONCanonical.number(Math.pow(2, 53)));
+    assertEquals("1e+21", JSONCanonical.number(1e21));
+    assertEquals("1e-7", JSONCanonical.number(1e-7));
+    assertEquals("0.000001", JSONCanonical.number(1e-6));
+    assertEquals("-0.1", JSONCanonical.number(-0.1));
+    assertEquals("0", JSONCanonical.number(-0.0));
+    Random random = new Random(48);
+    for (int i = 0; i < 100000; i++) {
+      double d = Double.longBitsToDouble(random.nextLong());
+      if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+        assertEquals(d, Double.parseDouble(JSONCanonical.number(d)));
+        assertEquals(d, new JSONReal(d).getValue().doubleValue());
+      } // if
+    } // for
+
+    assertEquals("1.5", new JSONReal(1.5).toString());
+    assertEquals("100.0", new JSONReal(100.0).toString());
+    assertEquals("1.0E-7", new JSONReal(1e-7).toString());
+    String[] texts = { "0", "-7", "9223372036854775807", "-9223372036854775808",
+        "123456789012345678901234567890", "0.00", "-0.5", "3.14159", "1.0E+3", "1.5E-9",
+        "0.000001", "12345678901234567890.5" };
+    for (String text : texts) {
+      JSONValue value = JSON.parse(text);
+      StringWriter out = new StringWriter();
+      value.writeJSON(new PrintWriter(out));
+      assertEquals(value.toString(), out.toString());
+      assertEquals(value, JSON.parse(out.toString()));
+    } // for
+  } // numbersTest()
+
+  /*
+   * Long string values can be spilled to temporary files while parsing,
+   * and still compare, hash and write as ordinary strings do; failed
+   * reads delete their files.
+   */
+  @Test
+  void spillTest() throws Exception {
+    StringBuilder blob = new StringBuilder();
+    StringBuilder escaped = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      blob.append("ab\"c\ud83d\ude00");
+      escaped.append("ab\\\"c\\ud83d\\ude00");
+    } // for
+    String text = "{\"blob\" : \"" + escaped + "\", \"small\" : \"x\"}";
+    JSONHash doc = (JSONHash) JSON.parse(new StringReader(text), null, JSON.DEFAULT_MAX_DEPTH, 1000);
+    JSONHash plain = (JSONHash) JSON.parse(text);
+    JSONValue spilled = doc.get(new JSONString("blob"));
+    assertTrue(spilled instanceof JSONSpilledString);
+    assertTrue(!(doc.get(new JSONString("small")) instanceof JSONSpilledString));
+    JSONSpilledString big = (JSONSpilledString) spilled;
+    assertEquals(blob.length(), big.length());
+    assertEquals(blob.toString(), big.getValue());
+    assertEquals(blob.toString().hashCode(), big.hashCode());
+    assertEquals(new JSONString(blob.toString()), big);
+    assertEquals(big, new JSONString(blob.toString()));
+    assertEquals(plain, doc);
+    assertTrue(!big.equals(new JSONString(blob.toString() + "!")));
+    byte[] utf8 = blob.toString().getBytes(StandardCharsets.UTF_8);
+    try (InputStream in = big.openStream()) {
+      assertArrayEquals(utf8, in.readAllBytes());
+    } // try
+    try (ReadableByteChannel channel = big.openChannel()) {
+      ByteBuffer bytes = ByteBuffer.allocate(utf8.length + 1);
+      while (channel.read(bytes) != -1) {
+      } // while
+      assertEquals(utf8.length, bytes.position());
+    } // try
+
+    // written the same, and usable as a key
+    StringWriter out = new StringWriter();
+    doc.writeJSON(new PrintWriter(out));
+    StringWriter expected = new StringWriter();
+    plain.writeJSON(new PrintWriter(expected));
+    assertEquals(expected.toString(), out.toString());
+    JSONHash byBlob = new JSONHash();
+    byBlob.set(big, JSONConstant.TRUE);
+    assertEquals(JSONConstant.TRUE, byBlob.get(new JSONString(blob.toString())));
+
+    // an unpaired surrogate is kept as '?', in the hash as well
+    JSONValue odd = ((JSONArray) JSON.parse(new StringReader("[\"" + "z".repeat(5000) + "\\ud83d\"]"),
+        null, JSON.DEFAULT_MAX_DEPTH, 1000)).get(0);
+    assertEquals(new JSONString("z".repeat(5000) + "?"), odd);
+
+    Path file = big.file;
+    assertTrue(Files.exists(file));
+    big.close();
+    assertTrue(!Files.exists(file));
+
+    // a string whose reading fails, however it fails, leaves no file
+    Path temp = Paths.get(System.getProperty("java.io.tmpdir"));
+    long before;
+    try (Stream<Path> files = Files.list(temp)) {
+      before = files.filter((f) -> f.getFileName().toString().endsWith(".str")).count();
+    } // try
+    Reader failing = new Reader() {
+      Reader start = new StringReader("[\"" + "z".repeat(5000));
+
+      public int read(char[] buf, int off, int len) throws IOException {
+        int count = this.start.read(buf, off, len);
+        if (count == -1) {
+          throw new IllegalStateException("source went away");
+        } // if
+        return count;
+      } // read(char[], int, int)
+
+      public void close() {
+      } // close()
+    };
+    assertThrows(IllegalStateException.class, () -> JSON.parse(failing, null, JSON.DEFAULT_MAX_DEPTH, 1000));
+    try (Stream<Path> files = Files.list(temp)) {
+      assertTrue(files.filter((f) -> f.getFileName().toString().endsWith(".str")).count() <= before);
+    } // try
+  } // spillTest()
+
+  /*
+   * Indexes find array elements by key, by range, and stay up to date
+   * as elements are added and set.
+   */
+  @Test
+  void indexTest() throws Exception {
+    JSONArray rows = new JSONArray();
+    for (int i = 0; i < 1000; i++) {
+      rows.add(JSON.parse("{\"id\" : " + (i * 7) + ", \"group\" : \"g" + (i % 10)
+          + "\", \"user\" : {\"score\" : " + (i % 50) + ".5}}"));
+    } // for
+    rows.add(JSON.parse("{\"name\" : \"no id\"}"));
+    JSONIndex byId = rows.indexBy("/id", JSONIndex.Option.UNIQUE, JSONIndex.Option.SORTED);
+    assertSame(byId, rows.indexBy("/id", JSONIndex.Option.SORTED, JSONIndex.Option.UNIQUE));
+    assertEquals(rows.get(3), byId.get(21));
+    assertEquals(rows.get(3), byId.get(new JSONInteger(21)));
+    assertNull(byId.get(22));
+    assertEquals(1, byId.getAll(700).size());
+    List<JSONValue> range = byId.range(70, 100);
+    assertEquals(5, range.size());
+    assertEquals(rows.get(10), range.get(0));
+    assertEquals(rows.get(14), range.get(4));
+    assertEquals(1000, byId.range(null, null).size());
+
+    JSONIndex byGroup = rows.indexBy("/group");
+    assertEquals(100, byGroup.getAll(new JSONString("g3")).size());
+    assertEquals(rows.get(3), byGroup.get("g3"));
+    assertEquals(rows.get(13), byGroup.getAll(new JSONString("g3")).get(1));
+    assertThrows(IllegalStateException.class, () -> byGroup.range(null, null));
+    JSONIndex byScore = rows.indexBy("/user/score", JSONIndex.Option.SORTED);
+    assertEquals(60, byScore.range(new JSONReal("10"), new JSONInteger(13)).size());
+
+    // kept up to date by add and set
+    rows.add(JSON.parse("{\"id\" : 22, \"group\" : \"g3\"}"));
+    assertEquals(rows.get(1001), byId.get(22));
+    assertEquals(6, byId.range(70, 100).size() + byId.range(22, 23).size());
+    rows.set(3, JSON.parse("{\"id\" : 5000, \"group\" : \"g4\"}"));
+    assertNull(byId.get(21));
+    assertEquals(rows.get(3), byId.get(5000));
+    assertEquals(100, byGroup.getAll(new JSONString("g3")).size());
+    assertEquals(rows.get(13), byGroup.get("g3"));
+    assertEquals(rows.get(3), byGroup.getAll(new JSONString("g4")).get(0));
+    assertEquals(101, byGroup.getAll(new JSONString("g4")).size());
+    assertThrows(IllegalArgumentException.class, () -> rows.add(JSON.parse("{\"id\" : 7}")));
+    assertEquals(1002, rows.size());
+    rows.set(1, JSON.parse("{\"id\" : 7, \"group\" : \"g1\"}"));
+    assertThrows(IllegalArgumentException.class, () -> rows.indexBy("/group", JSONIndex.Option.UNIQUE));
+
+    // a failed sort leaves the lock as it found it and reports its own error
+    String longId = "z".repeat(2000);
+    JSONArray spilledRows = (JSONArray) JSON.parse(new StringReader("[{\"id\" : \"" + longId
+        + "1\"}, {\"id\" : \"" + longId + "0\"}]"), null, JSON.DEFAULT_MAX_DEPTH, 1000);
+    JSONIndex bySpilled = spilledRows.indexBy("/id", JSONIndex.Option.SORTED);
+    ((JSONSpilledString) ((JSONHash) spilledRows.get(0)).get(new JSONString("id"))).close();
+    assertThrows(UncheckedIOException.class, () -> bySpilled.range(null, null));
+    assertEquals(0, bySpilled.lock.getReadHoldCount());
+    assertTrue(!bySpilled.lock.isWriteLocked());
+
+    // many threads querying at once
+    JSONArray big = new JSONArray();
+    for (int i = 0; i < 100000; i++) {
+      JSONHash row = new JSONHash();
+      row.set(new JSONString("id"), new JSONInteger(i));
+      big.add(row);
+    } // for
+    JSONIndex bigIndex = big.indexBy("/id", JSONIndex.Option.UNIQUE);
+    assertEquals(100000L, LongStream.range(0, 100000).parallel()
+        .filter((i) -> bigIndex.get(i).equals(big.get((int) i))).count());
+  } // indexTest()
+
 } // class JSONTests